@@ -0,0 +1,118 @@
+package com.astral004.appointmentapi.benchmark;
+
+import com.astral004.appointmentapi.AppointmentApiApplication;
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.repository.AppointmentRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the request throughput of the servlet and the reactive web modes. Each mode is started on a random
+ * port against the database given by spring.data.mongodb.*, which must be reachable, and many client threads
+ * issue blocking requests at once so the servlet mode runs into its thread pool while the reactive mode does not.
+ * Run with: mvn -Pbenchmarks test-compile exec:exec -Djmh.args="WebModeThroughputBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(400)
+public class WebModeThroughputBenchmark {
+
+    private static final String DATABASE = "AppointmentApiBenchmark";
+    private static final int DOCTORS = 50;
+
+    @Param({"servlet", "reactive"})
+    public String mode;
+
+    @Param("200")
+    public int servletThreads;
+
+    @Param("5000")
+    public int appointments;
+
+    private ConfigurableApplicationContext context;
+    private String baseUrl;
+    private List<String> appointmentIds;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(AppointmentApiApplication.class)
+                .properties("server.port=0",
+                            "spring.main.web-application-type=" + mode,
+                            "spring.data.mongodb.database=" + DATABASE,
+                            "server.tomcat.threads.max=" + servletThreads)
+                .run();
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+        AppointmentRepository repository = context.getBean(AppointmentRepository.class);
+        repository.deleteAll();
+        List<Appointment> seed = new ArrayList<>(appointments);
+        LocalDateTime firstSlot = LocalDateTime.now().plusDays(3).withHour(8).withMinute(0).withSecond(0).withNano(0);
+        for (int i = 0; i < appointments; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setPatientId("P" + i);
+            appointment.setDoctorId("D" + (i % DOCTORS));
+            appointment.setClinicId("C" + (i % 10));
+            appointment.setTiming(firstSlot.plusMinutes(15L * (i / DOCTORS)));
+            appointment.setStatus("Scheduled");
+            seed.add(appointment);
+        }
+        repository.insertUnordered(seed);
+        appointmentIds = new ArrayList<>(appointments);
+        for (Appointment appointment : seed) {
+            appointmentIds.add(appointment.getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.getBean(MongoTemplate.class).getDb().drop();
+        context.close();
+    }
+
+    @Benchmark
+    public int getAppointmentById() throws IOException {
+        String id = appointmentIds.get(ThreadLocalRandom.current().nextInt(appointmentIds.size()));
+        return get("/appointments/" + id);
+    }
+
+    @Benchmark
+    public int getAppointmentsByDoctor() throws IOException {
+        return get("/appointmentsByValue?dID=D" + ThreadLocalRandom.current().nextInt(DOCTORS));
+    }
+
+    /**
+     * Helper method to issue one GET request and read the whole response
+     * @param path Path and query of the request
+     * @return HTTP status of the response
+     */
+    private int get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestProperty("Accept", "application/json");
+        int status = connection.getResponseCode();
+        byte[] buffer = new byte[8192];
+        try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (body != null) {
+                while (body.read(buffer) != -1) {
+                    //drain so the connection can be kept alive
+                }
+            }
+        }
+        return status;
+    }
+}
@@ -0,0 +1,106 @@
+package com.astral004.appointmentapi.codec;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.proto.AppointmentList;
+import com.astral004.appointmentapi.repository.AppointmentTransitions;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON, CBOR, Smile, and Protobuf forms of a page of appointments: the time to write and read the page, and,
+ * printed once per trial, the size of each encoding.
+ * Run with: mvn -Pbenchmarks test-compile exec:exec -Djmh.args="EncodingBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodingBenchmark {
+
+    private static final String[] DESCRIPTIONS = {"Annual physical", "Follow-up", "New patient visit",
+            "Vaccination", "Lab results review", "Consultation", "Prescription refill", "Urgent visit"};
+    private static final String[] STATUSES = {AppointmentTransitions.SCHEDULED, AppointmentTransitions.RESCHEDULED,
+            AppointmentTransitions.CANCELLED};
+    private static final String[] INSURERS = {"INS-AETNA", "INS-BCBS", "INS-CIGNA", "INS-HUMANA", "INS-UHC"};
+    private static final int[] COPAYS = {0, 10, 20, 25, 30, 40, 50};
+
+    @Param({"1", "1000"})
+    public int appointments;
+
+    @Param({"json", "cbor", "smile", "protobuf"})
+    public String format;
+
+    private List<Appointment> page;
+    private ObjectMapper objectMapper;
+    private JavaType listType;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void fill() throws IOException {
+        switch (format) {
+            case "cbor":
+                objectMapper = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+                break;
+            case "smile":
+                objectMapper = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+                break;
+            default:
+                objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        }
+        listType = objectMapper.getTypeFactory().constructType(new TypeReference<List<Appointment>>() {});
+
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 8, 0);
+        page = new ArrayList<>(appointments);
+        for (int i = 0; i < appointments; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setId(String.format("A%08d", i));
+            appointment.setPatientId(String.format("P%07d", random.nextInt(200_000)));
+            appointment.setDoctorId(String.format("D%05d", random.nextInt(2_000)));
+            appointment.setClinicId(String.format("C%04d", random.nextInt(200)));
+            appointment.setTiming(start.plusDays(random.nextInt(365)).plusMinutes(15L * random.nextInt(36)));
+            appointment.setDescription(DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)]);
+            appointment.setInsuranceId(INSURERS[random.nextInt(INSURERS.length)]);
+            appointment.setCopay(COPAYS[random.nextInt(COPAYS.length)]);
+            appointment.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+            appointment.setVersion((long) random.nextInt(5));
+            page.add(appointment);
+        }
+        encoded = write();
+        System.out.printf("%n%s, %d appointments: %d bytes%n", format, appointments, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * appointments);
+        if (format.equals("protobuf")) {
+            ProtobufDocuments.toListMessage(page, Appointment.class).writeTo(out);
+        } else {
+            objectMapper.writerFor(listType).writeValue(out, page);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Object read() throws IOException {
+        if (format.equals("protobuf")) {
+            return ProtobufDocuments.fromListMessage(AppointmentList.parseFrom(encoded));
+        }
+        return objectMapper.readValue(encoded, listType);
+    }
+}
@@ -0,0 +1,160 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.event.AppointmentChangeCounter;
+import com.astral004.appointmentapi.repository.AppointmentRepository;
+import com.astral004.appointmentapi.schedule.DoctorScheduleIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Benchmarks the work every appointment request repeats: Jackson reading and writing an appointment, copying the
+ * request body, the getAppointmentsByValue dispatch, and turning an AppointmentDoesNotExistException into a 404.
+ * Mongo is replaced by a repository that answers from memory, so only the application's own cost is measured.
+ * The benchmarks profile runs JMH with the GC profiler, so gc.alloc.rate.norm gives the bytes allocated per
+ * operation next to the throughput.
+ * Run with: mvn -Pbenchmarks test-compile exec:exec -Djmh.args="AppointmentHotPathBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppointmentHotPathBenchmark {
+
+    @Param("20")
+    public int matchingAppointments;
+
+    private ObjectMapper objectMapper;
+    private Appointment appointment;
+    private byte[] appointmentJson;
+    private byte[] dateOnlyAppointmentJson;
+    private AppointmentController controller;
+    private MockMvc mockMvc;
+    private LocalDate from;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        LoggingSystem.get(getClass().getClassLoader()).setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+        //configured the way the application's own mapper is
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+
+        appointment = new Appointment();
+        appointment.setId("60f1c2a7e4b0a1b2c3d4e5f6");
+        appointment.setPatientId("60f1c2a7e4b0a1b2c3d4e5f7");
+        appointment.setDoctorId("60f1c2a7e4b0a1b2c3d4e5f8");
+        appointment.setClinicId("60f1c2a7e4b0a1b2c3d4e5f9");
+        appointment.setTiming(LocalDateTime.now().plusDays(3).withNano(0));
+        appointment.setDescription("Patient has pain in the right ankle.");
+        appointment.setInsuranceId("I000001");
+        appointment.setCopay(20);
+        appointment.setStatus("Scheduled");
+        appointment.setVersion(2L);
+        appointmentJson = objectMapper.writeValueAsBytes(appointment);
+        dateOnlyAppointmentJson = ("{\"patientId\":\"" + appointment.getPatientId() + "\",\"doctorId\":\"" + appointment.getDoctorId()
+                + "\",\"clinicId\":\"" + appointment.getClinicId() + "\",\"timing\":\"" + appointment.getTiming().toLocalDate() + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        from = appointment.getTiming().toLocalDate();
+
+        List<Appointment> matches = new ArrayList<>(matchingAppointments);
+        for (int i = 0; i < matchingAppointments; i++) {
+            Appointment match = new Appointment();
+            AppointmentController.copyAppointment(appointment, match);
+            match.setTiming(appointment.getTiming().plusMinutes(15L * i));
+            matches.add(match);
+        }
+        AppointmentRepository repository = (AppointmentRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AppointmentRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findAll":
+                        case "findByFilter":
+                            return matches;
+                        case "findById":
+                            return Optional.empty();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        controller = new AppointmentController();
+        ReflectionTestUtils.setField(controller, "appointmentRepository", repository);
+        ReflectionTestUtils.setField(controller, "doctorScheduleIndex", new DoctorScheduleIndex());
+        ReflectionTestUtils.setField(controller, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(controller, "appointmentChangeCounter", new AppointmentChangeCounter() {
+            @Override
+            public long current() {
+                return 0;
+            }
+        });
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+    }
+
+    @Benchmark
+    public byte[] serializeAppointment() throws Exception {
+        return objectMapper.writeValueAsBytes(appointment);
+    }
+
+    @Benchmark
+    public Appointment deserializeAppointment() throws Exception {
+        return objectMapper.readValue(appointmentJson, Appointment.class);
+    }
+
+    @Benchmark
+    public Appointment deserializeDateOnlyAppointment() throws Exception {
+        return objectMapper.readValue(dateOnlyAppointmentJson, Appointment.class);
+    }
+
+    @Benchmark
+    public Appointment copyAppointment() {
+        Appointment copy = new Appointment();
+        AppointmentController.copyAppointment(appointment, copy);
+        return copy;
+    }
+
+    @Benchmark
+    public ResponseEntity<List<Appointment>> getAppointmentsByValue() {
+        return controller.getAppointmentsByValue(null, appointment.getDoctorId(), null, "Scheduled", from, null, false,
+                new ServletWebRequest(new MockHttpServletRequest("GET", "/appointmentsByValue"), new MockHttpServletResponse()));
+    }
+
+    @Benchmark
+    public int getAppointmentsByValueRequest() throws Exception {
+        return mockMvc.perform(get("/appointmentsByValue")
+                .param("dID", appointment.getDoctorId())
+                .param("from", from.toString()))
+                .andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int appointmentDoesNotExist() throws Exception {
+        return mockMvc.perform(get("/appointments/{id}", "60f1c2a7e4b0a1b2c3d4e500"))
+                .andReturn().getResponse().getStatus();
+    }
+}
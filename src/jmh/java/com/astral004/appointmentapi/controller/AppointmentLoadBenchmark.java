@@ -0,0 +1,361 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.AppointmentApiApplication;
+import com.astral004.appointmentapi.directory.ClinicDirectory;
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.repository.AppointmentTransitions;
+import com.astral004.appointmentapi.schedule.DoctorScheduleIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of every AppointmentController endpoint against a real database filled with a {@link SyntheticDataset}
+ * of a million appointments. The mixed group runs reads and writes side by side in the proportions of a busy
+ * practice, mostly lookups with a steady trickle of bookings, reschedules, cancellations, and imports, while the
+ * full reads of the whole collection run on their own. Each endpoint is reported with its throughput and, from
+ * the sample time mode, its latency percentiles, and the responses it got are counted by status at the end of the
+ * run so a release that answers faster only by failing stands out.
+ * By default the database is an embedded mongod, downloaded on the first run; with -p mongo=external the one given
+ * by spring.data.mongodb.* is used instead. Either way the dataset is seeded from a fixed seed, so runs of
+ * different releases can be compared directly, for example by keeping their JSON results.
+ * Run with: mvn -Pbenchmarks test-compile exec:exec -Djmh.args="AppointmentLoadBenchmark -rf json -rff target/load.json"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 30)
+@Measurement(iterations = 5, time = 30)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AppointmentLoadBenchmark {
+
+    private static final String DATABASE = "AppointmentApiLoadTest";
+    private static final long SEED = 20211001L;
+    private static final int PAGE_SIZE = 50;
+    private static final int IMPORT_SIZE = 20;
+    //bookings are made far enough ahead to be rescheduled and cancelled outside the 48 hour window
+    private static final int MIN_DAYS_AHEAD = 3;
+    private static final int MAX_DAYS_AHEAD = 60;
+
+    @Param("embedded")
+    public String mongo;
+
+    @Param("1000000")
+    public int appointments;
+
+    @Param("200000")
+    public int patients;
+
+    @Param("2000")
+    public int doctors;
+
+    @Param("150")
+    public int clinics;
+
+    private ConfigurableApplicationContext context;
+    private String baseUrl;
+    private ObjectMapper objectMapper;
+    private SyntheticDataset dataset;
+    private final AtomicLong clientSeeds = new AtomicLong(SEED);
+    private final Map<String, LongAdder> responses = new ConcurrentHashMap<>();
+
+    /**
+     * Appointments booked during the run, shared by the threads of a group so the ones rescheduling and cancelling
+     * work on real bookings rather than on seeded appointments that may be in the past.
+     */
+    @State(Scope.Group)
+    public static class Bookings {
+        final ConcurrentLinkedDeque<Appointment> booked = new ConcurrentLinkedDeque<>();
+    }
+
+    /**
+     * Random choices of one client thread, seeded so every run makes the same ones
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        Random random;
+
+        @Setup(Level.Trial)
+        public void setUp(AppointmentLoadBenchmark benchmark) {
+            random = new Random(benchmark.clientSeeds.incrementAndGet());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void start() {
+        SpringApplicationBuilder application = new SpringApplicationBuilder(AppointmentApiApplication.class)
+                .properties("server.port=0",
+                            "spring.data.mongodb.database=" + DATABASE,
+                            "logging.level.root=WARN");
+        if ("embedded".equals(mongo)) {
+            application.properties("spring.mongodb.embedded.version=4.4.1", "spring.data.mongodb.port=0");
+        } else {
+            application.properties("spring.autoconfigure.exclude="
+                    + "org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration");
+        }
+        context = application.run();
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        MongoTemplate mongoTemplate = context.getBean(MongoTemplate.class);
+        DoctorScheduleIndex doctorScheduleIndex = context.getBean(DoctorScheduleIndex.class);
+        mongoTemplate.getDb().drop();
+        dataset = new SyntheticDataset(patients, doctors, clinics, appointments, doctorScheduleIndex.getSlotMinutes(), SEED);
+        long started = System.nanoTime();
+        dataset.seed(mongoTemplate, SEED);
+        System.out.println("Seeded " + appointments + " appointments in "
+                + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started) + "s");
+        //the seed was written behind the application's back
+        context.getBean(ClinicDirectory.class).refresh();
+        doctorScheduleIndex.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        System.out.println("Responses by endpoint and status:");
+        for (Map.Entry<String, LongAdder> response : new TreeMap<>(responses).entrySet()) {
+            System.out.println("  " + response.getKey() + ": " + response.getValue().sum());
+        }
+        context.getBean(MongoTemplate.class).getDb().drop();
+        context.close();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(12)
+    public int getAppointmentById(Client client) throws IOException {
+        return request("getAppointmentById", "GET", "/appointments/" + dataset.randomAppointmentId(client.random), null, null);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public int getAppointmentFieldsById(Client client) throws IOException {
+        return request("getAppointmentFieldsById", "GET",
+                "/appointments/" + dataset.randomAppointmentId(client.random) + "?fields=timing,status,doctorId", null, null);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public int getAppointmentsByDoctor(Client client) throws IOException {
+        LocalDate from = LocalDate.now().plusDays(client.random.nextInt(14));
+        return request("getAppointmentsByDoctor", "GET", "/appointmentsByValue?dID=" + dataset.randomDoctorId(client.random)
+                + "&from=" + from + "&to=" + from.plusDays(6), null, null);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public int getAppointmentsByPatient(Client client) throws IOException {
+        return request("getAppointmentsByPatient", "GET",
+                "/appointmentsByValue?pID=" + dataset.randomPatientId(client.random), null, null);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public int getAppointmentsByClinicAndStatus(Client client) throws IOException {
+        LocalDate day = LocalDate.now().plusDays(client.random.nextInt(30));
+        return request("getAppointmentsByClinicAndStatus", "GET", "/appointmentsByValue?cID=" + dataset.randomClinicId(client.random)
+                + "&status=" + AppointmentTransitions.SCHEDULED + "&from=" + day + "&to=" + day, null, null);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public int getAppointmentsByValueIncludingArchived(Client client) throws IOException {
+        return request("getAppointmentsByValueIncludingArchived", "GET", "/appointmentsByValue?pID="
+                + dataset.randomPatientId(client.random) + "&includeArchived=true", null, null);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public int getNextAvailableSlots(Client client) throws IOException {
+        String specialty = URLEncoder.encode(dataset.randomSpecialty(client.random), "UTF-8");
+        String clinic = client.random.nextBoolean() ? "&cID=" + dataset.randomClinicId(client.random) : "";
+        return request("getNextAvailableSlots", "GET", "/nextAvailableSlots?specialty=" + specialty + clinic, null, null);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public int getNearestClinics(Client client) throws IOException {
+        String query = client.random.nextBoolean()
+                ? "zipCode=" + dataset.randomZipCode(client.random)
+                : "lat=" + (25 + client.random.nextDouble() * 24) + "&lon=" + (-124 + client.random.nextDouble() * 57);
+        return request("getNearestClinics", "GET", "/clinicDirectory/nearest?" + query, null, null);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public int getAppointmentPage(Client client) throws IOException {
+        return request("getAppointmentPage", "GET", "/appointments?size=" + PAGE_SIZE + "&after="
+                + AppointmentController.encodeContinuationToken(dataset.randomAppointmentId(client.random)), null, null);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public int getAppointmentFieldsPage(Client client) throws IOException {
+        return request("getAppointmentFieldsPage", "GET", "/appointments?size=" + PAGE_SIZE + "&fields=id,timing,status&after="
+                + AppointmentController.encodeContinuationToken(dataset.randomAppointmentId(client.random)), null, null);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public int createAppointment(Client client, Bookings bookings) throws IOException {
+        Appointment appointment = dataset.newAppointment(client.random, MIN_DAYS_AHEAD, MAX_DAYS_AHEAD);
+        byte[] response = send("createAppointment", "POST", "/appointments", objectMapper.writeValueAsBytes(appointment));
+        if (response != null) {
+            bookings.booked.add(objectMapper.readValue(response, Appointment.class));
+        }
+        return response == null ? 0 : response.length;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public int rescheduleAppointment(Client client, Bookings bookings) throws IOException {
+        Appointment booked = bookings.booked.pollFirst();
+        if (booked == null) {
+            return 0;
+        }
+        Appointment changes = dataset.newAppointment(client.random, MIN_DAYS_AHEAD, MAX_DAYS_AHEAD);
+        changes.setPatientId(booked.getPatientId());
+        changes.setVersion(booked.getVersion());
+        byte[] response = send("rescheduleAppointment", "PUT", "/appointments/" + booked.getId(),
+                objectMapper.writeValueAsBytes(changes));
+        bookings.booked.add(response == null ? booked : objectMapper.readValue(response, Appointment.class));
+        return response == null ? 0 : response.length;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public int cancelAppointment(Bookings bookings) throws IOException {
+        Appointment booked = bookings.booked.pollLast();
+        if (booked == null) {
+            return 0;
+        }
+        return request("cancelAppointment", "DELETE", "/appointments/" + booked.getId() + "?cID=" + booked.getClinicId(), null, null);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public int importAppointments(Client client) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (int i = 0; i < IMPORT_SIZE; i++) {
+            body.write(objectMapper.writeValueAsBytes(dataset.newAppointment(client.random, MIN_DAYS_AHEAD, MAX_DAYS_AHEAD)));
+            body.write('\n');
+        }
+        return request("importAppointments", "POST", "/appointments/bulk", "application/x-ndjson", body.toByteArray());
+    }
+
+    /**
+     * Reads every appointment as one JSON array
+     */
+    @Benchmark
+    @Threads(1)
+    public int getAllAppointments() throws IOException {
+        return request("getAllAppointments", "GET", "/appointments", null, null);
+    }
+
+    /**
+     * Streams every appointment as NDJSON
+     */
+    @Benchmark
+    @Threads(1)
+    public int streamAllAppointments() throws IOException {
+        return request("streamAllAppointments", "GET", "/appointments", "application/x-ndjson", null);
+    }
+
+    /**
+     * Helper method to send a JSON write and read back the appointment it returned
+     * @return Body of a successful response, or null
+     */
+    private byte[] send(String endpoint, String method, String path, byte[] json) throws IOException {
+        HttpURLConnection connection = open(method, path, "application/json", json);
+        int status = connection.getResponseCode();
+        record(endpoint, status);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        drain(connection, status, body);
+        return status < 300 ? body.toByteArray() : null;
+    }
+
+    /**
+     * Helper method to issue one request, read the whole response, and count its status
+     * @param endpoint Name the response is counted under
+     * @param contentType Type of the body, or when there is none the type accepted
+     * @param body Request body, or null
+     * @return HTTP status of the response
+     */
+    private int request(String endpoint, String method, String path, String contentType, byte[] body) throws IOException {
+        HttpURLConnection connection = open(method, path, contentType == null ? "application/json" : contentType, body);
+        int status = connection.getResponseCode();
+        record(endpoint, status);
+        drain(connection, status, null);
+        return status;
+    }
+
+    private HttpURLConnection open(String method, String path, String contentType, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body == null) {
+            connection.setRequestProperty("Accept", contentType);
+        } else {
+            connection.setRequestProperty("Accept", "application/json");
+            connection.setRequestProperty("Content-Type", contentType);
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Helper method to read a response to the end, so the connection can be kept alive
+     * @param copy Stream to copy the body to, or null to discard it
+     */
+    private static void drain(HttpURLConnection connection, int status, OutputStream copy) throws IOException {
+        byte[] buffer = new byte[8192];
+        try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (body != null) {
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    if (copy != null) {
+                        copy.write(buffer, 0, read);
+                    }
+                }
+            }
+        }
+    }
+
+    private void record(String endpoint, int status) {
+        responses.computeIfAbsent(endpoint + " " + status, key -> new LongAdder()).increment();
+    }
+}
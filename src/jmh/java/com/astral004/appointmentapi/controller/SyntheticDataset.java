@@ -0,0 +1,368 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.domain.Address;
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.domain.Clinic;
+import com.astral004.appointmentapi.domain.Doctor;
+import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.domain.Person;
+import com.astral004.appointmentapi.repository.AppointmentTransitions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Patients, doctors, clinics, addresses, and appointments for load tests, generated from a fixed seed so every run
+ * and every release being compared works on the same data. The shapes follow a real practice rather than a uniform
+ * spread: a few doctors and a few frequent patients account for most bookings, appointments fall on weekdays in
+ * office hours with a dip over lunch, some of them were cancelled or rescheduled, and a doctor is never booked
+ * twice in one slot.
+ */
+class SyntheticDataset {
+
+    private static final int FIRST_HOUR = 8;
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final int PAST_DAYS = 180;
+    private static final int FUTURE_DAYS = 90;
+
+    private static final String[] STATES = {"CA", "TX", "FL", "NY", "PA", "IL", "OH", "GA", "NC", "MI", "WA", "AZ"};
+    private static final double[] STATE_WEIGHTS = {39, 29, 22, 20, 13, 12.6, 11.8, 10.7, 10.4, 10, 7.7, 7.2};
+    private static final String[] CITIES = {"Springfield", "Riverside", "Franklin", "Greenville", "Fairview",
+            "Madison", "Georgetown", "Salem", "Clinton", "Arlington"};
+    private static final String[] STREETS = {"Main St", "Oak Ave", "Maple Dr", "Cedar Ln", "Park Blvd", "Elm St",
+            "Washington Ave", "Lake Rd", "Hill St", "Pine Ct"};
+    private static final String[] FIRST_NAMES = {"James", "Mary", "Robert", "Patricia", "John", "Jennifer",
+            "Michael", "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica",
+            "Maria", "Wei", "Ahmed", "Priya"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+            "Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Nguyen", "Kim", "Patel", "Chen"};
+    private static final String[] SPECIALTIES = {"Family Medicine", "Internal Medicine", "Pediatrics",
+            "Dermatology", "Cardiology", "Orthopedics", "Obstetrics", "Psychiatry", "Ophthalmology", "Neurology"};
+    private static final double[] SPECIALTY_WEIGHTS = {30, 20, 15, 7, 6, 6, 5, 5, 3, 3};
+    private static final String[] INSURERS = {"INS-AETNA", "INS-BCBS", "INS-CIGNA", "INS-HUMANA", "INS-UHC", "INS-MEDICARE"};
+    private static final int[] COPAYS = {0, 10, 20, 25, 30, 40, 50};
+    private static final double[] COPAY_WEIGHTS = {15, 10, 25, 20, 15, 10, 5};
+    private static final String[] DESCRIPTIONS = {"Annual physical", "Follow-up", "New patient visit",
+            "Vaccination", "Lab results review", "Consultation", "Prescription refill", "Urgent visit"};
+    private static final double[] DESCRIPTION_WEIGHTS = {20, 30, 10, 8, 12, 10, 7, 3};
+    //Monday first, nobody works on Sunday
+    private static final double[] WEEKDAY_WEIGHTS = {1.2, 1.0, 1.0, 1.0, 0.8, 0.2, 0};
+    //one weight per hour from FIRST_HOUR, mornings are busiest and lunch is quiet
+    private static final double[] HOUR_WEIGHTS = {0.8, 1.2, 1.2, 1.0, 0.4, 0.9, 1.0, 0.9, 0.6};
+
+    private final int patients;
+    private final int doctors;
+    private final int clinics;
+    private final int appointments;
+    private final int slotMinutes;
+    private final LocalDate firstDay;
+    private final double[] doctorPopularity;
+    private final double[] patientFrequency;
+    private final double[] dayWeights;
+    private final String[] doctorClinics;
+
+    /**
+     * @param patients Number of patients
+     * @param doctors Number of doctors
+     * @param clinics Number of clinics
+     * @param appointments Number of appointments, spread from PAST_DAYS ago to FUTURE_DAYS ahead
+     * @param slotMinutes Length of a slot in the doctor schedule index
+     * @param seed Seed of every random choice
+     */
+    SyntheticDataset(int patients, int doctors, int clinics, int appointments, int slotMinutes, long seed) {
+        this.patients = patients;
+        this.doctors = doctors;
+        this.clinics = clinics;
+        this.appointments = appointments;
+        this.slotMinutes = slotMinutes;
+        this.firstDay = LocalDate.now().minusDays(PAST_DAYS);
+        this.doctorPopularity = zipf(doctors, 0.7);
+        this.patientFrequency = zipf(patients, 1.0);
+        this.dayWeights = new double[PAST_DAYS + FUTURE_DAYS];
+        for (int day = 0; day < dayWeights.length; day++) {
+            dayWeights[day] = WEEKDAY_WEIGHTS[firstDay.plusDays(day).getDayOfWeek().getValue() - 1];
+        }
+        this.doctorClinics = new String[doctors];
+        Random random = new Random(seed);
+        //larger clinics employ more doctors
+        double[] clinicSize = zipf(clinics, 0.5);
+        for (int i = 0; i < doctors; i++) {
+            doctorClinics[i] = clinicId(sample(clinicSize, random));
+        }
+        int capacity = doctors * (PAST_DAYS + FUTURE_DAYS) * slotsPerDay();
+        if (appointments > capacity / 2) {
+            throw new IllegalArgumentException(appointments + " appointments do not fit the schedules of "
+                    + doctors + " doctors, at most " + capacity / 2 + " do");
+        }
+    }
+
+    /**
+     * Writes the whole dataset, in batches of INSERT_BATCH_SIZE documents
+     * @param mongoTemplate Template of the database to fill, expected to be empty
+     * @param seed Seed of every random choice
+     */
+    void seed(MongoTemplate mongoTemplate, long seed) {
+        Random random = new Random(seed);
+        List<Object> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < clinics; i++) {
+            Address address = address("CA" + i, random);
+            Clinic clinic = new Clinic();
+            clinic.setId(clinicId(i));
+            clinic.setName(pick(CITIES, random) + " Medical Group " + i);
+            clinic.setPhoneNumber(phoneNumber(random));
+            clinic.setAddressId(address.getId());
+            batch.add(address);
+            batch.add(clinic);
+        }
+        for (int i = 0; i < doctors; i++) {
+            Doctor doctor = new Doctor();
+            doctor.setId(doctorId(i));
+            doctor.setSpecialty(SPECIALTIES[pick(SPECIALTY_WEIGHTS, random)]);
+            doctor.setClinicIds(Collections.singletonList(doctorClinics[i]));
+            name(doctor, random);
+            batch.add(doctor);
+        }
+        for (int i = 0; i < patients; i++) {
+            Address address = address("PA" + i, random);
+            Patient patient = new Patient();
+            patient.setId(patientId(i));
+            patient.setAddressId(address.getId());
+            patient.setInsuranceId(pick(INSURERS, random));
+            patient.setMemberId(String.format("M%09d", random.nextInt(1_000_000_000)));
+            patient.setFirstTime(random.nextInt(10) == 0);
+            name(patient, random);
+            batch.add(address);
+            batch.add(patient);
+            if (batch.size() >= INSERT_BATCH_SIZE) {
+                insert(mongoTemplate, batch);
+            }
+        }
+        insert(mongoTemplate, batch);
+
+        BitSet bookedSlots = new BitSet(doctors * dayWeights.length * slotsPerDay());
+        List<Appointment> appointmentBatch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < appointments; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setId(appointmentId(i));
+            appointment.setPatientId(randomPatientId(random));
+            book(appointment, random, bookedSlots);
+            appointment.setDescription(DESCRIPTIONS[pick(DESCRIPTION_WEIGHTS, random)]);
+            appointment.setCopay(COPAYS[pick(COPAY_WEIGHTS, random)]);
+            appointment.setInsuranceId(pick(INSURERS, random));
+            int outcome = random.nextInt(100);
+            appointment.setStatus(outcome < 8 ? AppointmentTransitions.CANCELLED
+                    : outcome < 18 ? AppointmentTransitions.RESCHEDULED : AppointmentTransitions.SCHEDULED);
+            appointmentBatch.add(appointment);
+            if (appointmentBatch.size() >= INSERT_BATCH_SIZE) {
+                mongoTemplate.insert(appointmentBatch, Appointment.class);
+                appointmentBatch.clear();
+            }
+        }
+        mongoTemplate.insert(appointmentBatch, Appointment.class);
+    }
+
+    /**
+     * @return Id of a patient, frequent patients more often than the others
+     */
+    String randomPatientId(Random random) {
+        return patientId(sample(patientFrequency, random));
+    }
+
+    /**
+     * @return Id of a doctor, busy doctors more often than the others
+     */
+    String randomDoctorId(Random random) {
+        return doctorId(sample(doctorPopularity, random));
+    }
+
+    /**
+     * @return A specialty, common ones more often than the others
+     */
+    String randomSpecialty(Random random) {
+        return SPECIALTIES[pick(SPECIALTY_WEIGHTS, random)];
+    }
+
+    /**
+     * @return Zip code of a seeded address, though not necessarily of any clinic
+     */
+    String randomZipCode(Random random) {
+        return String.format("%05d", random.nextInt(100_000));
+    }
+
+    String randomClinicId(Random random) {
+        return clinicId(random.nextInt(clinics));
+    }
+
+    /**
+     * @return Id of any seeded appointment
+     */
+    String randomAppointmentId(Random random) {
+        return appointmentId(random.nextInt(appointments));
+    }
+
+    /**
+     * @return Clinic the doctor works at
+     */
+    String clinicOf(String doctorId) {
+        return doctorClinics[Integer.parseInt(doctorId.substring(1))];
+    }
+
+    /**
+     * @return Appointment for a frequent patient with a busy doctor, in an office hour slot between minDaysAhead and
+     * maxDaysAhead days from today. The slot may already be taken, as it would be for a real client.
+     */
+    Appointment newAppointment(Random random, int minDaysAhead, int maxDaysAhead) {
+        Appointment appointment = new Appointment();
+        appointment.setPatientId(randomPatientId(random));
+        appointment.setDoctorId(randomDoctorId(random));
+        appointment.setClinicId(clinicOf(appointment.getDoctorId()));
+        LocalDate day = LocalDate.now().plusDays(minDaysAhead + random.nextInt(maxDaysAhead - minDaysAhead + 1));
+        while (day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            day = day.plusDays(1);
+        }
+        appointment.setTiming(slot(day, slotOfDay(random)));
+        appointment.setDescription(DESCRIPTIONS[pick(DESCRIPTION_WEIGHTS, random)]);
+        appointment.setCopay(COPAYS[pick(COPAY_WEIGHTS, random)]);
+        return appointment;
+    }
+
+    static String patientId(int i) {
+        return String.format("P%07d", i);
+    }
+
+    static String doctorId(int i) {
+        return String.format("D%05d", i);
+    }
+
+    static String clinicId(int i) {
+        return String.format("C%04d", i);
+    }
+
+    static String appointmentId(int i) {
+        return String.format("A%08d", i);
+    }
+
+    /**
+     * Helper method to give an appointment a doctor, clinic, and a slot the doctor has free. A doctor whose
+     * schedule is full hands the patient on to another doctor, picked at random.
+     */
+    private void book(Appointment appointment, Random random, BitSet bookedSlots) {
+        int doctor = sample(doctorPopularity, random);
+        for (int attempt = 0; ; attempt++) {
+            int day = pick(dayWeights, random);
+            int slot = slotOfDay(random);
+            int key = (doctor * dayWeights.length + day) * slotsPerDay() + slot;
+            if (!bookedSlots.get(key)) {
+                bookedSlots.set(key);
+                appointment.setDoctorId(doctorId(doctor));
+                appointment.setClinicId(doctorClinics[doctor]);
+                appointment.setTiming(slot(firstDay.plusDays(day), slot));
+                return;
+            }
+            if (attempt >= 8) {
+                doctor = random.nextInt(doctors);
+            }
+        }
+    }
+
+    private int slotOfDay(Random random) {
+        int slotsPerHour = 60 / slotMinutes;
+        return pick(HOUR_WEIGHTS, random) * slotsPerHour + random.nextInt(slotsPerHour);
+    }
+
+    private LocalDateTime slot(LocalDate day, int slot) {
+        return day.atTime(FIRST_HOUR, 0).plusMinutes((long) slot * slotMinutes);
+    }
+
+    private int slotsPerDay() {
+        return HOUR_WEIGHTS.length * 60 / slotMinutes;
+    }
+
+    private static Address address(String id, Random random) {
+        Address address = new Address();
+        address.setId(id);
+        address.setStreet((1 + random.nextInt(9999)) + " " + pick(STREETS, random));
+        address.setCity(pick(CITIES, random));
+        address.setState(STATES[pick(STATE_WEIGHTS, random)]);
+        address.setZipCode(String.format("%05d", random.nextInt(100_000)));
+        //somewhere in the contiguous states
+        address.setLatitude(25 + random.nextDouble() * 24);
+        address.setLongitude(-124 + random.nextDouble() * 57);
+        return address;
+    }
+
+    private static void name(Person person, Random random) {
+        person.setFirstName(pick(FIRST_NAMES, random));
+        person.setLastName(pick(LAST_NAMES, random));
+        person.setPhoneNumber(phoneNumber(random));
+        person.setSocialSecurityNumber(String.format("%03d-%02d-%04d",
+                random.nextInt(900), random.nextInt(100), random.nextInt(10_000)));
+        person.setBirthday(LocalDate.now().minusDays(random.nextInt(90 * 365)));
+    }
+
+    private static String phoneNumber(Random random) {
+        return String.format("%03d-%03d-%04d", 200 + random.nextInt(800), random.nextInt(1000), random.nextInt(10_000));
+    }
+
+    /**
+     * Helper method to insert a batch of mixed documents, each into its own collection, and empty it
+     */
+    private static void insert(MongoTemplate mongoTemplate, List<Object> batch) {
+        mongoTemplate.insertAll(batch);
+        batch.clear();
+    }
+
+    private static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * @return Index drawn with the probability of its weight
+     */
+    private static int pick(double[] weights, Random random) {
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        double target = random.nextDouble() * total;
+        for (int i = 0; i < weights.length - 1; i++) {
+            target -= weights[i];
+            if (target < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    /**
+     * @return Cumulative Zipf distribution over n ranks, rank 0 being the most likely
+     */
+    private static double[] zipf(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double total = 0;
+        for (int rank = 0; rank < n; rank++) {
+            total += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= total;
+        }
+        return cumulative;
+    }
+
+    /**
+     * @return Rank drawn from a cumulative distribution
+     */
+    private static int sample(double[] distribution, Random random) {
+        int rank = Arrays.binarySearch(distribution, random.nextDouble());
+        return Math.min(rank < 0 ? -rank - 1 : rank, distribution.length - 1);
+    }
+}
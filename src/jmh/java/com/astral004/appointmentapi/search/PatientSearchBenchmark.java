@@ -0,0 +1,62 @@
+package com.astral004.appointmentapi.search;
+
+import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.dto.PatientSearchResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures type-ahead searches of the patient search index, filled with patients whose names are made up of
+ * random syllables so there are as many distinct names as at a large practice.
+ * Run with: mvn -Pbenchmarks test-compile exec:exec -Djmh.args="PatientSearchBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatientSearchBenchmark {
+
+    private static final String[] SYLLABLES = {"an", "ber", "car", "den", "el", "fin", "gar", "han", "is", "jo",
+            "kel", "lin", "mar", "nor", "ol", "per", "ros", "san", "ter", "wil"};
+
+    @Param("200000")
+    public int patients;
+
+    @Param({"ma", "marsan", "marsan jo", "mrasan", "0100"})
+    public String query;
+
+    private PatientSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        Random random = new Random(42);
+        index = new PatientSearchIndex();
+        for (int i = 0; i < patients; i++) {
+            Patient patient = new Patient();
+            patient.setId(String.format("P%07d", i));
+            patient.setFirstName(name(random, 2));
+            patient.setLastName(name(random, 2 + random.nextInt(2)));
+            patient.setPhoneNumber(String.format("555-%03d-%04d", random.nextInt(1000), random.nextInt(10_000)));
+            index.put(patient);
+        }
+    }
+
+    @Benchmark
+    public List<PatientSearchResult> search() {
+        return index.search(query, 10);
+    }
+
+    private static String name(Random random, int syllables) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package com.astral004.appointmentapi.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit of one endpoint that follows its latency. Two moving averages of the request latency are kept,
+ * a short one of the last few requests and a long one that stands for the endpoint's usual latency. While the short
+ * one stays within the tolerance of the long one the limit grows by about its square root per request; once it
+ * rises beyond, the limit shrinks in proportion, by half at most. The limit only grows while it is at least half
+ * used, so a quiet endpoint does not build up a limit it never tried.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    /** How much the short latency may exceed the long one before the limit shrinks */
+    static final double TOLERANCE = 1.5;
+    private static final double SHORT_SMOOTHING = 2.0 / (10 + 1);
+    private static final double LONG_SMOOTHING = 2.0 / (600 + 1);
+    /** How much of a new estimate is taken into the limit at once */
+    private static final double LIMIT_SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    private double estimatedLimit;
+    private double shortLatency;
+    private double longLatency;
+    private boolean sampled;
+
+    /**
+     * @param initialLimit Limit until the first requests complete
+     * @param minLimit Limit it never shrinks below
+     * @param maxLimit Limit it never grows beyond
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > maxLimit) {
+            throw new IllegalArgumentException("Concurrency limits must satisfy 1 <= min <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+    }
+
+    /**
+     * Takes a slot if fewer requests than the limit are in flight
+     * @return Whether a slot was taken, which must then be given back with {@link #release(long)} or
+     * {@link #release()}
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives a slot back after a request completed, adapting the limit to its latency
+     * @param latencyNanos How long the request took
+     */
+    public void release(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        update(latencyNanos, current);
+    }
+
+    /**
+     * Gives a slot back without a latency, for requests whose time says nothing about the endpoint
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void update(long latencyNanos, int inFlightAtCompletion) {
+        if (!sampled) {
+            shortLatency = latencyNanos;
+            longLatency = latencyNanos;
+            sampled = true;
+        }
+        shortLatency += (latencyNanos - shortLatency) * SHORT_SMOOTHING;
+        longLatency += (latencyNanos - longLatency) * LONG_SMOOTHING;
+        //once latency has come down for good, the usual latency follows faster than it would on its own
+        if (longLatency > 2 * shortLatency) {
+            longLatency *= 0.95;
+        }
+        if (inFlightAtCompletion < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / shortLatency));
+        double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit,
+                estimatedLimit * (1 - LIMIT_SMOOTHING) + target * LIMIT_SMOOTHING));
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,126 @@
+package com.astral004.appointmentapi.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Decides which requests are served and which are turned away at once. Reads and writes each have a bulkhead, a
+ * fixed share of the request threads that the other kind cannot take, so a flood of reads never keeps bookings from
+ * being made. Within its bulkhead every endpoint has an {@link AdaptiveConcurrencyLimit}, so one endpoint slowed
+ * down by the database is held to fewer requests before it takes the whole share. A request admitted holds a
+ * {@link Permit} until it completes.
+ */
+public class AdmissionControl {
+
+    static final String REJECTED = "appointments.admission.rejected";
+    static final String LIMIT = "appointments.admission.limit";
+
+    private final MeterRegistry meterRegistry;
+    private final Semaphore readBulkhead;
+    private final Semaphore writeBulkhead;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final ConcurrentMap<String, AdaptiveConcurrencyLimit> limits = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> rejectionCounters = new ConcurrentHashMap<>();
+
+    /**
+     * @param readBulkhead Most reads served at once
+     * @param writeBulkhead Most writes served at once
+     * @param initialLimit Concurrency limit of an endpoint before its latency is known
+     * @param minLimit Lowest concurrency limit of an endpoint
+     * @param maxLimit Highest concurrency limit of an endpoint
+     */
+    public AdmissionControl(MeterRegistry meterRegistry, int readBulkhead, int writeBulkhead,
+                            int initialLimit, int minLimit, int maxLimit) {
+        this.meterRegistry = meterRegistry;
+        this.readBulkhead = new Semaphore(readBulkhead);
+        this.writeBulkhead = new Semaphore(writeBulkhead);
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Admits a request if both its bulkhead and its endpoint have room
+     * @param endpoint Name of the endpoint
+     * @param write Whether the request writes
+     * @return The permit the request holds until it completes, or null if it is turned away
+     */
+    public Permit tryAdmit(String endpoint, boolean write) {
+        Semaphore bulkhead = write ? writeBulkhead : readBulkhead;
+        if (!bulkhead.tryAcquire()) {
+            rejected(endpoint, write ? "write-bulkhead" : "read-bulkhead");
+            return null;
+        }
+        AdaptiveConcurrencyLimit limit = limits.computeIfAbsent(endpoint, this::newLimit);
+        if (!limit.tryAcquire()) {
+            bulkhead.release();
+            rejected(endpoint, "endpoint-limit");
+            return null;
+        }
+        return new Permit(bulkhead, limit, System.nanoTime());
+    }
+
+    /**
+     * @return The current concurrency limit of the endpoint, or the initial limit if it has not been called yet
+     */
+    public int getLimit(String endpoint) {
+        AdaptiveConcurrencyLimit limit = limits.get(endpoint);
+        return limit == null ? initialLimit : limit.getLimit();
+    }
+
+    private AdaptiveConcurrencyLimit newLimit(String endpoint) {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit);
+        Gauge.builder(LIMIT, limit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Concurrency limit of an endpoint")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        return limit;
+    }
+
+    private void rejected(String endpoint, String reason) {
+        rejectionCounters.computeIfAbsent(endpoint + ':' + reason, key -> Counter.builder(REJECTED)
+                .description("Requests turned away by admission control")
+                .tag("endpoint", endpoint)
+                .tag("reason", reason)
+                .register(meterRegistry))
+                .increment();
+    }
+
+    /**
+     * Room taken by one admitted request. Exactly one of {@link #complete()} and {@link #abandon()} gives it back.
+     */
+    public static final class Permit {
+        private final Semaphore bulkhead;
+        private final AdaptiveConcurrencyLimit limit;
+        private final long start;
+
+        private Permit(Semaphore bulkhead, AdaptiveConcurrencyLimit limit, long start) {
+            this.bulkhead = bulkhead;
+            this.limit = limit;
+            this.start = start;
+        }
+
+        /**
+         * Gives the room back once the request completed, adapting the endpoint's limit to how long it took
+         */
+        public void complete() {
+            limit.release(System.nanoTime() - start);
+            bulkhead.release();
+        }
+
+        /**
+         * Gives the room back without adapting the endpoint's limit
+         */
+        public void abandon() {
+            limit.release();
+            bulkhead.release();
+        }
+    }
+}
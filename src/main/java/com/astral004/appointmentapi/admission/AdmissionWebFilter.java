@@ -0,0 +1,109 @@
+package com.astral004.appointmentapi.admission;
+
+import com.astral004.appointmentapi.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Puts {@link AdmissionControl} in front of the handlers of the reactive web mode, with the same properties as
+ * {@link AdmissionWebMvcConfigurer}. Web filters run before the handler is chosen, so the handler is looked up here
+ * to name the endpoint. There is no thread pool to protect in this mode, only the database, so an admitted request
+ * holds its room until its response is written. A handler that produces a stream, such as the change feed, is only
+ * admitted while there is room but gives it back at once, just as a servlet stream does when it goes async, since a
+ * long-lived subscriber would otherwise hold its room for as long as it stays connected.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class AdmissionWebFilter implements WebFilter {
+
+    private static final Object NO_HANDLER = new Object();
+
+    private final RequestMappingHandlerMapping handlerMapping;
+    private final AdmissionControl admissionControl;
+    private final boolean enabled;
+    private final int retryAfterSeconds;
+
+    public AdmissionWebFilter(RequestMappingHandlerMapping handlerMapping,
+                              ObjectProvider<MeterRegistry> meterRegistry,
+                              @Value("${appointments.admission.enabled:true}") boolean enabled,
+                              @Value("${appointments.admission.read-bulkhead:150}") int readBulkhead,
+                              @Value("${appointments.admission.write-bulkhead:50}") int writeBulkhead,
+                              @Value("${appointments.admission.initial-limit:20}") int initialLimit,
+                              @Value("${appointments.admission.min-limit:2}") int minLimit,
+                              @Value("${appointments.admission.max-limit:150}") int maxLimit,
+                              @Value("${appointments.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.handlerMapping = handlerMapping;
+        this.admissionControl = new AdmissionControl(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry),
+                readBulkhead, writeBulkhead, initialLimit, minLimit, maxLimit);
+        this.enabled = enabled;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled) {
+            return chain.filter(exchange);
+        }
+        return handlerMapping.getHandler(exchange)
+                //a request no handler matches is left for the dispatcher to answer
+                .onErrorResume(e -> Mono.empty())
+                .defaultIfEmpty(NO_HANDLER)
+                .flatMap(handler -> handler instanceof HandlerMethod
+                        ? admit((HandlerMethod) handler, exchange, chain)
+                        : chain.filter(exchange));
+    }
+
+    private Mono<Void> admit(HandlerMethod handler, ServerWebExchange exchange, WebFilterChain chain) {
+        String endpoint = handler.getMethod().getName();
+        AdmissionControl.Permit permit = admissionControl.tryAdmit(endpoint, isWrite(exchange.getRequest().getMethod()));
+        if (permit == null) {
+            exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            return Mono.error(new ServiceOverloadedException("Too many requests in progress, try again later"));
+        }
+        if (producesStream(handler)) {
+            permit.abandon();
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange).doFinally(signal -> {
+            if (signal == SignalType.CANCEL) {
+                permit.abandon();
+            } else {
+                permit.complete();
+            }
+        });
+    }
+
+    private static boolean producesStream(HandlerMethod handler) {
+        RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(handler.getMethod(), RequestMapping.class);
+        if (mapping == null) {
+            return false;
+        }
+        for (String produces : mapping.produces()) {
+            MediaType mediaType = MediaType.parseMediaType(produces);
+            if (MediaType.APPLICATION_NDJSON.isCompatibleWith(mediaType) || MediaType.TEXT_EVENT_STREAM.isCompatibleWith(mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWrite(HttpMethod method) {
+        return !(method == HttpMethod.GET || method == HttpMethod.HEAD || method == HttpMethod.OPTIONS);
+    }
+}
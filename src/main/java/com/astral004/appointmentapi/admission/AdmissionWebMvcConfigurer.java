@@ -0,0 +1,100 @@
+package com.astral004.appointmentapi.admission;
+
+import com.astral004.appointmentapi.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Puts {@link AdmissionControl} in front of the handlers of the servlet web mode. A request that is not admitted
+ * gets a 503 with Retry-After before its handler runs, so it never waits for a thread or the database. GET, HEAD,
+ * and OPTIONS requests are reads and everything else a write. A request that goes async, such as a stream, gives
+ * its room back as soon as it lets go of its request thread, since what is being protected is the thread pool.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AdmissionWebMvcConfigurer implements WebMvcConfigurer {
+
+    private static final String PERMIT = AdmissionWebMvcConfigurer.class.getName() + ".permit";
+
+    private final AdmissionControl admissionControl;
+    private final boolean enabled;
+    private final int retryAfterSeconds;
+
+    public AdmissionWebMvcConfigurer(ObjectProvider<MeterRegistry> meterRegistry,
+                                     @Value("${appointments.admission.enabled:true}") boolean enabled,
+                                     @Value("${appointments.admission.read-bulkhead:150}") int readBulkhead,
+                                     @Value("${appointments.admission.write-bulkhead:50}") int writeBulkhead,
+                                     @Value("${appointments.admission.initial-limit:20}") int initialLimit,
+                                     @Value("${appointments.admission.min-limit:2}") int minLimit,
+                                     @Value("${appointments.admission.max-limit:150}") int maxLimit,
+                                     @Value("${appointments.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.admissionControl = new AdmissionControl(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry),
+                readBulkhead, writeBulkhead, initialLimit, minLimit, maxLimit);
+        this.enabled = enabled;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        registry.addInterceptor(new AsyncHandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                if (request.getDispatcherType() != DispatcherType.REQUEST || !(handler instanceof HandlerMethod)) {
+                    return true;
+                }
+                String endpoint = ((HandlerMethod) handler).getMethod().getName();
+                AdmissionControl.Permit permit = admissionControl.tryAdmit(endpoint, isWrite(request));
+                if (permit == null) {
+                    response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+                    throw new ServiceOverloadedException("Too many requests in progress, try again later");
+                }
+                request.setAttribute(PERMIT, permit);
+                return true;
+            }
+
+            @Override
+            public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                AdmissionControl.Permit permit = takePermit(request);
+                if (permit != null) {
+                    permit.abandon();
+                }
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+                AdmissionControl.Permit permit = takePermit(request);
+                if (permit != null) {
+                    permit.complete();
+                }
+            }
+        });
+    }
+
+    private static AdmissionControl.Permit takePermit(HttpServletRequest request) {
+        AdmissionControl.Permit permit = (AdmissionControl.Permit) request.getAttribute(PERMIT);
+        request.removeAttribute(PERMIT);
+        return permit;
+    }
+
+    private static boolean isWrite(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !(HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method));
+    }
+}
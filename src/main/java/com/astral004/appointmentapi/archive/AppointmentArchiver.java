@@ -0,0 +1,99 @@
+package com.astral004.appointmentapi.archive;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.event.AppointmentsArchivedEvent;
+import com.astral004.appointmentapi.partition.ClinicPartitions;
+import com.astral004.appointmentapi.repository.AppointmentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves appointments that took place longer ago than the archive horizon out of the live collection, so the live
+ * collection and its indexes only hold the appointments that are still read and written day to day. Batches are
+ * small and paced so the archiver never competes with requests for long, and reads that ask for includeArchived
+ * see both tiers.
+ */
+@Slf4j
+@Component
+public class AppointmentArchiver {
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private ClinicPartitions clinicPartitions;
+
+    /**
+     * Days after an appointment took place before it is archived, or 0 to never archive
+     */
+    @Value("${appointments.archive.horizon-days:730}")
+    private int horizonDays;
+
+    @Value("${appointments.archive.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Pause after every batch, which bounds the share of the database the archiver takes
+     */
+    @Value("${appointments.archive.batch-pause-ms:250}")
+    private long batchPauseMs;
+
+    /**
+     * Archives every appointment past the horizon, one batch at a time, one partition after the other.
+     * @return Number of appointments archived
+     */
+    @Scheduled(cron = "${appointments.archive.cron:0 30 3 * * *}")
+    public long archive() {
+        if (horizonDays <= 0) {
+            return 0;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(horizonDays);
+        long archived = 0;
+        try {
+            for (int partition = 0; partition < clinicPartitions.size(); partition++) {
+                try (ClinicPartitions.Binding ignored = clinicPartitions.bind(partition)) {
+                    ensureArchiveIndexes();
+                    List<String> ids;
+                    do {
+                        ids = appointmentRepository.archiveBefore(cutoff, batchSize);
+                        if (!ids.isEmpty()) {
+                            archived += ids.size();
+                            eventPublisher.publishEvent(new AppointmentsArchivedEvent(ids));
+                            Thread.sleep(batchPauseMs);
+                        }
+                    } while (ids.size() == batchSize);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            //whatever is left past the horizon is picked up by the next run
+            log.warn("Archiving appointments before {} stopped after {}", cutoff, archived, e);
+        }
+        log.info("Archived {} appointments that took place before {}", archived, cutoff);
+        return archived;
+    }
+
+    /**
+     * Helper method to give the archive the indexes of the live collection before anything is moved into it
+     */
+    private void ensureArchiveIndexes() {
+        IndexOperations archiveIndexes = mongoTemplate.indexOps(Appointment.ARCHIVE_COLLECTION);
+        IndexResolver.create(mongoTemplate.getConverter().getMappingContext())
+                     .resolveIndexFor(Appointment.class)
+                     .forEach(archiveIndexes::ensureIndex);
+    }
+}
@@ -0,0 +1,105 @@
+package com.astral004.appointmentapi.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Remembers which ids of one collection exist. Lookups first consult a bounded LRU of ids recently found that
+ * expire after a TTL, and only then fall back to the loader. Only presence is remembered: an id can be created
+ * through another instance at any time, so an earlier miss of the loader is never taken as proof that it is absent.
+ */
+public class ExistenceCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+
+    public ExistenceCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ExistenceCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param id Id to check
+     * @param loader Database check used when the cache cannot answer
+     * @return true if a document with this id exists
+     */
+    public boolean exists(String id, Predicate<String> loader) {
+        Boolean known = peek(id);
+        if (known != null) {
+            return known;
+        }
+        boolean exists = loader.test(id);
+        record(id, exists);
+        return exists;
+    }
+
+    /**
+     * Stores an answer obtained from the database outside of {@link #exists(String, Predicate)}. An id that was
+     * not found is only forgotten.
+     */
+    public void record(String id, boolean exists) {
+        if (!exists) {
+            invalidate(id);
+            return;
+        }
+        synchronized (entries) {
+            entries.put(id, new Entry(System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    /**
+     * Answers from the cache only.
+     * @param id Id to check
+     * @return true if the id is known to exist, false for a null id, or null if only the database can tell
+     */
+    public Boolean peek(String id) {
+        if (id == null) {
+            return false;
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                return true;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Called after a document with this id was inserted or updated.
+     */
+    public void saved(String id) {
+        invalidate(id);
+    }
+
+    /**
+     * Called after a document with this id was deleted.
+     */
+    public void invalidate(String id) {
+        synchronized (entries) {
+            entries.remove(id);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private static final class Entry {
+        final long expiresAt;
+
+        Entry(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+    }
+}
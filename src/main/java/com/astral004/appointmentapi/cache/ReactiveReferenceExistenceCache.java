@@ -0,0 +1,115 @@
+package com.astral004.appointmentapi.cache;
+
+import com.astral004.appointmentapi.domain.Clinic;
+import com.astral004.appointmentapi.domain.Doctor;
+import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.repository.reactive.ReactiveClinicRepository;
+import com.astral004.appointmentapi.repository.reactive.ReactiveDoctorRepository;
+import com.astral004.appointmentapi.repository.reactive.ReactivePatientRepository;
+import com.astral004.appointmentapi.routing.ReactiveReadRoute;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking version of {@link ReferenceExistenceCache} for the reactive web mode. It answers from the same
+ * caches, which the mapping events of the reactive template keep in step just as those of the blocking one, and
+ * looks up whatever they cannot answer through the reactive repositories.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveReferenceExistenceCache {
+
+    @Autowired
+    private ReferenceExistenceCache referenceExistenceCache;
+    @Autowired
+    private ReactivePatientRepository patientRepository;
+    @Autowired
+    private ReactiveDoctorRepository doctorRepository;
+    @Autowired
+    private ReactiveClinicRepository clinicRepository;
+
+    /**
+     * Checks the patient, doctor, and clinic of an appointment together. Everything the caches can answer is
+     * settled first, the remaining lookups run at the same time, and the answer is given as soon as any reference
+     * turns out to be missing. A request pinned to a session runs them one after another instead, since a session
+     * serves one operation at a time.
+     * @return Whether all three exist
+     */
+    public Mono<Boolean> referencesExist(String patientId, String doctorId, String clinicId) {
+        List<Mono<Boolean>> lookups = new ArrayList<>(3);
+        if (!addLookup(referenceExistenceCache.patients(), patientId, patientRepository::existsById, lookups)
+                || !addLookup(referenceExistenceCache.doctors(), doctorId, doctorRepository::existsById, lookups)
+                || !addLookup(referenceExistenceCache.clinics(), clinicId, clinicRepository::existsById, lookups)) {
+            return Mono.just(false);
+        }
+        return ReactiveReadRoute.current()
+                .map(route -> route.getSession() != null)
+                .defaultIfEmpty(false)
+                .flatMap(pinned -> (pinned ? Flux.concat(lookups) : Flux.merge(lookups)).all(Boolean::booleanValue));
+    }
+
+    public Mono<Set<String>> existingPatientIds(Collection<String> ids) {
+        return existingIds(referenceExistenceCache.patients(), ids, patientRepository::findIdsByIdIn, Patient::getId);
+    }
+
+    public Mono<Set<String>> existingDoctorIds(Collection<String> ids) {
+        return existingIds(referenceExistenceCache.doctors(), ids, doctorRepository::findIdsByIdIn, Doctor::getId);
+    }
+
+    public Mono<Set<String>> existingClinicIds(Collection<String> ids) {
+        return existingIds(referenceExistenceCache.clinics(), ids, clinicRepository::findIdsByIdIn, Clinic::getId);
+    }
+
+    /**
+     * Resolves a whole batch of ids at once: whatever the cache cannot answer is fetched with a single id-only
+     * $in query, and the answers are cached for the next batch.
+     * @return The subset of ids that exist
+     */
+    private static <T> Mono<Set<String>> existingIds(ExistenceCache cache, Collection<String> ids,
+                                                     Function<Set<String>, Flux<T>> lookup, Function<T, String> idOf) {
+        Set<String> existing = new HashSet<>();
+        Set<String> unknown = new HashSet<>();
+        for (String id : new HashSet<>(ids)) {
+            Boolean known = cache.peek(id);
+            if (known == null) {
+                unknown.add(id);
+            } else if (known) {
+                existing.add(id);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return Mono.just(existing);
+        }
+        return lookup.apply(unknown).map(idOf).collect(Collectors.toSet()).map(found -> {
+            for (String id : unknown) {
+                cache.record(id, found.contains(id));
+            }
+            existing.addAll(found);
+            return existing;
+        });
+    }
+
+    /**
+     * @return false for a null id, otherwise true with a database lookup queued when the cache cannot answer
+     */
+    private static boolean addLookup(ExistenceCache cache, String id, Function<String, Mono<Boolean>> loader,
+                                     List<Mono<Boolean>> lookups) {
+        Boolean known = cache.peek(id);
+        if (known == null) {
+            lookups.add(loader.apply(id).doOnNext(exists -> cache.record(id, exists)));
+            return true;
+        }
+        return known;
+    }
+}
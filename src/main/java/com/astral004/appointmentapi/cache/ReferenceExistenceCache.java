@@ -0,0 +1,261 @@
+package com.astral004.appointmentapi.cache;
+
+import com.astral004.appointmentapi.domain.Clinic;
+import com.astral004.appointmentapi.domain.Doctor;
+import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.repository.ClinicRepository;
+import com.astral004.appointmentapi.repository.DoctorRepository;
+import com.astral004.appointmentapi.repository.PatientRepository;
+import com.astral004.appointmentapi.routing.ReadRoute;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Existence checks for the patients, doctors, and clinics an appointment refers to. Each collection gets its own
+ * {@link ExistenceCache}, kept in step with writes through the Mongo mapping events. The reactive web mode reads
+ * the same caches through {@link ReactiveReferenceExistenceCache}.
+ */
+@Slf4j
+@Component
+public class ReferenceExistenceCache {
+
+    static final String PATIENTS = "patients";
+    static final String DOCTORS = "doctors";
+    static final String CLINICS = "clinics";
+
+    @Autowired
+    private PatientRepository patientRepository;
+    @Autowired
+    private DoctorRepository doctorRepository;
+    @Autowired
+    private ClinicRepository clinicRepository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${appointments.reference-cache.max-size:10000}")
+    private int maxSize;
+    @Value("${appointments.reference-cache.ttl-ms:300000}")
+    private long ttlMillis;
+    @Value("${appointments.reference-cache.lookup-threads:16}")
+    private int lookupThreads;
+    @Value("${appointments.reference-cache.lookup-timeout-ms:5000}")
+    private long lookupTimeoutMillis;
+
+    private ExistenceCache patients;
+    private ExistenceCache doctors;
+    private ExistenceCache clinics;
+    private ExecutorService lookupExecutor;
+
+    @PostConstruct
+    void createCaches() {
+        patients = new ExistenceCache(maxSize, ttlMillis);
+        doctors = new ExistenceCache(maxSize, ttlMillis);
+        clinics = new ExistenceCache(maxSize, ttlMillis);
+        lookupExecutor = Executors.newFixedThreadPool(lookupThreads, new CustomizableThreadFactory("reference-lookup-"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        lookupExecutor.shutdownNow();
+    }
+
+    public boolean patientExists(String id) {
+        return patients.exists(id, patientRepository::existsById);
+    }
+
+    public boolean doctorExists(String id) {
+        return doctors.exists(id, doctorRepository::existsById);
+    }
+
+    public boolean clinicExists(String id) {
+        return clinics.exists(id, clinicRepository::existsById);
+    }
+
+    /**
+     * Checks the patient, doctor, and clinic of an appointment together. Everything the caches can answer is
+     * settled first; the remaining id-only lookups run concurrently so a write waits for roughly one round trip,
+     * and the answer is returned as soon as any reference turns out to be missing. The lookups follow the read route
+     * of the calling request; a request pinned to a session looks them up one after another on its own thread, since
+     * a session serves one operation at a time.
+     * @return true if all three exist
+     */
+    public boolean referencesExist(String patientId, String doctorId, String clinicId) {
+        List<BooleanSupplier> lookups = new ArrayList<>(3);
+        if (!addLookup(patients, patientId, patientRepository::existsById, lookups)
+                || !addLookup(doctors, doctorId, doctorRepository::existsById, lookups)
+                || !addLookup(clinics, clinicId, clinicRepository::existsById, lookups)) {
+            return false;
+        }
+        if (lookups.isEmpty()) {
+            return true;
+        }
+        ReadRoute route = ReadRoute.current();
+        if (lookups.size() == 1 || (route != null && route.getSession() != null)) {
+            for (BooleanSupplier lookup : lookups) {
+                if (!lookup.getAsBoolean()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(lookups.size());
+        for (BooleanSupplier lookup : lookups) {
+            CompletableFuture.supplyAsync(() -> lookUp(route, lookup), lookupExecutor).whenComplete((exists, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else if (!exists) {
+                    result.complete(false);
+                } else if (remaining.decrementAndGet() == 0) {
+                    result.complete(true);
+                }
+            });
+        }
+        try {
+            return result.get(lookupTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking appointment references", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Could not check appointment references", e);
+        }
+    }
+
+    /**
+     * Helper method to run a lookup on a lookup thread with the read route of the request it is done for
+     */
+    private static boolean lookUp(ReadRoute route, BooleanSupplier lookup) {
+        if (route == null) {
+            return lookup.getAsBoolean();
+        }
+        ReadRoute.set(route);
+        try {
+            return lookup.getAsBoolean();
+        } finally {
+            ReadRoute.clear();
+        }
+    }
+
+    public Set<String> existingPatientIds(Collection<String> ids) {
+        return existingIds(patients, ids, Patient.class, Patient::getId);
+    }
+
+    public Set<String> existingDoctorIds(Collection<String> ids) {
+        return existingIds(doctors, ids, Doctor.class, Doctor::getId);
+    }
+
+    public Set<String> existingClinicIds(Collection<String> ids) {
+        return existingIds(clinics, ids, Clinic.class, Clinic::getId);
+    }
+
+    @EventListener
+    public void onAfterSave(AfterSaveEvent<?> event) {
+        ExistenceCache cache = cacheFor(event.getCollectionName());
+        if (cache != null && event.getDocument() != null && event.getDocument().get("_id") != null) {
+            cache.saved(event.getDocument().get("_id").toString());
+        }
+    }
+
+    @EventListener
+    public void onAfterDelete(AfterDeleteEvent<?> event) {
+        ExistenceCache cache = cacheFor(event.getCollectionName());
+        if (cache == null) {
+            return;
+        }
+        Object id = event.getSource() == null ? null : event.getSource().get("_id");
+        if (id == null || id instanceof Document) {
+            //deletes by anything but a single id could have removed any document
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(id.toString());
+        }
+    }
+
+    /**
+     * Resolves a whole batch of ids at once: whatever the cache cannot answer is fetched with a single id-only
+     * $in query, and the answers are cached for the next batch.
+     * @return The subset of ids that exist
+     */
+    private <T> Set<String> existingIds(ExistenceCache cache, Collection<String> ids, Class<T> type, Function<T, String> idOf) {
+        Set<String> existing = new HashSet<>();
+        List<String> unknown = new ArrayList<>();
+        for (String id : new HashSet<>(ids)) {
+            Boolean known = cache.peek(id);
+            if (known == null) {
+                unknown.add(id);
+            } else if (known) {
+                existing.add(id);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            Query query = Query.query(Criteria.where("_id").in(unknown));
+            query.fields().include("_id");
+            Set<String> found = mongoTemplate.find(query, type).stream().map(idOf).collect(Collectors.toSet());
+            for (String id : unknown) {
+                cache.record(id, found.contains(id));
+            }
+            existing.addAll(found);
+        }
+        return existing;
+    }
+
+    /**
+     * @return false for a null id, otherwise true with a database lookup queued when the cache cannot answer
+     */
+    private static boolean addLookup(ExistenceCache cache, String id, Predicate<String> loader, List<BooleanSupplier> lookups) {
+        Boolean known = cache.peek(id);
+        if (known == null) {
+            lookups.add(() -> cache.exists(id, loader));
+            return true;
+        }
+        return known;
+    }
+
+    ExistenceCache patients() {
+        return patients;
+    }
+
+    ExistenceCache doctors() {
+        return doctors;
+    }
+
+    ExistenceCache clinics() {
+        return clinics;
+    }
+
+    private ExistenceCache cacheFor(String collection) {
+        if (PATIENTS.equals(collection)) return patients;
+        if (DOCTORS.equals(collection)) return doctors;
+        if (CLINICS.equals(collection)) return clinics;
+        return null;
+    }
+}
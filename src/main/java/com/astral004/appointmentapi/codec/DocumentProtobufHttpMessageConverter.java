@@ -0,0 +1,109 @@
+package com.astral004.appointmentapi.codec;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.google.protobuf.Message;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads and writes application/x-protobuf bodies of an appointment, patient, doctor, or clinic, or a list of
+ * them, by mapping them to their generated messages with {@link ProtobufDocuments} and handing those to Spring's
+ * {@link ProtobufHttpMessageConverter}. Every other type is left to the other converters.
+ */
+public class DocumentProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    private final ProtobufHttpMessageConverter messageConverter = new ProtobufHttpMessageConverter();
+
+    public DocumentProtobufHttpMessageConverter() {
+        super(ProtobufHttpMessageConverter.PROTOBUF);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ProtobufDocuments.supports(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        Class<?> raw = ResolvableType.forType(type).toClass();
+        //lists are read into an ArrayList
+        return documentType(type) != null && (!Collection.class.isAssignableFrom(raw) || raw.isAssignableFrom(ArrayList.class))
+                && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return documentType(type == null ? clazz : type) != null && canWrite(mediaType);
+    }
+
+    /**
+     * Offers the media type for any collection as well, since the element type is only known to
+     * {@link #canWrite(Type, Class, MediaType)}, which has already been asked by the time this is.
+     */
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        return supports(clazz) || Collection.class.isAssignableFrom(clazz) ? getSupportedMediaTypes() : Collections.emptyList();
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Message message;
+        if (value instanceof Collection) {
+            Collection<?> documents = (Collection<?>) value;
+            Class<?> documentType = documentType(type);
+            if (documentType == null) {
+                documentType = documents.isEmpty() ? Appointment.class : documents.iterator().next().getClass();
+            }
+            message = ProtobufDocuments.toListMessage(documents, documentType);
+        } else {
+            message = ProtobufDocuments.toMessage(value);
+        }
+        messageConverter.write(message, ProtobufHttpMessageConverter.PROTOBUF, outputMessage);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        Class<?> documentType = documentType(type);
+        boolean list = Collection.class.isAssignableFrom(ResolvableType.forType(type).toClass());
+        Message message;
+        try {
+            message = messageConverter.read(list ? ProtobufDocuments.listMessageType(documentType)
+                    : ProtobufDocuments.messageType(documentType), inputMessage);
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("Could not read Protobuf: " + e.getMessage(), e, inputMessage);
+        }
+        return list ? ProtobufDocuments.fromListMessage(message) : ProtobufDocuments.fromMessage(message);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    /**
+     * @return The document type of a document or a list of documents, or null if the type has no Protobuf form
+     */
+    private static Class<?> documentType(Type type) {
+        ResolvableType resolved = ResolvableType.forType(type);
+        if (ProtobufDocuments.supports(resolved.toClass())) {
+            return resolved.toClass();
+        }
+        if (Collection.class.isAssignableFrom(resolved.toClass())) {
+            Class<?> element = resolved.asCollection().resolveGeneric(0);
+            return element != null && ProtobufDocuments.supports(element) ? element : null;
+        }
+        return null;
+    }
+}
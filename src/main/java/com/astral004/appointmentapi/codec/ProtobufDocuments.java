@@ -0,0 +1,242 @@
+package com.astral004.appointmentapi.codec;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.domain.Clinic;
+import com.astral004.appointmentapi.domain.Doctor;
+import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.proto.AppointmentList;
+import com.astral004.appointmentapi.proto.ClinicList;
+import com.astral004.appointmentapi.proto.DoctorList;
+import com.astral004.appointmentapi.proto.PatientList;
+import com.google.protobuf.Message;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Maps appointments, patients, doctors, and clinics to and from the messages generated from
+ * src/main/proto/appointments.proto. The documents stay plain Lombok classes; when a field is added to a document
+ * it is added to the schema under a new field number and mapped here. A field that is null is left unset.
+ */
+public final class ProtobufDocuments {
+
+    private ProtobufDocuments() {
+    }
+
+    /**
+     * @return Whether documents of this type have a Protobuf form
+     */
+    public static boolean supports(Class<?> type) {
+        return type == Appointment.class || type == Patient.class || type == Doctor.class || type == Clinic.class;
+    }
+
+    /**
+     * @return The message class of a document type
+     */
+    public static Class<? extends Message> messageType(Class<?> type) {
+        if (type == Appointment.class) return com.astral004.appointmentapi.proto.Appointment.class;
+        if (type == Patient.class) return com.astral004.appointmentapi.proto.Patient.class;
+        if (type == Doctor.class) return com.astral004.appointmentapi.proto.Doctor.class;
+        if (type == Clinic.class) return com.astral004.appointmentapi.proto.Clinic.class;
+        throw new IllegalArgumentException("No Protobuf form for " + type.getName());
+    }
+
+    /**
+     * @return The class of the list message of a document type
+     */
+    public static Class<? extends Message> listMessageType(Class<?> type) {
+        if (type == Appointment.class) return AppointmentList.class;
+        if (type == Patient.class) return PatientList.class;
+        if (type == Doctor.class) return DoctorList.class;
+        if (type == Clinic.class) return ClinicList.class;
+        throw new IllegalArgumentException("No Protobuf form for " + type.getName());
+    }
+
+    public static Message toMessage(Object document) {
+        if (document instanceof Appointment) return toMessage((Appointment) document);
+        if (document instanceof Patient) return toMessage((Patient) document);
+        if (document instanceof Doctor) return toMessage((Doctor) document);
+        if (document instanceof Clinic) return toMessage((Clinic) document);
+        throw new IllegalArgumentException("No Protobuf form for " + document.getClass().getName());
+    }
+
+    /**
+     * @return The list message of documents of the type
+     */
+    public static Message toListMessage(Collection<?> documents, Class<?> type) {
+        if (type == Appointment.class) {
+            AppointmentList.Builder list = AppointmentList.newBuilder();
+            documents.forEach(document -> list.addAppointments(toMessage((Appointment) document)));
+            return list.build();
+        }
+        if (type == Patient.class) {
+            PatientList.Builder list = PatientList.newBuilder();
+            documents.forEach(document -> list.addPatients(toMessage((Patient) document)));
+            return list.build();
+        }
+        if (type == Doctor.class) {
+            DoctorList.Builder list = DoctorList.newBuilder();
+            documents.forEach(document -> list.addDoctors(toMessage((Doctor) document)));
+            return list.build();
+        }
+        if (type == Clinic.class) {
+            ClinicList.Builder list = ClinicList.newBuilder();
+            documents.forEach(document -> list.addClinics(toMessage((Clinic) document)));
+            return list.build();
+        }
+        throw new IllegalArgumentException("No Protobuf form for " + type.getName());
+    }
+
+    public static Object fromMessage(Message message) {
+        if (message instanceof com.astral004.appointmentapi.proto.Appointment) {
+            return fromMessage((com.astral004.appointmentapi.proto.Appointment) message);
+        }
+        if (message instanceof com.astral004.appointmentapi.proto.Patient) {
+            return fromMessage((com.astral004.appointmentapi.proto.Patient) message);
+        }
+        if (message instanceof com.astral004.appointmentapi.proto.Doctor) {
+            return fromMessage((com.astral004.appointmentapi.proto.Doctor) message);
+        }
+        if (message instanceof com.astral004.appointmentapi.proto.Clinic) {
+            return fromMessage((com.astral004.appointmentapi.proto.Clinic) message);
+        }
+        throw new IllegalArgumentException("No document for " + message.getDescriptorForType().getFullName());
+    }
+
+    /**
+     * @return The documents of a list message
+     */
+    public static List<Object> fromListMessage(Message message) {
+        List<Object> documents = new ArrayList<>();
+        if (message instanceof AppointmentList) {
+            ((AppointmentList) message).getAppointmentsList().forEach(entry -> documents.add(fromMessage(entry)));
+        } else if (message instanceof PatientList) {
+            ((PatientList) message).getPatientsList().forEach(entry -> documents.add(fromMessage(entry)));
+        } else if (message instanceof DoctorList) {
+            ((DoctorList) message).getDoctorsList().forEach(entry -> documents.add(fromMessage(entry)));
+        } else if (message instanceof ClinicList) {
+            ((ClinicList) message).getClinicsList().forEach(entry -> documents.add(fromMessage(entry)));
+        } else {
+            throw new IllegalArgumentException("No document list for " + message.getDescriptorForType().getFullName());
+        }
+        return documents;
+    }
+
+    private static com.astral004.appointmentapi.proto.Appointment toMessage(Appointment appointment) {
+        com.astral004.appointmentapi.proto.Appointment.Builder message = com.astral004.appointmentapi.proto.Appointment.newBuilder();
+        if (appointment.getId() != null) message.setId(appointment.getId());
+        if (appointment.getPatientId() != null) message.setPatientId(appointment.getPatientId());
+        if (appointment.getDoctorId() != null) message.setDoctorId(appointment.getDoctorId());
+        if (appointment.getClinicId() != null) message.setClinicId(appointment.getClinicId());
+        if (appointment.getTiming() != null) message.setTiming(toEpochMilli(appointment.getTiming()));
+        if (appointment.getDescription() != null) message.setDescription(appointment.getDescription());
+        if (appointment.getInsuranceId() != null) message.setInsuranceId(appointment.getInsuranceId());
+        if (appointment.getCopay() != null) message.setCopay(appointment.getCopay());
+        if (appointment.getStatus() != null) message.setStatus(appointment.getStatus());
+        if (appointment.getVersion() != null) message.setVersion(appointment.getVersion());
+        return message.build();
+    }
+
+    private static Appointment fromMessage(com.astral004.appointmentapi.proto.Appointment message) {
+        Appointment appointment = new Appointment();
+        if (message.hasId()) appointment.setId(message.getId());
+        if (message.hasPatientId()) appointment.setPatientId(message.getPatientId());
+        if (message.hasDoctorId()) appointment.setDoctorId(message.getDoctorId());
+        if (message.hasClinicId()) appointment.setClinicId(message.getClinicId());
+        if (message.hasTiming()) appointment.setTiming(fromEpochMilli(message.getTiming()));
+        if (message.hasDescription()) appointment.setDescription(message.getDescription());
+        if (message.hasInsuranceId()) appointment.setInsuranceId(message.getInsuranceId());
+        if (message.hasCopay()) appointment.setCopay(message.getCopay());
+        if (message.hasStatus()) appointment.setStatus(message.getStatus());
+        if (message.hasVersion()) appointment.setVersion(message.getVersion());
+        return appointment;
+    }
+
+    private static com.astral004.appointmentapi.proto.Patient toMessage(Patient patient) {
+        com.astral004.appointmentapi.proto.Patient.Builder message = com.astral004.appointmentapi.proto.Patient.newBuilder();
+        if (patient.getId() != null) message.setId(patient.getId());
+        if (patient.getFirstName() != null) message.setFirstName(patient.getFirstName());
+        if (patient.getLastName() != null) message.setLastName(patient.getLastName());
+        if (patient.getPhoneNumber() != null) message.setPhoneNumber(patient.getPhoneNumber());
+        if (patient.getAddressId() != null) message.setAddressId(patient.getAddressId());
+        if (patient.getSocialSecurityNumber() != null) message.setSocialSecurityNumber(patient.getSocialSecurityNumber());
+        if (patient.getBirthday() != null) message.setBirthday((int) patient.getBirthday().toEpochDay());
+        if (patient.getInsuranceId() != null) message.setInsuranceId(patient.getInsuranceId());
+        if (patient.getMemberId() != null) message.setMemberId(patient.getMemberId());
+        if (patient.getFirstTime() != null) message.setFirstTime(patient.getFirstTime());
+        return message.build();
+    }
+
+    private static Patient fromMessage(com.astral004.appointmentapi.proto.Patient message) {
+        Patient patient = new Patient();
+        if (message.hasId()) patient.setId(message.getId());
+        if (message.hasFirstName()) patient.setFirstName(message.getFirstName());
+        if (message.hasLastName()) patient.setLastName(message.getLastName());
+        if (message.hasPhoneNumber()) patient.setPhoneNumber(message.getPhoneNumber());
+        if (message.hasAddressId()) patient.setAddressId(message.getAddressId());
+        if (message.hasSocialSecurityNumber()) patient.setSocialSecurityNumber(message.getSocialSecurityNumber());
+        if (message.hasBirthday()) patient.setBirthday(LocalDate.ofEpochDay(message.getBirthday()));
+        if (message.hasInsuranceId()) patient.setInsuranceId(message.getInsuranceId());
+        if (message.hasMemberId()) patient.setMemberId(message.getMemberId());
+        if (message.hasFirstTime()) patient.setFirstTime(message.getFirstTime());
+        return patient;
+    }
+
+    private static com.astral004.appointmentapi.proto.Doctor toMessage(Doctor doctor) {
+        com.astral004.appointmentapi.proto.Doctor.Builder message = com.astral004.appointmentapi.proto.Doctor.newBuilder();
+        if (doctor.getId() != null) message.setId(doctor.getId());
+        if (doctor.getFirstName() != null) message.setFirstName(doctor.getFirstName());
+        if (doctor.getLastName() != null) message.setLastName(doctor.getLastName());
+        if (doctor.getPhoneNumber() != null) message.setPhoneNumber(doctor.getPhoneNumber());
+        if (doctor.getAddressId() != null) message.setAddressId(doctor.getAddressId());
+        if (doctor.getSocialSecurityNumber() != null) message.setSocialSecurityNumber(doctor.getSocialSecurityNumber());
+        if (doctor.getBirthday() != null) message.setBirthday((int) doctor.getBirthday().toEpochDay());
+        if (doctor.getSpecialty() != null) message.setSpecialty(doctor.getSpecialty());
+        if (doctor.getClinicIds() != null) message.addAllClinicIds(doctor.getClinicIds());
+        return message.build();
+    }
+
+    private static Doctor fromMessage(com.astral004.appointmentapi.proto.Doctor message) {
+        Doctor doctor = new Doctor();
+        if (message.hasId()) doctor.setId(message.getId());
+        if (message.hasFirstName()) doctor.setFirstName(message.getFirstName());
+        if (message.hasLastName()) doctor.setLastName(message.getLastName());
+        if (message.hasPhoneNumber()) doctor.setPhoneNumber(message.getPhoneNumber());
+        if (message.hasAddressId()) doctor.setAddressId(message.getAddressId());
+        if (message.hasSocialSecurityNumber()) doctor.setSocialSecurityNumber(message.getSocialSecurityNumber());
+        if (message.hasBirthday()) doctor.setBirthday(LocalDate.ofEpochDay(message.getBirthday()));
+        if (message.hasSpecialty()) doctor.setSpecialty(message.getSpecialty());
+        if (message.getClinicIdsCount() > 0) doctor.setClinicIds(new ArrayList<>(message.getClinicIdsList()));
+        return doctor;
+    }
+
+    private static com.astral004.appointmentapi.proto.Clinic toMessage(Clinic clinic) {
+        com.astral004.appointmentapi.proto.Clinic.Builder message = com.astral004.appointmentapi.proto.Clinic.newBuilder();
+        if (clinic.getId() != null) message.setId(clinic.getId());
+        if (clinic.getAddressId() != null) message.setAddressId(clinic.getAddressId());
+        if (clinic.getName() != null) message.setName(clinic.getName());
+        if (clinic.getPhoneNumber() != null) message.setPhoneNumber(clinic.getPhoneNumber());
+        return message.build();
+    }
+
+    private static Clinic fromMessage(com.astral004.appointmentapi.proto.Clinic message) {
+        Clinic clinic = new Clinic();
+        if (message.hasId()) clinic.setId(message.getId());
+        if (message.hasAddressId()) clinic.setAddressId(message.getAddressId());
+        if (message.hasName()) clinic.setName(message.getName());
+        if (message.hasPhoneNumber()) clinic.setPhoneNumber(message.getPhoneNumber());
+        return clinic;
+    }
+
+    private static long toEpochMilli(LocalDateTime timing) {
+        return timing.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime fromEpochMilli(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L), (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+}
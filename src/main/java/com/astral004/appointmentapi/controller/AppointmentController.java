@@ -1,47 +1,117 @@
 package com.astral004.appointmentapi.controller;
 
+import com.astral004.appointmentapi.cache.ReferenceExistenceCache;
 import com.astral004.appointmentapi.domain.Appointment;
-import com.astral004.appointmentapi.domain.Clinic;
-import com.astral004.appointmentapi.domain.Doctor;
-import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.dto.BulkImportReport;
+import com.astral004.appointmentapi.event.AppointmentChange;
+import com.astral004.appointmentapi.event.AppointmentChangeCounter;
+import com.astral004.appointmentapi.event.AppointmentsChangedEvent;
+import com.astral004.appointmentapi.exception.AppointmentConflictException;
 import com.astral004.appointmentapi.exception.AppointmentDoesNotExistException;
 import com.astral004.appointmentapi.exception.DateNotAcceptableException;
+import com.astral004.appointmentapi.exception.InvalidAppointmentIdException;
+import com.astral004.appointmentapi.exception.InvalidContinuationTokenException;
 import com.astral004.appointmentapi.exception.NullParametersException;
+import com.astral004.appointmentapi.exception.ServiceOverloadedException;
+import com.astral004.appointmentapi.partition.ClinicPartitions;
+import com.astral004.appointmentapi.repository.AppointmentFilter;
 import com.astral004.appointmentapi.repository.AppointmentRepository;
-import com.astral004.appointmentapi.repository.ClinicRepository;
-import com.astral004.appointmentapi.repository.DoctorRepository;
-import com.astral004.appointmentapi.repository.PatientRepository;
+import com.astral004.appointmentapi.repository.AppointmentTransitions;
+import com.astral004.appointmentapi.repository.FieldSelection;
+import com.astral004.appointmentapi.schedule.DoctorScheduleIndex;
+import com.astral004.appointmentapi.write.AppointmentInsertCoalescer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.Optional;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class AppointmentController {
 
+    static final String CONTINUATION_TOKEN_HEADER = "X-Continuation-Token";
+    static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_FLUSH_INTERVAL = 256;
+    static final String NOT_FUTURE_DATE_MESSAGE = "This is not a future date!";
+    static final String MISSING_REFERENCE_MESSAGE = "Appointment cannot be created as the patient, doctor, or clinic could not be found!";
+    static final String INVALID_ID_MESSAGE = "An appointment id must be a 24 digit hexadecimal ObjectId!";
+    private static final Comparator<Appointment> TIMING_ORDER =
+            Comparator.comparing(Appointment::getTiming, Comparator.nullsLast(Comparator.naturalOrder()));
+    private static final Comparator<Appointment> ID_ORDER = Comparator.comparing(Appointment::getId);
+
     @Autowired
     private AppointmentRepository appointmentRepository;
     @Autowired
-    private PatientRepository patientRepository;
+    private ReferenceExistenceCache referenceExistenceCache;
+    @Autowired
+    private DoctorScheduleIndex doctorScheduleIndex;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
     @Autowired
-    private DoctorRepository doctorRepository;
+    private MongoMappingContext mappingContext;
     @Autowired
-    private ClinicRepository clinicRepository;
+    private AppointmentChangeCounter appointmentChangeCounter;
+    @Autowired
+    private AppointmentInsertCoalescer appointmentInsertCoalescer;
+    @Autowired
+    private ClinicPartitions clinicPartitions;
+
+    @Value("${appointments.bulk.batch-size:1000}")
+    private int bulkBatchSize;
 
     /**
      * Basic GET method that will be invoked by accessing the /appointments with no parameters.
-     * Will return all appointments that currently exist in the db.
+     * Will return all appointments that currently exist in the db. When a page size is supplied the appointments
+     * are returned one keyset page at a time instead, and the token for the next page is sent back in the
+     * X-Continuation-Token header.
+     * @param size Optional page size, capped at MAX_PAGE_SIZE
+     * @param after Optional continuation token returned with the previous page
      * @return List of appointments scheduled
      */
     @GetMapping("/appointments")
-    public ResponseEntity<List<Appointment>> getAllAppointments(){
+    public ResponseEntity<List<Appointment>> getAllAppointments(@RequestParam(required = false) Integer size,
+                                                                @RequestParam(required = false) String after){
+        if (size != null || after != null){
+            return getAppointmentPage(size, after, null);
+        }
         try {
-            List<Appointment> appointments = new ArrayList<>(appointmentRepository.findAll());
+            List<Appointment> appointments = ClinicPartitions.merge(
+                    clinicPartitions.gather(() -> appointmentRepository.findAll()), null, 0);
             if (appointments.isEmpty()) {
                 throw new AppointmentDoesNotExistException("Appointments do not exist in the DB!");
             }
@@ -53,47 +123,152 @@ public class AppointmentController {
     }
 
     /**
-     * GET mapping to retrieve appointments by clinic, doctor, and/or patient. If no parameters are supplied,
-     * uses the default GET mapping to return all.
+     * Variant of GET /appointments that reads only the listed properties of each appointment, paged the same way.
+     * @param size Optional page size, capped at MAX_PAGE_SIZE
+     * @param after Optional continuation token returned with the previous page
+     * @param fields Comma separated properties to return, such as id,timing,status,doctorId
+     * @return List of the selected properties of every appointment
+     */
+    @GetMapping(value = "/appointments", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getAllAppointmentFields(@RequestParam(required = false) Integer size,
+                                                                             @RequestParam(required = false) String after,
+                                                                             @RequestParam String fields){
+        FieldSelection selection = appointmentFields(fields);
+        if (size != null || after != null){
+            return selected(getAppointmentPage(size, after, selection), selection);
+        }
+        try {
+            List<Appointment> appointments = ClinicPartitions.merge(
+                    clinicPartitions.gather(() -> appointmentRepository.findSelectedPage(null, 0, selection)), null, 0);
+            if (appointments.isEmpty()) {
+                throw new AppointmentDoesNotExistException("Appointments do not exist in the DB!");
+            }
+            return new ResponseEntity<>(selection.select(appointments), HttpStatus.OK);
+        } catch (Exception e){
+            if(e instanceof AppointmentDoesNotExistException) throw e;
+            else return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Streaming variant of GET /appointments for clients that accept application/x-ndjson. Appointments are read
+     * from a Mongo cursor and written one JSON document per line as they arrive, so memory stays bounded no
+     * matter how large the collection is. Partitions are streamed one after the other.
+     * @return Body that streams every appointment, and an HTTP status.
+     */
+    @GetMapping(value = "/appointments", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllAppointments(){
+        ObjectWriter writer = objectMapper.writerFor(Appointment.class);
+        StreamingResponseBody body = out -> {
+            int written = 0;
+            for (int partition = 0; partition < clinicPartitions.size(); partition++) {
+                try (Stream<Appointment> appointments = clinicPartitions.inPartition(partition, appointmentRepository::streamAllBy)) {
+                    Iterator<Appointment> iterator = appointments.iterator();
+                    while (iterator.hasNext()) {
+                        Appointment appointment = iterator.next();
+                        //a clinic being moved is only streamed from the partition it is placed in
+                        if (!clinicPartitions.holds(partition, appointment)) {
+                            continue;
+                        }
+                        out.write(writer.writeValueAsBytes(appointment));
+                        out.write('\n');
+                        if (++written % STREAM_FLUSH_INTERVAL == 0) {
+                            out.flush();
+                        }
+                    }
+                }
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * GET mapping to retrieve appointments by any mix of clinic, doctor, patient, status, and date range. If no
+     * parameters are supplied, uses the default GET mapping to return all.
      * @param cID Clinic id
      * @param dID Doctor id
      * @param pID Patient id
+     * @param status Appointment status
+     * @param from Earliest appointment date, inclusive
+     * @param to Latest appointment date, inclusive
+     * @param includeArchived Whether archived appointments are searched as well
+     * @param request Request, answered with a 304 when the If-None-Match ETag is still current
      * @return List of appointments matching the criteria
      */
     @GetMapping("/appointmentsByValue")
     public ResponseEntity<List<Appointment>> getAppointmentsByValue(@RequestParam(required = false) String cID,
                                                                     @RequestParam(required = false) String dID,
-                                                                    @RequestParam(required = false) String pID){
-        List<Appointment> appointments = new ArrayList<>();
-        if (cID == null && dID == null && pID == null){
-            return getAllAppointments();
+                                                                    @RequestParam(required = false) String pID,
+                                                                    @RequestParam(required = false) String status,
+                                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                    @RequestParam(defaultValue = "false") boolean includeArchived,
+                                                                    WebRequest request){
+        if (listNotModified(request)) {
+            return null;
+        }
+        AppointmentFilter filter = appointmentFilter(cID, dID, pID, status, from, to);
+        if (filter.isEmpty()){
+            return getAllAppointments(null, null);
+        }
+        return findAppointments(filter, includeArchived);
+    }
+
+    /**
+     * Variant of GET /appointmentsByValue that reads only the listed properties of each appointment.
+     * @param cID Clinic id
+     * @param dID Doctor id
+     * @param pID Patient id
+     * @param status Appointment status
+     * @param from Earliest appointment date, inclusive
+     * @param to Latest appointment date, inclusive
+     * @param includeArchived Whether archived appointments are searched as well
+     * @param fields Comma separated properties to return, such as id,timing,status,doctorId
+     * @param request Request, answered with a 304 when the If-None-Match ETag is still current
+     * @return List of the selected properties of the appointments matching the criteria
+     */
+    @GetMapping(value = "/appointmentsByValue", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getAppointmentFieldsByValue(@RequestParam(required = false) String cID,
+                                                                                 @RequestParam(required = false) String dID,
+                                                                                 @RequestParam(required = false) String pID,
+                                                                                 @RequestParam(required = false) String status,
+                                                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                                 @RequestParam(defaultValue = "false") boolean includeArchived,
+                                                                                 @RequestParam String fields,
+                                                                                 WebRequest request){
+        FieldSelection selection = appointmentFields(fields);
+        if (listNotModified(request)) {
+            return null;
+        }
+        AppointmentFilter filter = appointmentFilter(cID, dID, pID, status, from, to);
+        if (filter.isEmpty()){
+            return getAllAppointmentFields(null, null, fields);
         }
+        filter.setFields(selection);
+        return selected(findAppointments(filter, includeArchived), selection);
+    }
+
+    /**
+     * Helper method to read the appointments matching a filter. A filter on a clinic is read from the partition
+     * holding the clinic; any other filter is read from every partition at once and the results merged by timing.
+     * @param filter Filter with at least one value
+     * @param includeArchived Whether archived appointments are searched as well
+     * @return List of appointments matching the filter
+     */
+    private ResponseEntity<List<Appointment>> findAppointments(AppointmentFilter filter, boolean includeArchived) {
+        //reject filters that no index can serve before they turn into a collection scan
+        filter.requireIndex();
 
         try {
-            if(cID != null && dID != null && pID != null){
-                appointments.addAll(appointmentRepository.findAppointmentsByClinicIdAndDoctorIdAndPatientId(cID, dID, pID));
-            }
-            else if(cID != null && dID != null && pID == null){
-                appointments.addAll(appointmentRepository.findAppointmentsByClinicIdAndDoctorId(cID,dID));
-            }
-            else if(cID != null && dID == null && pID != null){
-                appointments.addAll(appointmentRepository.findAppointmentsByClinicIdAndPatientId(cID,pID));
-            }
-            else if(cID == null && dID != null && pID != null){
-                appointments.addAll(appointmentRepository.findAppointmentsByDoctorIdAndPatientId(dID,pID));
-            }
-            else if (cID != null){
-                appointments.addAll(appointmentRepository.findAppointmentsByClinicId(cID));
-            }
-            else if(dID != null){
-                appointments.addAll(appointmentRepository.findAppointmentsByDoctorId(dID));
-            }
-            else {
-                appointments.addAll(appointmentRepository.findAppointmentsByPatientId(pID));
-            }
+            List<Appointment> appointments = filter.getClinicId() != null
+                    ? clinicPartitions.inClinic(filter.getClinicId(), () -> findTiers(filter, includeArchived))
+                    : ClinicPartitions.merge(clinicPartitions.gather(() -> findTiers(filter, includeArchived)), TIMING_ORDER, 0);
 
             if(appointments.isEmpty()){
-                throw new AppointmentDoesNotExistException("Appointments for PID: "+pID+", Doctor Id: "+dID+", and Clinic Id: "+cID+"not found!");
+                throw new AppointmentDoesNotExistException("Appointments for PID: "+filter.getPatientId()+", Doctor Id: "
+                        +filter.getDoctorId()+", and Clinic Id: "+filter.getClinicId()+"not found!");
             }
 
             return new ResponseEntity<>(appointments, HttpStatus.OK);
@@ -103,21 +278,75 @@ public class AppointmentController {
         }
     }
 
+    /**
+     * Helper method to read the appointments matching a filter from the partition the thread is bound to
+     * @param filter Filter with at least one value
+     * @param includeArchived Whether archived appointments are searched as well
+     * @return List of appointments matching the filter, ordered by timing
+     */
+    private List<Appointment> findTiers(AppointmentFilter filter, boolean includeArchived) {
+        List<Appointment> appointments = new ArrayList<>(appointmentRepository.findByFilter(filter));
+        if (includeArchived) {
+            appointments = mergeTiers(appointments, appointmentRepository.findArchivedByFilter(filter));
+        }
+        return appointments;
+    }
+
     /**
      * GET mapping to return a specific appointment based on the appointment id
      * @param id Appointment Id
-     * @return Appointment in the form of a javascript object, and an HTTP status.
+     * @param includeArchived Whether the appointment is looked up in the archive when it is not live
+     * @param request Request, answered with a 304 when the If-None-Match ETag is still current
+     * @return Appointment in the form of a javascript object, with its version as the ETag, and an HTTP status.
      */
     @GetMapping("/appointments/{id}")
-    public ResponseEntity<Appointment> getAppointmentByID(@PathVariable("id") String id){
-        Optional<Appointment> apptData = appointmentRepository.findById(id);
-        return apptData.map(appointment -> new ResponseEntity<>(appointment, HttpStatus.OK))
+    public ResponseEntity<Appointment> getAppointmentByID(@PathVariable("id") String id,
+                                                          @RequestParam(defaultValue = "false") boolean includeArchived,
+                                                          WebRequest request){
+        if (notModified(id, request)) {
+            return null;
+        }
+        Optional<Appointment> apptData = clinicPartitions.locate(() -> appointmentRepository.findById(id));
+        if (!apptData.isPresent() && includeArchived) {
+            apptData = clinicPartitions.locate(() -> Optional.ofNullable(appointmentRepository.findArchivedById(id)));
+        }
+        return apptData.map(appointment -> versioned(appointment).body(appointment))
                        .orElseThrow(() -> new AppointmentDoesNotExistException("Appointment with id: "+id+"not found!"));
     }
 
     /**
-     * POST mapping to create a new appointment. Validates that the date is in the future and that the patient, doctor,
-     * and clinic actually exist.
+     * Variant of GET /appointments/{id} that reads only the listed properties of the appointment
+     * @param id Appointment Id
+     * @param includeArchived Whether the appointment is looked up in the archive when it is not live
+     * @param fields Comma separated properties to return, such as id,timing,status,doctorId
+     * @param request Request, answered with a 304 when the If-None-Match ETag is still current
+     * @return Selected properties of the appointment, with its version as the ETag, and an HTTP status.
+     */
+    @GetMapping(value = "/appointments/{id}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getAppointmentFieldsByID(@PathVariable("id") String id,
+                                                                        @RequestParam(defaultValue = "false") boolean includeArchived,
+                                                                        @RequestParam String fields,
+                                                                        WebRequest request){
+        FieldSelection selection = appointmentFields(fields);
+        if (notModified(id, request)) {
+            return null;
+        }
+        Appointment appointment = clinicPartitions.locate(
+                () -> Optional.ofNullable(appointmentRepository.findSelectedById(id, selection))).orElse(null);
+        if (appointment == null && includeArchived) {
+            appointment = clinicPartitions.locate(() -> Optional.ofNullable(appointmentRepository.findArchivedById(id))).orElse(null);
+        }
+        if (appointment == null) {
+            throw new AppointmentDoesNotExistException("Appointment with id: "+id+"not found!");
+        }
+        return versioned(appointment).body(selection.select(appointment));
+    }
+
+    /**
+     * POST mapping to create a new appointment. Validates that the id, if one is sent, is an ObjectId, that the date
+     * is in the future, that the patient, doctor, and clinic actually exist, and that the doctor is not already
+     * booked in that time slot. With group commit enabled the appointment is inserted together with the others
+     * created at about the same time.
      * @param appointment The appointment to be added
      * @return A javascript representing the appointment created, and an HTTP status.
      */
@@ -125,78 +354,505 @@ public class AppointmentController {
     public ResponseEntity<Appointment> createAppointment(@RequestBody Appointment appointment){
         Appointment _appointment = new Appointment();
         copyAppointment(appointment, _appointment);
+        //the id is assigned up front so the slot knows who holds it
+        if (!assignObjectId(_appointment)){
+            throw new InvalidAppointmentIdException(INVALID_ID_MESSAGE);
+        }
         //Date validation
-        if (_appointment.getTiming().isBefore(LocalDate.now())){
-            throw new DateNotAcceptableException("This is not a future date!");
+        if (_appointment.getTiming().isBefore(LocalDateTime.now())){
+            throw new DateNotAcceptableException(NOT_FUTURE_DATE_MESSAGE);
         }
         //check if patient, doctor, and clinic exist
-        Optional<Patient> patient = patientRepository.findById(_appointment.getPatientId());
-        Optional<Doctor> doctor = doctorRepository.findById(_appointment.getDoctorId());
-        Optional<Clinic> clinic = clinicRepository.findById(_appointment.getClinicId());
-        if (!patient.isPresent() || !doctor.isPresent() || !clinic.isPresent()){
-            throw new NullParametersException("Appointment cannot be created as the patient, doctor, or clinic could not be found!");
+        if (!referenceExistenceCache.referencesExist(_appointment.getPatientId(),
+                _appointment.getDoctorId(), _appointment.getClinicId())){
+            throw new NullParametersException(MISSING_REFERENCE_MESSAGE);
+        }
+        //double booking validation
+        if (doctorScheduleIndex.reserve(_appointment.getDoctorId(), _appointment.getTiming(), _appointment.getId())
+                == DoctorScheduleIndex.Reservation.CONFLICT){
+            throw new AppointmentConflictException(doubleBookingMessage(_appointment));
         }
+        Appointment saved;
         try{
-            _appointment.setStatus("Scheduled");
-            return new ResponseEntity<>(appointmentRepository.save(_appointment), HttpStatus.CREATED);
+            _appointment.setStatus(AppointmentTransitions.SCHEDULED);
+            saved = clinicPartitions.writeInClinic(_appointment.getClinicId(), () -> appointmentInsertCoalescer.isEnabled()
+                    ? appointmentInsertCoalescer.insert(_appointment)
+                    : appointmentRepository.save(_appointment));
         }catch (Exception e){
-            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+            doctorScheduleIndex.release(_appointment.getDoctorId(), _appointment.getTiming(), _appointment.getId());
+            if(e instanceof ServiceOverloadedException) throw e;
+            else return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        eventPublisher.publishEvent(new AppointmentsChangedEvent(AppointmentChange.created(saved)));
+        return new ResponseEntity<>(saved, HttpStatus.CREATED);
+    }
+
+    /**
+     * POST mapping to import many appointments at once, sent either as a JSON array or as NDJSON. The body is read
+     * as a stream and handled in batches: each appointment goes through the same checks as createAppointment, the
+     * batch's patient, doctor, and clinic ids are resolved once, and the valid ones are written with a single
+     * unordered bulk insert.
+     * @param body Appointments to import
+     * @return Report with the outcome of every appointment, and an HTTP status.
+     * @throws IOException if the body cannot be read
+     */
+    @PostMapping(value = "/appointments/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkImportReport> importAppointments(InputStream body) throws IOException {
+        BulkImportReport report = new BulkImportReport();
+        List<Appointment> batch = new ArrayList<>();
+        try (MappingIterator<Appointment> appointments = objectMapper.readerFor(Appointment.class).readValues(body)) {
+            while (appointments.hasNextValue()) {
+                Appointment _appointment = new Appointment();
+                copyAppointment(appointments.nextValue(), _appointment);
+                batch.add(_appointment);
+                if (batch.size() >= bulkBatchSize) {
+                    importBatch(batch, report);
+                    batch.clear();
+                }
+            }
+            importBatch(batch, report);
+        } catch (JsonProcessingException e) {
+            //everything before the malformed appointment is still imported, nothing after it can be read
+            importBatch(batch, report);
+            report.add(null, "Malformed appointment: " + e.getOriginalMessage());
         }
+        return new ResponseEntity<>(report, HttpStatus.OK);
     }
 
     /**
-     *  PUT mapping to update an existing appointment
+     *  PUT mapping to update an existing appointment. The 48 hour window, the current status, and, when the body
+     *  carries one, the version are checked by the same atomic update that applies the change. The new time slot
+     *  is reserved first so a reschedule cannot double book the doctor.
      * @param id ID of the appointment to be updated
      * @param appointment The new values to be added to the appointment
      * @return The updated appointment, and an HTTP status
      */
     @PutMapping("/appointments/{id}")
     public ResponseEntity<Appointment> updateAppointment(@PathVariable("id")String id, @RequestBody Appointment appointment){
-        Optional<Appointment> apptData = appointmentRepository.findById(id);
-
-        if(apptData.isPresent()){
-            Appointment _appointment = apptData.get();
-            LocalDate tempTime = LocalDate.now();
-            if(tempTime.isAfter(_appointment.getTiming().minusDays(2)) && tempTime .isBefore(_appointment.getTiming())){
-                throw new DateNotAcceptableException("Cannot reschedule within a 48 hour window!");
+        DoctorScheduleIndex.Reservation reservation = doctorScheduleIndex.reserve(appointment.getDoctorId(), appointment.getTiming(), id);
+        if(reservation == DoctorScheduleIndex.Reservation.CONFLICT){
+            throw new AppointmentConflictException(doubleBookingMessage(appointment));
+        }
+        Appointment previous;
+        try {
+            previous = writeAppointment(id, appointment.getClinicId(), atClinic -> {
+                if (atClinic == null || atClinic.equals(appointment.getClinicId())) {
+                    return appointmentRepository.reschedule(id, appointment, appointment.getVersion(), atClinic, LocalDateTime.now());
+                }
+                //a move to another clinic, which is written to as well so a move of that clinic waits for this
+                return clinicPartitions.writeInClinic(appointment.getClinicId(), () -> {
+                    if (clinicPartitions.partitionOf(appointment.getClinicId()) != clinicPartitions.partitionOf(atClinic)) {
+                        throw new AppointmentConflictException("Appointment with id: "+id+" cannot move to clinic "
+                                +appointment.getClinicId()+", whose appointments are stored in another partition!");
+                    }
+                    return appointmentRepository.reschedule(id, appointment, appointment.getVersion(), atClinic, LocalDateTime.now());
+                });
+            });
+        } catch (Exception e){
+            if(reservation == DoctorScheduleIndex.Reservation.RESERVED){
+                doctorScheduleIndex.release(appointment.getDoctorId(), appointment.getTiming(), id);
             }
-            copyAppointment(appointment, _appointment);
-            _appointment.setStatus("Rescheduled");
-            try {
-                return new ResponseEntity<>(appointmentRepository.save(_appointment), HttpStatus.OK);
-            } catch (Exception e){
-                return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+            if(e instanceof AppointmentConflictException || e instanceof ServiceOverloadedException) throw e;
+            else return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        if(previous == null){
+            if(reservation == DoctorScheduleIndex.Reservation.RESERVED){
+                doctorScheduleIndex.release(appointment.getDoctorId(), appointment.getTiming(), id);
             }
+            throw rejectedTransition(id, "The requested Appointment does not yet exist in the system!",
+                    "Cannot reschedule within a 48 hour window!");
         }
-        else {
-            throw new AppointmentDoesNotExistException("The requested Appointment does not yet exist in the system!");
+        if(!Objects.equals(previous.getDoctorId(), appointment.getDoctorId())
+                || !doctorScheduleIndex.sameSlot(previous.getTiming(), appointment.getTiming())){
+            doctorScheduleIndex.release(previous.getDoctorId(), previous.getTiming(), id);
         }
+        Appointment updated = AppointmentTransitions.applyReschedule(previous, appointment);
+        eventPublisher.publishEvent(new AppointmentsChangedEvent(AppointmentChange.rescheduled(previous, updated)));
+        return new ResponseEntity<>(updated, HttpStatus.OK);
     }
 
     /**
-     * DELETE mapping to soft delete appointments by setting their status to Cancelled
+     * DELETE mapping to soft delete appointments by setting their status to Cancelled, as one atomic update, and
+     * free the doctor's time slot
      * @param id ID of appointment to cancel
+     * @param version Optional version the client last saw, the cancel is refused if the appointment changed since
+     * @param cID Optional clinic of the appointment, which spares a partitioned deployment looking the appointment up
      * @return Cancelled appointment, and an HTTP status.
      */
     @DeleteMapping("/appointments/{id}")
-    public ResponseEntity<Appointment> deleteAppointmentByID(@PathVariable("id") String id){
-        Optional<Appointment> apptData = appointmentRepository.findById(id);
-        if(apptData.isPresent()) {
-            Appointment _appointment = apptData.get();
-            LocalDate tempTime = LocalDate.now();
-            if(tempTime.isAfter(_appointment.getTiming().minusDays(2)) && tempTime.isBefore(_appointment.getTiming())){
-                throw new DateNotAcceptableException("Cannot cancel within a 48 hour window!");
-            }
-            _appointment.setStatus("Cancelled");
+    public ResponseEntity<Appointment> deleteAppointmentByID(@PathVariable("id") String id,
+                                                             @RequestParam(required = false) Long version,
+                                                             @RequestParam(required = false) String cID){
+        Appointment previous;
+        try {
+            previous = writeAppointment(id, cID, atClinic -> appointmentRepository.cancel(id, version, atClinic, LocalDateTime.now()));
+        } catch (Exception e) {
+            if(e instanceof ServiceOverloadedException) throw e;
+            else return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        if(previous == null){
+            throw rejectedTransition(id, "Appointment does not exist!", "Cannot cancel within a 48 hour window!");
+        }
+        Appointment _appointment = AppointmentTransitions.applyCancel(previous);
+        doctorScheduleIndex.release(_appointment.getDoctorId(), _appointment.getTiming(), id);
+        eventPublisher.publishEvent(new AppointmentsChangedEvent(AppointmentChange.cancelled(previous, _appointment)));
+        return new ResponseEntity<>(_appointment, HttpStatus.OK);
+    }
+
+    /**
+     * Helper method to explain why an atomic reschedule or cancel matched nothing. Only runs on the failure path.
+     * @param id ID of the appointment
+     * @param notFoundMessage Message if the appointment does not exist
+     * @param windowMessage Message if the appointment is within its 48 hour window
+     * @return Exception to throw
+     */
+    private RuntimeException rejectedTransition(String id, String notFoundMessage, String windowMessage) {
+        Optional<Appointment> apptData = clinicPartitions.locate(() -> appointmentRepository.findById(id));
+        if(!apptData.isPresent()){
+            return new AppointmentDoesNotExistException(notFoundMessage);
+        }
+        Appointment current = apptData.get();
+        if(current.getTiming() != null && AppointmentTransitions.withinChangeWindow(current.getTiming(), LocalDateTime.now())){
+            return new DateNotAcceptableException(windowMessage);
+        }
+        return new AppointmentConflictException("Appointment with id: "+id+" is "+current.getStatus()
+                +" at version "+current.getVersion()+" and was not changed!");
+    }
+
+    /**
+     * Helper method to run a write to one appointment in the partition that holds it. The write goes straight to
+     * the partition of the clinic the client named and only matches while the appointment is still at that clinic.
+     * Only when it matches nothing, or no clinic was named, is the appointment looked up, and the write is run again
+     * at the clinic it is stored at if that is another one.
+     * @param id ID of the appointment
+     * @param clinicId Clinic the client says the appointment is at, or null
+     * @param write Write, given the clinic the appointment must still be at, or null when there is only the home
+     *              partition
+     * @return Result of the write, or null if it matched nothing
+     */
+    private Appointment writeAppointment(String id, String clinicId, Function<String, Appointment> write) {
+        if (!clinicPartitions.isPartitioned()) {
+            return write.apply(null);
+        }
+        if (clinicId != null) {
+            Appointment previous = clinicPartitions.writeInClinic(clinicId, () -> write.apply(clinicId));
+            if (previous != null) {
+                return previous;
+            }
+        }
+        Optional<Appointment> current = clinicPartitions.locate(() -> appointmentRepository.findById(id));
+        if (!current.isPresent() || Objects.equals(current.get().getClinicId(), clinicId)) {
+            //refused for its own reasons, which rejectedTransition explains
+            return null;
+        }
+        String storedClinicId = current.get().getClinicId();
+        return clinicPartitions.writeInClinic(storedClinicId, () -> write.apply(storedClinicId));
+    }
+
+    /**
+     * Helper method to read one keyset page of appointments ordered by id. Every partition reads a page after the
+     * same id, and the first ids of all of them make the page.
+     * @param size Requested page size
+     * @param after Continuation token of the previous page, or null for the first page
+     * @param fields Properties to read, or null for whole appointments
+     * @return Page of appointments, with the next continuation token in a header when more may follow
+     */
+    private ResponseEntity<List<Appointment>> getAppointmentPage(Integer size, String after, FieldSelection fields) {
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(size == null ? MAX_PAGE_SIZE : size, MAX_PAGE_SIZE)));
+        String lastId = after == null ? null : decodeContinuationToken(after);
+        try {
+            List<Appointment> appointments = ClinicPartitions.merge(clinicPartitions.gather(() -> {
+                if (fields != null) {
+                    return appointmentRepository.findSelectedPage(lastId, page.getPageSize(), fields);
+                }
+                return lastId == null
+                        ? appointmentRepository.findAllByOrderByIdAsc(page)
+                        : appointmentRepository.findByIdGreaterThanOrderByIdAsc(lastId, page);
+            }), ID_ORDER, page.getPageSize());
+            if (appointments.isEmpty() && lastId == null) {
+                throw new AppointmentDoesNotExistException("Appointments do not exist in the DB!");
+            }
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (appointments.size() == page.getPageSize()) {
+                response.header(CONTINUATION_TOKEN_HEADER,
+                        encodeContinuationToken(appointments.get(appointments.size() - 1).getId()));
+            }
+            return response.body(appointments);
+        } catch (Exception e) {
+            if(e instanceof AppointmentDoesNotExistException) throw e;
+            else return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Helper method to answer a conditional GET of one appointment from its version alone, before the appointment
+     * itself is read
+     * @param id ID of the appointment
+     * @param request Request that may carry an If-None-Match ETag
+     * @return Whether the client's copy is current, in which case the response is already a 304
+     */
+    private boolean notModified(String id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) == null) {
+            return false;
+        }
+        Optional<Appointment> version = clinicPartitions.locate(() -> appointmentRepository.findVersionById(id));
+        return version.isPresent() && version.get().getVersion() != null
+                && request.checkNotModified(versionETag(version.get().getVersion()));
+    }
+
+    /**
+     * Helper method to answer a conditional GET of an appointment list from the number of appointment writes so far.
+     * The count is read before the list, so a list is never tagged with a count newer than itself.
+     * @param request Request that may carry an If-None-Match ETag
+     * @return Whether the client's copy is current, in which case the response is already a 304. Otherwise the
+     * response carries the current ETag.
+     */
+    private boolean listNotModified(WebRequest request) {
+        long changes;
+        try {
+            changes = appointmentChangeCounter.current();
+        } catch (Exception e) {
+            //the list is still served, only without an ETag
+            return false;
+        }
+        return request.checkNotModified(listETag(changes));
+    }
+
+    /**
+     * Helper method to start a 200 response tagged with the version of an appointment
+     * @param appointment Appointment returned, whole or in part
+     * @return Response builder, without an ETag for an appointment that has no version
+     */
+    static ResponseEntity.BodyBuilder versioned(Appointment appointment) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (appointment.getVersion() != null) {
+            response.eTag(versionETag(appointment.getVersion()));
+        }
+        return response;
+    }
+
+    /**
+     * Helper method to build the strong ETag of one appointment. The version is bumped by every write to it.
+     * @param version Version of the appointment
+     * @return Quoted ETag
+     */
+    static String versionETag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Helper method to build the strong ETag of an appointment list
+     * @param changes Number of appointment writes so far
+     * @return Quoted ETag
+     */
+    static String listETag(long changes) {
+        return "\"changes-" + changes + "\"";
+    }
+
+    /**
+     * Helper method to check the fields= parameter of an appointment read
+     * @param fields Comma separated property names
+     * @return The selected appointment properties
+     */
+    private FieldSelection appointmentFields(String fields) {
+        FieldSelection selection = FieldSelection.parse(fields, mappingContext.getRequiredPersistentEntity(Appointment.class));
+        //reads across partitions need the clinic to tell which copy of a moving clinic counts
+        return clinicPartitions.isPartitioned() ? selection.alsoReading("clinicId") : selection;
+    }
+
+    /**
+     * Helper method to build the filter of an appointment search from its parameters
+     * @return Filter holding every supplied value
+     */
+    static AppointmentFilter appointmentFilter(String cID, String dID, String pID, String status, LocalDate from, LocalDate to) {
+        AppointmentFilter filter = new AppointmentFilter();
+        filter.setClinicId(cID);
+        filter.setDoctorId(dID);
+        filter.setPatientId(pID);
+        filter.setStatus(status);
+        filter.setFrom(from);
+        filter.setTo(to);
+        return filter;
+    }
+
+    /**
+     * Helper method to keep only the selected properties of a response, with the same status and headers
+     * @param response Response holding documents read with the selection
+     * @param fields Selected properties
+     * @return Response holding the selected properties of each document
+     */
+    static <T> ResponseEntity<List<Map<String, Object>>> selected(ResponseEntity<List<T>> response, FieldSelection fields) {
+        List<Map<String, Object>> body = response.getBody() == null ? null : fields.select(response.getBody());
+        return new ResponseEntity<>(body, response.getHeaders(), response.getStatusCode());
+    }
+
+    /**
+     * Helper method to validate and insert one batch of a bulk import
+     * @param batch Appointments to import, in file order
+     * @param report Report to add the outcome of every appointment to
+     */
+    private void importBatch(List<Appointment> batch, BulkImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        String[] errors = new String[batch.size()];
+        Set<String> patientIds = new HashSet<>();
+        Set<String> doctorIds = new HashSet<>();
+        Set<String> clinicIds = new HashSet<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < batch.size(); i++) {
+            Appointment _appointment = batch.get(i);
+            if (!assignObjectId(_appointment)) {
+                errors[i] = INVALID_ID_MESSAGE;
+            } else if (_appointment.getTiming() == null || _appointment.getTiming().isBefore(now)) {
+                errors[i] = NOT_FUTURE_DATE_MESSAGE;
+            } else {
+                patientIds.add(_appointment.getPatientId());
+                doctorIds.add(_appointment.getDoctorId());
+                clinicIds.add(_appointment.getClinicId());
+            }
+        }
+        Set<String> patients = referenceExistenceCache.existingPatientIds(patientIds);
+        Set<String> doctors = referenceExistenceCache.existingDoctorIds(doctorIds);
+        Set<String> clinics = referenceExistenceCache.existingClinicIds(clinicIds);
+
+        List<Appointment> accepted = new ArrayList<>();
+        List<Integer> acceptedPositions = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Appointment _appointment = batch.get(i);
+            if (errors[i] != null) {
+                continue;
+            }
+            if (!patients.contains(_appointment.getPatientId()) || !doctors.contains(_appointment.getDoctorId())
+                    || !clinics.contains(_appointment.getClinicId())) {
+                errors[i] = MISSING_REFERENCE_MESSAGE;
+                continue;
+            }
+            if (doctorScheduleIndex.reserve(_appointment.getDoctorId(), _appointment.getTiming(), _appointment.getId())
+                    == DoctorScheduleIndex.Reservation.CONFLICT) {
+                errors[i] = doubleBookingMessage(_appointment);
+                continue;
+            }
             try {
-                return new ResponseEntity<>(appointmentRepository.save(_appointment), HttpStatus.OK);
-            } catch (Exception e) {
-                return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+                clinicPartitions.beginWrite(_appointment.getClinicId());
+            } catch (ServiceOverloadedException e) {
+                doctorScheduleIndex.release(_appointment.getDoctorId(), _appointment.getTiming(), _appointment.getId());
+                errors[i] = e.getMessage();
+                continue;
+            }
+            _appointment.setStatus(AppointmentTransitions.SCHEDULED);
+            accepted.add(_appointment);
+            acceptedPositions.add(i);
+        }
+        try {
+            Map<Integer, String> failures = clinicPartitions.insertByPartition(accepted, appointmentRepository::insertUnordered);
+            for (Map.Entry<Integer, String> failure : failures.entrySet()) {
+                errors[acceptedPositions.get(failure.getKey())] = failure.getValue();
+            }
+        } catch (Exception e) {
+            for (Integer position : acceptedPositions) {
+                errors[position] = "Appointment could not be saved!";
+            }
+        } finally {
+            for (Appointment _appointment : accepted) {
+                clinicPartitions.endWrite(_appointment.getClinicId());
+            }
+        }
+        List<AppointmentChange> created = new ArrayList<>(acceptedPositions.size());
+        for (Integer position : acceptedPositions) {
+            Appointment _appointment = batch.get(position);
+            if (errors[position] != null) {
+                doctorScheduleIndex.release(_appointment.getDoctorId(), _appointment.getTiming(), _appointment.getId());
+            } else {
+                created.add(AppointmentChange.created(_appointment));
+            }
+        }
+        if (!created.isEmpty()) {
+            eventPublisher.publishEvent(new AppointmentsChangedEvent(created));
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            report.add(batch.get(i).getId(), errors[i]);
+        }
+    }
+
+    /**
+     * Helper method to describe a double booking
+     * @param appointment Appointment that could not get its slot
+     * @return Error message
+     */
+    static String doubleBookingMessage(Appointment appointment) {
+        return "Doctor with id: "+appointment.getDoctorId()+" is already booked at "+appointment.getTiming()+"!";
+    }
+
+    /**
+     * Helper method to combine the live and archived appointments matching a read, ordered by timing. An
+     * appointment found in both tiers, because it was written while being archived, is taken from the live one.
+     * @param live Appointments read from the live collection
+     * @param archived Appointments read from the archive
+     * @return Appointments from both tiers
+     */
+    static List<Appointment> mergeTiers(List<Appointment> live, List<Appointment> archived) {
+        if (archived.isEmpty()) {
+            return live;
+        }
+        Set<String> liveIds = new HashSet<>();
+        for (Appointment appointment : live) {
+            liveIds.add(appointment.getId());
+        }
+        List<Appointment> merged = new ArrayList<>(live.size() + archived.size());
+        merged.addAll(live);
+        for (Appointment appointment : archived) {
+            if (!liveIds.contains(appointment.getId())) {
+                merged.add(appointment);
+            }
+        }
+        merged.sort(TIMING_ORDER);
+        return merged;
+    }
+
+    /**
+     * Helper method to turn the last id of a page into an opaque continuation token
+     * @param id Id of the last appointment returned
+     * @return URL safe continuation token
+     */
+    static String encodeContinuationToken(String id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Helper method to recover the last id of the previous page from a continuation token
+     * @param token Continuation token sent by the client
+     * @return Id of the last appointment of the previous page
+     */
+    static String decodeContinuationToken(String token) {
+        try {
+            String id = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (id.isEmpty()) {
+                throw new IllegalArgumentException("Empty token");
             }
+            return id;
+        } catch (IllegalArgumentException e) {
+            throw new InvalidContinuationTokenException("Continuation token "+token+" is not valid!");
+        }
+    }
+
+    /**
+     * Helper method to give a new appointment an ObjectId, or to normalise the one the client sent. Pages are read
+     * in id order, and the database only compares ids of the same type with each other, so every id is kept an
+     * ObjectId.
+     * @param appointment Appointment about to be created
+     * @return false if the client sent an id that is not an ObjectId
+     */
+    static boolean assignObjectId(Appointment appointment) {
+        if (appointment.getId() == null) {
+            appointment.setId(new ObjectId().toHexString());
+            return true;
         }
-        else {
-            throw new AppointmentDoesNotExistException("Appointment does not exist!");
+        if (!ObjectId.isValid(appointment.getId())) {
+            return false;
         }
+        appointment.setId(new ObjectId(appointment.getId()).toHexString());
+        return true;
     }
 
     /**
@@ -204,7 +860,7 @@ public class AppointmentController {
      * @param oldAppointment appointment passed in through HTTP
      * @param newAppt appointment to be persisted
      */
-    private void copyAppointment(Appointment oldAppointment, Appointment newAppt) {
+    static void copyAppointment(Appointment oldAppointment, Appointment newAppt) {
         newAppt.setId(oldAppointment.getId());
         newAppt.setPatientId(oldAppointment.getPatientId());
         newAppt.setDoctorId(oldAppointment.getDoctorId());
@@ -0,0 +1,43 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.event.AppointmentChangeFeed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+/**
+ * Pushes appointment changes to clients that would otherwise poll for them. Served in both web modes: the
+ * servlet mode writes the events from the same Flux the reactive mode does.
+ */
+@RestController
+public class AppointmentEventController {
+
+    static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    @Autowired
+    private AppointmentChangeFeed appointmentChangeFeed;
+
+    /**
+     * GET mapping to follow appointment creations, reschedules, and cancellations as server-sent events, optionally
+     * only those at one clinic or with one doctor. Each event's id resumes the feed after it: browsers send it back
+     * in the Last-Event-ID header when they reconnect, other clients may pass it as after.
+     * @param cID Clinic id
+     * @param dID Doctor id
+     * @param after Optional id of the last event received
+     * @param lastEventId Id of the last event received, sent by browsers on reconnect and preferred over after
+     * @return Stream of appointment events
+     */
+    @GetMapping(value = "/appointmentEvents", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Appointment>> getAppointmentEvents(@RequestParam(required = false) String cID,
+                                                                   @RequestParam(required = false) String dID,
+                                                                   @RequestParam(required = false) String after,
+                                                                   @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId){
+        return appointmentChangeFeed.subscribe(cID, dID, lastEventId != null ? lastEventId : after);
+    }
+}
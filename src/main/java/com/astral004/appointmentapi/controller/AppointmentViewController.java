@@ -0,0 +1,122 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.domain.AppointmentView;
+import com.astral004.appointmentapi.exception.AppointmentDoesNotExistException;
+import com.astral004.appointmentapi.repository.AppointmentFilter;
+import com.astral004.appointmentapi.repository.AppointmentViewRepository;
+import com.astral004.appointmentapi.view.AppointmentViewMaintainer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Display ready appointments, each row already carrying the names and contact details of its patient, doctor,
+ * and clinic, so a screen of appointments takes one request instead of one per row.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AppointmentViewController {
+
+    @Autowired
+    private AppointmentViewRepository appointmentViewRepository;
+    @Autowired
+    private AppointmentViewMaintainer appointmentViewMaintainer;
+
+    /**
+     * GET mapping to retrieve appointment views by any mix of clinic, doctor, patient, status, and date range, with
+     * the same rules as /appointmentsByValue. Without a filter the views are returned one keyset page at a time,
+     * and the token for the next page is sent back in the X-Continuation-Token header.
+     * @param cID Clinic id
+     * @param dID Doctor id
+     * @param pID Patient id
+     * @param status Appointment status
+     * @param from Earliest appointment date, inclusive
+     * @param to Latest appointment date, inclusive
+     * @param size Optional page size when no filter is given, capped at MAX_PAGE_SIZE
+     * @param after Optional continuation token returned with the previous page
+     * @return List of appointment views
+     */
+    @GetMapping("/appointmentViews")
+    public ResponseEntity<List<AppointmentView>> getAppointmentViews(@RequestParam(required = false) String cID,
+                                                                     @RequestParam(required = false) String dID,
+                                                                     @RequestParam(required = false) String pID,
+                                                                     @RequestParam(required = false) String status,
+                                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                     @RequestParam(required = false) Integer size,
+                                                                     @RequestParam(required = false) String after){
+        AppointmentFilter filter = new AppointmentFilter();
+        filter.setClinicId(cID);
+        filter.setDoctorId(dID);
+        filter.setPatientId(pID);
+        filter.setStatus(status);
+        filter.setFrom(from);
+        filter.setTo(to);
+        if (filter.isEmpty()){
+            return getAppointmentViewPage(size, after);
+        }
+        filter.requireIndex();
+
+        try {
+            List<AppointmentView> views = appointmentViewRepository.findByFilter(filter);
+            if (views.isEmpty()){
+                throw new AppointmentDoesNotExistException("Appointments for PID: "+pID+", Doctor Id: "+dID+", and Clinic Id: "+cID+"not found!");
+            }
+            return new ResponseEntity<>(views, HttpStatus.OK);
+        } catch (Exception e) {
+            if(e instanceof AppointmentDoesNotExistException) throw e;
+            else return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * POST mapping to rebuild every appointment view from the appointment, patient, doctor, clinic, and address
+     * collections, for example after data was loaded around the application.
+     * @return An HTTP status
+     */
+    @PostMapping("/appointmentViews/rebuild")
+    public ResponseEntity<Void> rebuildAppointmentViews(){
+        try {
+            appointmentViewMaintainer.rebuild();
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Helper method to read one keyset page of appointment views ordered by id.
+     * @param size Requested page size
+     * @param after Continuation token of the previous page, or null for the first page
+     * @return Page of appointment views, with the next continuation token in a header when more may follow
+     */
+    private ResponseEntity<List<AppointmentView>> getAppointmentViewPage(Integer size, String after) {
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(size == null ? AppointmentController.MAX_PAGE_SIZE : size,
+                AppointmentController.MAX_PAGE_SIZE)));
+        String lastId = after == null ? null : AppointmentController.decodeContinuationToken(after);
+        try {
+            List<AppointmentView> views = lastId == null
+                    ? appointmentViewRepository.findAllByOrderByIdAsc(page)
+                    : appointmentViewRepository.findByIdGreaterThanOrderByIdAsc(lastId, page);
+            if (views.isEmpty() && lastId == null) {
+                throw new AppointmentDoesNotExistException("Appointments do not exist in the DB!");
+            }
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (views.size() == page.getPageSize()) {
+                response.header(AppointmentController.CONTINUATION_TOKEN_HEADER,
+                        AppointmentController.encodeContinuationToken(views.get(views.size() - 1).getId()));
+            }
+            return response.body(views);
+        } catch (Exception e) {
+            if(e instanceof AppointmentDoesNotExistException) throw e;
+            else return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.directory.ClinicDirectory;
+import com.astral004.appointmentapi.dto.ClinicListing;
+import com.astral004.appointmentapi.exception.ClinicDoesNotExistException;
+import com.astral004.appointmentapi.exception.NullParametersException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.geo.Point;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Clinic listings and nearest-clinic lookups, served from the in-memory {@link ClinicDirectory} rather than by
+ * reading clinics and then each of their addresses from the database.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ClinicDirectoryController {
+
+    static final int MAX_RESULTS = 50;
+
+    @Autowired
+    private ClinicDirectory clinicDirectory;
+
+    /**
+     * GET mapping to list every clinic with its address.
+     * @return List of clinics ordered by id, and an HTTP status.
+     */
+    @GetMapping("/clinicDirectory")
+    public ResponseEntity<List<ClinicListing>> getClinics(){
+        return new ResponseEntity<>(clinicDirectory.getClinics(), HttpStatus.OK);
+    }
+
+    /**
+     * GET mapping to get one clinic with its address.
+     * @param id Clinic id
+     * @return The clinic, and an HTTP status.
+     */
+    @GetMapping("/clinicDirectory/{id}")
+    public ResponseEntity<ClinicListing> getClinic(@PathVariable String id){
+        ClinicListing clinic = clinicDirectory.getClinic(id);
+        if (clinic == null) {
+            throw new ClinicDoesNotExistException("Clinic with Id: "+id+" not found!");
+        }
+        return new ResponseEntity<>(clinic, HttpStatus.OK);
+    }
+
+    /**
+     * GET mapping to find the clinics closest to a zip code or to coordinates. A zip code stands for the centre of
+     * the known addresses in it.
+     * @param zipCode Zip code, instead of coordinates
+     * @param lat Latitude in degrees
+     * @param lon Longitude in degrees
+     * @param limit Maximum number of clinics, capped at MAX_RESULTS
+     * @param maxKm Furthest a clinic may be, in kilometres
+     * @return Closest clinics first with their distances, and an HTTP status.
+     */
+    @GetMapping("/clinicDirectory/nearest")
+    public ResponseEntity<List<ClinicListing>> getNearestClinics(@RequestParam(required = false) String zipCode,
+                                                                 @RequestParam(required = false) Double lat,
+                                                                 @RequestParam(required = false) Double lon,
+                                                                 @RequestParam(defaultValue = "5") int limit,
+                                                                 @RequestParam(required = false) Double maxKm){
+        if (lat == null || lon == null) {
+            if (zipCode == null || zipCode.trim().isEmpty()) {
+                throw new NullParametersException("A zip code, or both lat and lon, are required!");
+            }
+            Point centre = clinicDirectory.locateZipCode(zipCode.trim());
+            if (centre == null) {
+                throw new ClinicDoesNotExistException("Clinics near Zip Code: "+zipCode+" not found!");
+            }
+            lat = centre.getY();
+            lon = centre.getX();
+        }
+        if (Math.abs(lat) > 90 || Math.abs(lon) > 180) {
+            throw new NullParametersException("lat must be within [-90, 90] and lon within [-180, 180]!");
+        }
+        return new ResponseEntity<>(clinicDirectory.findNearest(lat, lon, Math.max(1, Math.min(limit, MAX_RESULTS)), maxKm), HttpStatus.OK);
+    }
+}
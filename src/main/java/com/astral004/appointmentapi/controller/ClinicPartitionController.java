@@ -0,0 +1,63 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.domain.ClinicPlacement;
+import com.astral004.appointmentapi.dto.RebalanceReport;
+import com.astral004.appointmentapi.exception.ClinicDoesNotExistException;
+import com.astral004.appointmentapi.exception.InvalidPartitionException;
+import com.astral004.appointmentapi.partition.ClinicPartitions;
+import com.astral004.appointmentapi.partition.ClinicRebalancer;
+import com.astral004.appointmentapi.repository.ClinicRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Where the appointments of each clinic are stored, and the tool to move a clinic to another partition while its
+ * appointments keep being served.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ClinicPartitionController {
+
+    @Autowired
+    private ClinicPartitions clinicPartitions;
+    @Autowired
+    private ClinicRebalancer clinicRebalancer;
+    @Autowired
+    private ClinicRepository clinicRepository;
+
+    /**
+     * GET mapping to list the partition of every placed clinic. Clinics that are not listed have their
+     * appointments in the home partition, 0.
+     * @return List of clinic placements
+     */
+    @GetMapping("/clinicPartitions")
+    public ResponseEntity<List<ClinicPlacement>> getClinicPartitions(){
+        return new ResponseEntity<>(clinicPartitions.getPlacements(), HttpStatus.OK);
+    }
+
+    /**
+     * POST mapping to move the appointments of a clinic to another partition. Returns once the clinic is read and
+     * written in its new partition and its appointments are gone from the old one; meanwhile its writes are only
+     * held off for the few seconds it takes to sync what changed during the copy.
+     * @param cID Clinic id
+     * @param to Partition to move the clinic to
+     * @return Report of the move, and an HTTP status.
+     */
+    @PostMapping("/clinicPartitions/{cID}/rebalance")
+    public ResponseEntity<RebalanceReport> rebalanceClinic(@PathVariable("cID") String cID, @RequestParam int to){
+        if (!clinicRepository.existsById(cID)) {
+            throw new ClinicDoesNotExistException("Clinic with Id: "+cID+" not found!");
+        }
+        try {
+            return new ResponseEntity<>(clinicRebalancer.rebalance(cID, to), HttpStatus.OK);
+        } catch (Exception e) {
+            if(e instanceof InvalidPartitionException) throw e;
+            else return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.domain.Doctor;
+import com.astral004.appointmentapi.dto.DoctorOpening;
+import com.astral004.appointmentapi.exception.DateNotAcceptableException;
+import com.astral004.appointmentapi.exception.NullParametersException;
+import com.astral004.appointmentapi.exception.PersonDoesNotExistException;
+import com.astral004.appointmentapi.repository.DoctorRepository;
+import com.astral004.appointmentapi.schedule.DoctorScheduleIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds when a patient can be seen soonest by any doctor of a specialty. Openings come from the free time in the
+ * {@link DoctorScheduleIndex}, so no doctor's appointments are read to answer.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class DoctorAvailabilityController {
+
+    static final int MAX_RESULTS = 100;
+    static final int DEFAULT_WINDOW_DAYS = 14;
+    static final int MAX_WINDOW_DAYS = 92;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+    @Autowired
+    private DoctorScheduleIndex doctorScheduleIndex;
+
+    /**
+     * GET mapping to find the earliest openings across every doctor of a specialty, optionally only those seeing
+     * patients at one clinic. A fully booked window is an empty list rather than a 404.
+     * @param specialty Specialty of the doctors
+     * @param cID Clinic id
+     * @param from Earliest day, inclusive, defaulting to today. Openings never start in the past.
+     * @param to Latest day, inclusive, defaulting to two weeks from the earliest day
+     * @param limit Maximum number of openings, capped at MAX_RESULTS
+     * @return Openings ordered by time, and an HTTP status.
+     */
+    @GetMapping("/nextAvailableSlots")
+    public ResponseEntity<List<DoctorOpening>> getNextAvailableSlots(@RequestParam(required = false) String specialty,
+                                                                     @RequestParam(required = false) String cID,
+                                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                     @RequestParam(defaultValue = "10") int limit){
+        if (specialty == null || specialty.trim().isEmpty()) {
+            throw new NullParametersException("A specialty is required!");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate firstDay = from == null || from.isBefore(now.toLocalDate()) ? now.toLocalDate() : from;
+        LocalDate lastDay = to == null ? firstDay.plusDays(DEFAULT_WINDOW_DAYS - 1) : to;
+        if (lastDay.isBefore(firstDay) || lastDay.isAfter(firstDay.plusDays(MAX_WINDOW_DAYS - 1))) {
+            throw new DateNotAcceptableException("The window must end on or after "+firstDay+" and span at most "+MAX_WINDOW_DAYS+" days!");
+        }
+
+        List<Doctor> doctors = cID == null
+                ? doctorRepository.getDoctorsBySpecialty(specialty)
+                : doctorRepository.getDoctorsBySpecialtyAndClinicIds(specialty, cID);
+        if (doctors.isEmpty()) {
+            throw new PersonDoesNotExistException("Doctors with Specialty: "+specialty+(cID == null ? "" : ", and Clinic Id: "+cID)+" not found!");
+        }
+        Map<String, Doctor> byId = new LinkedHashMap<>();
+        for (Doctor doctor : doctors) {
+            byId.put(doctor.getId(), doctor);
+        }
+
+        LocalDateTime earliest = firstDay.equals(now.toLocalDate()) ? now : firstDay.atStartOfDay();
+        List<DoctorOpening> openings = new ArrayList<>();
+        for (DoctorScheduleIndex.Opening opening : doctorScheduleIndex.findEarliestOpenings(byId.keySet(), earliest,
+                lastDay, Math.max(1, Math.min(limit, MAX_RESULTS)))) {
+            Doctor doctor = byId.get(opening.getDoctorId());
+            openings.add(new DoctorOpening(doctor.getId(), doctor.getFirstName(), doctor.getLastName(), doctor.getSpecialty(),
+                    cID == null ? doctor.getClinicIds() : Collections.singletonList(cID), opening.getTiming()));
+        }
+        return new ResponseEntity<>(openings, HttpStatus.OK);
+    }
+}
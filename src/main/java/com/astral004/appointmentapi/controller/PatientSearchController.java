@@ -0,0 +1,45 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.dto.PatientSearchResult;
+import com.astral004.appointmentapi.exception.NullParametersException;
+import com.astral004.appointmentapi.search.PatientSearchIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Type-ahead patient lookup for intake, answered from the in-memory {@link PatientSearchIndex} rather than by
+ * reading patients from the database.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class PatientSearchController {
+
+    static final int MAX_RESULTS = 50;
+
+    @Autowired
+    private PatientSearchIndex patientSearchIndex;
+
+    /**
+     * GET mapping to find patients by what has been typed so far of their names or phone number. Every word must
+     * match the start of a first name, last name, or phone number of the patient, or be a near miss of a name.
+     * Nothing matching is an empty list rather than a 404, so a type-ahead box simply clears its suggestions.
+     * @param q Words typed so far, such as "smi jo" or "0100"
+     * @param limit Maximum number of patients, capped at MAX_RESULTS
+     * @return Best matching patients first, and an HTTP status.
+     */
+    @GetMapping("/patientSearch")
+    public ResponseEntity<List<PatientSearchResult>> searchPatients(@RequestParam(required = false) String q,
+                                                                    @RequestParam(defaultValue = "10") int limit){
+        if (q == null || q.trim().isEmpty()) {
+            throw new NullParametersException("Type part of a name or phone number to search for!");
+        }
+        return new ResponseEntity<>(patientSearchIndex.search(q, Math.max(1, Math.min(limit, MAX_RESULTS))), HttpStatus.OK);
+    }
+}
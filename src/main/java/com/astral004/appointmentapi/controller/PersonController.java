@@ -0,0 +1,143 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.domain.Doctor;
+import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.exception.PersonDoesNotExistException;
+import com.astral004.appointmentapi.repository.DoctorRepository;
+import com.astral004.appointmentapi.repository.FieldSelection;
+import com.astral004.appointmentapi.repository.PatientRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.rest.webmvc.RepositoryRestController;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Patients and doctors are served by Spring Data REST. Reads that carry a fields= parameter are answered here
+ * instead, reading only the listed properties, so a lookup that needs a name and a phone number does not load the
+ * social security number and the rest of the person. Being a repository controller, requests without fields= still
+ * reach Spring Data REST.
+ */
+@RepositoryRestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class PersonController {
+
+    @Autowired
+    private PatientRepository patientRepository;
+    @Autowired
+    private DoctorRepository doctorRepository;
+    @Autowired
+    private MongoMappingContext mappingContext;
+
+    /**
+     * GET mapping to list the selected properties of every patient, or of one keyset page of them when a page size
+     * or continuation token is supplied
+     * @param size Optional page size, capped at MAX_PAGE_SIZE
+     * @param after Optional continuation token returned with the previous page
+     * @param fields Comma separated properties to return, such as id,firstName,lastName
+     * @return List of the selected properties of each patient
+     */
+    @GetMapping(value = "/patients", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getPatientFields(@RequestParam(required = false) Integer size,
+                                                                      @RequestParam(required = false) String after,
+                                                                      @RequestParam String fields){
+        FieldSelection selection = FieldSelection.parse(fields, mappingContext.getRequiredPersistentEntity(Patient.class));
+        return getPage(size, after, selection, "Patients do not exist in the DB!",
+                (lastId, limit) -> patientRepository.findSelectedPage(lastId, limit, selection), Patient::getId);
+    }
+
+    /**
+     * GET mapping to return the selected properties of a patient
+     * @param id Patient id
+     * @param fields Comma separated properties to return, such as id,firstName,lastName
+     * @return Selected properties of the patient, and an HTTP status.
+     */
+    @GetMapping(value = "/patients/{id}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getPatientFieldsByID(@PathVariable("id") String id,
+                                                                    @RequestParam String fields){
+        FieldSelection selection = FieldSelection.parse(fields, mappingContext.getRequiredPersistentEntity(Patient.class));
+        Patient patient = patientRepository.findSelectedById(id, selection);
+        if (patient == null) {
+            throw new PersonDoesNotExistException("Patient with id: "+id+" not found!");
+        }
+        return new ResponseEntity<>(selection.select(patient), HttpStatus.OK);
+    }
+
+    /**
+     * GET mapping to list the selected properties of every doctor, or of one keyset page of them when a page size
+     * or continuation token is supplied
+     * @param size Optional page size, capped at MAX_PAGE_SIZE
+     * @param after Optional continuation token returned with the previous page
+     * @param fields Comma separated properties to return, such as id,lastName,specialty
+     * @return List of the selected properties of each doctor
+     */
+    @GetMapping(value = "/doctors", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getDoctorFields(@RequestParam(required = false) Integer size,
+                                                                     @RequestParam(required = false) String after,
+                                                                     @RequestParam String fields){
+        FieldSelection selection = FieldSelection.parse(fields, mappingContext.getRequiredPersistentEntity(Doctor.class));
+        return getPage(size, after, selection, "Doctors do not exist in the DB!",
+                (lastId, limit) -> doctorRepository.findSelectedPage(lastId, limit, selection), Doctor::getId);
+    }
+
+    /**
+     * GET mapping to return the selected properties of a doctor
+     * @param id Doctor id
+     * @param fields Comma separated properties to return, such as id,lastName,specialty
+     * @return Selected properties of the doctor, and an HTTP status.
+     */
+    @GetMapping(value = "/doctors/{id}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getDoctorFieldsByID(@PathVariable("id") String id,
+                                                                   @RequestParam String fields){
+        FieldSelection selection = FieldSelection.parse(fields, mappingContext.getRequiredPersistentEntity(Doctor.class));
+        Doctor doctor = doctorRepository.findSelectedById(id, selection);
+        if (doctor == null) {
+            throw new PersonDoesNotExistException("Doctor with id: "+id+" not found!");
+        }
+        return new ResponseEntity<>(selection.select(doctor), HttpStatus.OK);
+    }
+
+    /**
+     * Helper method to read everything, or one keyset page, of the selected properties of a collection
+     * @param size Requested page size, or null
+     * @param after Continuation token of the previous page, or null
+     * @param fields Selected properties
+     * @param emptyMessage Message if the collection is empty
+     * @param reader Reads the page after an id, with a limit of 0 reading every remaining document
+     * @param id Id of a document
+     * @return Page of selected properties, with the next continuation token in a header when more may follow
+     */
+    private <T> ResponseEntity<List<Map<String, Object>>> getPage(Integer size, String after, FieldSelection fields,
+                                                               String emptyMessage,
+                                                               BiFunction<String, Integer, List<T>> reader,
+                                                               Function<T, String> id) {
+        boolean paged = size != null || after != null;
+        int limit = paged ? Math.max(1, Math.min(size == null ? AppointmentController.MAX_PAGE_SIZE : size,
+                AppointmentController.MAX_PAGE_SIZE)) : 0;
+        String lastId = after == null ? null : AppointmentController.decodeContinuationToken(after);
+        try {
+            List<T> documents = reader.apply(lastId, limit);
+            if (documents.isEmpty() && lastId == null) {
+                throw new PersonDoesNotExistException(emptyMessage);
+            }
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (paged && documents.size() == limit) {
+                response.header(AppointmentController.CONTINUATION_TOKEN_HEADER,
+                        AppointmentController.encodeContinuationToken(id.apply(documents.get(documents.size() - 1))));
+            }
+            return response.body(fields.select(documents));
+        } catch (Exception e) {
+            if(e instanceof PersonDoesNotExistException) throw e;
+            else return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
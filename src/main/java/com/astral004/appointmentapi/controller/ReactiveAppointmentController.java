@@ -0,0 +1,595 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.cache.ReactiveReferenceExistenceCache;
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.dto.BulkImportReport;
+import com.astral004.appointmentapi.event.AppointmentChange;
+import com.astral004.appointmentapi.event.AppointmentChangeCounter;
+import com.astral004.appointmentapi.event.AppointmentsChangedEvent;
+import com.astral004.appointmentapi.exception.AppointmentConflictException;
+import com.astral004.appointmentapi.exception.AppointmentDoesNotExistException;
+import com.astral004.appointmentapi.exception.DateNotAcceptableException;
+import com.astral004.appointmentapi.exception.InvalidAppointmentIdException;
+import com.astral004.appointmentapi.exception.NullParametersException;
+import com.astral004.appointmentapi.partition.ClinicPartitions;
+import com.astral004.appointmentapi.repository.AppointmentFilter;
+import com.astral004.appointmentapi.repository.AppointmentTransitions;
+import com.astral004.appointmentapi.repository.FieldSelection;
+import com.astral004.appointmentapi.repository.reactive.ReactiveAppointmentRepository;
+import com.astral004.appointmentapi.schedule.DoctorScheduleIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.codec.CodecException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Non-blocking version of {@link AppointmentController}, served by WebFlux over the reactive Mongo driver so a
+ * request waiting on Mongo does not hold a thread. It exposes the same endpoints with the same validation, and
+ * replaces the servlet controller when the application runs with spring.main.web-application-type=reactive, for
+ * example through the reactive profile. The reactive repositories only reach the home database, so it refuses to
+ * start when appointments are partitioned across several.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAppointmentController {
+
+    @Autowired
+    private ReactiveAppointmentRepository appointmentRepository;
+    @Autowired
+    private ReactiveReferenceExistenceCache referenceExistenceCache;
+    @Autowired
+    private DoctorScheduleIndex doctorScheduleIndex;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private ClinicPartitions clinicPartitions;
+    @Autowired
+    private MongoMappingContext mappingContext;
+    @Autowired
+    private AppointmentChangeCounter appointmentChangeCounter;
+
+    @Value("${appointments.bulk.batch-size:1000}")
+    private int bulkBatchSize;
+
+    /**
+     * Refuses to serve appointments partitioned by clinic, since every endpoint here would only see the ones in the
+     * home partition
+     */
+    @PostConstruct
+    void requireSinglePartition() {
+        if (clinicPartitions.isPartitioned()) {
+            throw new IllegalStateException("Appointments partitioned with appointments.partitions.uris can only be "
+                    + "served by the servlet web mode, not spring.main.web-application-type=reactive");
+        }
+    }
+
+    /**
+     * Basic GET method that will be invoked by accessing the /appointments with no parameters.
+     * Will return all appointments that currently exist in the db. When a page size is supplied the appointments
+     * are returned one keyset page at a time instead, and the token for the next page is sent back in the
+     * X-Continuation-Token header.
+     * @param size Optional page size, capped at MAX_PAGE_SIZE
+     * @param after Optional continuation token returned with the previous page
+     * @return List of appointments scheduled
+     */
+    @GetMapping("/appointments")
+    public Mono<ResponseEntity<List<Appointment>>> getAllAppointments(@RequestParam(required = false) Integer size,
+                                                                      @RequestParam(required = false) String after){
+        if (size != null || after != null){
+            return getAppointmentPage(size, after, null);
+        }
+        return appointmentRepository.findAll()
+                .collectList()
+                .flatMap(appointments -> appointments.isEmpty()
+                        ? Mono.<ResponseEntity<List<Appointment>>>error(new AppointmentDoesNotExistException("Appointments do not exist in the DB!"))
+                        : Mono.just(new ResponseEntity<>(appointments, HttpStatus.OK)))
+                .onErrorResume(e -> !(e instanceof AppointmentDoesNotExistException),
+                        e -> Mono.just(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR)));
+    }
+
+    /**
+     * Variant of GET /appointments that reads only the listed properties of each appointment, paged the same way.
+     * @param size Optional page size, capped at MAX_PAGE_SIZE
+     * @param after Optional continuation token returned with the previous page
+     * @param fields Comma separated properties to return, such as id,timing,status,doctorId
+     * @return List of the selected properties of every appointment
+     */
+    @GetMapping(value = "/appointments", params = "fields")
+    public Mono<ResponseEntity<List<Map<String, Object>>>> getAllAppointmentFields(@RequestParam(required = false) Integer size,
+                                                                                   @RequestParam(required = false) String after,
+                                                                                   @RequestParam String fields){
+        FieldSelection selection = appointmentFields(fields);
+        if (size != null || after != null){
+            return getAppointmentPage(size, after, selection).map(response -> AppointmentController.selected(response, selection));
+        }
+        return appointmentRepository.findSelectedPage(null, 0, selection)
+                .collectList()
+                .flatMap(appointments -> appointments.isEmpty()
+                        ? Mono.<ResponseEntity<List<Map<String, Object>>>>error(new AppointmentDoesNotExistException("Appointments do not exist in the DB!"))
+                        : Mono.just(new ResponseEntity<>(selection.select(appointments), HttpStatus.OK)))
+                .onErrorResume(e -> !(e instanceof AppointmentDoesNotExistException),
+                        e -> Mono.just(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR)));
+    }
+
+    /**
+     * Streaming variant of GET /appointments for clients that accept application/x-ndjson. Appointments are
+     * written one JSON document per line as the cursor produces them, and the cursor is only read as fast as the
+     * client consumes the response.
+     * @return Every appointment, one at a time
+     */
+    @GetMapping(value = "/appointments", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Appointment> streamAllAppointments(){
+        return appointmentRepository.findAll();
+    }
+
+    /**
+     * GET mapping to retrieve appointments by any mix of clinic, doctor, patient, status, and date range. If no
+     * parameters are supplied, uses the default GET mapping to return all.
+     * @param cID Clinic id
+     * @param dID Doctor id
+     * @param pID Patient id
+     * @param status Appointment status
+     * @param from Earliest appointment date, inclusive
+     * @param to Latest appointment date, inclusive
+     * @param includeArchived Whether archived appointments are searched as well, alongside the live ones
+     * @param exchange Exchange, answered with a 304 when the If-None-Match ETag is still current
+     * @return List of appointments matching the criteria
+     */
+    @GetMapping("/appointmentsByValue")
+    public Mono<ResponseEntity<List<Appointment>>> getAppointmentsByValue(@RequestParam(required = false) String cID,
+                                                                          @RequestParam(required = false) String dID,
+                                                                          @RequestParam(required = false) String pID,
+                                                                          @RequestParam(required = false) String status,
+                                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                          @RequestParam(defaultValue = "false") boolean includeArchived,
+                                                                          ServerWebExchange exchange){
+        return listNotModified(exchange).flatMap(notModified -> {
+            if (notModified) {
+                return Mono.empty();
+            }
+            AppointmentFilter filter = AppointmentController.appointmentFilter(cID, dID, pID, status, from, to);
+            if (filter.isEmpty()){
+                return getAllAppointments(null, null);
+            }
+            return findAppointments(filter, includeArchived);
+        });
+    }
+
+    /**
+     * Variant of GET /appointmentsByValue that reads only the listed properties of each appointment
+     * @param cID Clinic id
+     * @param dID Doctor id
+     * @param pID Patient id
+     * @param status Appointment status
+     * @param from Earliest appointment date, inclusive
+     * @param to Latest appointment date, inclusive
+     * @param includeArchived Whether archived appointments are searched as well
+     * @param fields Comma separated properties to return, such as id,timing,status,doctorId
+     * @param exchange Exchange, answered with a 304 when the If-None-Match ETag is still current
+     * @return List of the selected properties of the appointments matching the criteria
+     */
+    @GetMapping(value = "/appointmentsByValue", params = "fields")
+    public Mono<ResponseEntity<List<Map<String, Object>>>> getAppointmentFieldsByValue(@RequestParam(required = false) String cID,
+                                                                                       @RequestParam(required = false) String dID,
+                                                                                       @RequestParam(required = false) String pID,
+                                                                                       @RequestParam(required = false) String status,
+                                                                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                                       @RequestParam(defaultValue = "false") boolean includeArchived,
+                                                                                       @RequestParam String fields,
+                                                                                       ServerWebExchange exchange){
+        FieldSelection selection = appointmentFields(fields);
+        return listNotModified(exchange).flatMap(notModified -> {
+            if (notModified) {
+                return Mono.empty();
+            }
+            AppointmentFilter filter = AppointmentController.appointmentFilter(cID, dID, pID, status, from, to);
+            if (filter.isEmpty()){
+                return getAllAppointmentFields(null, null, fields);
+            }
+            filter.setFields(selection);
+            return findAppointments(filter, includeArchived).map(response -> AppointmentController.selected(response, selection));
+        });
+    }
+
+    /**
+     * Helper method to read the appointments matching a filter
+     * @param filter Filter with at least one value
+     * @param includeArchived Whether archived appointments are searched as well
+     * @return List of appointments matching the filter
+     */
+    private Mono<ResponseEntity<List<Appointment>>> findAppointments(AppointmentFilter filter, boolean includeArchived) {
+        //reject filters that no index can serve before they turn into a collection scan
+        filter.requireIndex();
+
+        Mono<List<Appointment>> live = appointmentRepository.findByFilter(filter).collectList();
+        Mono<List<Appointment>> found = !includeArchived ? live
+                : Mono.zip(live, appointmentRepository.findArchivedByFilter(filter).collectList(), AppointmentController::mergeTiers);
+        return found
+                .flatMap(appointments -> appointments.isEmpty()
+                        ? Mono.<ResponseEntity<List<Appointment>>>error(new AppointmentDoesNotExistException("Appointments for PID: "+filter.getPatientId()
+                                +", Doctor Id: "+filter.getDoctorId()+", and Clinic Id: "+filter.getClinicId()+"not found!"))
+                        : Mono.just(new ResponseEntity<>(appointments, HttpStatus.OK)))
+                .onErrorResume(e -> !(e instanceof AppointmentDoesNotExistException),
+                        e -> Mono.just(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR)));
+    }
+
+    /**
+     * GET mapping to return a specific appointment based on the appointment id
+     * @param id Appointment Id
+     * @param includeArchived Whether the appointment is looked up in the archive when it is not live
+     * @param exchange Exchange, answered with a 304 when the If-None-Match ETag is still current
+     * @return Appointment in the form of a javascript object, with its version as the ETag, and an HTTP status.
+     */
+    @GetMapping("/appointments/{id}")
+    public Mono<ResponseEntity<Appointment>> getAppointmentByID(@PathVariable("id") String id,
+                                                                @RequestParam(defaultValue = "false") boolean includeArchived,
+                                                                ServerWebExchange exchange){
+        return notModified(id, exchange).flatMap(notModified -> notModified ? Mono.empty()
+                : appointmentRepository.findById(id)
+                        .switchIfEmpty(includeArchived ? appointmentRepository.findArchivedById(id) : Mono.empty())
+                        .map(appointment -> AppointmentController.versioned(appointment).body(appointment))
+                        .switchIfEmpty(Mono.error(() -> new AppointmentDoesNotExistException("Appointment with id: "+id+"not found!"))));
+    }
+
+    /**
+     * Variant of GET /appointments/{id} that reads only the listed properties of the appointment
+     * @param id Appointment Id
+     * @param includeArchived Whether the appointment is looked up in the archive when it is not live
+     * @param fields Comma separated properties to return, such as id,timing,status,doctorId
+     * @param exchange Exchange, answered with a 304 when the If-None-Match ETag is still current
+     * @return Selected properties of the appointment, with its version as the ETag, and an HTTP status.
+     */
+    @GetMapping(value = "/appointments/{id}", params = "fields")
+    public Mono<ResponseEntity<Map<String, Object>>> getAppointmentFieldsByID(@PathVariable("id") String id,
+                                                                              @RequestParam(defaultValue = "false") boolean includeArchived,
+                                                                              @RequestParam String fields,
+                                                                              ServerWebExchange exchange){
+        FieldSelection selection = appointmentFields(fields);
+        return notModified(id, exchange).flatMap(notModified -> notModified ? Mono.empty()
+                : appointmentRepository.findSelectedById(id, selection)
+                        .switchIfEmpty(includeArchived ? appointmentRepository.findArchivedById(id) : Mono.empty())
+                        .map(appointment -> AppointmentController.versioned(appointment).body(selection.select(appointment)))
+                        .switchIfEmpty(Mono.error(() -> new AppointmentDoesNotExistException("Appointment with id: "+id+"not found!"))));
+    }
+
+    /**
+     * POST mapping to create a new appointment. Validates that the id, if one is sent, is an ObjectId, that the date
+     * is in the future, that the patient, doctor, and clinic actually exist, and that the doctor is not already
+     * booked in that time slot.
+     * @param appointment The appointment to be added
+     * @return A javascript representing the appointment created, and an HTTP status.
+     */
+    @PostMapping("/appointments")
+    public Mono<ResponseEntity<Appointment>> createAppointment(@RequestBody Appointment appointment){
+        Appointment _appointment = new Appointment();
+        AppointmentController.copyAppointment(appointment, _appointment);
+        //the id is assigned up front so the slot knows who holds it
+        if (!AppointmentController.assignObjectId(_appointment)){
+            return Mono.error(new InvalidAppointmentIdException(AppointmentController.INVALID_ID_MESSAGE));
+        }
+        //Date validation
+        if (_appointment.getTiming().isBefore(LocalDateTime.now())){
+            return Mono.error(new DateNotAcceptableException(AppointmentController.NOT_FUTURE_DATE_MESSAGE));
+        }
+        //check if patient, doctor, and clinic exist
+        return referenceExistenceCache.referencesExist(_appointment.getPatientId(), _appointment.getDoctorId(), _appointment.getClinicId())
+                .flatMap(exists -> {
+                    if (!exists){
+                        return Mono.error(new NullParametersException(AppointmentController.MISSING_REFERENCE_MESSAGE));
+                    }
+                    //double booking validation
+                    if (doctorScheduleIndex.reserve(_appointment.getDoctorId(), _appointment.getTiming(), _appointment.getId())
+                            == DoctorScheduleIndex.Reservation.CONFLICT){
+                        return Mono.error(new AppointmentConflictException(AppointmentController.doubleBookingMessage(_appointment)));
+                    }
+                    _appointment.setStatus(AppointmentTransitions.SCHEDULED);
+                    return appointmentRepository.save(_appointment)
+                            .onErrorResume(e -> {
+                                doctorScheduleIndex.release(_appointment.getDoctorId(), _appointment.getTiming(), _appointment.getId());
+                                return Mono.empty();
+                            })
+                            .map(saved -> {
+                                eventPublisher.publishEvent(new AppointmentsChangedEvent(AppointmentChange.created(saved)));
+                                return new ResponseEntity<>(saved, HttpStatus.CREATED);
+                            })
+                            .defaultIfEmpty(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR));
+                });
+    }
+
+    /**
+     * POST mapping to import many appointments at once, sent either as a JSON array or as NDJSON. The body is
+     * decoded as it arrives and handled in batches, one batch at a time: each appointment goes through the same
+     * checks as createAppointment, the batch's patient, doctor, and clinic ids are resolved once, and the valid
+     * ones are written with a single unordered bulk insert.
+     * @param appointments Appointments to import
+     * @return Report with the outcome of every appointment, and an HTTP status.
+     */
+    @PostMapping(value = "/appointments/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<BulkImportReport>> importAppointments(@RequestBody Flux<Appointment> appointments){
+        BulkImportReport report = new BulkImportReport();
+        AtomicReference<Throwable> malformed = new AtomicReference<>();
+        return appointments
+                //everything before the malformed appointment is still imported, nothing after it can be read
+                .onErrorResume(CodecException.class, e -> {
+                    malformed.set(e);
+                    return Flux.empty();
+                })
+                .map(appointment -> {
+                    Appointment _appointment = new Appointment();
+                    AppointmentController.copyAppointment(appointment, _appointment);
+                    return _appointment;
+                })
+                .buffer(bulkBatchSize)
+                .concatMap(batch -> importBatch(batch, report))
+                .then(Mono.fromCallable(() -> {
+                    if (malformed.get() != null){
+                        report.add(null, "Malformed appointment: " + malformed.get().getMessage());
+                    }
+                    return new ResponseEntity<>(report, HttpStatus.OK);
+                }));
+    }
+
+    /**
+     *  PUT mapping to update an existing appointment. The 48 hour window, the current status, and, when the body
+     *  carries one, the version are checked by the same atomic update that applies the change. The new time slot
+     *  is reserved first so a reschedule cannot double book the doctor.
+     * @param id ID of the appointment to be updated
+     * @param appointment The new values to be added to the appointment
+     * @return The updated appointment, and an HTTP status
+     */
+    @PutMapping("/appointments/{id}")
+    public Mono<ResponseEntity<Appointment>> updateAppointment(@PathVariable("id")String id, @RequestBody Appointment appointment){
+        DoctorScheduleIndex.Reservation reservation = doctorScheduleIndex.reserve(appointment.getDoctorId(), appointment.getTiming(), id);
+        if(reservation == DoctorScheduleIndex.Reservation.CONFLICT){
+            return Mono.error(new AppointmentConflictException(AppointmentController.doubleBookingMessage(appointment)));
+        }
+        Runnable releaseReservation = () -> {
+            if(reservation == DoctorScheduleIndex.Reservation.RESERVED){
+                doctorScheduleIndex.release(appointment.getDoctorId(), appointment.getTiming(), id);
+            }
+        };
+        return appointmentRepository.reschedule(id, appointment, appointment.getVersion(), LocalDateTime.now())
+                .map(previous -> {
+                    if(!Objects.equals(previous.getDoctorId(), appointment.getDoctorId())
+                            || !doctorScheduleIndex.sameSlot(previous.getTiming(), appointment.getTiming())){
+                        doctorScheduleIndex.release(previous.getDoctorId(), previous.getTiming(), id);
+                    }
+                    Appointment updated = AppointmentTransitions.applyReschedule(previous, appointment);
+                    eventPublisher.publishEvent(new AppointmentsChangedEvent(AppointmentChange.rescheduled(previous, updated)));
+                    return new ResponseEntity<>(updated, HttpStatus.OK);
+                })
+                .onErrorResume(e -> {
+                    releaseReservation.run();
+                    return Mono.just(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR));
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    releaseReservation.run();
+                    return rejectedTransition(id, "The requested Appointment does not yet exist in the system!",
+                            "Cannot reschedule within a 48 hour window!");
+                }));
+    }
+
+    /**
+     * DELETE mapping to soft delete appointments by setting their status to Cancelled, as one atomic update, and
+     * free the doctor's time slot
+     * @param id ID of appointment to cancel
+     * @param version Optional version the client last saw, the cancel is refused if the appointment changed since
+     * @return Cancelled appointment, and an HTTP status.
+     */
+    @DeleteMapping("/appointments/{id}")
+    public Mono<ResponseEntity<Appointment>> deleteAppointmentByID(@PathVariable("id") String id,
+                                                                   @RequestParam(required = false) Long version){
+        return appointmentRepository.cancel(id, version, LocalDateTime.now())
+                .map(previous -> {
+                    Appointment _appointment = AppointmentTransitions.applyCancel(previous);
+                    doctorScheduleIndex.release(_appointment.getDoctorId(), _appointment.getTiming(), id);
+                    eventPublisher.publishEvent(new AppointmentsChangedEvent(AppointmentChange.cancelled(previous, _appointment)));
+                    return new ResponseEntity<>(_appointment, HttpStatus.OK);
+                })
+                .onErrorResume(e -> Mono.just(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR)))
+                .switchIfEmpty(Mono.defer(() -> rejectedTransition(id, "Appointment does not exist!",
+                        "Cannot cancel within a 48 hour window!")));
+    }
+
+    /**
+     * Helper method to explain why an atomic reschedule or cancel matched nothing. Only runs on the failure path.
+     * @param id ID of the appointment
+     * @param notFoundMessage Message if the appointment does not exist
+     * @param windowMessage Message if the appointment is within its 48 hour window
+     * @return Error signal with the exception explaining the rejection
+     */
+    private <T> Mono<T> rejectedTransition(String id, String notFoundMessage, String windowMessage) {
+        return appointmentRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new AppointmentDoesNotExistException(notFoundMessage)))
+                .flatMap(current -> {
+                    if(current.getTiming() != null && AppointmentTransitions.withinChangeWindow(current.getTiming(), LocalDateTime.now())){
+                        return Mono.error(new DateNotAcceptableException(windowMessage));
+                    }
+                    return Mono.error(new AppointmentConflictException("Appointment with id: "+id+" is "+current.getStatus()
+                            +" at version "+current.getVersion()+" and was not changed!"));
+                });
+    }
+
+    /**
+     * Helper method to read one keyset page of appointments ordered by id.
+     * @param size Requested page size
+     * @param after Continuation token of the previous page, or null for the first page
+     * @param fields Properties to read, or null for whole appointments
+     * @return Page of appointments, with the next continuation token in a header when more may follow
+     */
+    private Mono<ResponseEntity<List<Appointment>>> getAppointmentPage(Integer size, String after, FieldSelection fields) {
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(size == null ? AppointmentController.MAX_PAGE_SIZE : size,
+                AppointmentController.MAX_PAGE_SIZE)));
+        String lastId = after == null ? null : AppointmentController.decodeContinuationToken(after);
+        Flux<Appointment> appointments;
+        if (fields != null) {
+            appointments = appointmentRepository.findSelectedPage(lastId, page.getPageSize(), fields);
+        } else {
+            appointments = lastId == null
+                    ? appointmentRepository.findAllByOrderByIdAsc(page)
+                    : appointmentRepository.findByIdGreaterThanOrderByIdAsc(lastId, page);
+        }
+        return appointments.collectList()
+                .flatMap(found -> {
+                    if (found.isEmpty() && lastId == null) {
+                        return Mono.<ResponseEntity<List<Appointment>>>error(new AppointmentDoesNotExistException("Appointments do not exist in the DB!"));
+                    }
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (found.size() == page.getPageSize()) {
+                        response.header(AppointmentController.CONTINUATION_TOKEN_HEADER,
+                                AppointmentController.encodeContinuationToken(found.get(found.size() - 1).getId()));
+                    }
+                    return Mono.just(response.body(found));
+                })
+                .onErrorResume(e -> !(e instanceof AppointmentDoesNotExistException),
+                        e -> Mono.just(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR)));
+    }
+
+    /**
+     * Helper method to answer a conditional GET of one appointment from its version alone, before the appointment
+     * itself is read
+     * @param id ID of the appointment
+     * @param exchange Exchange whose request may carry an If-None-Match ETag
+     * @return Whether the client's copy is current, in which case the response is already a 304
+     */
+    private Mono<Boolean> notModified(String id, ServerWebExchange exchange) {
+        if (exchange.getRequest().getHeaders().getIfNoneMatch().isEmpty()) {
+            return Mono.just(false);
+        }
+        return appointmentRepository.findVersionById(id)
+                .map(version -> version.getVersion() != null
+                        && exchange.checkNotModified(AppointmentController.versionETag(version.getVersion())))
+                .defaultIfEmpty(false);
+    }
+
+    /**
+     * Helper method to answer a conditional GET of an appointment list from the number of appointment writes so far.
+     * The count is read before the list, so a list is never tagged with a count newer than itself.
+     * @param exchange Exchange whose request may carry an If-None-Match ETag
+     * @return Whether the client's copy is current, in which case the response is already a 304. Otherwise the
+     * response carries the current ETag.
+     */
+    private Mono<Boolean> listNotModified(ServerWebExchange exchange) {
+        return appointmentChangeCounter.readCurrent()
+                .map(changes -> exchange.checkNotModified(AppointmentController.listETag(changes)))
+                //the list is still served, only without an ETag
+                .onErrorReturn(false);
+    }
+
+    /**
+     * Helper method to check the fields= parameter of an appointment read
+     * @param fields Comma separated property names
+     * @return The selected appointment properties
+     */
+    private FieldSelection appointmentFields(String fields) {
+        return FieldSelection.parse(fields, mappingContext.getRequiredPersistentEntity(Appointment.class));
+    }
+
+    /**
+     * Helper method to validate and insert one batch of a bulk import
+     * @param batch Appointments to import, in file order
+     * @param report Report to add the outcome of every appointment to
+     * @return Completes once the outcome of every appointment is in the report
+     */
+    private Mono<Void> importBatch(List<Appointment> batch, BulkImportReport report) {
+        String[] errors = new String[batch.size()];
+        Set<String> patientIds = new HashSet<>();
+        Set<String> doctorIds = new HashSet<>();
+        Set<String> clinicIds = new HashSet<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < batch.size(); i++) {
+            Appointment _appointment = batch.get(i);
+            if (!AppointmentController.assignObjectId(_appointment)) {
+                errors[i] = AppointmentController.INVALID_ID_MESSAGE;
+            } else if (_appointment.getTiming() == null || _appointment.getTiming().isBefore(now)) {
+                errors[i] = AppointmentController.NOT_FUTURE_DATE_MESSAGE;
+            } else {
+                patientIds.add(_appointment.getPatientId());
+                doctorIds.add(_appointment.getDoctorId());
+                clinicIds.add(_appointment.getClinicId());
+            }
+        }
+        return Mono.zip(referenceExistenceCache.existingPatientIds(patientIds),
+                        referenceExistenceCache.existingDoctorIds(doctorIds),
+                        referenceExistenceCache.existingClinicIds(clinicIds))
+                .flatMap(existing -> {
+                    List<Appointment> accepted = new ArrayList<>();
+                    List<Integer> acceptedPositions = new ArrayList<>();
+                    for (int i = 0; i < batch.size(); i++) {
+                        Appointment _appointment = batch.get(i);
+                        if (errors[i] != null) {
+                            continue;
+                        }
+                        if (!existing.getT1().contains(_appointment.getPatientId()) || !existing.getT2().contains(_appointment.getDoctorId())
+                                || !existing.getT3().contains(_appointment.getClinicId())) {
+                            errors[i] = AppointmentController.MISSING_REFERENCE_MESSAGE;
+                            continue;
+                        }
+                        if (doctorScheduleIndex.reserve(_appointment.getDoctorId(), _appointment.getTiming(), _appointment.getId())
+                                == DoctorScheduleIndex.Reservation.CONFLICT) {
+                            errors[i] = AppointmentController.doubleBookingMessage(_appointment);
+                            continue;
+                        }
+                        _appointment.setStatus(AppointmentTransitions.SCHEDULED);
+                        accepted.add(_appointment);
+                        acceptedPositions.add(i);
+                    }
+                    return appointmentRepository.insertUnordered(accepted)
+                            .onErrorResume(e -> {
+                                Map<Integer, String> failures = new HashMap<>();
+                                for (int i = 0; i < accepted.size(); i++) {
+                                    failures.put(i, "Appointment could not be saved!");
+                                }
+                                return Mono.just(failures);
+                            })
+                            .doOnNext(failures -> {
+                                List<AppointmentChange> created = new ArrayList<>(accepted.size());
+                                for (int i = 0; i < accepted.size(); i++) {
+                                    int position = acceptedPositions.get(i);
+                                    Appointment _appointment = batch.get(position);
+                                    if (failures.containsKey(i)) {
+                                        errors[position] = failures.get(i);
+                                        doctorScheduleIndex.release(_appointment.getDoctorId(), _appointment.getTiming(), _appointment.getId());
+                                    } else {
+                                        created.add(AppointmentChange.created(_appointment));
+                                    }
+                                }
+                                if (!created.isEmpty()) {
+                                    eventPublisher.publishEvent(new AppointmentsChangedEvent(created));
+                                }
+                            });
+                })
+                .doOnSuccess(failures -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        report.add(batch.get(i).getId(), errors[i]);
+                    }
+                })
+                .then();
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.domain.ScheduleRollup;
+import com.astral004.appointmentapi.exception.AppointmentDoesNotExistException;
+import com.astral004.appointmentapi.exception.UnindexedQueryException;
+import com.astral004.appointmentapi.repository.ScheduleRollupRepository;
+import com.astral004.appointmentapi.rollup.ScheduleRollupMaintainer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Daily appointment counts and copay totals per doctor and clinic, for capacity planning. Served from the schedule
+ * rollups, so a summary over any range reads one small document per doctor, clinic, and day.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ScheduleSummaryController {
+
+    @Autowired
+    private ScheduleRollupRepository scheduleRollupRepository;
+    @Autowired
+    private ScheduleRollupMaintainer scheduleRollupMaintainer;
+
+    /**
+     * GET mapping to summarize the appointments of a doctor, a clinic, or a doctor at a clinic, day by day. Every
+     * day holds the number of appointments and the sum of their copays by status, with one entry per clinic the
+     * doctor works at, or per doctor working at the clinic.
+     * @param dID Doctor id
+     * @param cID Clinic id
+     * @param from Earliest day, inclusive
+     * @param to Latest day, inclusive
+     * @return List of daily rollups ordered by day
+     */
+    @GetMapping("/scheduleSummary")
+    public ResponseEntity<List<ScheduleRollup>> getScheduleSummary(@RequestParam(required = false) String dID,
+                                                                   @RequestParam(required = false) String cID,
+                                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to){
+        if (dID == null && cID == null) {
+            throw new UnindexedQueryException("Schedule summaries are kept per doctor and clinic, add a clinic or doctor!");
+        }
+        try {
+            List<ScheduleRollup> rollups = scheduleRollupRepository.findSummary(dID, cID, from, to);
+            if (rollups.isEmpty()) {
+                throw new AppointmentDoesNotExistException("Appointments for Doctor Id: "+dID+", and Clinic Id: "+cID+" not found!");
+            }
+            return new ResponseEntity<>(rollups, HttpStatus.OK);
+        } catch (Exception e) {
+            if(e instanceof AppointmentDoesNotExistException) throw e;
+            else return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * POST mapping to recount every schedule rollup from the live and archived appointments, for example after
+     * appointments were loaded around the application.
+     * @return An HTTP status
+     */
+    @PostMapping("/scheduleSummary/rebuild")
+    public ResponseEntity<Void> rebuildScheduleSummary(){
+        try {
+            scheduleRollupMaintainer.rebuild();
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.astral004.appointmentapi.directory;
+
+import com.astral004.appointmentapi.domain.Address;
+import com.astral004.appointmentapi.domain.Clinic;
+import com.astral004.appointmentapi.dto.ClinicListing;
+import com.astral004.appointmentapi.repository.AddressRepository;
+import com.astral004.appointmentapi.repository.ClinicRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Read-only copy of every clinic joined with its address, so clinic listings and nearest-clinic queries are
+ * answered without touching the database. Every refresh builds a whole new snapshot and swaps it in at once, so a
+ * reader sees either the old directory or the new one. Clinics are refreshed on a background thread whenever a
+ * clinic or one of their addresses is written, so the write does not wait for the whole directory to be reloaded,
+ * and everything, including the zip code centres, on a timer.
+ */
+@Slf4j
+@Component
+public class ClinicDirectory {
+
+    static final String CLINICS = "clinics";
+    static final String ADDRESSES = "addresses";
+
+    @Autowired
+    private ClinicRepository clinicRepository;
+    @Autowired
+    private AddressRepository addressRepository;
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyList(), Collections.emptyMap(), Collections.emptySet());
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private ExecutorService refreshExecutor;
+
+    @PostConstruct
+    void createExecutor() {
+        refreshExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("clinic-directory-"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * @return Every clinic ordered by id
+     */
+    public List<ClinicListing> getClinics() {
+        return snapshot.clinics;
+    }
+
+    /**
+     * @return The clinic with this id, or null if it does not exist
+     */
+    public ClinicListing getClinic(String id) {
+        return snapshot.byId.get(id);
+    }
+
+    /**
+     * Finds the clinics closest to a point. Clinics whose address has no coordinates are never found.
+     * @param limit Maximum number of clinics
+     * @param maxKm Furthest a clinic may be, or null for no limit
+     * @return The closest clinics with their distances, closest first
+     */
+    public List<ClinicListing> findNearest(double latitude, double longitude, int limit, Double maxKm) {
+        return snapshot.tree.nearest(latitude, longitude, limit, maxKm);
+    }
+
+    /**
+     * @return The centre of the located addresses in a zip code, with x the longitude and y the latitude, or null
+     * if none are known
+     */
+    public Point locateZipCode(String zipCode) {
+        return snapshot.zipCodes.get(zipCode);
+    }
+
+    /**
+     * Rebuilds the whole directory, zip code centres included.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${appointments.clinic-directory.refresh-ms:600000}",
+               fixedDelayString = "${appointments.clinic-directory.refresh-ms:600000}")
+    public void refresh() {
+        try {
+            refresh(addressRepository.findZipCodeCentroids());
+        } catch (Exception e) {
+            //queries keep using the previous snapshot
+            log.warn("Could not refresh the clinic directory", e);
+        }
+    }
+
+    /**
+     * Rebuilds the clinics, keeping the zip code centres of the current snapshot.
+     */
+    public void refreshClinics() {
+        try {
+            refresh(snapshot.zipCodes);
+        } catch (Exception e) {
+            log.warn("Could not refresh the clinics of the clinic directory", e);
+        }
+    }
+
+    @EventListener
+    public void onAfterSave(AfterSaveEvent<?> event) {
+        Object id = event.getDocument() == null ? null : event.getDocument().get("_id");
+        if (CLINICS.equals(event.getCollectionName())
+                || ADDRESSES.equals(event.getCollectionName()) && id != null && snapshot.addressIds.contains(id.toString())) {
+            refreshInBackground();
+        }
+    }
+
+    @EventListener
+    public void onAfterDelete(AfterDeleteEvent<?> event) {
+        Object id = event.getSource() == null ? null : event.getSource().get("_id");
+        //deletes by anything but a single id could have removed any address
+        if (CLINICS.equals(event.getCollectionName())
+                || ADDRESSES.equals(event.getCollectionName()) && (id == null || id instanceof Document
+                                                                   || snapshot.addressIds.contains(id.toString()))) {
+            refreshInBackground();
+        }
+    }
+
+    /**
+     * Helper method to refresh the clinics on the refresh thread. Writes made while a refresh is waiting to start
+     * are all picked up by that refresh, so a burst of writes costs at most one refresh more than the one running.
+     */
+    private void refreshInBackground() {
+        if (refreshQueued.compareAndSet(false, true)) {
+            refreshExecutor.execute(() -> {
+                refreshQueued.set(false);
+                refreshClinics();
+            });
+        }
+    }
+
+    /**
+     * Helper method to read every clinic and its address and swap in the snapshot built from them. Refreshes run
+     * one at a time, so an older read can never replace a newer one.
+     */
+    private synchronized void refresh(Map<String, Point> zipCodes) {
+        List<Clinic> clinics = clinicRepository.findAll();
+        Set<String> addressIds = new HashSet<>();
+        for (Clinic clinic : clinics) {
+            if (clinic.getAddressId() != null) {
+                addressIds.add(clinic.getAddressId());
+            }
+        }
+        Map<String, Address> addresses = new HashMap<>();
+        for (Address address : addressRepository.findAllById(addressIds)) {
+            addresses.put(address.getId(), address);
+        }
+
+        List<ClinicListing> listings = new ArrayList<>(clinics.size());
+        for (Clinic clinic : clinics) {
+            Address address = clinic.getAddressId() == null ? null : addresses.get(clinic.getAddressId());
+            listings.add(address == null
+                    ? new ClinicListing(clinic.getId(), clinic.getName(), clinic.getPhoneNumber(), clinic.getAddressId(),
+                                        null, null, null, null, null, null, null)
+                    : new ClinicListing(clinic.getId(), clinic.getName(), clinic.getPhoneNumber(), clinic.getAddressId(),
+                                        address.getStreet(), address.getCity(), address.getState(), address.getZipCode(),
+                                        address.getLatitude(), address.getLongitude(), null));
+        }
+        listings.sort(Comparator.comparing(ClinicListing::getId));
+        snapshot = new Snapshot(listings, zipCodes, addressIds);
+        log.info("Loaded {} clinics into the clinic directory, {} of them located", listings.size(), snapshot.tree.size());
+    }
+
+    /**
+     * Everything the directory answers from, never changed once built.
+     */
+    private static final class Snapshot {
+        final List<ClinicListing> clinics;
+        final Map<String, ClinicListing> byId;
+        final Set<String> addressIds;
+        final Map<String, Point> zipCodes;
+        final ClinicKdTree tree;
+
+        Snapshot(List<ClinicListing> clinics, Map<String, Point> zipCodes, Set<String> addressIds) {
+            Map<String, ClinicListing> byId = new LinkedHashMap<>();
+            List<ClinicListing> located = new ArrayList<>();
+            for (ClinicListing clinic : clinics) {
+                byId.put(clinic.getId(), clinic);
+                if (clinic.getLatitude() != null && clinic.getLongitude() != null) {
+                    located.add(clinic);
+                }
+            }
+            this.clinics = Collections.unmodifiableList(new ArrayList<>(clinics));
+            this.byId = Collections.unmodifiableMap(byId);
+            this.addressIds = Collections.unmodifiableSet(new HashSet<>(addressIds));
+            this.zipCodes = Collections.unmodifiableMap(new HashMap<>(withClinicZipCodes(zipCodes, clinics)));
+            this.tree = new ClinicKdTree(located);
+        }
+
+        /**
+         * Helper method to make sure the zip code of every located clinic can be found, even before the next
+         * centroid refresh
+         */
+        private static Map<String, Point> withClinicZipCodes(Map<String, Point> zipCodes, List<ClinicListing> clinics) {
+            Map<String, Point> all = new HashMap<>(zipCodes);
+            for (ClinicListing clinic : clinics) {
+                if (clinic.getZipCode() != null && clinic.getLatitude() != null && clinic.getLongitude() != null) {
+                    all.putIfAbsent(clinic.getZipCode(), new Point(clinic.getLongitude(), clinic.getLatitude()));
+                }
+            }
+            return all;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.astral004.appointmentapi.directory;
+
+import com.astral004.appointmentapi.dto.ClinicListing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Static k-d tree over the located clinics, for nearest-clinic queries. Each clinic is kept as a point on the unit
+ * sphere, so distances are straight chords through the earth: they order the same as distances along its surface
+ * and need no special cases at the poles or across the antimeridian. The tree is never changed once built.
+ */
+final class ClinicKdTree {
+
+    static final double EARTH_RADIUS_KM = 6371.0088;
+
+    /** Clinics in tree order: the node of a range is its middle element, its subtrees the halves either side. */
+    private final ClinicListing[] clinics;
+    /** x, y, and z of every clinic, in tree order */
+    private final double[] points;
+
+    /**
+     * @param located Clinics that all have a latitude and longitude
+     */
+    ClinicKdTree(List<ClinicListing> located) {
+        List<Node> nodes = new ArrayList<>(located.size());
+        for (ClinicListing clinic : located) {
+            nodes.add(new Node(clinic, toPoint(clinic.getLatitude(), clinic.getLongitude())));
+        }
+        build(nodes, 0, nodes.size(), 0);
+        clinics = new ClinicListing[nodes.size()];
+        points = new double[nodes.size() * 3];
+        for (int i = 0; i < nodes.size(); i++) {
+            clinics[i] = nodes.get(i).clinic;
+            System.arraycopy(nodes.get(i).point, 0, points, i * 3, 3);
+        }
+    }
+
+    int size() {
+        return clinics.length;
+    }
+
+    /**
+     * Finds the clinics closest to a point.
+     * @param limit Maximum number of clinics
+     * @param maxKm Furthest a clinic may be, or null for no limit
+     * @return Copies of the closest clinics with their distances, closest first
+     */
+    List<ClinicListing> nearest(double latitude, double longitude, int limit, Double maxKm) {
+        if (limit <= 0 || clinics.length == 0) {
+            return Collections.emptyList();
+        }
+        Search search = new Search(toPoint(latitude, longitude), limit,
+                maxKm == null ? Double.POSITIVE_INFINITY : squaredChord(maxKm));
+        search(search, 0, clinics.length, 0);
+
+        List<ClinicListing> nearest = new ArrayList<>(search.found.size());
+        while (!search.found.isEmpty()) {
+            Found found = search.found.poll();
+            double chord = Math.sqrt(found.squaredChord);
+            nearest.add(clinics[found.index].withDistanceKm(2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, chord / 2))));
+        }
+        Collections.reverse(nearest);
+        return nearest;
+    }
+
+    private void search(Search search, int from, int to, int axis) {
+        if (from >= to) {
+            return;
+        }
+        int node = (from + to) >>> 1;
+        double squaredChord = 0;
+        for (int i = 0; i < 3; i++) {
+            double difference = search.point[i] - points[node * 3 + i];
+            squaredChord += difference * difference;
+        }
+        search.offer(node, squaredChord);
+
+        double split = search.point[axis] - points[node * 3 + axis];
+        int next = (axis + 1) % 3;
+        if (split < 0) {
+            search(search, from, node, next);
+            if (split * split < search.bound()) {
+                search(search, node + 1, to, next);
+            }
+        } else {
+            search(search, node + 1, to, next);
+            if (split * split < search.bound()) {
+                search(search, from, node, next);
+            }
+        }
+    }
+
+    /**
+     * Helper method to order a range of nodes into a subtree, splitting on x, y, and z in turn
+     */
+    private static void build(List<Node> nodes, int from, int to, int axis) {
+        if (to - from <= 1) {
+            return;
+        }
+        nodes.subList(from, to).sort(Comparator.comparingDouble(node -> node.point[axis]));
+        int middle = (from + to) >>> 1;
+        build(nodes, from, middle, (axis + 1) % 3);
+        build(nodes, middle + 1, to, (axis + 1) % 3);
+    }
+
+    private static double[] toPoint(double latitude, double longitude) {
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        return new double[]{Math.cos(phi) * Math.cos(lambda), Math.cos(phi) * Math.sin(lambda), Math.sin(phi)};
+    }
+
+    /**
+     * @return The squared chord, on the unit sphere, of a distance along the earth's surface
+     */
+    private static double squaredChord(double km) {
+        double chord = 2 * Math.sin(Math.min(Math.PI, km / EARTH_RADIUS_KM) / 2);
+        return chord * chord;
+    }
+
+    private static final class Node {
+        final ClinicListing clinic;
+        final double[] point;
+
+        Node(ClinicListing clinic, double[] point) {
+            this.clinic = clinic;
+            this.point = point;
+        }
+    }
+
+    private static final class Found {
+        final int index;
+        final double squaredChord;
+
+        Found(int index, double squaredChord) {
+            this.index = index;
+            this.squaredChord = squaredChord;
+        }
+    }
+
+    /**
+     * The closest clinics so far, furthest on top so it is the one replaced.
+     */
+    private static final class Search {
+        final double[] point;
+        final int limit;
+        final double maxSquaredChord;
+        final PriorityQueue<Found> found;
+
+        Search(double[] point, int limit, double maxSquaredChord) {
+            this.point = point;
+            this.limit = limit;
+            this.maxSquaredChord = maxSquaredChord;
+            this.found = new PriorityQueue<>(limit + 1, Comparator.comparingDouble((Found f) -> f.squaredChord).reversed());
+        }
+
+        void offer(int index, double squaredChord) {
+            if (squaredChord > maxSquaredChord) {
+                return;
+            }
+            if (found.size() < limit) {
+                found.add(new Found(index, squaredChord));
+            } else if (squaredChord < found.peek().squaredChord) {
+                found.poll();
+                found.add(new Found(index, squaredChord));
+            }
+        }
+
+        /**
+         * @return How close a subtree must come to still hold a clinic worth finding
+         */
+        double bound() {
+            return found.size() < limit ? maxSquaredChord : found.peek().squaredChord;
+        }
+    }
+}
@@ -13,10 +13,14 @@ import org.springframework.data.mongodb.core.mapping.Document;
 @Document(collection = "addresses")
 public class Address {
 
+    @Id
+    String id;
     String street;
     String city;
     String state;
     String zipCode;
+    Double latitude;
+    Double longitude;
 
     @Setter(AccessLevel.NONE)
     final static String country = "United States";
@@ -1,28 +1,49 @@
 package com.astral004.appointmentapi.domain;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Date;
 
 @Getter
 @Setter
 
 @Document(collection = "appointments")
+@CompoundIndexes({
+        @CompoundIndex(name = "patient_timing", def = "{'patientId': 1, 'timing': 1}"),
+        @CompoundIndex(name = "doctor_timing", def = "{'doctorId': 1, 'timing': 1}"),
+        @CompoundIndex(name = "clinic_timing", def = "{'clinicId': 1, 'timing': 1}")
+})
 public class Appointment {
+    /**
+     * Collection the archiver moves appointments to once they are past the archive horizon. It carries the same
+     * indexes as the live collection, so the same filters can be read from both.
+     */
+    public static final String ARCHIVE_COLLECTION = "appointments_archive";
+
     @Id
     String id;
     String patientId;
     String doctorId;
     String clinicId;
-    LocalDate timing;
+    @Indexed(name = "timing")
+    @JsonDeserialize(using = FlexibleLocalDateTimeDeserializer.class)
+    LocalDateTime timing;
     String description;
     String insuranceId;
     Integer copay;
     String status;
+    @Version
+    Long version;
 }
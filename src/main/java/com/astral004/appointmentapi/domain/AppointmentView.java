@@ -0,0 +1,51 @@
+package com.astral004.appointmentapi.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Display ready copy of an appointment, with the names and contact details of its patient, doctor, and clinic
+ * stored next to it so a whole screen of appointments is read with one query. The rows are written only by
+ * {@link com.astral004.appointmentapi.view.AppointmentViewMaintainer}. The indexes carry the same names as the
+ * ones on {@link Appointment} so an {@link com.astral004.appointmentapi.repository.AppointmentFilter} works on both.
+ */
+@Getter
+@Setter
+@ToString
+@Document(collection = "appointment_views")
+@CompoundIndexes({
+        @CompoundIndex(name = "patient_timing", def = "{'patientId': 1, 'timing': 1}"),
+        @CompoundIndex(name = "doctor_timing", def = "{'doctorId': 1, 'timing': 1}"),
+        @CompoundIndex(name = "clinic_timing", def = "{'clinicId': 1, 'timing': 1}")
+})
+public class AppointmentView {
+    @Id
+    String id;
+    String patientId;
+    String patientName;
+    String patientPhoneNumber;
+    String doctorId;
+    String doctorName;
+    String doctorSpecialty;
+    String clinicId;
+    String clinicName;
+    String clinicPhoneNumber;
+    Address clinicAddress;
+    @Indexed(name = "timing")
+    LocalDateTime timing;
+    String description;
+    String insuranceId;
+    Integer copay;
+    String status;
+    Long version;
+    @Indexed(name = "refreshed_at")
+    LocalDateTime refreshedAt;
+}
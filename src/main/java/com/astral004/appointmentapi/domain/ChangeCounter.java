@@ -0,0 +1,22 @@
+package com.astral004.appointmentapi.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Number of writes made so far to a collection, so a client can tell whether a list it read has changed by
+ * comparing one number instead of reading the list again.
+ */
+@Getter
+@Setter
+@ToString
+@Document(collection = "change_counters")
+public class ChangeCounter {
+    /** Name of the counted collection */
+    @Id
+    String id;
+    long count;
+}
@@ -0,0 +1,28 @@
+package com.astral004.appointmentapi.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Partition holding the appointments of one clinic. A clinic is placed when its first appointment is written after
+ * partitioning was set up, and only moves when it is rebalanced. Kept in the home database with the other
+ * reference data.
+ */
+@Getter
+@Setter
+@ToString
+@Document(collection = "clinic_placements")
+public class ClinicPlacement {
+    /** Clinic id */
+    @Id
+    String id;
+    /** Partition every read and write of the clinic goes to */
+    int partition;
+    /** Partition the clinic is being moved to, or null */
+    Integer target;
+    /** Whether writes to the clinic are held off while its move is finished */
+    boolean frozen;
+}
@@ -4,6 +4,7 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.List;
@@ -12,8 +13,13 @@ import java.util.List;
 @Setter
 @ToString
 @Document(collection = "doctors")
+@CompoundIndex(name = "specialty_clinic", def = "{'specialty': 1, 'clinicIds': 1}")
 public class Doctor extends Person{
     @Id
     String id;
     String specialty;
+    /**
+     * Clinics the doctor sees patients at.
+     */
+    List<String> clinicIds;
 }
@@ -0,0 +1,32 @@
+package com.astral004.appointmentapi.domain;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Reads appointment times with time of day, while still accepting the plain dates clients sent before timing had
+ * a time of day. A plain date means the start of that day.
+ */
+public class FlexibleLocalDateTimeDeserializer extends LocalDateTimeDeserializer {
+
+    private static final int ISO_DATE_LENGTH = 10;
+
+    public FlexibleLocalDateTimeDeserializer() {
+        super(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+
+    @Override
+    public LocalDateTime deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.hasToken(JsonToken.VALUE_STRING) && parser.getText().trim().length() == ISO_DATE_LENGTH) {
+            return LocalDate.parse(parser.getText().trim()).atStartOfDay();
+        }
+        return super.deserialize(parser, context);
+    }
+}
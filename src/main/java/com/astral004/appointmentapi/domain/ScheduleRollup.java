@@ -0,0 +1,37 @@
+package com.astral004.appointmentapi.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Appointments of one doctor at one clinic on one day, counted as they are created, rescheduled, and cancelled so
+ * a schedule summary never reads the appointments themselves.
+ */
+@Getter
+@Setter
+@ToString
+@Document(collection = "schedule_rollups")
+@CompoundIndexes({
+        @CompoundIndex(name = "doctor_day", def = "{'doctorId': 1, 'day': 1}"),
+        @CompoundIndex(name = "clinic_day", def = "{'clinicId': 1, 'day': 1}")
+})
+public class ScheduleRollup {
+    /** doctorId/clinicId/day, so concurrent first writes to a rollup upsert the same document */
+    @Id
+    String id;
+    String doctorId;
+    String clinicId;
+    LocalDate day;
+    /** Number of appointments by status */
+    Map<String, Long> counts;
+    /** Sum of the copays of the appointments by status */
+    Map<String, Long> copays;
+}
@@ -0,0 +1,39 @@
+package com.astral004.appointmentapi.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per item report of a bulk import, in the order the appointments were submitted.
+ */
+@Getter
+@ToString
+public class BulkImportReport {
+
+    public static final String CREATED = "Created";
+    public static final String REJECTED = "Rejected";
+
+    int received;
+    int created;
+    int rejected;
+    final List<BulkImportResult> results = new ArrayList<>();
+
+    /**
+     * Records the outcome of the next appointment in the file.
+     * @param id Id of the appointment
+     * @param error Reason it was rejected, or null if it was created
+     */
+    public void add(String id, String error) {
+        if (error == null) {
+            created++;
+            results.add(new BulkImportResult(received, id, CREATED, null));
+        } else {
+            rejected++;
+            results.add(new BulkImportResult(received, id, REJECTED, error));
+        }
+        received++;
+    }
+}
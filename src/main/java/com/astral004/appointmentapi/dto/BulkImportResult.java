@@ -0,0 +1,22 @@
+package com.astral004.appointmentapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Outcome of one appointment in a bulk import, identified by its position in the submitted file.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportResult {
+    int index;
+    String id;
+    String status;
+    String error;
+}
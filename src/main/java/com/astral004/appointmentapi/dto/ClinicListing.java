@@ -0,0 +1,31 @@
+package com.astral004.appointmentapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A clinic joined with its address, as listed by the clinic directory. Listings are shared by every reader of a
+ * directory snapshot, so they cannot be changed; a nearest-clinic answer is a copy carrying its distance.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ClinicListing {
+    final String id;
+    final String name;
+    final String phoneNumber;
+    final String addressId;
+    final String street;
+    final String city;
+    final String state;
+    final String zipCode;
+    final Double latitude;
+    final Double longitude;
+    /** Kilometres from the point asked about, only set on nearest-clinic answers */
+    final Double distanceKm;
+
+    public ClinicListing withDistanceKm(double distanceKm) {
+        return new ClinicListing(id, name, phoneNumber, addressId, street, city, state, zipCode, latitude, longitude, distanceKm);
+    }
+}
@@ -0,0 +1,28 @@
+package com.astral004.appointmentapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A free slot of a doctor, with enough of the doctor to offer it to a patient. The clinics are the one asked for,
+ * or every clinic the doctor sees patients at.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class DoctorOpening {
+    String doctorId;
+    String firstName;
+    String lastName;
+    String specialty;
+    List<String> clinicIds;
+    LocalDateTime timing;
+}
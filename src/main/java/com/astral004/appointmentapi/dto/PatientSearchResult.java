@@ -0,0 +1,24 @@
+package com.astral004.appointmentapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * One patient found by a patient search, with enough of the patient to tell the matches apart. The higher the
+ * score, the better the patient matched.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatientSearchResult {
+    String id;
+    String firstName;
+    String lastName;
+    String phoneNumber;
+    double score;
+}
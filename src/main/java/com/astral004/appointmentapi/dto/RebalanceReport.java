@@ -0,0 +1,27 @@
+package com.astral004.appointmentapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Outcome of moving a clinic to another partition, counting live and archived appointments together.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class RebalanceReport {
+    String clinicId;
+    int from;
+    int to;
+    /** Appointments copied while the clinic was still written in its old partition */
+    long copied;
+    /** Appointments copied again or dropped from the copy because they changed during the copy */
+    long synced;
+    /** Appointments removed from the old partition */
+    long removed;
+}
@@ -0,0 +1,38 @@
+package com.astral004.appointmentapi.event;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * One committed change to an appointment, with its state after the change and, for a reschedule, before it.
+ */
+@Getter
+@ToString
+public class AppointmentChange {
+
+    public enum Type {CREATED, RESCHEDULED, CANCELLED}
+
+    private final Type type;
+    /** State before the change, kept for a reschedule and a cancel. A creation has none */
+    private final Appointment previous;
+    private final Appointment current;
+
+    public AppointmentChange(Type type, Appointment previous, Appointment current) {
+        this.type = type;
+        this.previous = previous;
+        this.current = current;
+    }
+
+    public static AppointmentChange created(Appointment appointment) {
+        return new AppointmentChange(Type.CREATED, null, appointment);
+    }
+
+    public static AppointmentChange rescheduled(Appointment previous, Appointment current) {
+        return new AppointmentChange(Type.RESCHEDULED, previous, current);
+    }
+
+    public static AppointmentChange cancelled(Appointment previous, Appointment cancelled) {
+        return new AppointmentChange(Type.CANCELLED, previous, cancelled);
+    }
+}
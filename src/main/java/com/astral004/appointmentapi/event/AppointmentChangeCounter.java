@@ -0,0 +1,80 @@
+package com.astral004.appointmentapi.event;
+
+import com.astral004.appointmentapi.domain.ChangeCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Counts the writes to the appointments, so list responses can carry an ETag that changes whenever any appointment
+ * does. Every create, reschedule, cancel, and archived batch bumps the count in the request that made it, after the
+ * write, so a list read after a write never carries the count from before it. Writes made around the application,
+ * straight to Mongo, are not counted.
+ */
+@Slf4j
+@Component
+public class AppointmentChangeCounter {
+
+    static final String COUNTER_ID = "appointments";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    /**
+     * @return Number of appointment writes counted so far, read from one small document
+     */
+    public long current() {
+        ChangeCounter counter = mongoTemplate.findById(COUNTER_ID, ChangeCounter.class);
+        return counter == null ? 0 : counter.getCount();
+    }
+
+    /**
+     * Non-blocking version of {@link #current()} for the reactive endpoints
+     */
+    public Mono<Long> readCurrent() {
+        return reactiveMongoTemplate.findById(COUNTER_ID, ChangeCounter.class)
+                .map(ChangeCounter::getCount)
+                .defaultIfEmpty(0L);
+    }
+
+    @EventListener
+    public void onAppointmentsChanged(AppointmentsChangedEvent event) {
+        onWrite();
+    }
+
+    @EventListener
+    public void onAppointmentsArchived(AppointmentsArchivedEvent event) {
+        onWrite();
+    }
+
+    /**
+     * Helper method to count a write, without blocking a reactive write path or failing the write that caused it
+     */
+    private void onWrite() {
+        if (Schedulers.isInNonBlockingThread()) {
+            Schedulers.boundedElastic().schedule(this::increment);
+        } else {
+            increment();
+        }
+    }
+
+    private void increment() {
+        try {
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(COUNTER_ID)), new Update().inc("count", 1),
+                    ChangeCounter.class);
+        } catch (Exception e) {
+            //lists keep their old ETag until the next counted write
+            log.warn("Could not count an appointment write", e);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.astral004.appointmentapi.event;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.exception.InvalidContinuationTokenException;
+import com.astral004.appointmentapi.repository.AppointmentTransitions;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Pushes appointment creations, reschedules, and cancellations to subscribers as server-sent events, read from a
+ * change stream on the appointments collection so writes made by any instance, or around the application, are
+ * seen. Each subscriber gets its own change stream, filtered by Mongo, and every event carries the stream's resume
+ * token as its id so a subscriber that reconnects with Last-Event-ID continues where it left off.
+ */
+@Slf4j
+@Component
+public class AppointmentChangeFeed {
+
+    static final String APPOINTMENTS = "appointments";
+    static final String RESUME_TOKEN_FIELD = "_data";
+    static final String INVALID_RESUME_TOKEN_MESSAGE = "Invalid resume token";
+    private static final Pattern RESUME_TOKEN = Pattern.compile("[0-9A-Fa-f]+");
+    private static final ServerSentEvent<Appointment> HEARTBEAT = ServerSentEvent.<Appointment>builder()
+            .comment("heartbeat")
+            .build();
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    /**
+     * Events held for one subscriber that reads slower than appointments change. A subscriber that falls this far
+     * behind has its change stream closed and its feed ended, and resumes from the last event it read instead of
+     * growing the buffer.
+     */
+    @Value("${appointments.events.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${appointments.events.heartbeat-ms:15000}")
+    private long heartbeatMs;
+
+    /**
+     * Opens a feed of appointment changes. Heartbeat comments are sent while nothing changes, so connections
+     * that were dropped are noticed and their change streams closed.
+     * @param clinicId Only changes to appointments at this clinic, or null for all clinics
+     * @param doctorId Only changes to appointments with this doctor, or null for all doctors
+     * @param resumeToken Id of the last event the subscriber received, or null to start with the next change
+     * @return Server-sent events named created, rescheduled, or cancelled, each with the appointment as it is now
+     */
+    public Flux<ServerSentEvent<Appointment>> subscribe(String clinicId, String doctorId, String resumeToken) {
+        ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+                .filter(Aggregation.newAggregation(Aggregation.match(changeCriteria(clinicId, doctorId))))
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+        if (resumeToken != null) {
+            options.resumeAfter(decodeResumeToken(resumeToken));
+        }
+
+        Flux<ServerSentEvent<Appointment>> events = reactiveMongoTemplate
+                .changeStream(APPOINTMENTS, options.build(), Appointment.class)
+                .filter(event -> event.getBody() != null)
+                .map(AppointmentChangeFeed::toServerSentEvent)
+                .onBackpressureBuffer(bufferSize, dropped -> log.info("Disconnecting an appointment change subscriber "
+                        + "that fell {} events behind", bufferSize), BufferOverflowStrategy.ERROR);
+        //prefetch one at a time past the buffer so it stays the only place events pile up
+        return events
+                .publish(shared -> Flux.merge(1, shared, Flux.interval(Duration.ofMillis(heartbeatMs))
+                        .onBackpressureDrop()
+                        .map(tick -> HEARTBEAT)
+                        .takeUntilOther(shared.ignoreElements().onErrorResume(e -> Mono.empty()))), 1)
+                .onErrorResume(Exceptions::isOverflow, e -> Flux.empty());
+    }
+
+    /**
+     * Helper method to match the changes a subscriber asked for. Inserts are creations, and updates or
+     * replacements that leave an appointment rescheduled or cancelled are those transitions.
+     * @param clinicId Clinic id, or null
+     * @param doctorId Doctor id, or null
+     * @return Criteria on the change events
+     */
+    static Criteria changeCriteria(String clinicId, String doctorId) {
+        Criteria criteria = new Criteria().orOperator(
+                Criteria.where("operationType").is(OperationType.INSERT.getValue()),
+                Criteria.where("operationType").in(OperationType.UPDATE.getValue(), OperationType.REPLACE.getValue())
+                        .and("fullDocument.status").in(AppointmentTransitions.RESCHEDULED, AppointmentTransitions.CANCELLED));
+        if (clinicId != null) {
+            criteria.and("fullDocument.clinicId").is(clinicId);
+        }
+        if (doctorId != null) {
+            criteria.and("fullDocument.doctorId").is(doctorId);
+        }
+        return criteria;
+    }
+
+    /**
+     * Helper method to turn a change into the event sent to subscribers
+     * @param change Change read from the change stream
+     * @return Server-sent event with the resume token as its id
+     */
+    static ServerSentEvent<Appointment> toServerSentEvent(ChangeStreamEvent<Appointment> change) {
+        return ServerSentEvent.builder(change.getBody())
+                .id(encodeResumeToken(change.getResumeToken()))
+                .event(changeType(change).name().toLowerCase(Locale.ROOT))
+                .build();
+    }
+
+    /**
+     * Helper method to tell which transition a change was
+     * @param change Change read from the change stream
+     * @return Type of the change
+     */
+    static AppointmentChange.Type changeType(ChangeStreamEvent<Appointment> change) {
+        if (change.getOperationType() == OperationType.INSERT) {
+            return AppointmentChange.Type.CREATED;
+        }
+        return AppointmentTransitions.CANCELLED.equals(change.getBody().getStatus())
+                ? AppointmentChange.Type.CANCELLED
+                : AppointmentChange.Type.RESCHEDULED;
+    }
+
+    /**
+     * Helper method to write a resume token as an event id. The token's hex string is used as it is, it is
+     * already safe to send in a header.
+     * @param resumeToken Resume token of a change
+     * @return Event id
+     */
+    static String encodeResumeToken(BsonValue resumeToken) {
+        return resumeToken.asDocument().getString(RESUME_TOKEN_FIELD).getValue();
+    }
+
+    /**
+     * Helper method to read back an event id sent by a subscriber
+     * @param resumeToken Event id
+     * @return Resume token to open the change stream after
+     */
+    static BsonDocument decodeResumeToken(String resumeToken) {
+        if (!RESUME_TOKEN.matcher(resumeToken).matches()) {
+            throw new InvalidContinuationTokenException(INVALID_RESUME_TOKEN_MESSAGE);
+        }
+        return new BsonDocument(RESUME_TOKEN_FIELD, new BsonString(resumeToken));
+    }
+}
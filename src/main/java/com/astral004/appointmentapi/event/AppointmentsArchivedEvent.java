@@ -0,0 +1,21 @@
+package com.astral004.appointmentapi.event;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Published by the archiver after each batch of appointments it moved out of the live collection.
+ */
+@Getter
+@ToString
+public class AppointmentsArchivedEvent {
+
+    private final List<String> ids;
+
+    public AppointmentsArchivedEvent(List<String> ids) {
+        this.ids = Collections.unmodifiableList(ids);
+    }
+}
@@ -0,0 +1,26 @@
+package com.astral004.appointmentapi.event;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Published by the appointment write paths once their changes are stored. A bulk import publishes one event per
+ * batch, every other write one event with a single change.
+ */
+@Getter
+@ToString
+public class AppointmentsChangedEvent {
+
+    private final List<AppointmentChange> changes;
+
+    public AppointmentsChangedEvent(List<AppointmentChange> changes) {
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    public AppointmentsChangedEvent(AppointmentChange change) {
+        this(Collections.singletonList(change));
+    }
+}
@@ -0,0 +1,11 @@
+package com.astral004.appointmentapi.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ClinicDoesNotExistException extends RuntimeException {
+    public ClinicDoesNotExistException(String message) {
+        super(message);
+    }
+}
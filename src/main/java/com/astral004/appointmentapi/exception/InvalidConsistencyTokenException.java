@@ -0,0 +1,11 @@
+package com.astral004.appointmentapi.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidConsistencyTokenException extends RuntimeException {
+    public InvalidConsistencyTokenException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,51 @@
+package com.astral004.appointmentapi.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Counters for how requests fail. Exceptions that reach the web layer are counted by type, and 500 responses a
+ * handler returned without throwing, the swallowed exceptions, are counted by handler. Latency histograms come from
+ * the http.server.requests and spring.data.repository.invocations timers that Spring Boot records already.
+ * Counters are created once per tag value and cached, so recording is a map lookup and an increment.
+ */
+public class RequestMetrics {
+
+    static final String EXCEPTIONS = "appointments.exceptions";
+    static final String SWALLOWED_ERRORS = "appointments.swallowed.errors";
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<Class<?>, Counter> exceptionCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> swallowedErrorCounters = new ConcurrentHashMap<>();
+
+    public RequestMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Counts an exception that escaped a handler
+     * @param exception The exception
+     */
+    public void exceptionRaised(Throwable exception) {
+        exceptionCounters.computeIfAbsent(exception.getClass(), type -> Counter.builder(EXCEPTIONS)
+                .description("Exceptions thrown by request handlers")
+                .tag("exception", type.getSimpleName())
+                .register(meterRegistry))
+                .increment();
+    }
+
+    /**
+     * Counts a 500 response that a handler returned itself after catching an exception
+     * @param handler Name of the handler
+     */
+    public void errorSwallowed(String handler) {
+        swallowedErrorCounters.computeIfAbsent(handler, name -> Counter.builder(SWALLOWED_ERRORS)
+                .description("Internal server errors returned by handlers that caught the exception")
+                .tag("handler", name)
+                .register(meterRegistry))
+                .increment();
+    }
+}
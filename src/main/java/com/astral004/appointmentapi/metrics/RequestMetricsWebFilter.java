@@ -0,0 +1,42 @@
+package com.astral004.appointmentapi.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Records {@link RequestMetrics} for the reactive web mode. Handler errors pass through the filter chain before
+ * they are turned into responses, so they are counted here, as are the 500 responses handlers complete with.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class RequestMetricsWebFilter implements WebFilter {
+
+    private final RequestMetrics requestMetrics;
+
+    public RequestMetricsWebFilter(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.requestMetrics = new RequestMetrics(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return chain.filter(exchange)
+                .doOnError(requestMetrics::exceptionRaised)
+                .doOnSuccess(done -> {
+                    Object handler = exchange.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+                    if (exchange.getResponse().getStatusCode() == HttpStatus.INTERNAL_SERVER_ERROR
+                            && handler instanceof HandlerMethod) {
+                        requestMetrics.errorSwallowed(((HandlerMethod) handler).getMethod().getName());
+                    }
+                });
+    }
+}
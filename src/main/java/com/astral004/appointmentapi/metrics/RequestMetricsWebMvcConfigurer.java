@@ -0,0 +1,57 @@
+package com.astral004.appointmentapi.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+
+/**
+ * Records {@link RequestMetrics} for the servlet web mode. A handler exception resolver that runs first counts
+ * every exception and leaves resolving it to the usual resolvers, and an interceptor counts the 500 responses
+ * handlers return without throwing. Error page dispatches are left out, their 500 was already counted as an
+ * exception.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RequestMetricsWebMvcConfigurer implements WebMvcConfigurer {
+
+    private final RequestMetrics requestMetrics;
+
+    public RequestMetricsWebMvcConfigurer(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.requestMetrics = new RequestMetrics(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+                if (ex == null && request.getDispatcherType() == DispatcherType.REQUEST
+                        && response.getStatus() == HttpStatus.INTERNAL_SERVER_ERROR.value()
+                        && handler instanceof HandlerMethod) {
+                    requestMetrics.errorSwallowed(((HandlerMethod) handler).getMethod().getName());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void extendHandlerExceptionResolvers(List<HandlerExceptionResolver> resolvers) {
+        resolvers.add(0, (request, response, handler, exception) -> {
+            requestMetrics.exceptionRaised(exception);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package com.astral004.appointmentapi.partition;
+
+import com.mongodb.client.MongoDatabase;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+
+/**
+ * One of the databases appointments are partitioned across, and the partition the work on this thread is bound
+ * to. While a partition is bound, the appointment collections of the home database are read and written in the
+ * partition's database instead. Every other collection stays in the home database, so a request bound to a
+ * partition still finds its patients, doctors, clinics, and rollups where they always were.
+ */
+public final class AppointmentPartition {
+
+    private static final ThreadLocal<AppointmentPartition> CURRENT = new ThreadLocal<>();
+
+    private final int index;
+    private final MongoDatabase database;
+    private final Set<String> collections;
+
+    AppointmentPartition(int index, MongoDatabase database, Set<String> collections) {
+        this.index = index;
+        this.database = database;
+        this.collections = collections;
+    }
+
+    /**
+     * @return Partition the work on this thread is bound to, or null for the home partition
+     */
+    public static AppointmentPartition current() {
+        return CURRENT.get();
+    }
+
+    static void set(AppointmentPartition partition) {
+        if (partition == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(partition);
+        }
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @param home Database of the home partition, as the request is routed to it
+     * @return The home database with the appointment collections taken from this partition, read with the same
+     * read preference. Sessions of the home database are not carried over, they belong to its client.
+     */
+    public MongoDatabase route(MongoDatabase home) {
+        return (MongoDatabase) Proxy.newProxyInstance(MongoDatabase.class.getClassLoader(),
+                new Class<?>[]{MongoDatabase.class}, new Router(home));
+    }
+
+    private class Router implements InvocationHandler {
+        private final MongoDatabase home;
+
+        Router(MongoDatabase home) {
+            this.home = home;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            try {
+                if ("getCollection".equals(method.getName()) && collections.contains(args[0])) {
+                    return method.invoke(database.withReadPreference(home.getReadPreference()), args);
+                }
+                Object result = method.invoke(home, args);
+                //withReadPreference and the like hand out a new database, which must keep routing
+                return result instanceof MongoDatabase ? route((MongoDatabase) result) : result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package com.astral004.appointmentapi.partition;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.domain.ClinicPlacement;
+import com.astral004.appointmentapi.exception.ServiceOverloadedException;
+import com.astral004.appointmentapi.routing.ReadRoute;
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Appointments partitioned by clinic across several Mongo databases, which may live on separate servers. The home
+ * partition is the database the application is configured with, and every database listed in
+ * appointments.partitions.uris adds one more. All appointments of a clinic live in one partition, so work about
+ * one clinic is bound to that partition, while reads across clinics run in every partition at once and are
+ * merged. Without extra databases everything stays in the home partition and nothing here touches Mongo.
+ * <p>
+ * Placements are cached and refreshed every refresh-ms, which is how long another instance may take to see a
+ * clinic placed or moved by this one. The change feed only sees the home partition, and the reactive web mode
+ * refuses to start with more than one.
+ */
+@Slf4j
+@Component
+public class ClinicPartitions {
+
+    public static final int HOME = 0;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Connection strings of the partitions after the home one, each naming its database
+     */
+    @Value("${appointments.partitions.uris:}")
+    private String[] uris;
+    @Value("${appointments.partitions.scatter-threads:16}")
+    private int scatterThreads = 16;
+    @Value("${appointments.partitions.refresh-ms:5000}")
+    private long refreshMs = 5000;
+
+    private final List<AppointmentPartition> partitions = new ArrayList<>();
+    private final List<MongoClient> clients = new ArrayList<>();
+    private final Map<String, AtomicInteger> writesInFlight = new ConcurrentHashMap<>();
+    private volatile Map<String, ClinicPlacement> placements = Collections.emptyMap();
+    private ExecutorService scatterPool;
+
+    @PostConstruct
+    void start() {
+        for (String uri : uris == null ? new String[0] : uris) {
+            if (uri.trim().isEmpty()) {
+                continue;
+            }
+            ConnectionString connection = new ConnectionString(uri.trim());
+            if (connection.getDatabase() == null) {
+                throw new IllegalArgumentException("Partition " + (partitions.size() + 1) + " of appointments.partitions.uris names no database");
+            }
+            MongoClient client = MongoClients.create(connection);
+            clients.add(client);
+            addPartition(client.getDatabase(connection.getDatabase()));
+        }
+        if (!isPartitioned()) {
+            return;
+        }
+        try {
+            ensureIndexes();
+            refreshPlacements();
+        } catch (Exception e) {
+            //the indexes are ensured again and the placements read again on the next start
+            log.warn("Could not prepare the {} appointment partitions", size(), e);
+        }
+        log.info("Appointments are partitioned by clinic across {} databases", size());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scatterPool != null) {
+            scatterPool.shutdown();
+        }
+        clients.forEach(MongoClient::close);
+    }
+
+    /**
+     * Adds a partition after the ones already there
+     * @param database Database holding the appointment collections of the partition
+     */
+    void addPartition(MongoDatabase database) {
+        Set<String> collections = new HashSet<>(Arrays.asList(
+                mongoTemplate.getCollectionName(Appointment.class), Appointment.ARCHIVE_COLLECTION));
+        partitions.add(new AppointmentPartition(partitions.size() + 1, database, collections));
+        if (scatterPool == null) {
+            scatterPool = Executors.newFixedThreadPool(scatterThreads, new CustomizableThreadFactory("appointment-scatter-"));
+        }
+    }
+
+    /**
+     * @return Number of partitions, the home one included
+     */
+    public int size() {
+        return partitions.size() + 1;
+    }
+
+    public boolean isPartitioned() {
+        return !partitions.isEmpty();
+    }
+
+    long getRefreshMs() {
+        return refreshMs;
+    }
+
+    /**
+     * @return Partition the clinic's appointments are read from. Clinics not placed yet are read from the home
+     * partition, where every appointment was written before partitioning was set up.
+     */
+    public int partitionOf(String clinicId) {
+        ClinicPlacement placement = clinicId == null ? null : placements.get(clinicId);
+        return placement == null ? HOME : placement.getPartition();
+    }
+
+    /**
+     * Binds the work on this thread to a partition until the binding is closed, after which the thread goes back
+     * to the partition it was bound to before
+     * @param partition Partition index
+     * @return Binding to close
+     */
+    public Binding bind(int partition) {
+        AppointmentPartition previous = AppointmentPartition.current();
+        AppointmentPartition.set(partition == HOME ? null : partitions.get(partition - 1));
+        return () -> AppointmentPartition.set(previous);
+    }
+
+    public <T> T inPartition(int partition, Supplier<T> work) {
+        try (Binding ignored = bind(partition)) {
+            return work.get();
+        }
+    }
+
+    /**
+     * Runs a read in the partition holding a clinic
+     */
+    public <T> T inClinic(String clinicId, Supplier<T> read) {
+        return inPartition(partitionOf(clinicId), read);
+    }
+
+    /**
+     * Runs a read in every partition at once. The home partition is read on the calling thread, so it keeps the
+     * session of a pinned request; the others are read with the read preference of the request alone.
+     * @param read Read to run in each partition
+     * @return Result of every partition, by partition
+     */
+    public <T> List<T> scatter(Supplier<T> read) {
+        if (!isPartitioned()) {
+            return Collections.singletonList(read.get());
+        }
+        ReadRoute route = ReadRoute.current();
+        ReadRoute workerRoute = route == null ? null : ReadRoute.of(route.getReadPreference());
+        List<Future<T>> results = new ArrayList<>(partitions.size());
+        for (AppointmentPartition partition : partitions) {
+            results.add(scatterPool.submit(() -> {
+                if (workerRoute != null) {
+                    ReadRoute.set(workerRoute);
+                }
+                try {
+                    return inPartition(partition.getIndex(), read);
+                } finally {
+                    ReadRoute.clear();
+                }
+            }));
+        }
+        List<T> gathered = new ArrayList<>(size());
+        gathered.add(inPartition(HOME, read));
+        for (Future<T> result : results) {
+            gathered.add(await(result));
+        }
+        return gathered;
+    }
+
+    /**
+     * Reads appointments in every partition at once, keeping from each partition only the appointments of the
+     * clinics it holds. A clinic being moved has copies in two partitions until its move is finished, and only the
+     * copies in the partition it is placed in count. Appointments read without their clinic id are all kept.
+     * @param read Read to run in each partition
+     * @return Appointments of every partition, by partition, each in the order the read returned them
+     */
+    public List<List<Appointment>> gather(Supplier<List<Appointment>> read) {
+        List<List<Appointment>> gathered = scatter(read);
+        if (!isPartitioned()) {
+            return gathered;
+        }
+        List<List<Appointment>> held = new ArrayList<>(gathered.size());
+        for (int partition = 0; partition < gathered.size(); partition++) {
+            List<Appointment> appointments = new ArrayList<>(gathered.get(partition));
+            int index = partition;
+            appointments.removeIf(appointment -> !holds(index, appointment));
+            held.add(appointments);
+        }
+        return held;
+    }
+
+    /**
+     * Looks an appointment up in every partition at once
+     * @param read Lookup to run in each partition
+     * @return The appointment from the partition that holds its clinic, or empty
+     */
+    public Optional<Appointment> locate(Supplier<Optional<Appointment>> read) {
+        List<Optional<Appointment>> found = scatter(read);
+        for (int partition = 0; partition < found.size(); partition++) {
+            Optional<Appointment> appointment = found.get(partition);
+            if (appointment != null && appointment.isPresent() && holds(partition, appointment.get())) {
+                return appointment;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Helper method to combine the reads of every partition into one list
+     * @param gathered Appointments of every partition, each in the given order
+     * @param order Order of the combined list, or null to keep the partitions one after the other
+     * @param limit Most appointments to return, or 0 for all
+     * @return Appointments of every partition
+     */
+    public static List<Appointment> merge(List<List<Appointment>> gathered, Comparator<Appointment> order, int limit) {
+        List<Appointment> merged;
+        if (gathered.size() == 1) {
+            merged = gathered.get(0);
+        } else {
+            merged = new ArrayList<>();
+            gathered.forEach(merged::addAll);
+            if (order != null) {
+                //the sort finds the ordered run of each partition and merges the runs
+                merged.sort(order);
+            }
+        }
+        return limit > 0 && merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    /**
+     * Runs a write in the partition holding a clinic, placing the clinic first if it has not been yet
+     * @throws ServiceOverloadedException if the clinic is just being moved to another partition
+     */
+    public <T> T writeInClinic(String clinicId, Supplier<T> write) {
+        int partition = beginWrite(clinicId);
+        try {
+            return inPartition(partition, write);
+        } finally {
+            endWrite(clinicId);
+        }
+    }
+
+    /**
+     * Counts a write to a clinic as in flight until {@link #endWrite(String)}, so a move of the clinic waits for it.
+     * Places the clinic first if it has not been yet.
+     * @param clinicId Clinic written to
+     * @return Partition to write to
+     * @throws ServiceOverloadedException if the clinic is just being moved to another partition
+     */
+    public int beginWrite(String clinicId) {
+        if (!isPartitioned() || clinicId == null) {
+            return HOME;
+        }
+        AtomicInteger writes = writesInFlight.computeIfAbsent(clinicId, id -> new AtomicInteger());
+        //counted before the placement is read, so a move that froze the clinic either sees this write or is seen by it
+        writes.incrementAndGet();
+        try {
+            ClinicPlacement placement = placements.get(clinicId);
+            if (placement == null) {
+                placement = place(clinicId);
+            }
+            if (placement.isFrozen()) {
+                throw new ServiceOverloadedException("Clinic with id: " + clinicId
+                        + " is being moved to another partition, try again shortly!");
+            }
+            return placement.getPartition();
+        } catch (RuntimeException e) {
+            writes.decrementAndGet();
+            throw e;
+        }
+    }
+
+    public void endWrite(String clinicId) {
+        if (!isPartitioned() || clinicId == null) {
+            return;
+        }
+        AtomicInteger writes = writesInFlight.get(clinicId);
+        if (writes != null) {
+            writes.decrementAndGet();
+        }
+    }
+
+    /**
+     * Helper method to split a multi-document insert by partition. The clinic of every appointment must have been
+     * placed by {@link #beginWrite(String)}.
+     * @param appointments Appointments to insert
+     * @param insert Insert of the appointments of one partition, returning the errors by position
+     * @return Errors by position in appointments
+     */
+    public Map<Integer, String> insertByPartition(List<Appointment> appointments,
+                                                  Function<List<Appointment>, Map<Integer, String>> insert) {
+        if (!isPartitioned()) {
+            return insert.apply(appointments);
+        }
+        Map<Integer, List<Integer>> positions = new TreeMap<>();
+        for (int i = 0; i < appointments.size(); i++) {
+            positions.computeIfAbsent(partitionOf(appointments.get(i).getClinicId()), partition -> new ArrayList<>()).add(i);
+        }
+        Map<Integer, String> failures = new HashMap<>();
+        for (Map.Entry<Integer, List<Integer>> partition : positions.entrySet()) {
+            List<Integer> batchPositions = partition.getValue();
+            List<Appointment> batch = new ArrayList<>(batchPositions.size());
+            for (Integer position : batchPositions) {
+                batch.add(appointments.get(position));
+            }
+            try {
+                Map<Integer, String> batchFailures = inPartition(partition.getKey(), () -> insert.apply(batch));
+                batchFailures.forEach((index, error) -> failures.put(batchPositions.get(index), error));
+            } catch (RuntimeException e) {
+                //the other partitions may have been written, so their appointments are not failed with this one
+                log.warn("Insert of {} appointments into partition {} failed", batch.size(), partition.getKey(), e);
+                for (Integer position : batchPositions) {
+                    failures.put(position, "Partition " + partition.getKey() + " could not be written: " + e.getMessage());
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return Placement of every placed clinic
+     */
+    public List<ClinicPlacement> getPlacements() {
+        return new ArrayList<>(placements.values());
+    }
+
+    /**
+     * Stores a placement and uses it from now on. Other instances use it from their next refresh.
+     */
+    void savePlacement(ClinicPlacement placement) {
+        mongoTemplate.save(placement);
+        cache(placement);
+    }
+
+    /**
+     * Waits until no write to a clinic is in flight on this instance
+     * @return Whether the writes drained within the timeout
+     */
+    boolean awaitWrites(String clinicId, long timeoutMs) throws InterruptedException {
+        AtomicInteger writes = writesInFlight.get(clinicId);
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (writes != null && writes.get() > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Reads every placement again, to pick up the clinics other instances placed or moved
+     */
+    @Scheduled(initialDelayString = "${appointments.partitions.refresh-ms:5000}",
+               fixedDelayString = "${appointments.partitions.refresh-ms:5000}")
+    public void refreshPlacements() {
+        if (!isPartitioned()) {
+            return;
+        }
+        try {
+            Map<String, ClinicPlacement> read = new ConcurrentHashMap<>();
+            for (ClinicPlacement placement : mongoTemplate.findAll(ClinicPlacement.class)) {
+                read.put(placement.getId(), placement);
+            }
+            placements = read;
+        } catch (Exception e) {
+            log.warn("Could not refresh the clinic placements, the cached ones are used until the next refresh", e);
+        }
+    }
+
+    /**
+     * Helper method to place a clinic on its first write. A clinic that already has appointments in the home
+     * partition, written before partitioning was set up, stays there; any other goes to the partition its id
+     * hashes to. The first instance to place a clinic decides for all of them.
+     * @param clinicId Clinic to place
+     * @return Placement of the clinic
+     */
+    private synchronized ClinicPlacement place(String clinicId) {
+        ClinicPlacement placement = placements.get(clinicId);
+        if (placement != null) {
+            return placement;
+        }
+        Query clinic = Query.query(Criteria.where("clinicId").is(clinicId));
+        boolean atHome = inPartition(HOME, () -> mongoTemplate.exists(clinic, Appointment.class)
+                || mongoTemplate.exists(clinic, Appointment.class, Appointment.ARCHIVE_COLLECTION));
+        int partition = atHome ? HOME : Math.floorMod(clinicId.hashCode(), size());
+        mongoTemplate.upsert(Query.query(Criteria.where("id").is(clinicId)),
+                new Update().setOnInsert("partition", partition).setOnInsert("frozen", false),
+                ClinicPlacement.class);
+        placement = mongoTemplate.findById(clinicId, ClinicPlacement.class);
+        cache(placement);
+        return placement;
+    }
+
+    /**
+     * Helper method to use a placement from now on
+     */
+    synchronized void cache(ClinicPlacement placement) {
+        Map<String, ClinicPlacement> updated = new ConcurrentHashMap<>(placements);
+        updated.put(placement.getId(), placement);
+        placements = updated;
+    }
+
+    /**
+     * @return Whether an appointment read from a partition belongs there, which it does unless its clinic is placed
+     * in another one. Appointments read without their clinic id are taken to belong.
+     */
+    public boolean holds(int partition, Appointment appointment) {
+        return appointment.getClinicId() == null || partitionOf(appointment.getClinicId()) == partition;
+    }
+
+    /**
+     * Helper method to give every other partition the indexes of the home appointment collections, which Spring
+     * Data only creates in the home database
+     */
+    private void ensureIndexes() {
+        List<IndexDefinition> indexes = new ArrayList<>();
+        IndexResolver.create(mongoTemplate.getConverter().getMappingContext())
+                     .resolveIndexFor(Appointment.class)
+                     .forEach(indexes::add);
+        for (AppointmentPartition partition : partitions) {
+            try (Binding ignored = bind(partition.getIndex())) {
+                for (String collection : Arrays.asList(mongoTemplate.getCollectionName(Appointment.class), Appointment.ARCHIVE_COLLECTION)) {
+                    IndexOperations indexOperations = mongoTemplate.indexOps(collection);
+                    indexes.forEach(indexOperations::ensureIndex);
+                }
+            }
+        }
+    }
+
+    private static <T> T await(Future<T> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the appointment partitions", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Binding of a thread to a partition, closed without exceptions
+     */
+    public interface Binding extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
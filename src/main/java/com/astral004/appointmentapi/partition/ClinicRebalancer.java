@@ -0,0 +1,234 @@
+package com.astral004.appointmentapi.partition;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.domain.ClinicPlacement;
+import com.astral004.appointmentapi.dto.RebalanceReport;
+import com.astral004.appointmentapi.exception.InvalidPartitionException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Moves the appointments of a clinic to another partition while the application keeps serving them. The
+ * appointments are copied while the clinic is still read and written in its old partition. Writes to the clinic
+ * are then held off, for as long as every instance takes to notice, and whatever was written during the copy is
+ * synced. The clinic is switched over, and its appointments are removed from the old partition once no instance
+ * reads them there any more. Reads never wait, and writes to the clinic only wait out the sync.
+ */
+@Slf4j
+@Component
+public class ClinicRebalancer {
+
+    @Autowired
+    private ClinicPartitions clinicPartitions;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${appointments.partitions.rebalance.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Longest wait for the writes to the clinic that are in flight on this instance when it is frozen
+     */
+    @Value("${appointments.partitions.rebalance.drain-timeout-ms:30000}")
+    private long drainTimeoutMs;
+
+    /**
+     * Wait on top of the placement refresh interval, for the writes and reads other instances started just before
+     * they refreshed
+     */
+    @Value("${appointments.partitions.rebalance.grace-ms:2000}")
+    private long graceMs;
+
+    /**
+     * Moves a clinic to another partition, one clinic at a time.
+     * @param clinicId Clinic to move
+     * @param target Partition to move it to
+     * @return Report of what was copied, synced, and removed
+     * @throws InvalidPartitionException if there is no such partition
+     */
+    public synchronized RebalanceReport rebalance(String clinicId, int target) {
+        if (target < 0 || target >= clinicPartitions.size()) {
+            throw new InvalidPartitionException("Partition " + target + " does not exist, there are "
+                    + clinicPartitions.size() + " partitions!");
+        }
+        int source = clinicPartitions.partitionOf(clinicId);
+        RebalanceReport report = new RebalanceReport(clinicId, source, target, 0, 0, 0);
+        if (source == target) {
+            return report;
+        }
+        List<String> collections = Arrays.asList(mongoTemplate.getCollectionName(Appointment.class), Appointment.ARCHIVE_COLLECTION);
+        boolean switched = false;
+        try {
+            clinicPartitions.savePlacement(placement(clinicId, source, target, false));
+            for (String collection : collections) {
+                report.setCopied(report.getCopied() + copy(clinicId, collection(source, collection), collection(target, collection)));
+            }
+
+            clinicPartitions.savePlacement(placement(clinicId, source, target, true));
+            settle();
+            if (!clinicPartitions.awaitWrites(clinicId, drainTimeoutMs)) {
+                throw new IllegalStateException("Writes to clinic " + clinicId + " did not finish within " + drainTimeoutMs + " ms");
+            }
+            for (String collection : collections) {
+                report.setSynced(report.getSynced() + sync(clinicId, collection(source, collection), collection(target, collection)));
+            }
+
+            clinicPartitions.savePlacement(placement(clinicId, target, null, false));
+            switched = true;
+            settle();
+            for (String collection : collections) {
+                report.setRemoved(report.getRemoved()
+                        + collection(source, collection).deleteMany(Filters.eq("clinicId", clinicId)).getDeletedCount());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw abort(report, switched, new IllegalStateException("Interrupted while moving clinic " + clinicId, e));
+        } catch (RuntimeException e) {
+            throw abort(report, switched, e);
+        }
+        log.info("Moved clinic {} from partition {} to partition {}: {}", clinicId, source, target, report);
+        return report;
+    }
+
+    /**
+     * Helper method to undo a move that failed before the clinic was switched over, leaving it in its old partition
+     * without the copies. After the switch the old copies are no longer read, and are only left behind.
+     * @return The failure, to throw
+     */
+    private RuntimeException abort(RebalanceReport report, boolean switched, RuntimeException failure) {
+        if (switched) {
+            log.warn("Clinic {} was moved to partition {}, but its appointments could not all be removed from partition {}",
+                    report.getClinicId(), report.getTo(), report.getFrom(), failure);
+            return failure;
+        }
+        try {
+            clinicPartitions.savePlacement(placement(report.getClinicId(), report.getFrom(), null, false));
+            for (String collection : Arrays.asList(mongoTemplate.getCollectionName(Appointment.class), Appointment.ARCHIVE_COLLECTION)) {
+                collection(report.getTo(), collection).deleteMany(Filters.eq("clinicId", report.getClinicId()));
+            }
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+        return failure;
+    }
+
+    /**
+     * Helper method to copy every appointment of a clinic as stored, so fields the mapping does not know about
+     * move along
+     * @return Number of appointments copied
+     */
+    private long copy(String clinicId, MongoCollection<Document> source, MongoCollection<Document> target) {
+        long copied = 0;
+        List<WriteModel<Document>> batch = new ArrayList<>(batchSize);
+        try (MongoCursor<Document> appointments = source.find(Filters.eq("clinicId", clinicId)).batchSize(batchSize).iterator()) {
+            while (appointments.hasNext()) {
+                batch.add(replacement(appointments.next()));
+                if (batch.size() == batchSize) {
+                    copied += write(target, batch);
+                }
+            }
+        }
+        return copied + write(target, batch);
+    }
+
+    /**
+     * Helper method to bring the copy of a clinic up to date with the appointments written or removed since it was
+     * made. Only ids and versions are compared, so the sync reads little more than what changed.
+     * @return Number of appointments copied again or removed from the copy
+     */
+    private long sync(String clinicId, MongoCollection<Document> source, MongoCollection<Document> target) {
+        Map<Object, Object> copiedVersions = versions(clinicId, target);
+        List<Object> changed = new ArrayList<>();
+        for (Map.Entry<Object, Object> appointment : versions(clinicId, source).entrySet()) {
+            boolean copied = copiedVersions.containsKey(appointment.getKey());
+            Object copiedVersion = copiedVersions.remove(appointment.getKey());
+            if (!copied || !Objects.equals(copiedVersion, appointment.getValue())) {
+                changed.add(appointment.getKey());
+            }
+        }
+        long synced = 0;
+        List<WriteModel<Document>> batch = new ArrayList<>(batchSize);
+        for (int from = 0; from < changed.size(); from += batchSize) {
+            for (Document appointment : source.find(Filters.in("_id", changed.subList(from, Math.min(from + batchSize, changed.size()))))) {
+                batch.add(replacement(appointment));
+            }
+            synced += write(target, batch);
+        }
+        //whatever is left in the copy was removed from the old partition after it was copied
+        List<Object> removed = new ArrayList<>(copiedVersions.keySet());
+        for (int from = 0; from < removed.size(); from += batchSize) {
+            synced += target.deleteMany(Filters.in("_id", removed.subList(from, Math.min(from + batchSize, removed.size()))))
+                            .getDeletedCount();
+        }
+        return synced;
+    }
+
+    /**
+     * @return Version of every appointment of the clinic in a collection, by id
+     */
+    private static Map<Object, Object> versions(String clinicId, MongoCollection<Document> collection) {
+        Map<Object, Object> versions = new HashMap<>();
+        for (Document appointment : collection.find(Filters.eq("clinicId", clinicId)).projection(Projections.include("version"))) {
+            versions.put(appointment.get("_id"), appointment.get("version"));
+        }
+        return versions;
+    }
+
+    private static WriteModel<Document> replacement(Document appointment) {
+        return new ReplaceOneModel<>(Filters.eq("_id", appointment.get("_id")), appointment, new ReplaceOptions().upsert(true));
+    }
+
+    /**
+     * Helper method to write a batch and empty it
+     * @return Number of appointments written
+     */
+    private static int write(MongoCollection<Document> target, List<WriteModel<Document>> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        target.bulkWrite(batch, new BulkWriteOptions().ordered(false));
+        int written = batch.size();
+        batch.clear();
+        return written;
+    }
+
+    /**
+     * Helper method to wait until every instance has read the placement just saved, and has finished what it
+     * started before that
+     */
+    private void settle() throws InterruptedException {
+        Thread.sleep(clinicPartitions.getRefreshMs() + graceMs);
+    }
+
+    private MongoCollection<Document> collection(int partition, String collection) {
+        return clinicPartitions.inPartition(partition, () -> mongoTemplate.getCollection(collection));
+    }
+
+    private static ClinicPlacement placement(String clinicId, int partition, Integer target, boolean frozen) {
+        ClinicPlacement placement = new ClinicPlacement();
+        placement.setId(clinicId);
+        placement.setPartition(partition);
+        placement.setTarget(target);
+        placement.setFrozen(frozen);
+        return placement;
+    }
+}
@@ -0,0 +1,14 @@
+package com.astral004.appointmentapi.repository;
+
+import org.springframework.data.geo.Point;
+
+import java.util.Map;
+
+public interface AddressRepositoryCustom {
+
+    /**
+     * Averages the coordinates of every located address by zip code, so a zip code can stand in for coordinates.
+     * @return The centre of each zip code, with x the longitude and y the latitude
+     */
+    Map<String, Point> findZipCodeCentroids();
+}
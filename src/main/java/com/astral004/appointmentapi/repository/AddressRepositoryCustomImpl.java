@@ -0,0 +1,30 @@
+package com.astral004.appointmentapi.repository;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class AddressRepositoryCustomImpl implements AddressRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public Map<String, Point> findZipCodeCentroids() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("zipCode").ne(null).and("latitude").ne(null).and("longitude").ne(null)),
+                Aggregation.group("zipCode").avg("latitude").as("latitude").avg("longitude").as("longitude"));
+        Map<String, Point> centroids = new HashMap<>();
+        for (Document zipCode : mongoTemplate.aggregate(aggregation, "addresses", Document.class)) {
+            centroids.put(zipCode.get("_id").toString(),
+                    new Point(zipCode.getDouble("longitude"), zipCode.getDouble("latitude")));
+        }
+        return centroids;
+    }
+}
@@ -0,0 +1,91 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.exception.UnindexedQueryException;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Any mix of the filters accepted by the appointment search. Every filter must be answerable through one of the
+ * indexes declared on Appointment; combinations that are not are rejected before they reach Mongo.
+ */
+@Getter
+@Setter
+@ToString
+public class AppointmentFilter {
+
+    /**
+     * Leading field of each declared index, mapped to the index name, in the order they are preferred.
+     * Patients have the fewest appointments and clinics the most, so the most selective index wins.
+     */
+    static final Map<String, String> INDEX_BY_LEADING_FIELD;
+    static {
+        Map<String, String> indexes = new LinkedHashMap<>();
+        indexes.put("patientId", "patient_timing");
+        indexes.put("doctorId", "doctor_timing");
+        indexes.put("clinicId", "clinic_timing");
+        indexes.put("timing", "timing");
+        INDEX_BY_LEADING_FIELD = Collections.unmodifiableMap(indexes);
+    }
+
+    private String clinicId;
+    private String doctorId;
+    private String patientId;
+    private String status;
+    private LocalDate from;
+    private LocalDate to;
+    /** Properties to read, or null for whole appointments */
+    @ToString.Exclude
+    private FieldSelection fields;
+
+    public boolean isEmpty() {
+        return clinicId == null && doctorId == null && patientId == null && status == null && from == null && to == null;
+    }
+
+    /**
+     * Picks the index that will serve this filter.
+     * @return Name of the index to hint
+     * @throws UnindexedQueryException if no declared index has a leading field covered by the filter
+     */
+    public String requireIndex() {
+        for (Map.Entry<String, String> index : INDEX_BY_LEADING_FIELD.entrySet()) {
+            if (constrains(index.getKey())) {
+                return index.getValue();
+            }
+        }
+        throw new UnindexedQueryException("Appointments cannot be filtered by " + this
+                + " alone, add a clinic, doctor, patient, or date range!");
+    }
+
+    boolean constrains(String field) {
+        switch (field) {
+            case "clinicId": return clinicId != null;
+            case "doctorId": return doctorId != null;
+            case "patientId": return patientId != null;
+            case "status": return status != null;
+            case "timing": return from != null || to != null;
+            default: return false;
+        }
+    }
+
+    public Criteria toCriteria() {
+        Criteria criteria = new Criteria();
+        if (clinicId != null) criteria.and("clinicId").is(clinicId);
+        if (doctorId != null) criteria.and("doctorId").is(doctorId);
+        if (patientId != null) criteria.and("patientId").is(patientId);
+        if (status != null) criteria.and("status").is(status);
+        if (from != null || to != null) {
+            //from and to are whole days, timing has a time of day
+            Criteria timing = criteria.and("timing");
+            if (from != null) timing.gte(from.atStartOfDay());
+            if (to != null) timing.lt(to.plusDays(1).atStartOfDay());
+        }
+        return criteria;
+    }
+}
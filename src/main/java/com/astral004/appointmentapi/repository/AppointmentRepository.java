@@ -1,24 +1,49 @@
 package com.astral004.appointmentapi.repository;
 
 import com.astral004.appointmentapi.domain.Appointment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
+import java.time.LocalDateTime;
 import java.util.List;
-
-public interface AppointmentRepository extends MongoRepository<Appointment, String> {
-
-    List<Appointment> findAppointmentsByClinicId(String clinic_id);
-
-    List<Appointment> findAppointmentsByClinicIdAndPatientId(String clinic_id, String patient_id);
-
-    List<Appointment> findAppointmentsByClinicIdAndDoctorId(String clinic_id, String doctor_id);
-
-    List<Appointment> findAppointmentsByDoctorId(String doctor_id);
-    List<Appointment> findAppointmentsByDoctorIdAndPatientId(String doctor_id, String patient_id);
-
-    List<Appointment> findAppointmentsByPatientId(String patient_id);
-
-    List<Appointment> findAppointmentsByClinicIdAndDoctorIdAndPatientId(String clinic_id, String doctor_id, String patient_id);
-
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Primary over the reactive repository of the same documents, so Spring Data REST exports this one.
+ */
+@Primary
+public interface AppointmentRepository extends MongoRepository<Appointment, String>, AppointmentRepositoryCustom {
+
+    /**
+     * First page of the keyset pagination over the whole collection, ordered by id.
+     */
+    List<Appointment> findAllByOrderByIdAsc(Pageable pageable);
+
+    /**
+     * Next page of the keyset pagination, starting right after the last id of the previous page.
+     */
+    List<Appointment> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
+
+    /**
+     * Reads nothing but the id, version, and clinic of an appointment, enough to answer a conditional GET from
+     * the partition holding the clinic.
+     */
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'version': 1, 'clinicId': 1 }")
+    Optional<Appointment> findVersionById(String id);
+
+    /**
+     * Streams every appointment from a Mongo cursor. The stream must be closed by the caller.
+     */
+    Stream<Appointment> streamAllBy();
+
+    /**
+     * Streams the doctor and time of every appointment from the given time on that still holds its slot.
+     * The stream must be closed by the caller.
+     */
+    @Query(value = "{ 'timing': { $gte: ?0 }, 'status': { $ne: 'Cancelled' } }", fields = "{ 'doctorId': 1, 'timing': 1 }")
+    Stream<Appointment> streamActiveSlotsFrom(LocalDateTime from);
 
 }
@@ -0,0 +1,72 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.Appointment;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+public interface AppointmentRepositoryCustom {
+
+    /**
+     * Finds the appointments matching every supplied filter, ordered by timing, using the index picked by
+     * {@link AppointmentFilter#requireIndex()}. Only the filter's selected fields are read, when it has any.
+     */
+    List<Appointment> findByFilter(AppointmentFilter filter);
+
+    /**
+     * Same as {@link #findByFilter(AppointmentFilter)}, over the archived appointments.
+     */
+    List<Appointment> findArchivedByFilter(AppointmentFilter filter);
+
+    /**
+     * Reads one keyset page of appointments ordered by id, with only the selected properties.
+     * @param afterId Id of the last appointment of the previous page, or null for the first page
+     * @param size Page size, or 0 for every remaining appointment
+     */
+    List<Appointment> findSelectedPage(String afterId, int size, FieldSelection fields);
+
+    /**
+     * @return The selected properties of the appointment with this id, or null if it does not exist
+     */
+    Appointment findSelectedById(String id, FieldSelection fields);
+
+    /**
+     * @return The archived appointment with this id, or null if it was never archived
+     */
+    Appointment findArchivedById(String id);
+
+    /**
+     * Moves the earliest appointments that took place before cutoff to the archive, at most batchSize of them.
+     * Each is copied before it is removed, and only removed if it did not change meanwhile, so an appointment is
+     * never lost and a run can be repeated safely.
+     * @return Ids of the appointments copied to the archive. One written meanwhile is also still live, and reads
+     * prefer the live copy.
+     */
+    List<String> archiveBefore(LocalDateTime cutoff, int batchSize);
+
+    /**
+     * Inserts all appointments in one unordered bulk write, so a failing document does not stop the rest.
+     * Appointments without an id are given one first.
+     * @return Error message for every appointment that could not be inserted, keyed by its position in the list
+     */
+    Map<Integer, String> insertUnordered(List<Appointment> appointments);
+
+    /**
+     * Atomically reschedules an appointment with the values of changes, see {@link AppointmentTransitions}.
+     * @param expectedVersion Version the caller last saw, or null to skip the version check
+     * @param expectedClinicId Clinic the appointment must still be at, or null to skip the clinic check
+     * @return The appointment as it was before rescheduling, or null if no active appointment outside its change
+     * window matched. {@link AppointmentTransitions#applyReschedule(Appointment, Appointment)} gives the new state.
+     */
+    Appointment reschedule(String id, Appointment changes, Long expectedVersion, String expectedClinicId, LocalDateTime now);
+
+    /**
+     * Atomically cancels an appointment, see {@link AppointmentTransitions}.
+     * @param expectedVersion Version the caller last saw, or null to skip the version check
+     * @param expectedClinicId Clinic the appointment must still be at, or null to skip the clinic check
+     * @return The appointment as it was before cancelling, or null if no active appointment outside its change
+     * window matched. {@link AppointmentTransitions#applyCancel(Appointment)} gives the new state.
+     */
+    Appointment cancel(String id, Long expectedVersion, String expectedClinicId, LocalDateTime now);
+}
@@ -0,0 +1,138 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AppointmentRepositoryCustomImpl implements AppointmentRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Appointment> findByFilter(AppointmentFilter filter) {
+        Query query = Query.query(filter.toCriteria())
+                           .with(Sort.by("timing"))
+                           .withHint(filter.requireIndex());
+        if (filter.getFields() != null) {
+            filter.getFields().applyTo(query);
+        }
+        return mongoTemplate.find(query, Appointment.class);
+    }
+
+    @Override
+    public List<Appointment> findArchivedByFilter(AppointmentFilter filter) {
+        Query query = Query.query(filter.toCriteria())
+                           .with(Sort.by("timing"))
+                           .withHint(filter.requireIndex());
+        if (filter.getFields() != null) {
+            filter.getFields().applyTo(query);
+        }
+        return mongoTemplate.find(query, Appointment.class, Appointment.ARCHIVE_COLLECTION);
+    }
+
+    @Override
+    public List<Appointment> findSelectedPage(String afterId, int size, FieldSelection fields) {
+        return mongoTemplate.find(fields.page(afterId, size), Appointment.class);
+    }
+
+    @Override
+    public Appointment findSelectedById(String id, FieldSelection fields) {
+        return mongoTemplate.findOne(fields.byId(id), Appointment.class);
+    }
+
+    @Override
+    public Appointment findArchivedById(String id) {
+        return mongoTemplate.findById(id, Appointment.class, Appointment.ARCHIVE_COLLECTION);
+    }
+
+    @Override
+    public List<String> archiveBefore(LocalDateTime cutoff, int batchSize) {
+        Query due = Query.query(Criteria.where("timing").lt(cutoff))
+                         .with(Sort.by("timing"))
+                         .limit(batchSize)
+                         .withHint("timing");
+        //copied as stored, so the archive keeps fields the mapping does not know about
+        String live = mongoTemplate.getCollectionName(Appointment.class);
+        List<Document> batch = mongoTemplate.find(due, Document.class, live);
+        if (batch.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        BulkOperations copy = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Appointment.ARCHIVE_COLLECTION);
+        BulkOperations remove = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, live);
+        List<String> ids = new ArrayList<>(batch.size());
+        for (Document appointment : batch) {
+            Object id = appointment.get("_id");
+            copy.replaceOne(Query.query(Criteria.where("_id").is(id)), appointment, FindAndReplaceOptions.options().upsert());
+            //an appointment written since it was read stays live, its archived copy is replaced when it is moved
+            remove.remove(Query.query(Criteria.where("_id").is(id).and("version").is(appointment.get("version"))));
+            ids.add(id.toString());
+        }
+        copy.execute();
+        remove.execute();
+        return ids;
+    }
+
+    @Override
+    public Map<Integer, String> insertUnordered(List<Appointment> appointments) {
+        if (appointments.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        for (Appointment appointment : appointments) {
+            if (appointment.getId() == null) {
+                appointment.setId(new ObjectId().toHexString());
+            }
+            //bulk writes do not initialize the version the way save does
+            if (appointment.getVersion() == null) {
+                appointment.setVersion(0L);
+            }
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Appointment.class)
+                         .insert(appointments)
+                         .execute();
+            return Collections.emptyMap();
+        } catch (BulkOperationException e) {
+            Map<Integer, String> failures = new HashMap<>();
+            for (BulkWriteError error : e.getErrors()) {
+                failures.put(error.getIndex(), error.getMessage());
+            }
+            return failures;
+        }
+    }
+
+    @Override
+    public Appointment reschedule(String id, Appointment changes, Long expectedVersion, String expectedClinicId,
+                                  LocalDateTime now) {
+        return mongoTemplate.findAndModify(AppointmentTransitions.transitionQuery(id, expectedVersion, expectedClinicId, now),
+                AppointmentTransitions.rescheduleUpdate(changes),
+                FindAndModifyOptions.options().returnNew(false),
+                Appointment.class);
+    }
+
+    @Override
+    public Appointment cancel(String id, Long expectedVersion, String expectedClinicId, LocalDateTime now) {
+        return mongoTemplate.findAndModify(AppointmentTransitions.transitionQuery(id, expectedVersion, expectedClinicId, now),
+                AppointmentTransitions.cancelUpdate(),
+                FindAndModifyOptions.options().returnNew(false),
+                Appointment.class);
+    }
+}
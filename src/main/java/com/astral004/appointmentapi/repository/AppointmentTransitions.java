@@ -0,0 +1,127 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Conditional updates behind reschedule and cancel. Everything the old read-check-save sequence checked in Java is
+ * part of the update predicate, so a transition is applied by Mongo in one round trip or not at all.
+ */
+public final class AppointmentTransitions {
+
+    public static final String SCHEDULED = "Scheduled";
+    public static final String RESCHEDULED = "Rescheduled";
+    public static final String CANCELLED = "Cancelled";
+
+    /**
+     * Statuses an appointment may be rescheduled or cancelled from. Appointments stored before statuses were
+     * enforced may have none.
+     */
+    static final List<String> ACTIVE_STATUSES = Collections.unmodifiableList(Arrays.asList(SCHEDULED, RESCHEDULED, null));
+
+    /**
+     * No appointment may be rescheduled or cancelled in the 48 hours before it takes place.
+     */
+    static final int CHANGE_WINDOW_HOURS = 48;
+
+    private AppointmentTransitions() {
+    }
+
+    /**
+     * @return true if an appointment at this time can no longer be rescheduled or cancelled
+     */
+    public static boolean withinChangeWindow(LocalDateTime timing, LocalDateTime now) {
+        return now.isAfter(timing.minusHours(CHANGE_WINDOW_HOURS)) && now.isBefore(timing);
+    }
+
+    /**
+     * Matches the appointment only while it is active, outside its change window and, when the caller supplies
+     * one, still at the expected version.
+     */
+    public static Query transitionQuery(String id, Long expectedVersion, LocalDateTime now) {
+        return transitionQuery(id, expectedVersion, null, now);
+    }
+
+    /**
+     * Matches as {@link #transitionQuery(String, Long, LocalDateTime)} does and, when the caller supplies one, only
+     * while the appointment is still at the expected clinic.
+     */
+    public static Query transitionQuery(String id, Long expectedVersion, String expectedClinicId, LocalDateTime now) {
+        Criteria criteria = Criteria.where("_id").is(id)
+                .and("status").in(ACTIVE_STATUSES)
+                .orOperator(Criteria.where("timing").lte(now),
+                            Criteria.where("timing").gte(now.plusHours(CHANGE_WINDOW_HOURS)));
+        if (expectedVersion != null) {
+            criteria.and("version").is(expectedVersion);
+        }
+        if (expectedClinicId != null) {
+            criteria.and("clinicId").is(expectedClinicId);
+        }
+        return Query.query(criteria);
+    }
+
+    /**
+     * Replaces every client supplied field, as the PUT mapping always has, and bumps the version.
+     */
+    public static Update rescheduleUpdate(Appointment changes) {
+        return new Update()
+                .set("patientId", changes.getPatientId())
+                .set("doctorId", changes.getDoctorId())
+                .set("clinicId", changes.getClinicId())
+                .set("timing", changes.getTiming())
+                .set("description", changes.getDescription())
+                .set("insuranceId", changes.getInsuranceId())
+                .set("copay", changes.getCopay())
+                .set("status", RESCHEDULED)
+                .inc("version", 1);
+    }
+
+    /**
+     * @return The appointment as {@link #rescheduleUpdate(Appointment)} leaves it, given its previous state
+     */
+    public static Appointment applyReschedule(Appointment previous, Appointment changes) {
+        Appointment rescheduled = new Appointment();
+        rescheduled.setId(previous.getId());
+        rescheduled.setPatientId(changes.getPatientId());
+        rescheduled.setDoctorId(changes.getDoctorId());
+        rescheduled.setClinicId(changes.getClinicId());
+        rescheduled.setTiming(changes.getTiming());
+        rescheduled.setDescription(changes.getDescription());
+        rescheduled.setInsuranceId(changes.getInsuranceId());
+        rescheduled.setCopay(changes.getCopay());
+        rescheduled.setStatus(RESCHEDULED);
+        rescheduled.setVersion(previous.getVersion() == null ? 1L : previous.getVersion() + 1);
+        return rescheduled;
+    }
+
+    public static Update cancelUpdate() {
+        return new Update()
+                .set("status", CANCELLED)
+                .inc("version", 1);
+    }
+
+    /**
+     * @return The appointment as {@link #cancelUpdate()} leaves it, given its previous state
+     */
+    public static Appointment applyCancel(Appointment previous) {
+        Appointment cancelled = new Appointment();
+        cancelled.setId(previous.getId());
+        cancelled.setPatientId(previous.getPatientId());
+        cancelled.setDoctorId(previous.getDoctorId());
+        cancelled.setClinicId(previous.getClinicId());
+        cancelled.setTiming(previous.getTiming());
+        cancelled.setDescription(previous.getDescription());
+        cancelled.setInsuranceId(previous.getInsuranceId());
+        cancelled.setCopay(previous.getCopay());
+        cancelled.setStatus(CANCELLED);
+        cancelled.setVersion(previous.getVersion() == null ? 1L : previous.getVersion() + 1);
+        return cancelled;
+    }
+}
@@ -0,0 +1,41 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.AppointmentView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The appointment views are derived data, so they are read through AppointmentViewController and never written
+ * over REST.
+ */
+@RepositoryRestResource(exported = false)
+public interface AppointmentViewRepository extends MongoRepository<AppointmentView, String>, AppointmentViewRepositoryCustom {
+
+    /**
+     * First page of the keyset pagination over the whole collection, ordered by id.
+     */
+    List<AppointmentView> findAllByOrderByIdAsc(Pageable pageable);
+
+    /**
+     * Next page of the keyset pagination, starting right after the last id of the previous page.
+     */
+    List<AppointmentView> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
+
+    /**
+     * Removes the rows no refresh has touched since the given time.
+     * @return Number of rows removed
+     */
+    long deleteByRefreshedAtBefore(LocalDateTime refreshedAt);
+
+    /**
+     * Removes the rows of the given appointments that no refresh has touched since the given time.
+     * @return Number of rows removed
+     */
+    long deleteByIdInAndRefreshedAtBefore(Collection<String> ids, LocalDateTime refreshedAt);
+
+}
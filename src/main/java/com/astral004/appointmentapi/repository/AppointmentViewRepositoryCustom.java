@@ -0,0 +1,25 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.AppointmentView;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface AppointmentViewRepositoryCustom {
+
+    /**
+     * Finds the views matching every supplied filter, ordered by timing, using the index picked by
+     * {@link AppointmentFilter#requireIndex()}.
+     */
+    List<AppointmentView> findByFilter(AppointmentFilter filter);
+
+    /**
+     * Rebuilds the views of every appointment matching the criteria from the current appointment, patient, doctor,
+     * clinic, and address documents. The join runs inside Mongo and its output is merged straight into the view
+     * collection, so nothing passes through the application.
+     * @param appointments Criteria on the appointments collection
+     * @param refreshedAt Time stamped on every refreshed row
+     */
+    void refresh(Criteria appointments, LocalDateTime refreshedAt);
+}
@@ -0,0 +1,110 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.domain.AppointmentView;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.MergeOperation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+public class AppointmentViewRepositoryCustomImpl implements AppointmentViewRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public List<AppointmentView> findByFilter(AppointmentFilter filter) {
+        Query query = Query.query(filter.toCriteria())
+                           .with(Sort.by("timing"))
+                           .withHint(filter.requireIndex());
+        return mongoTemplate.find(query, AppointmentView.class);
+    }
+
+    @Override
+    public void refresh(Criteria appointments, LocalDateTime refreshedAt) {
+        TypedAggregation<Appointment> aggregation = Aggregation.newAggregation(Appointment.class,
+                Aggregation.match(appointments),
+                //references are stored as plain strings, the referenced ids as ObjectIds where they are valid ones
+                stage("$addFields", new Document("patientRef", toObjectId("$patientId"))
+                        .append("doctorRef", toObjectId("$doctorId"))
+                        .append("clinicRef", toObjectId("$clinicId"))),
+                lookup("patients", "patientRef", "patient"),
+                lookup("doctors", "doctorRef", "doctor"),
+                lookup("clinics", "clinicRef", "clinic"),
+                stage("$addFields", new Document("patient", first("$patient"))
+                        .append("doctor", first("$doctor"))
+                        .append("clinic", first("$clinic"))),
+                stage("$addFields", new Document("addressRef", toObjectId("$clinic.addressId"))),
+                lookup("addresses", "addressRef", "address"),
+                stage("$addFields", new Document("address", first("$address"))),
+                stage("$project", new Document("_id", 1)
+                        .append("patientId", 1)
+                        .append("patientName", fullName("$patient"))
+                        .append("patientPhoneNumber", "$patient.phoneNumber")
+                        .append("doctorId", 1)
+                        .append("doctorName", fullName("$doctor"))
+                        .append("doctorSpecialty", "$doctor.specialty")
+                        .append("clinicId", 1)
+                        .append("clinicName", "$clinic.name")
+                        .append("clinicPhoneNumber", "$clinic.phoneNumber")
+                        .append("clinicAddress", new Document("_id", "$address._id")
+                                .append("street", "$address.street")
+                                .append("city", "$address.city")
+                                .append("state", "$address.state")
+                                .append("zipCode", "$address.zipCode"))
+                        .append("timing", 1)
+                        .append("description", 1)
+                        .append("insuranceId", 1)
+                        .append("copay", 1)
+                        .append("status", 1)
+                        .append("version", 1)
+                        .append("refreshedAt", new Document("$literal", mongoTemplate.getConverter().convertToMongoType(refreshedAt)))),
+                Aggregation.merge()
+                        .intoCollection(mongoTemplate.getCollectionName(AppointmentView.class))
+                        .whenMatched(MergeOperation.WhenDocumentsMatch.replaceDocument())
+                        .whenNotMatched(MergeOperation.WhenDocumentsDontMatch.insertNewDocument())
+                        .build())
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        mongoTemplate.aggregate(aggregation, Document.class);
+    }
+
+    private static AggregationOperation stage(String operator, Document body) {
+        return context -> new Document(operator, body);
+    }
+
+    private static AggregationOperation lookup(String from, String localField, String as) {
+        return stage("$lookup", new Document("from", from)
+                .append("localField", localField)
+                .append("foreignField", "_id")
+                .append("as", as));
+    }
+
+    private static Document toObjectId(String field) {
+        return new Document("$convert", new Document("input", field)
+                .append("to", "objectId")
+                .append("onError", field)
+                .append("onNull", null));
+    }
+
+    private static Document first(String field) {
+        return new Document("$arrayElemAt", Arrays.asList(field, 0));
+    }
+
+    private static Document fullName(String person) {
+        return new Document("$trim", new Document("input", new Document("$concat", Arrays.asList(
+                new Document("$ifNull", Arrays.asList(person + ".firstName", "")),
+                " ",
+                new Document("$ifNull", Arrays.asList(person + ".lastName", ""))))));
+    }
+}
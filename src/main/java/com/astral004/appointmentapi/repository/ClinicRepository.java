@@ -1,7 +1,12 @@
 package com.astral004.appointmentapi.repository;
 
 import com.astral004.appointmentapi.domain.Clinic;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+/**
+ * Primary over the reactive repository of the same documents, so Spring Data REST exports this one.
+ */
+@Primary
 public interface ClinicRepository extends MongoRepository<Clinic, String> {
 }
@@ -1,10 +1,20 @@
 package com.astral004.appointmentapi.repository;
 
 import com.astral004.appointmentapi.domain.Doctor;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
 import java.util.List;
 
-public interface DoctorRepository extends MongoRepository<Doctor, String> {
+/**
+ * Primary over the reactive repository of the same documents, so Spring Data REST exports this one.
+ */
+@Primary
+public interface DoctorRepository extends MongoRepository<Doctor, String>, DoctorRepositoryCustom {
     List<Doctor> getDoctorsBySpecialty(String Specialty);
+
+    /**
+     * @return The doctors of the specialty who see patients at the clinic
+     */
+    List<Doctor> getDoctorsBySpecialtyAndClinicIds(String specialty, String clinicId);
 }
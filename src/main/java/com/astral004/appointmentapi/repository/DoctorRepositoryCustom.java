@@ -0,0 +1,20 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.Doctor;
+
+import java.util.List;
+
+public interface DoctorRepositoryCustom {
+
+    /**
+     * Reads one keyset page of doctors ordered by id, with only the selected properties.
+     * @param afterId Id of the last doctor of the previous page, or null for the first page
+     * @param size Page size, or 0 for every remaining doctor
+     */
+    List<Doctor> findSelectedPage(String afterId, int size, FieldSelection fields);
+
+    /**
+     * @return The selected properties of the doctor with this id, or null if it does not exist
+     */
+    Doctor findSelectedById(String id, FieldSelection fields);
+}
@@ -0,0 +1,23 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.Doctor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+public class DoctorRepositoryCustomImpl implements DoctorRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Doctor> findSelectedPage(String afterId, int size, FieldSelection fields) {
+        return mongoTemplate.find(fields.page(afterId, size), Doctor.class);
+    }
+
+    @Override
+    public Doctor findSelectedById(String id, FieldSelection fields) {
+        return mongoTemplate.findOne(fields.byId(id), Doctor.class);
+    }
+}
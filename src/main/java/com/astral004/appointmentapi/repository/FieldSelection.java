@@ -0,0 +1,144 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.exception.InvalidFieldsException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The properties a caller asked for with a fields= parameter, checked against the mapping of the document they are
+ * read from. Queries carry them as a Mongo projection, so the other properties are never read from disk or sent
+ * over the wire, and responses are built from the selected properties alone.
+ */
+public class FieldSelection {
+
+    private final MongoPersistentEntity<?> entity;
+    private final List<MongoPersistentProperty> properties;
+    /** Properties read along with the selected ones, but left out of responses */
+    private final List<MongoPersistentProperty> alsoRead;
+
+    private FieldSelection(MongoPersistentEntity<?> entity, List<MongoPersistentProperty> properties,
+                           List<MongoPersistentProperty> alsoRead) {
+        this.entity = entity;
+        this.properties = properties;
+        this.alsoRead = alsoRead;
+    }
+
+    /**
+     * @param fields Comma separated property names, as they appear in the JSON of the document
+     * @param entity Mapping of the document the properties are read from
+     * @return The selected properties, in the order they were asked for
+     * @throws InvalidFieldsException if a name is not a property of the document, or no name was given
+     */
+    public static FieldSelection parse(String fields, MongoPersistentEntity<?> entity) {
+        List<MongoPersistentProperty> properties = new ArrayList<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            MongoPersistentProperty property = entity.getPersistentProperty(name);
+            if (property == null) {
+                throw new InvalidFieldsException(entity.getType().getSimpleName() + " has no field " + name + "!");
+            }
+            if (!properties.contains(property)) {
+                properties.add(property);
+            }
+        }
+        if (properties.isEmpty()) {
+            throw new InvalidFieldsException("No fields were selected!");
+        }
+        return new FieldSelection(entity, properties, new ArrayList<>());
+    }
+
+    /**
+     * @param name Property the application needs to read, whether or not the caller selected it
+     * @return The same selection also reading the property, which is still left out of responses unless selected
+     */
+    public FieldSelection alsoReading(String name) {
+        MongoPersistentProperty property = entity.getRequiredPersistentProperty(name);
+        if (properties.contains(property) || alsoRead.contains(property)) {
+            return this;
+        }
+        List<MongoPersistentProperty> read = new ArrayList<>(alsoRead);
+        read.add(property);
+        return new FieldSelection(entity, properties, read);
+    }
+
+    /**
+     * Adds the projection to a query. The id and any version are always read, so pages can still be continued
+     * after the id and responses tagged with the version.
+     * @return The same query
+     */
+    public Query applyTo(Query query) {
+        for (MongoPersistentProperty property : properties) {
+            query.fields().include(property.getName());
+        }
+        for (MongoPersistentProperty property : alsoRead) {
+            query.fields().include(property.getName());
+        }
+        if (entity.hasVersionProperty()) {
+            query.fields().include(entity.getRequiredVersionProperty().getName());
+        }
+        return query;
+    }
+
+    /**
+     * @param afterId Id of the last document of the previous page, or null for the first page
+     * @param size Page size, or 0 for every remaining document
+     * @return Query for one keyset page of the selected properties, ordered by id
+     */
+    public Query page(String afterId, int size) {
+        Query query = afterId == null ? new Query() : Query.query(Criteria.where("id").gt(afterId));
+        return applyTo(query.with(Sort.by("id")).limit(size));
+    }
+
+    /**
+     * @return Query for the selected properties of one document
+     */
+    public Query byId(String id) {
+        return applyTo(Query.query(Criteria.where("id").is(id)));
+    }
+
+    /**
+     * Helper method to keep only the selected properties of a document for the response
+     * @param document Document read with this projection
+     * @return Selected properties by name, in the order they were asked for
+     */
+    public Map<String, Object> select(Object document) {
+        PersistentPropertyAccessor<?> accessor = entity.getPropertyAccessor(document);
+        Map<String, Object> selected = new LinkedHashMap<>();
+        for (MongoPersistentProperty property : properties) {
+            selected.put(property.getName(), accessor.getProperty(property));
+        }
+        return selected;
+    }
+
+    /**
+     * Same as {@link #select(Object)}, for every document of a list.
+     */
+    public List<Map<String, Object>> select(List<?> documents) {
+        List<Map<String, Object>> selected = new ArrayList<>(documents.size());
+        for (Object document : documents) {
+            selected.add(select(document));
+        }
+        return selected;
+    }
+
+    @Override
+    public String toString() {
+        List<String> names = new ArrayList<>(properties.size());
+        for (MongoPersistentProperty property : properties) {
+            names.add(property.getName());
+        }
+        return String.join(",", names);
+    }
+}
@@ -1,11 +1,16 @@
 package com.astral004.appointmentapi.repository;
 
 import com.astral004.appointmentapi.domain.Patient;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
 import java.util.List;
 
-public interface PatientRepository extends MongoRepository<Patient, String> {
+/**
+ * Primary over the reactive repository of the same documents, so Spring Data REST exports this one.
+ */
+@Primary
+public interface PatientRepository extends MongoRepository<Patient, String>, PatientRepositoryCustom {
     List<Patient> getAllByLastName(String lastName);
     List<Patient> getAllByFirstTime(Boolean firstTime);
 }
@@ -0,0 +1,20 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.Patient;
+
+import java.util.List;
+
+public interface PatientRepositoryCustom {
+
+    /**
+     * Reads one keyset page of patients ordered by id, with only the selected properties.
+     * @param afterId Id of the last patient of the previous page, or null for the first page
+     * @param size Page size, or 0 for every remaining patient
+     */
+    List<Patient> findSelectedPage(String afterId, int size, FieldSelection fields);
+
+    /**
+     * @return The selected properties of the patient with this id, or null if it does not exist
+     */
+    Patient findSelectedById(String id, FieldSelection fields);
+}
@@ -0,0 +1,23 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.Patient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+public class PatientRepositoryCustomImpl implements PatientRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Patient> findSelectedPage(String afterId, int size, FieldSelection fields) {
+        return mongoTemplate.find(fields.page(afterId, size), Patient.class);
+    }
+
+    @Override
+    public Patient findSelectedById(String id, FieldSelection fields) {
+        return mongoTemplate.findOne(fields.byId(id), Patient.class);
+    }
+}
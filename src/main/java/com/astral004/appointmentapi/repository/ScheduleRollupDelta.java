@@ -0,0 +1,60 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+/**
+ * A change to the count and copay total of one status in one schedule rollup.
+ */
+@Getter
+@ToString
+public class ScheduleRollupDelta {
+
+    static final String NO_STATUS = "None";
+
+    private final String doctorId;
+    private final String clinicId;
+    private final LocalDate day;
+    private final String status;
+    private final long count;
+    private final long copay;
+
+    public ScheduleRollupDelta(String doctorId, String clinicId, LocalDate day, String status, long count, long copay) {
+        this.doctorId = doctorId;
+        this.clinicId = clinicId;
+        this.day = day;
+        this.status = statusKey(status);
+        this.count = count;
+        this.copay = copay;
+    }
+
+    /**
+     * @param appointment Appointment to count, which must have a timing
+     * @param sign 1 to add the appointment to its rollup, -1 to take it out
+     */
+    public static ScheduleRollupDelta of(Appointment appointment, int sign) {
+        return new ScheduleRollupDelta(appointment.getDoctorId(), appointment.getClinicId(),
+                appointment.getTiming().toLocalDate(), appointment.getStatus(),
+                sign, appointment.getCopay() == null ? 0 : (long) sign * appointment.getCopay());
+    }
+
+    public String getRollupId() {
+        return doctorId + "/" + clinicId + "/" + day;
+    }
+
+    /**
+     * Helper method to turn a status into a field name, since statuses written around the API are free text
+     * @param status Appointment status
+     * @return Key of the status in the rollup's maps
+     */
+    static String statusKey(String status) {
+        if (status == null || status.isEmpty()) {
+            return NO_STATUS;
+        }
+        String key = status.replace('.', '_');
+        return key.startsWith("$") ? "_" + key.substring(1) : key;
+    }
+}
@@ -0,0 +1,13 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.ScheduleRollup;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+/**
+ * The schedule rollups are derived data, so they are read through ScheduleSummaryController and never written
+ * over REST.
+ */
+@RepositoryRestResource(exported = false)
+public interface ScheduleRollupRepository extends MongoRepository<ScheduleRollup, String>, ScheduleRollupRepositoryCustom {
+}
@@ -0,0 +1,30 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.ScheduleRollup;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface ScheduleRollupRepositoryCustom {
+
+    /**
+     * Finds the rollups of a doctor, a clinic, or a doctor at a clinic, ordered by day.
+     * @param from Earliest day, inclusive, or null
+     * @param to Latest day, inclusive, or null
+     */
+    List<ScheduleRollup> findSummary(String doctorId, String clinicId, LocalDate from, LocalDate to);
+
+    /**
+     * Adds every delta to its rollup, creating the rollups that do not exist yet, in one bulk write.
+     */
+    void increment(Collection<ScheduleRollupDelta> deltas);
+
+    /**
+     * Adds every appointment stored in a collection to the rollups. The appointments are counted inside Mongo,
+     * only the counts reach the application.
+     * @param appointmentCollection The live or the archive collection
+     * @return Number of counts added
+     */
+    long incrementFrom(String appointmentCollection);
+}
@@ -0,0 +1,119 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.ScheduleRollup;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ScheduleRollupRepositoryCustomImpl implements ScheduleRollupRepositoryCustom {
+
+    private static final int INCREMENT_CHUNK = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public List<ScheduleRollup> findSummary(String doctorId, String clinicId, LocalDate from, LocalDate to) {
+        Criteria criteria = new Criteria();
+        if (doctorId != null) {
+            criteria.and("doctorId").is(doctorId);
+        }
+        if (clinicId != null) {
+            criteria.and("clinicId").is(clinicId);
+        }
+        if (from != null || to != null) {
+            Criteria day = criteria.and("day");
+            if (from != null) {
+                day.gte(from);
+            }
+            if (to != null) {
+                day.lte(to);
+            }
+        }
+        Query query = Query.query(criteria)
+                           .with(Sort.by("day"))
+                           .withHint(doctorId != null ? "doctor_day" : "clinic_day");
+        return mongoTemplate.find(query, ScheduleRollup.class);
+    }
+
+    @Override
+    public void increment(Collection<ScheduleRollupDelta> deltas) {
+        //an update may only name a field once, so the deltas of each status are summed first
+        Map<String, ScheduleRollupDelta> summed = new LinkedHashMap<>();
+        for (ScheduleRollupDelta delta : deltas) {
+            summed.merge(delta.getRollupId() + "|" + delta.getStatus(), delta, (a, b) -> new ScheduleRollupDelta(
+                    a.getDoctorId(), a.getClinicId(), a.getDay(), a.getStatus(),
+                    a.getCount() + b.getCount(), a.getCopay() + b.getCopay()));
+        }
+        Map<String, Update> updates = new LinkedHashMap<>();
+        for (ScheduleRollupDelta delta : summed.values()) {
+            if (delta.getCount() == 0 && delta.getCopay() == 0) {
+                continue;
+            }
+            updates.computeIfAbsent(delta.getRollupId(), id -> new Update()
+                    .setOnInsert("doctorId", delta.getDoctorId())
+                    .setOnInsert("clinicId", delta.getClinicId())
+                    .setOnInsert("day", delta.getDay()))
+                   .inc("counts." + delta.getStatus(), delta.getCount())
+                   .inc("copays." + delta.getStatus(), delta.getCopay());
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+        BulkOperations rollups = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ScheduleRollup.class);
+        for (Map.Entry<String, Update> update : updates.entrySet()) {
+            rollups.upsert(Query.query(Criteria.where("_id").is(update.getKey())), update.getValue());
+        }
+        rollups.execute();
+    }
+
+    @Override
+    public long incrementFrom(String appointmentCollection) {
+        //days are cut in the application's time zone, as LocalDateTime.toLocalDate() cuts them
+        DateOperators.Timezone zone = DateOperators.Timezone.valueOf(ZoneId.systemDefault().getId());
+        Aggregation counting = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("timing").ne(null)),
+                Aggregation.project("doctorId", "clinicId", "status", "copay")
+                           .and(DateOperators.dateOf("timing").withTimezone(zone).toString("%Y-%m-%d")).as("day"),
+                Aggregation.group("doctorId", "clinicId", "day", "status")
+                           .count().as("count")
+                           .sum("copay").as("copay"))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        long added = 0;
+        List<ScheduleRollupDelta> chunk = new ArrayList<>(INCREMENT_CHUNK);
+        try (CloseableIterator<Document> counts = mongoTemplate.aggregateStream(counting, appointmentCollection, Document.class)) {
+            while (counts.hasNext()) {
+                Document count = counts.next();
+                Document key = count.get("_id", Document.class);
+                chunk.add(new ScheduleRollupDelta(key.getString("doctorId"), key.getString("clinicId"),
+                        LocalDate.parse(key.getString("day")), key.getString("status"),
+                        ((Number) count.get("count")).longValue(), ((Number) count.get("copay")).longValue()));
+                if (chunk.size() == INCREMENT_CHUNK) {
+                    increment(chunk);
+                    added += chunk.size();
+                    chunk.clear();
+                }
+            }
+        }
+        increment(chunk);
+        return added + chunk.size();
+    }
+}
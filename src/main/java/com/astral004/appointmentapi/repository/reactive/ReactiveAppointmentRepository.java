@@ -0,0 +1,32 @@
+package com.astral004.appointmentapi.repository.reactive;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive equivalent of {@link com.astral004.appointmentapi.repository.AppointmentRepository}, used by the
+ * reactive web mode.
+ */
+public interface ReactiveAppointmentRepository extends ReactiveMongoRepository<Appointment, String>, ReactiveAppointmentRepositoryCustom {
+
+    /**
+     * First page of the keyset pagination over the whole collection, ordered by id.
+     */
+    Flux<Appointment> findAllByOrderByIdAsc(Pageable pageable);
+
+    /**
+     * Next page of the keyset pagination, starting right after the last id of the previous page.
+     */
+    Flux<Appointment> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
+
+    /**
+     * Reads nothing but the id and version of an appointment, enough to answer a conditional GET.
+     */
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'version': 1 }")
+    Mono<Appointment> findVersionById(String id);
+
+}
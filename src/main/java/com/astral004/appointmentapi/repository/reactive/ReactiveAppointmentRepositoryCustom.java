@@ -0,0 +1,66 @@
+package com.astral004.appointmentapi.repository.reactive;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.repository.AppointmentFilter;
+import com.astral004.appointmentapi.repository.AppointmentTransitions;
+import com.astral004.appointmentapi.repository.FieldSelection;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+public interface ReactiveAppointmentRepositoryCustom {
+
+    /**
+     * Finds the appointments matching every supplied filter, ordered by timing, using the index picked by
+     * {@link AppointmentFilter#requireIndex()}.
+     */
+    Flux<Appointment> findByFilter(AppointmentFilter filter);
+
+    /**
+     * Same as {@link #findByFilter(AppointmentFilter)}, over the archived appointments.
+     */
+    Flux<Appointment> findArchivedByFilter(AppointmentFilter filter);
+
+    /**
+     * Reads one keyset page of appointments ordered by id, with only the selected properties.
+     * @param afterId Id of the last appointment of the previous page, or null for the first page
+     * @param size Page size, or 0 for every remaining appointment
+     */
+    Flux<Appointment> findSelectedPage(String afterId, int size, FieldSelection fields);
+
+    /**
+     * @return The selected properties of the appointment with this id, or empty if it does not exist
+     */
+    Mono<Appointment> findSelectedById(String id, FieldSelection fields);
+
+    /**
+     * @return The archived appointment with this id, or empty if it was never archived
+     */
+    Mono<Appointment> findArchivedById(String id);
+
+    /**
+     * Inserts all appointments in one unordered bulk write, so a failing document does not stop the rest.
+     * Appointments without an id are given one first.
+     * @return Error message for every appointment that could not be inserted, keyed by its position in the list
+     */
+    Mono<Map<Integer, String>> insertUnordered(List<Appointment> appointments);
+
+    /**
+     * Atomically reschedules an appointment with the values of changes, see {@link AppointmentTransitions}.
+     * @param expectedVersion Version the caller last saw, or null to skip the version check
+     * @return The appointment as it was before rescheduling, or empty if no active appointment outside its change
+     * window matched
+     */
+    Mono<Appointment> reschedule(String id, Appointment changes, Long expectedVersion, LocalDateTime now);
+
+    /**
+     * Atomically cancels an appointment, see {@link AppointmentTransitions}.
+     * @param expectedVersion Version the caller last saw, or null to skip the version check
+     * @return The appointment as it was before cancelling, or empty if no active appointment outside its change
+     * window matched
+     */
+    Mono<Appointment> cancel(String id, Long expectedVersion, LocalDateTime now);
+}
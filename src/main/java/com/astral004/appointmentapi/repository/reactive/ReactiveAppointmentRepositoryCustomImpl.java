@@ -0,0 +1,114 @@
+package com.astral004.appointmentapi.repository.reactive;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.repository.AppointmentFilter;
+import com.astral004.appointmentapi.repository.AppointmentTransitions;
+import com.astral004.appointmentapi.repository.FieldSelection;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ReactiveAppointmentRepositoryCustomImpl implements ReactiveAppointmentRepositoryCustom {
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Flux<Appointment> findByFilter(AppointmentFilter filter) {
+        Query query = Query.query(filter.toCriteria())
+                           .with(Sort.by("timing"))
+                           .withHint(filter.requireIndex());
+        if (filter.getFields() != null) {
+            filter.getFields().applyTo(query);
+        }
+        return reactiveMongoTemplate.find(query, Appointment.class);
+    }
+
+    @Override
+    public Flux<Appointment> findArchivedByFilter(AppointmentFilter filter) {
+        Query query = Query.query(filter.toCriteria())
+                           .with(Sort.by("timing"))
+                           .withHint(filter.requireIndex());
+        if (filter.getFields() != null) {
+            filter.getFields().applyTo(query);
+        }
+        return reactiveMongoTemplate.find(query, Appointment.class, Appointment.ARCHIVE_COLLECTION);
+    }
+
+    @Override
+    public Flux<Appointment> findSelectedPage(String afterId, int size, FieldSelection fields) {
+        return reactiveMongoTemplate.find(fields.page(afterId, size), Appointment.class);
+    }
+
+    @Override
+    public Mono<Appointment> findSelectedById(String id, FieldSelection fields) {
+        return reactiveMongoTemplate.findOne(fields.byId(id), Appointment.class);
+    }
+
+    @Override
+    public Mono<Appointment> findArchivedById(String id) {
+        return reactiveMongoTemplate.findById(id, Appointment.class, Appointment.ARCHIVE_COLLECTION);
+    }
+
+    @Override
+    public Mono<Map<Integer, String>> insertUnordered(List<Appointment> appointments) {
+        if (appointments.isEmpty()) {
+            return Mono.just(Collections.emptyMap());
+        }
+        //the reactive template has no bulk operations, so the documents go straight to the driver
+        List<Document> documents = new ArrayList<>(appointments.size());
+        for (Appointment appointment : appointments) {
+            if (appointment.getId() == null) {
+                appointment.setId(new ObjectId().toHexString());
+            }
+            if (appointment.getVersion() == null) {
+                appointment.setVersion(0L);
+            }
+            Document document = new Document();
+            reactiveMongoTemplate.getConverter().write(appointment, document);
+            documents.add(document);
+        }
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(Appointment.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false))))
+                .<Map<Integer, String>>map(result -> Collections.emptyMap())
+                .onErrorResume(MongoBulkWriteException.class, e -> {
+                    Map<Integer, String> failures = new HashMap<>();
+                    for (BulkWriteError error : e.getWriteErrors()) {
+                        failures.put(error.getIndex(), error.getMessage());
+                    }
+                    return Mono.just(failures);
+                });
+    }
+
+    @Override
+    public Mono<Appointment> reschedule(String id, Appointment changes, Long expectedVersion, LocalDateTime now) {
+        return reactiveMongoTemplate.findAndModify(AppointmentTransitions.transitionQuery(id, expectedVersion, now),
+                AppointmentTransitions.rescheduleUpdate(changes),
+                FindAndModifyOptions.options().returnNew(false),
+                Appointment.class);
+    }
+
+    @Override
+    public Mono<Appointment> cancel(String id, Long expectedVersion, LocalDateTime now) {
+        return reactiveMongoTemplate.findAndModify(AppointmentTransitions.transitionQuery(id, expectedVersion, now),
+                AppointmentTransitions.cancelUpdate(),
+                FindAndModifyOptions.options().returnNew(false),
+                Appointment.class);
+    }
+}
@@ -0,0 +1,21 @@
+package com.astral004.appointmentapi.repository.reactive;
+
+import com.astral004.appointmentapi.domain.Clinic;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+/**
+ * Reactive equivalent of {@link com.astral004.appointmentapi.repository.ClinicRepository}, used by the reactive
+ * web mode.
+ */
+public interface ReactiveClinicRepository extends ReactiveMongoRepository<Clinic, String> {
+
+    /**
+     * Finds which of the given ids exist, reading nothing but the ids.
+     */
+    @Query(value = "{ '_id': { $in: ?0 } }", fields = "{ '_id': 1 }")
+    Flux<Clinic> findIdsByIdIn(Collection<String> ids);
+}
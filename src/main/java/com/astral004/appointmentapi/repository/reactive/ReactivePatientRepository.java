@@ -0,0 +1,24 @@
+package com.astral004.appointmentapi.repository.reactive;
+
+import com.astral004.appointmentapi.domain.Patient;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+/**
+ * Reactive equivalent of {@link com.astral004.appointmentapi.repository.PatientRepository}, used by the reactive
+ * web mode.
+ */
+public interface ReactivePatientRepository extends ReactiveMongoRepository<Patient, String> {
+
+    /**
+     * Finds which of the given ids exist, reading nothing but the ids.
+     */
+    @Query(value = "{ '_id': { $in: ?0 } }", fields = "{ '_id': 1 }")
+    Flux<Patient> findIdsByIdIn(Collection<String> ids);
+
+    Flux<Patient> getAllByLastName(String lastName);
+    Flux<Patient> getAllByFirstTime(Boolean firstTime);
+}
@@ -0,0 +1,94 @@
+package com.astral004.appointmentapi.rollup;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.event.AppointmentChange;
+import com.astral004.appointmentapi.event.AppointmentsChangedEvent;
+import com.astral004.appointmentapi.partition.ClinicPartitions;
+import com.astral004.appointmentapi.repository.ScheduleRollupDelta;
+import com.astral004.appointmentapi.repository.ScheduleRollupRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the schedule rollups counting every appointment. Each create, reschedule, and cancel adds its appointment
+ * to the rollup of its new day and status and takes it out of the old one, in the request that made the change,
+ * so a summary read right after a write already shows it.
+ */
+@Slf4j
+@Component
+public class ScheduleRollupMaintainer {
+
+    @Autowired
+    private ScheduleRollupRepository scheduleRollupRepository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private ClinicPartitions clinicPartitions;
+
+    @EventListener
+    public void onAppointmentsChanged(AppointmentsChangedEvent event) {
+        List<ScheduleRollupDelta> deltas = deltas(event.getChanges());
+        if (Schedulers.isInNonBlockingThread()) {
+            //published from the reactive write paths, which must not block on the rollup write
+            Schedulers.boundedElastic().schedule(() -> increment(deltas));
+        } else {
+            increment(deltas);
+        }
+    }
+
+    /**
+     * Recounts every rollup from the live and archived appointments, for example after appointments were loaded
+     * around the application. Changes made while it runs may be counted twice, as are the appointments of a clinic
+     * being moved between partitions, so it is meant for quiet times.
+     * @return Number of counts written
+     */
+    public long rebuild() {
+        scheduleRollupRepository.deleteAll();
+        long written = 0;
+        for (int partition = 0; partition < clinicPartitions.size(); partition++) {
+            //the appointments are read in the partition, the rollups stay in the home database
+            written += clinicPartitions.inPartition(partition, () ->
+                    scheduleRollupRepository.incrementFrom(mongoTemplate.getCollectionName(Appointment.class))
+                    + scheduleRollupRepository.incrementFrom(Appointment.ARCHIVE_COLLECTION));
+        }
+        return written;
+    }
+
+    /**
+     * Helper method to work out what changes move between rollups
+     * @param changes Changes to appointments
+     * @return Deltas taking each previous state out and adding each current state
+     */
+    static List<ScheduleRollupDelta> deltas(List<AppointmentChange> changes) {
+        List<ScheduleRollupDelta> deltas = new ArrayList<>(changes.size() * 2);
+        for (AppointmentChange change : changes) {
+            if (change.getPrevious() != null && change.getPrevious().getTiming() != null) {
+                deltas.add(ScheduleRollupDelta.of(change.getPrevious(), -1));
+            }
+            if (change.getCurrent().getTiming() != null) {
+                deltas.add(ScheduleRollupDelta.of(change.getCurrent(), 1));
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Helper method to write the deltas, without failing the write that caused them
+     * @param deltas Deltas to add to the rollups
+     */
+    private void increment(List<ScheduleRollupDelta> deltas) {
+        try {
+            scheduleRollupRepository.increment(deltas);
+        } catch (Exception e) {
+            //the rollups stay off by these deltas until the next rebuild
+            log.warn("Could not update the schedule rollups with {}", deltas, e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.astral004.appointmentapi.routing;
+
+import com.mongodb.client.ClientSession;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Adds the consistency token of a pinned request to its response, just before the body is written, once every
+ * operation of the handler is done. Responses without a body pass through here as well.
+ */
+@ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ConsistencyTokenAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        ReadRoute route = ReadRoute.current();
+        ClientSession session = route == null ? null : route.getSession();
+        if (session != null && session.getOperationTime() != null) {
+            response.getHeaders().set(ReadRoutingWebMvcConfigurer.CONSISTENCY_TOKEN_HEADER,
+                    ReadRoutingWebMvcConfigurer.encodeConsistencyToken(session.getOperationTime()));
+        }
+        return body;
+    }
+}
@@ -0,0 +1,61 @@
+package com.astral004.appointmentapi.routing;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.reactivestreams.client.ClientSession;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * The {@link ReadRoute} of a request of the reactive web mode. A reactive request moves between threads, so its
+ * route travels in the Reactor context of the request instead of a thread local, and reaches every repository call
+ * subscribed within it.
+ */
+public final class ReactiveReadRoute {
+
+    private final ReadPreference readPreference;
+    private final ClientSession session;
+
+    private ReactiveReadRoute(ReadPreference readPreference, ClientSession session) {
+        this.readPreference = readPreference;
+        this.session = session;
+    }
+
+    /**
+     * @return Route of reads that may be served by any member the read preference selects
+     */
+    public static ReactiveReadRoute of(ReadPreference readPreference) {
+        return new ReactiveReadRoute(readPreference, null);
+    }
+
+    /**
+     * @return Route of reads and writes that go to the primary within the session
+     */
+    public static ReactiveReadRoute pinned(ClientSession session) {
+        return new ReactiveReadRoute(ReadPreference.primary(), session);
+    }
+
+    /**
+     * @return Route in the context of the subscriber, or nothing if there is none
+     */
+    public static Mono<ReactiveReadRoute> current() {
+        return Mono.deferContextual(context -> Mono.justOrEmpty(context.getOrEmpty(ReactiveReadRoute.class)));
+    }
+
+    /**
+     * @return The context with this route in it
+     */
+    public Context putIn(Context context) {
+        return context.put(ReactiveReadRoute.class, this);
+    }
+
+    public ReadPreference getReadPreference() {
+        return readPreference;
+    }
+
+    /**
+     * @return The causally consistent session of a pinned route, or null
+     */
+    public ClientSession getSession() {
+        return session;
+    }
+}
@@ -0,0 +1,67 @@
+package com.astral004.appointmentapi.routing;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ClientSession;
+
+/**
+ * Where the reads of the request being handled on this thread go: to the members of the replica set a read
+ * preference selects, or to the primary within a causally consistent session. Work done outside a request has no
+ * route and reads the primary as the client is configured to.
+ * <p>
+ * The route only reaches work the request does on its own thread, and the reference lookups it hands to the lookup
+ * threads. Appointments created through the insert coalescer are written by the flushing thread outside the session
+ * of the request, so the token returned for them does not cover the insert, and a read made with it may still miss
+ * the new appointment.
+ */
+public final class ReadRoute {
+
+    private static final ThreadLocal<ReadRoute> CURRENT = new ThreadLocal<>();
+
+    private final ReadPreference readPreference;
+    private final ClientSession session;
+
+    private ReadRoute(ReadPreference readPreference, ClientSession session) {
+        this.readPreference = readPreference;
+        this.session = session;
+    }
+
+    /**
+     * @return Route of reads that may be served by any member the read preference selects
+     */
+    public static ReadRoute of(ReadPreference readPreference) {
+        return new ReadRoute(readPreference, null);
+    }
+
+    /**
+     * @return Route of reads and writes that go to the primary within the session
+     */
+    public static ReadRoute pinned(ClientSession session) {
+        return new ReadRoute(ReadPreference.primary(), session);
+    }
+
+    /**
+     * @return Route of the request being handled on this thread, or null if there is none
+     */
+    public static ReadRoute current() {
+        return CURRENT.get();
+    }
+
+    public static void set(ReadRoute route) {
+        CURRENT.set(route);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    public ReadPreference getReadPreference() {
+        return readPreference;
+    }
+
+    /**
+     * @return The causally consistent session of a pinned route, or null
+     */
+    public ClientSession getSession() {
+        return session;
+    }
+}
@@ -0,0 +1,42 @@
+package com.astral004.appointmentapi.routing;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.mongo.MongoClientFactory;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+
+import java.util.stream.Collectors;
+
+/**
+ * Replaces the database factory Spring Boot would create with the same factory wrapped in a
+ * {@link RoutingMongoDatabaseFactory}, so the MongoTemplate and every repository built on it follow read routes.
+ * The reactive database factory is wrapped the same way in a {@link RoutingReactiveMongoDatabaseFactory}.
+ * <p>
+ * Spring Boot backs off from creating the blocking MongoClient as soon as any database factory is declared, so the
+ * client is created here the way Spring Boot would, from the same settings and customizers as the reactive client.
+ */
+@Configuration
+public class ReadRoutingConfiguration {
+
+    @Bean
+    public MongoClient mongo(ObjectProvider<MongoClientSettingsBuilderCustomizer> builderCustomizers, MongoClientSettings settings) {
+        return new MongoClientFactory(builderCustomizers.orderedStream().collect(Collectors.toList())).createMongoClient(settings);
+    }
+
+    @Bean
+    public RoutingMongoDatabaseFactory mongoDatabaseFactory(MongoClient mongoClient, MongoProperties properties) {
+        return new RoutingMongoDatabaseFactory(new SimpleMongoClientDatabaseFactory(mongoClient, properties.getMongoClientDatabase()));
+    }
+
+    @Bean
+    public RoutingReactiveMongoDatabaseFactory reactiveMongoDatabaseFactory(com.mongodb.reactivestreams.client.MongoClient reactiveMongoClient,
+                                                                            MongoProperties properties) {
+        return new RoutingReactiveMongoDatabaseFactory(new SimpleReactiveMongoDatabaseFactory(reactiveMongoClient, properties.getMongoClientDatabase()));
+    }
+}
@@ -0,0 +1,69 @@
+package com.astral004.appointmentapi.routing;
+
+import com.mongodb.ReadPreference;
+import org.bson.BsonTimestamp;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes the requests of the reactive web mode the way {@link ReadRoutingWebMvcConfigurer} routes those of the
+ * servlet web mode, with the same properties and the same X-Consistency-Token header. The route is put in the
+ * Reactor context of the request, and a pinned request adds its token just before its response is committed.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReadRoutingWebFilter implements WebFilter {
+
+    private final RoutingReactiveMongoDatabaseFactory databaseFactory;
+    private final boolean enabled;
+    private final ReadPreference readPreference;
+
+    public ReadRoutingWebFilter(ObjectProvider<RoutingReactiveMongoDatabaseFactory> databaseFactory,
+                                @Value("${appointments.read-routing.enabled:false}") boolean enabled,
+                                @Value("${appointments.read-routing.max-staleness-seconds:90}") long maxStalenessSeconds) {
+        if (maxStalenessSeconds < ReadRoutingWebMvcConfigurer.MIN_MAX_STALENESS_SECONDS) {
+            throw new IllegalArgumentException("appointments.read-routing.max-staleness-seconds must be at least "
+                    + ReadRoutingWebMvcConfigurer.MIN_MAX_STALENESS_SECONDS);
+        }
+        this.databaseFactory = databaseFactory.getIfAvailable();
+        this.enabled = enabled;
+        this.readPreference = ReadPreference.secondaryPreferred(maxStalenessSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled || databaseFactory == null) {
+            return chain.filter(exchange);
+        }
+        String token = exchange.getRequest().getHeaders().getFirst(ReadRoutingWebMvcConfigurer.CONSISTENCY_TOKEN_HEADER);
+        if (token == null && !isWrite(exchange.getRequest().getMethod())) {
+            return chain.filter(exchange).contextWrite(ReactiveReadRoute.of(readPreference)::putIn);
+        }
+        BsonTimestamp operationTime = token == null ? null : ReadRoutingWebMvcConfigurer.decodeConsistencyToken(token);
+        return Mono.usingWhen(databaseFactory.startCausalSession(), session -> {
+            if (operationTime != null) {
+                session.advanceOperationTime(operationTime);
+            }
+            exchange.getResponse().beforeCommit(() -> Mono.fromRunnable(() -> {
+                if (session.getOperationTime() != null) {
+                    exchange.getResponse().getHeaders().set(ReadRoutingWebMvcConfigurer.CONSISTENCY_TOKEN_HEADER,
+                            ReadRoutingWebMvcConfigurer.encodeConsistencyToken(session.getOperationTime()));
+                }
+            }));
+            return chain.filter(exchange).contextWrite(ReactiveReadRoute.pinned(session)::putIn);
+        }, session -> Mono.fromRunnable(session::close));
+    }
+
+    private static boolean isWrite(HttpMethod method) {
+        return !(method == HttpMethod.GET || method == HttpMethod.HEAD || method == HttpMethod.OPTIONS);
+    }
+}
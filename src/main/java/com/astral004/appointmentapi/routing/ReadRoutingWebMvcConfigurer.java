@@ -0,0 +1,136 @@
+package com.astral004.appointmentapi.routing;
+
+import com.astral004.appointmentapi.exception.InvalidConsistencyTokenException;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ClientSession;
+import org.bson.BsonTimestamp;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes the requests of the servlet web mode. Reads go to a secondary that is at most the configured staleness
+ * behind the primary, or to the primary if no secondary is that fresh. Writes go to the primary within a causally
+ * consistent session, and the operation time of that session is returned in the X-Consistency-Token header. A
+ * request that sends the token back is pinned to the primary within a session that has seen that operation time,
+ * so it reads its own writes even right after the primary changed. Routing is off unless
+ * appointments.read-routing.enabled is set, since it needs a replica set; see {@link ReadRoute} for what the route
+ * does not reach.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ReadRoutingWebMvcConfigurer implements WebMvcConfigurer {
+
+    static final String CONSISTENCY_TOKEN_HEADER = "X-Consistency-Token";
+    /** Least staleness the driver accepts */
+    static final int MIN_MAX_STALENESS_SECONDS = 90;
+
+    private final RoutingMongoDatabaseFactory databaseFactory;
+    private final boolean enabled;
+    private final ReadPreference readPreference;
+
+    public ReadRoutingWebMvcConfigurer(ObjectProvider<RoutingMongoDatabaseFactory> databaseFactory,
+                                       @Value("${appointments.read-routing.enabled:false}") boolean enabled,
+                                       @Value("${appointments.read-routing.max-staleness-seconds:90}") long maxStalenessSeconds) {
+        if (maxStalenessSeconds < MIN_MAX_STALENESS_SECONDS) {
+            throw new IllegalArgumentException("appointments.read-routing.max-staleness-seconds must be at least "
+                    + MIN_MAX_STALENESS_SECONDS);
+        }
+        this.databaseFactory = databaseFactory.getIfAvailable();
+        this.enabled = enabled;
+        this.readPreference = ReadPreference.secondaryPreferred(maxStalenessSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!enabled || databaseFactory == null) {
+            return;
+        }
+        registry.addInterceptor(new AsyncHandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                if (request.getDispatcherType() != DispatcherType.REQUEST || !(handler instanceof HandlerMethod)) {
+                    return true;
+                }
+                String token = request.getHeader(CONSISTENCY_TOKEN_HEADER);
+                if (token == null && !isWrite(request)) {
+                    ReadRoute.set(ReadRoute.of(readPreference));
+                    return true;
+                }
+                BsonTimestamp operationTime = token == null ? null : decodeConsistencyToken(token);
+                ClientSession session = databaseFactory.startCausalSession();
+                if (operationTime != null) {
+                    session.advanceOperationTime(operationTime);
+                }
+                ReadRoute.set(ReadRoute.pinned(session));
+                return true;
+            }
+
+            @Override
+            public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                endRoute();
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+                endRoute();
+            }
+        });
+    }
+
+    /**
+     * Helper method to turn the operation time of a session into an opaque consistency token
+     * @param operationTime Operation time of the last operation of the session
+     * @return URL safe consistency token
+     */
+    static String encodeConsistencyToken(BsonTimestamp operationTime) {
+        byte[] bytes = ByteBuffer.allocate(Long.BYTES).putLong(operationTime.getValue()).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Helper method to recover the operation time from a consistency token
+     * @param token Consistency token sent by the client
+     * @return Operation time the reads of the request must follow
+     */
+    static BsonTimestamp decodeConsistencyToken(String token) {
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(token);
+            if (bytes.length != Long.BYTES) {
+                throw new IllegalArgumentException("Wrong length");
+            }
+            return new BsonTimestamp(ByteBuffer.wrap(bytes).getLong());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidConsistencyTokenException("Consistency token " + token + " is not valid!");
+        }
+    }
+
+    /**
+     * Helper method to leave the route of the request and close its session, if it had one
+     */
+    private static void endRoute() {
+        ReadRoute route = ReadRoute.current();
+        ReadRoute.clear();
+        if (route != null && route.getSession() != null) {
+            route.getSession().close();
+        }
+    }
+
+    private static boolean isWrite(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !(HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method));
+    }
+}
@@ -0,0 +1,72 @@
+package com.astral004.appointmentapi.routing;
+
+import com.astral004.appointmentapi.partition.AppointmentPartition;
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoDatabase;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+
+/**
+ * Database factory that hands out every database along the {@link ReadRoute} of the current request. MongoTemplate
+ * asks its factory for the database on every operation, so each repository call follows the route of the request
+ * it is made for. Operations that bring their own session, such as transactions, are left as they are. The
+ * default database also follows the {@link AppointmentPartition} the thread is bound to.
+ */
+public class RoutingMongoDatabaseFactory implements MongoDatabaseFactory {
+
+    private final MongoDatabaseFactory delegate;
+
+    public RoutingMongoDatabaseFactory(MongoDatabaseFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public MongoDatabase getMongoDatabase() throws DataAccessException {
+        AppointmentPartition partition = AppointmentPartition.current();
+        ReadRoute route = ReadRoute.current();
+        if (route == null) {
+            return partition == null ? delegate.getMongoDatabase() : partition.route(delegate.getMongoDatabase());
+        }
+        MongoDatabase database = route.getSession() == null
+                ? delegate.getMongoDatabase()
+                : delegate.withSession(route.getSession()).getMongoDatabase();
+        database = database.withReadPreference(route.getReadPreference());
+        return partition == null ? database : partition.route(database);
+    }
+
+    @Override
+    public MongoDatabase getMongoDatabase(String dbName) throws DataAccessException {
+        ReadRoute route = ReadRoute.current();
+        if (route == null) {
+            return delegate.getMongoDatabase(dbName);
+        }
+        MongoDatabase database = route.getSession() == null
+                ? delegate.getMongoDatabase(dbName)
+                : delegate.withSession(route.getSession()).getMongoDatabase(dbName);
+        return database.withReadPreference(route.getReadPreference());
+    }
+
+    /**
+     * @return A new causally consistent session, which the caller closes
+     */
+    public ClientSession startCausalSession() {
+        return delegate.getSession(ClientSessionOptions.builder().causallyConsistent(true).build());
+    }
+
+    @Override
+    public PersistenceExceptionTranslator getExceptionTranslator() {
+        return delegate.getExceptionTranslator();
+    }
+
+    @Override
+    public ClientSession getSession(ClientSessionOptions options) {
+        return delegate.getSession(options);
+    }
+
+    @Override
+    public MongoDatabaseFactory withSession(ClientSession session) {
+        return delegate.withSession(session);
+    }
+}
@@ -0,0 +1,71 @@
+package com.astral004.appointmentapi.routing;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.reactivestreams.client.ClientSession;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link RoutingMongoDatabaseFactory}. ReactiveMongoTemplate subscribes to the database of
+ * every operation within the operation itself, so each repository call follows the {@link ReactiveReadRoute} in
+ * the context of the request it is made for.
+ */
+public class RoutingReactiveMongoDatabaseFactory implements ReactiveMongoDatabaseFactory {
+
+    private final ReactiveMongoDatabaseFactory delegate;
+
+    public RoutingReactiveMongoDatabaseFactory(ReactiveMongoDatabaseFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Mono<MongoDatabase> getMongoDatabase() throws DataAccessException {
+        return ReactiveReadRoute.current()
+                .flatMap(route -> routed(route).getMongoDatabase()
+                        .map(database -> database.withReadPreference(route.getReadPreference())))
+                .switchIfEmpty(Mono.defer(delegate::getMongoDatabase));
+    }
+
+    @Override
+    public Mono<MongoDatabase> getMongoDatabase(String dbName) throws DataAccessException {
+        return ReactiveReadRoute.current()
+                .flatMap(route -> routed(route).getMongoDatabase(dbName)
+                        .map(database -> database.withReadPreference(route.getReadPreference())))
+                .switchIfEmpty(Mono.defer(() -> delegate.getMongoDatabase(dbName)));
+    }
+
+    private ReactiveMongoDatabaseFactory routed(ReactiveReadRoute route) {
+        return route.getSession() == null ? delegate : delegate.withSession(route.getSession());
+    }
+
+    /**
+     * @return A new causally consistent session, which the subscriber closes
+     */
+    public Mono<ClientSession> startCausalSession() {
+        return delegate.getSession(ClientSessionOptions.builder().causallyConsistent(true).build());
+    }
+
+    @Override
+    public PersistenceExceptionTranslator getExceptionTranslator() {
+        return delegate.getExceptionTranslator();
+    }
+
+    @Override
+    public CodecRegistry getCodecRegistry() {
+        return delegate.getCodecRegistry();
+    }
+
+    @Override
+    public Mono<ClientSession> getSession(ClientSessionOptions options) {
+        return delegate.getSession(options);
+    }
+
+    @Override
+    public ReactiveMongoDatabaseFactory withSession(ClientSession session) {
+        return delegate.withSession(session);
+    }
+}
@@ -0,0 +1,359 @@
+package com.astral004.appointmentapi.schedule;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.partition.ClinicPartitions;
+import com.astral004.appointmentapi.repository.AppointmentRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * In-memory occupancy of every doctor's upcoming days, one bit per time slot, so double bookings are caught at
+ * write time without querying Mongo. Loaded from the appointments collection at startup and kept current by the
+ * create, reschedule, and cancel paths. The index belongs to this instance; it only sees writes made through it.
+ * The clear bits within opening hours are the doctors' free time, which is how openings are found.
+ */
+@Slf4j
+@Component
+public class DoctorScheduleIndex {
+
+    public enum Reservation {
+        /** The slot was free and now belongs to the appointment. */
+        RESERVED,
+        /** The appointment already held the slot, or there was no slot to take. */
+        UNCHANGED,
+        /** Another appointment holds the slot. */
+        CONFLICT
+    }
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+    @Autowired
+    private ClinicPartitions clinicPartitions;
+
+    @Value("${appointments.schedule.slot-minutes:15}")
+    private int slotMinutes;
+    @Value("${appointments.schedule.opening-hour:8}")
+    private int openingHour;
+    @Value("${appointments.schedule.closing-hour:17}")
+    private int closingHour;
+    @Value("${appointments.schedule.working-days:MONDAY,TUESDAY,WEDNESDAY,THURSDAY,FRIDAY}")
+    private DayOfWeek[] workingDays;
+
+    private final Map<String, Map<LocalDate, DaySchedule>> doctors = new ConcurrentHashMap<>();
+
+    /**
+     * Takes the slot at timing for the appointment unless another appointment already holds it.
+     * @param appointmentId Id of the appointment taking the slot, used to recognise its own slot on reschedule
+     */
+    public Reservation reserve(String doctorId, LocalDateTime timing, String appointmentId) {
+        if (doctorId == null || timing == null) {
+            return Reservation.UNCHANGED;
+        }
+        while (true) {
+            Map<LocalDate, DaySchedule> days = doctors.computeIfAbsent(doctorId, id -> new HashMap<>());
+            synchronized (days) {
+                if (doctors.get(doctorId) != days) {
+                    //emptied and dropped meanwhile, take the doctor's new map
+                    continue;
+                }
+                DaySchedule day = days.computeIfAbsent(timing.toLocalDate(), date -> new DaySchedule(slotsPerDay()));
+                int slot = slotOf(timing);
+                if (!day.occupied.get(slot)) {
+                    day.take(slot, appointmentId);
+                    return Reservation.RESERVED;
+                }
+                String holder = day.holder(slot);
+                return holder != null && holder.equals(appointmentId) ? Reservation.UNCHANGED : Reservation.CONFLICT;
+            }
+        }
+    }
+
+    /**
+     * Frees the slot at timing if the appointment holds it. A day left without occupied slots is dropped, and so
+     * is a doctor left without days.
+     */
+    public void release(String doctorId, LocalDateTime timing, String appointmentId) {
+        if (doctorId == null || timing == null) {
+            return;
+        }
+        Map<LocalDate, DaySchedule> days = doctors.get(doctorId);
+        if (days == null) {
+            return;
+        }
+        synchronized (days) {
+            DaySchedule day = days.get(timing.toLocalDate());
+            if (day == null) {
+                return;
+            }
+            int slot = slotOf(timing);
+            if (!day.occupied.get(slot)) {
+                return;
+            }
+            String holder = day.holder(slot);
+            if (holder == null ? appointmentId == null : holder.equals(appointmentId)) {
+                day.free(slot);
+                if (day.occupied.isEmpty()) {
+                    days.remove(timing.toLocalDate());
+                    dropIfEmpty(doctorId, days);
+                }
+            }
+        }
+    }
+
+    public boolean isOccupied(String doctorId, LocalDateTime timing) {
+        Map<LocalDate, DaySchedule> days = doctors.get(doctorId);
+        if (days == null) {
+            return false;
+        }
+        synchronized (days) {
+            DaySchedule day = days.get(timing.toLocalDate());
+            return day != null && day.occupied.get(slotOf(timing));
+        }
+    }
+
+    /**
+     * @return true if both times fall in the same slot
+     */
+    public boolean sameSlot(LocalDateTime first, LocalDateTime second) {
+        return first != null && second != null && first.toLocalDate().equals(second.toLocalDate())
+                && slotOf(first) == slotOf(second);
+    }
+
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    /**
+     * Finds the earliest free slots among a group of doctors, such as every doctor of a specialty, from the
+     * occupancy bits alone. Day by day, the next free slot of every doctor is merged in time order, so the work
+     * grows with the number of doctors and openings rather than with the number of appointments. Only slots that
+     * start and end within opening hours on a working day count. An opening is a hint: it can be booked by someone
+     * else before it is taken, which the create path then reports as a conflict.
+     * @param doctorIds Doctors to look at
+     * @param from Earliest time an opening may start
+     * @param lastDay Last day to look at, inclusive
+     * @param limit Maximum number of openings
+     * @return Openings ordered by time, then by doctor id
+     */
+    public List<Opening> findEarliestOpenings(Collection<String> doctorIds, LocalDateTime from, LocalDate lastDay, int limit) {
+        List<Opening> openings = new ArrayList<>();
+        if (doctorIds.isEmpty() || limit <= 0) {
+            return openings;
+        }
+        int openingSlot = (openingHour * 60 + slotMinutes - 1) / slotMinutes;
+        int closingSlot = Math.min(closingHour * 60 / slotMinutes, slotsPerDay());
+        int slotSeconds = slotMinutes * 60;
+        List<DayOfWeek> working = Arrays.asList(workingDays);
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(doctorIds.size());
+
+        for (LocalDate date = from.toLocalDate(); !date.isAfter(lastDay) && openings.size() < limit; date = date.plusDays(1)) {
+            if (!working.contains(date.getDayOfWeek())) {
+                continue;
+            }
+            int firstSlot = openingSlot;
+            if (date.equals(from.toLocalDate())) {
+                int second = from.toLocalTime().toSecondOfDay() + (from.getNano() > 0 ? 1 : 0);
+                firstSlot = Math.max(firstSlot, (second + slotSeconds - 1) / slotSeconds);
+            }
+            for (String doctorId : doctorIds) {
+                BitSet occupied = occupiedOn(doctorId, date);
+                int slot = occupied == null ? firstSlot : occupied.nextClearBit(firstSlot);
+                if (slot < closingSlot) {
+                    cursors.add(new Cursor(doctorId, occupied, slot));
+                }
+            }
+            while (!cursors.isEmpty() && openings.size() < limit) {
+                Cursor cursor = cursors.poll();
+                openings.add(new Opening(cursor.doctorId, date.atStartOfDay().plusMinutes((long) cursor.slot * slotMinutes)));
+                cursor.slot = cursor.occupied == null ? cursor.slot + 1 : cursor.occupied.nextClearBit(cursor.slot + 1);
+                if (cursor.slot < closingSlot) {
+                    cursors.add(cursor);
+                }
+            }
+            cursors.clear();
+        }
+        return openings;
+    }
+
+    /**
+     * Rebuilds the index from every appointment from today on that still holds its slot, in every partition.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        doctors.clear();
+        int loaded = 0;
+        try {
+            for (int partition = 0; partition < clinicPartitions.size(); partition++) {
+                try (Stream<Appointment> appointments = clinicPartitions.inPartition(partition,
+                        () -> appointmentRepository.streamActiveSlotsFrom(LocalDate.now().atStartOfDay()))) {
+                    Iterator<Appointment> iterator = appointments.iterator();
+                    while (iterator.hasNext()) {
+                        Appointment appointment = iterator.next();
+                        //both copies of a clinic being moved hold the slot under the same id, so the second changes nothing
+                        reserve(appointment.getDoctorId(), appointment.getTiming(), appointment.getId());
+                        loaded++;
+                    }
+                }
+            }
+            log.info("Loaded {} booked slots into the doctor schedule index", loaded);
+        } catch (Exception e) {
+            log.warn("Could not load the doctor schedule index, double bookings are only caught from now on", e);
+        }
+    }
+
+    /**
+     * Drops the days that have passed so the index only ever holds upcoming schedules.
+     */
+    @Scheduled(cron = "${appointments.schedule.prune-cron:0 0 3 * * *}")
+    public void prunePastDays() {
+        LocalDate today = LocalDate.now();
+        for (Map.Entry<String, Map<LocalDate, DaySchedule>> doctor : doctors.entrySet()) {
+            Map<LocalDate, DaySchedule> days = doctor.getValue();
+            synchronized (days) {
+                days.keySet().removeIf(day -> day.isBefore(today));
+                dropIfEmpty(doctor.getKey(), days);
+            }
+        }
+    }
+
+    /**
+     * Helper method to drop the days of a doctor once none are left. Called holding the lock of the days, which
+     * is how {@link #reserve(String, LocalDateTime, String)} notices it has to start over with a new map.
+     */
+    private void dropIfEmpty(String doctorId, Map<LocalDate, DaySchedule> days) {
+        if (days.isEmpty()) {
+            doctors.remove(doctorId, days);
+        }
+    }
+
+    /**
+     * Helper method to copy the occupied slots of a doctor on a day, so they can be read without holding the lock
+     * @return A copy of the occupied slots, or null if none are
+     */
+    private BitSet occupiedOn(String doctorId, LocalDate date) {
+        Map<LocalDate, DaySchedule> days = doctors.get(doctorId);
+        if (days == null) {
+            return null;
+        }
+        synchronized (days) {
+            DaySchedule day = days.get(date);
+            return day == null || day.occupied.isEmpty() ? null : (BitSet) day.occupied.clone();
+        }
+    }
+
+    private int slotsPerDay() {
+        return (24 * 60 + slotMinutes - 1) / slotMinutes;
+    }
+
+    private int slotOf(LocalDateTime timing) {
+        return (timing.getHour() * 60 + timing.getMinute()) / slotMinutes;
+    }
+
+    /**
+     * A free slot of a doctor.
+     */
+    @Getter
+    public static final class Opening {
+        private final String doctorId;
+        private final LocalDateTime timing;
+
+        Opening(String doctorId, LocalDateTime timing) {
+            this.doctorId = doctorId;
+            this.timing = timing;
+        }
+    }
+
+    /**
+     * Next free slot of one doctor on the day being merged.
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+        final String doctorId;
+        final BitSet occupied;
+        int slot;
+
+        Cursor(String doctorId, BitSet occupied, int slot) {
+            this.doctorId = doctorId;
+            this.occupied = occupied;
+            this.slot = slot;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            int bySlot = Integer.compare(slot, other.slot);
+            return bySlot != 0 ? bySlot : doctorId.compareTo(other.doctorId);
+        }
+    }
+
+    /**
+     * Occupied slots of one doctor on one day, with the appointment holding each of them. Holders are kept only for
+     * the occupied slots, in slot order, so a slot's holder sits at the number of occupied slots before it.
+     */
+    static final class DaySchedule {
+        private static final String[] NO_HOLDERS = new String[0];
+
+        final BitSet occupied;
+        private String[] holders = NO_HOLDERS;
+
+        DaySchedule(int slots) {
+            this.occupied = new BitSet(slots);
+        }
+
+        /**
+         * @return The appointment holding an occupied slot
+         */
+        String holder(int slot) {
+            return holders[rank(slot)];
+        }
+
+        void take(int slot, String appointmentId) {
+            int rank = rank(slot);
+            String[] taken = new String[holders.length + 1];
+            System.arraycopy(holders, 0, taken, 0, rank);
+            taken[rank] = appointmentId;
+            System.arraycopy(holders, rank, taken, rank + 1, holders.length - rank);
+            holders = taken;
+            occupied.set(slot);
+        }
+
+        void free(int slot) {
+            int rank = rank(slot);
+            String[] freed = holders.length == 1 ? NO_HOLDERS : new String[holders.length - 1];
+            System.arraycopy(holders, 0, freed, 0, rank);
+            System.arraycopy(holders, rank + 1, freed, rank, holders.length - rank - 1);
+            holders = freed;
+            occupied.clear(slot);
+        }
+
+        /**
+         * @return Number of occupied slots before the slot
+         */
+        private int rank(int slot) {
+            int rank = 0;
+            for (int i = occupied.nextSetBit(0); i >= 0 && i < slot; i = occupied.nextSetBit(i + 1)) {
+                rank++;
+            }
+            return rank;
+        }
+    }
+}
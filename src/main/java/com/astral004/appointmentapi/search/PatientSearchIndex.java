@@ -0,0 +1,527 @@
+package com.astral004.appointmentapi.search;
+
+import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.dto.PatientSearchResult;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Projections;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+
+/**
+ * Type-ahead search over the first name, last name, and phone number of every patient, answered from memory. Every
+ * name and phone token is kept in a sorted map, so a prefix is one range of it, and every name token is also filed
+ * under its trigrams, so a misspelt name still finds the tokens sharing most of its trigrams. The index is built
+ * from the database at startup and on a timer, and kept in step with patient writes through the Mongo mapping
+ * events.
+ */
+@Slf4j
+@Component
+public class PatientSearchIndex {
+
+    static final String PATIENTS = "patients";
+
+    //an exact token beats a prefix of one, which beats a misspelling of one
+    private static final double EXACT_SCORE = 3;
+    private static final double PREFIX_SCORE = 2;
+    private static final double FUZZY_SCORE = 1;
+    private static final int MIN_FUZZY_LENGTH = 4;
+    private static final char GRAM_PAD = '$';
+
+    //equal scores are listed by last name, then first name
+    private static final Comparator<Entry> BY_NAME = (a, b) ->
+            compareNames(a.lastName, a.firstName, a.id, b.lastName, b.firstName, b.id);
+    private static final Comparator<PatientSearchResult> RANKING = (a, b) -> a.getScore() != b.getScore()
+            ? Double.compare(b.getScore(), a.getScore())
+            : compareNames(a.getLastName(), a.getFirstName(), a.getId(), b.getLastName(), b.getFirstName(), b.getId());
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private volatile Postings current = new Postings();
+    //writes made while a rebuild reads the collection go to both, so the rebuilt index does not miss them
+    private volatile Postings building;
+
+    /**
+     * Finds the patients matching every word of a query. Each word matches a patient when it is a first name, last
+     * name, or phone number of theirs, or the start of one. A misspelt word always scores below one typed right, so
+     * names within a typo or two of a word are only looked for when the words as typed do not fill the results.
+     * @param query Words typed so far, such as "smi jo" or "555 0100"
+     * @param limit Maximum number of patients to return
+     * @return Best matches first, empty if nothing matched
+     */
+    public List<PatientSearchResult> search(String query, int limit) {
+        List<String> terms = terms(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Postings postings = current;
+        List<PatientSearchResult> results = search(postings, terms, limit, false);
+        if (results.size() < limit) {
+            results = search(postings, terms, limit, true);
+        }
+        return results;
+    }
+
+    /**
+     * Helper method to rank the patients matching every term. The term matching the fewest patients picks the
+     * candidates, best tokens first, and the other terms are checked against each candidate. Candidates stop once
+     * not even the best possible score for the next token could make it into the results, and for a single term,
+     * where every patient of a token ties, after the first few patients of each token in name order.
+     * @param fuzzy Whether terms may also match names with typos
+     */
+    private List<PatientSearchResult> search(Postings postings, List<String> terms, int limit, boolean fuzzy) {
+        int driver = -1;
+        Map<String, Double> driverTokens = null;
+        int driverSize = Integer.MAX_VALUE;
+        for (int i = 0; i < terms.size(); i++) {
+            Map<String, Double> matching = postings.matchingTokens(terms.get(i), fuzzy);
+            int size = postings.patientCount(matching.keySet());
+            if (size < driverSize) {
+                driver = i;
+                driverTokens = matching;
+                driverSize = size;
+            }
+        }
+        List<Map.Entry<String, Double>> ordered = new ArrayList<>(driverTokens.entrySet());
+        ordered.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+
+        PriorityQueue<PatientSearchResult> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        Set<String> seen = new HashSet<>();
+        for (Map.Entry<String, Double> token : ordered) {
+            if (best.size() == limit
+                    && token.getValue() + (terms.size() - 1) * EXACT_SCORE < best.peek().getScore()) {
+                break;
+            }
+            Posting posting = postings.tokens.get(token.getKey());
+            if (posting == null) {
+                continue;
+            }
+            int taken = 0;
+            for (Entry entry : posting.entries) {
+                if (terms.size() == 1 && taken == limit) {
+                    break;
+                }
+                //a patient holding several of the tokens was already scored with the best of them
+                if (!seen.add(entry.id)) {
+                    continue;
+                }
+                double score = token.getValue();
+                for (int i = 0; i < terms.size() && score > 0; i++) {
+                    if (i != driver) {
+                        double termScore = entry.score(terms.get(i), fuzzy);
+                        score = termScore == 0 ? 0 : score + termScore;
+                    }
+                }
+                if (score == 0 || best.size() == limit && ranksBelow(score, entry, best.peek())) {
+                    continue;
+                }
+                best.add(new PatientSearchResult(entry.id, entry.firstName, entry.lastName, entry.phoneNumber, score));
+                taken++;
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        List<PatientSearchResult> results = new ArrayList<>(best);
+        results.sort(RANKING);
+        return results;
+    }
+
+    /**
+     * Helper method to turn a candidate away before building a result for it
+     * @return Whether a patient with this score ranks below the worst result so far
+     */
+    private static boolean ranksBelow(double score, Entry entry, PatientSearchResult worst) {
+        if (score != worst.getScore()) {
+            return score < worst.getScore();
+        }
+        return compareNames(entry.lastName, entry.firstName, entry.id,
+                worst.getLastName(), worst.getFirstName(), worst.getId()) > 0;
+    }
+
+    private static int compareNames(String lastName, String firstName, String id,
+                                    String otherLastName, String otherFirstName, String otherId) {
+        int order = compareName(lastName, otherLastName);
+        if (order == 0) {
+            order = compareName(firstName, otherFirstName);
+        }
+        return order == 0 ? id.compareTo(otherId) : order;
+    }
+
+    /**
+     * @return Order of two names, a missing name last
+     */
+    private static int compareName(String name, String other) {
+        if (name == null || other == null) {
+            return name == null ? (other == null ? 0 : 1) : -1;
+        }
+        return name.compareTo(other);
+    }
+
+    /**
+     * @return Number of patients currently indexed
+     */
+    public int size() {
+        return current.entries.size();
+    }
+
+    /**
+     * Rebuilds the index from the patients currently stored, so writes made outside this instance are picked up.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${appointments.patient-search.rebuild-ms:3600000}",
+               fixedDelayString = "${appointments.patient-search.rebuild-ms:3600000}")
+    public void rebuild() {
+        Postings fresh = new Postings();
+        building = fresh;
+        try (MongoCursor<Document> patients = mongoTemplate.getCollection(PATIENTS)
+                .find()
+                .projection(Projections.include("firstName", "lastName", "phoneNumber"))
+                .iterator()) {
+            while (patients.hasNext()) {
+                Document patient = patients.next();
+                fresh.put(new Entry(patient.get("_id").toString(), patient.getString("firstName"),
+                        patient.getString("lastName"), patient.getString("phoneNumber")));
+            }
+            current = fresh;
+            log.info("Indexed {} patients for search", fresh.entries.size());
+        } catch (Exception e) {
+            //searches keep using the previous index
+            log.warn("Could not rebuild the patient search index", e);
+        } finally {
+            building = null;
+        }
+    }
+
+    @EventListener
+    public void onAfterSave(AfterSaveEvent<?> event) {
+        if (PATIENTS.equals(event.getCollectionName()) && event.getSource() instanceof Patient) {
+            put((Patient) event.getSource());
+        }
+    }
+
+    @EventListener
+    public void onAfterDelete(AfterDeleteEvent<?> event) {
+        if (!PATIENTS.equals(event.getCollectionName())) {
+            return;
+        }
+        Object id = event.getSource() == null ? null : event.getSource().get("_id");
+        if (id == null || id instanceof Document) {
+            //deletes by anything but a single id could have removed any patient
+            if (Schedulers.isInNonBlockingThread()) {
+                Schedulers.boundedElastic().schedule(this::rebuild);
+            } else {
+                rebuild();
+            }
+        } else {
+            apply(postings -> postings.remove(id.toString()));
+        }
+    }
+
+    /**
+     * Helper method to add a patient, or replace what is indexed for them
+     */
+    void put(Patient patient) {
+        if (patient.getId() != null) {
+            Entry entry = new Entry(patient.getId(), patient.getFirstName(), patient.getLastName(), patient.getPhoneNumber());
+            apply(postings -> postings.put(entry));
+        }
+    }
+
+    private void apply(Consumer<Postings> change) {
+        change.accept(current);
+        Postings rebuilding = building;
+        if (rebuilding != null && rebuilding != current) {
+            change.accept(rebuilding);
+        }
+    }
+
+    /**
+     * Helper method to split a query or a name into lower case words without accents, splitting letters from digits
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        for (String term : normalized.split("[^a-z0-9]+|(?<=[a-z])(?=[0-9])|(?<=[0-9])(?=[a-z])")) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * @return Trigrams of a word padded at the front only, so a word being typed shares them with the words it
+     * is the start of
+     */
+    static List<String> grams(String word) {
+        String padded = "" + GRAM_PAD + GRAM_PAD + word;
+        List<String> grams = new ArrayList<>(word.length());
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /**
+     * @return Most typos allowed in a word of this length
+     */
+    static int maxTypos(int length) {
+        return length < MIN_FUZZY_LENGTH ? 0 : length < 8 ? 1 : 2;
+    }
+
+    /**
+     * How well a query term matches one token of a patient
+     * @param fuzzy Whether the term may also match with typos
+     * @return EXACT_SCORE, a prefix score that grows with how much of the token was typed, a fuzzy score that drops
+     * with each typo, or 0 for no match
+     */
+    static double score(String term, String token, boolean fuzzy) {
+        if (token.equals(term)) {
+            return EXACT_SCORE;
+        }
+        if (token.startsWith(term)) {
+            return PREFIX_SCORE + (double) term.length() / token.length() * 0.5;
+        }
+        int maxTypos = fuzzy ? maxTypos(term.length()) : 0;
+        if (maxTypos == 0 || Character.isDigit(term.charAt(0)) || Character.isDigit(token.charAt(0))) {
+            return 0;
+        }
+        //the term may be a misspelling of the whole token, or of the start of it still being typed
+        int typos = Math.min(typos(term, token, maxTypos),
+                typos(term, token.substring(0, Math.min(token.length(), term.length())), maxTypos));
+        return typos > maxTypos ? 0 : FUZZY_SCORE - 0.25 * typos;
+    }
+
+    /**
+     * Helper method to count the insertions, deletions, substitutions, and swaps of neighbouring letters between
+     * two words
+     * @return The count, or anything above max once it is known to exceed it
+     */
+    static int typos(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[][] distance = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            distance[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            distance[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int rowMin = Integer.MAX_VALUE;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(distance[i - 1][j] + 1, distance[i][j - 1] + 1), distance[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, distance[i - 2][j - 2] + 1);
+                }
+                distance[i][j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+        }
+        return distance[a.length()][b.length()];
+    }
+
+    /**
+     * What is indexed for one patient
+     */
+    private static class Entry {
+        final String id;
+        final String firstName;
+        final String lastName;
+        final String phoneNumber;
+        final Set<String> tokens = new LinkedHashSet<>();
+
+        Entry(String id, String firstName, String lastName, String phoneNumber) {
+            this.id = id;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.phoneNumber = phoneNumber;
+            addName(firstName);
+            addName(lastName);
+            if (phoneNumber != null) {
+                //whole number, without the area code, and the last four digits staff often ask for
+                String digits = phoneNumber.replaceAll("\\D", "");
+                for (int length : new int[]{digits.length(), 10, 7, 4}) {
+                    if (length > 0 && length <= digits.length()) {
+                        tokens.add(digits.substring(digits.length() - length));
+                    }
+                }
+            }
+        }
+
+        private void addName(String name) {
+            List<String> parts = terms(name);
+            tokens.addAll(parts);
+            if (parts.size() > 1) {
+                //O'Brien is also found as obrien, Garcia-Lopez as garcialopez
+                tokens.add(String.join("", parts));
+            }
+        }
+
+        /**
+         * @return Best score of a query term against any token of this patient
+         */
+        double score(String term, boolean fuzzy) {
+            double best = 0;
+            for (String token : tokens) {
+                best = Math.max(best, PatientSearchIndex.score(term, token, fuzzy));
+            }
+            return best;
+        }
+    }
+
+    /**
+     * The patients holding one token, in name order
+     */
+    private static class Posting {
+        final Set<Entry> entries = new ConcurrentSkipListSet<>(BY_NAME);
+        //only changed while holding the lock of the postings
+        volatile int size;
+    }
+
+    /**
+     * The patients, the patients holding each token, and the name tokens holding each trigram. Searches read them
+     * without locking, writes take turns.
+     */
+    private static class Postings {
+        final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        final ConcurrentSkipListMap<String, Posting> tokens = new ConcurrentSkipListMap<>();
+        final Map<String, Set<String>> grams = new ConcurrentHashMap<>();
+
+        synchronized void put(Entry entry) {
+            Entry previous = entries.put(entry.id, entry);
+            if (previous != null) {
+                unlink(previous);
+            }
+            for (String token : entry.tokens) {
+                Posting posting = tokens.get(token);
+                if (posting == null) {
+                    posting = new Posting();
+                    tokens.put(token, posting);
+                    if (!Character.isDigit(token.charAt(0))) {
+                        for (String gram : grams(token)) {
+                            grams.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(token);
+                        }
+                    }
+                }
+                if (posting.entries.add(entry)) {
+                    posting.size++;
+                }
+            }
+        }
+
+        synchronized void remove(String id) {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                unlink(previous);
+            }
+        }
+
+        private void unlink(Entry entry) {
+            for (String token : entry.tokens) {
+                Posting posting = tokens.get(token);
+                if (posting == null || !posting.entries.remove(entry)) {
+                    continue;
+                }
+                if (--posting.size == 0) {
+                    tokens.remove(token);
+                    if (!Character.isDigit(token.charAt(0))) {
+                        for (String gram : grams(token)) {
+                            Set<String> words = grams.get(gram);
+                            if (words != null) {
+                                words.remove(token);
+                                if (words.isEmpty()) {
+                                    grams.remove(gram);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param fuzzy Whether the term may also match tokens with typos
+     * @return The tokens a query term matches, with the score of each
+         */
+        Map<String, Double> matchingTokens(String term, boolean fuzzy) {
+            Map<String, Double> matching = new HashMap<>();
+            for (String token : tokens.subMap(term, true, term + Character.MAX_VALUE, true).keySet()) {
+                matching.put(token, score(term, token, false));
+            }
+            int maxTypos = fuzzy ? maxTypos(term.length()) : 0;
+            if (maxTypos > 0 && !Character.isDigit(term.charAt(0))) {
+                //every typo spoils at most three trigrams, so a close token still shares the rest
+                List<String> termGrams = grams(term);
+                int needed = Math.max(1, termGrams.size() - 3 * maxTypos);
+                Map<String, Integer> shared = new HashMap<>();
+                for (String gram : termGrams) {
+                    Set<String> words = grams.get(gram);
+                    if (words != null) {
+                        for (String word : words) {
+                            shared.merge(word, 1, Integer::sum);
+                        }
+                    }
+                }
+                for (Map.Entry<String, Integer> word : shared.entrySet()) {
+                    if (word.getValue() >= needed && !matching.containsKey(word.getKey())) {
+                        double score = score(term, word.getKey(), true);
+                        if (score > 0) {
+                            matching.put(word.getKey(), score);
+                        }
+                    }
+                }
+            }
+            return matching;
+        }
+
+        /**
+         * @return Number of patients holding any of the tokens, counting a patient once per token
+         */
+        int patientCount(Set<String> matching) {
+            int count = 0;
+            for (String token : matching) {
+                Posting posting = tokens.get(token);
+                count += posting == null ? 0 : posting.size;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.astral004.appointmentapi.view;
+
+import com.astral004.appointmentapi.domain.Clinic;
+import com.astral004.appointmentapi.event.AppointmentsArchivedEvent;
+import com.astral004.appointmentapi.event.AppointmentsChangedEvent;
+import com.astral004.appointmentapi.repository.AppointmentViewRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the appointment views in step with every write that changes what they show: appointment writes through
+ * their {@link AppointmentsChangedEvent}, patient, doctor, clinic, and address writes through the Mongo mapping
+ * events, and archived appointments, whose rows are removed, through their {@link AppointmentsArchivedEvent}.
+ * Each write refreshes only the rows it affects, found through the view's indexes, on a single
+ * background thread so writes do not wait for it and refreshes apply in order.
+ */
+@Slf4j
+@Component
+public class AppointmentViewMaintainer {
+
+    static final String PATIENTS = "patients";
+    static final String DOCTORS = "doctors";
+    static final String CLINICS = "clinics";
+    static final String ADDRESSES = "addresses";
+
+    @Autowired
+    private AppointmentViewRepository appointmentViewRepository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private ExecutorService refreshExecutor;
+
+    @PostConstruct
+    void createExecutor() {
+        refreshExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("appointment-view-"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Rebuilds every view from scratch: all rows are refreshed in one server side pass, then the rows of
+     * appointments that no longer exist are removed. Rows refreshed by writes made meanwhile are kept.
+     * @return Number of rows removed
+     */
+    public long rebuild() {
+        LocalDateTime started = LocalDateTime.now();
+        appointmentViewRepository.refresh(new Criteria(), started);
+        return appointmentViewRepository.deleteByRefreshedAtBefore(started);
+    }
+
+    @EventListener
+    public void onAppointmentsChanged(AppointmentsChangedEvent event) {
+        List<String> ids = event.getChanges().stream()
+                .map(change -> change.getCurrent().getId())
+                .collect(Collectors.toList());
+        refreshLater(() -> Criteria.where("_id").in(ids), event.getChanges().size() + " changed appointments");
+    }
+
+    @EventListener
+    public void onAppointmentsArchived(AppointmentsArchivedEvent event) {
+        List<String> ids = event.getIds();
+        refreshExecutor.execute(() -> {
+            try {
+                //rows of appointments that stayed live are refreshed and kept, the rest are removed
+                LocalDateTime started = LocalDateTime.now();
+                appointmentViewRepository.refresh(Criteria.where("_id").in(ids), started);
+                appointmentViewRepository.deleteByIdInAndRefreshedAtBefore(ids, started);
+            } catch (Exception e) {
+                log.warn("Could not remove the appointment views of {} archived appointments", ids.size(), e);
+            }
+        });
+    }
+
+    @EventListener
+    public void onAfterSave(AfterSaveEvent<?> event) {
+        Object id = event.getDocument() == null ? null : event.getDocument().get("_id");
+        if (id != null) {
+            referenceChanged(event.getCollectionName(), id.toString());
+        }
+    }
+
+    @EventListener
+    public void onAfterDelete(AfterDeleteEvent<?> event) {
+        Object id = event.getSource() == null ? null : event.getSource().get("_id");
+        if (id != null && !(id instanceof Document)) {
+            //rows of a removed reference are refreshed with its details left empty
+            referenceChanged(event.getCollectionName(), id.toString());
+        }
+    }
+
+    /**
+     * Helper method to refresh the rows showing a patient, doctor, clinic, or address that was written
+     * @param collection Collection that was written
+     * @param id Id of the written document
+     */
+    private void referenceChanged(String collection, String id) {
+        switch (collection) {
+            case PATIENTS:
+                refreshLater(() -> Criteria.where("patientId").is(id), "patient " + id);
+                break;
+            case DOCTORS:
+                refreshLater(() -> Criteria.where("doctorId").is(id), "doctor " + id);
+                break;
+            case CLINICS:
+                refreshLater(() -> Criteria.where("clinicId").is(id), "clinic " + id);
+                break;
+            case ADDRESSES:
+                refreshLater(() -> Criteria.where("clinicId").in(clinicsAt(id)), "address " + id);
+                break;
+            default:
+        }
+    }
+
+    /**
+     * Helper method to find the clinics at an address
+     * @param addressId Id of the address
+     * @return Ids of the clinics
+     */
+    private Set<String> clinicsAt(String addressId) {
+        Query clinics = Query.query(Criteria.where("addressId").is(addressId));
+        clinics.fields().include("_id");
+        return mongoTemplate.find(clinics, Clinic.class).stream()
+                .map(Clinic::getId)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Helper method to refresh views on the background thread
+     * @param appointments Criteria on the appointments whose views to refresh, worked out on the background thread
+     * @param cause What changed, for the log
+     */
+    private void refreshLater(Supplier<Criteria> appointments, String cause) {
+        refreshExecutor.execute(() -> {
+            try {
+                appointmentViewRepository.refresh(appointments.get(), LocalDateTime.now());
+            } catch (Exception e) {
+                //the rows stay stale until the next write to them or the next rebuild
+                log.warn("Could not refresh the appointment views for {}", cause, e);
+            }
+        });
+    }
+}
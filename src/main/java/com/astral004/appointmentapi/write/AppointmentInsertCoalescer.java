@@ -0,0 +1,209 @@
+package com.astral004.appointmentapi.write;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.partition.ClinicPartitions;
+import com.astral004.appointmentapi.repository.AppointmentRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for appointment creation. When enabled, appointments created at about the same time are queued and
+ * written by a single thread as one unordered multi-document insert, so a burst of bookings costs Mongo one round
+ * trip per batch instead of one per appointment. A batch is written once it holds max-batch-size appointments or
+ * its first appointment has waited max-wait-us microseconds, whichever comes first, and every caller gets the
+ * outcome of its own appointment. A batch spanning several partitions is written as one insert per partition.
+ */
+@Slf4j
+@Component
+public class AppointmentInsertCoalescer {
+
+    static final String BATCH_SIZE = "appointments.group.commit.batch.size";
+    static final String QUEUE_WAIT = "appointments.group.commit.queue.wait";
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private ClinicPartitions clinicPartitions;
+
+    @Value("${appointments.group-commit.enabled:false}")
+    private boolean enabled;
+    @Value("${appointments.group-commit.max-batch-size:256}")
+    private int maxBatchSize;
+    @Value("${appointments.group-commit.max-wait-us:2000}")
+    private long maxWaitMicros;
+    @Value("${appointments.group-commit.queue-capacity:4096}")
+    private int queueCapacity;
+
+    private BlockingQueue<PendingInsert> queue;
+    private Thread flusher;
+    private volatile boolean closed;
+    private DistributionSummary batchSize;
+    private Timer queueWait;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        batchSize = DistributionSummary.builder(BATCH_SIZE)
+                .description("Appointments written per group commit")
+                .baseUnit("appointments")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue((double) maxBatchSize)
+                .register(meterRegistry);
+        queueWait = Timer.builder(QUEUE_WAIT)
+                .description("Time an appointment waited for its group commit to start")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(1)))
+                .maximumExpectedValue(Duration.ofSeconds(1))
+                .register(meterRegistry);
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        flusher = new CustomizableThreadFactory("appointment-group-commit-").newThread(this::flushLoop);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        closed = true;
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * @return Whether creations are to go through {@link #insert(Appointment)}
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Inserts an appointment with the next group commit, waiting until it has been written. The appointment must
+     * already have its id.
+     * @param appointment Appointment to insert
+     * @return The inserted appointment
+     * @throws DataIntegrityViolationException if Mongo rejected this appointment, for example for a duplicate id
+     * @throws IllegalStateException if the application is shutting down
+     * @throws RuntimeException if the whole group commit failed
+     */
+    public Appointment insert(Appointment appointment) {
+        if (closed) {
+            throw new IllegalStateException("Group commit has shut down, appointment " + appointment.getId() + " was not queued");
+        }
+        PendingInsert pending = new PendingInsert(appointment);
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing appointment " + appointment.getId(), e);
+        }
+        //queued while shutting down, after the last drain nobody would write it; if it is gone the drain took it
+        if (closed && queue.remove(pending)) {
+            throw new IllegalStateException("Group commit has shut down, appointment " + appointment.getId() + " was not queued");
+        }
+        try {
+            //not interruptible, the caller must learn whether its appointment was written
+            return pending.result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Writes batches until the application shuts down, then writes whatever is still queued.
+     */
+    private void flushLoop() {
+        List<PendingInsert> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                PendingInsert first = queue.take();
+                batch.add(first);
+                long deadline = first.queuedAt + TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    //past the deadline, whatever is already queued still joins the batch
+                    PendingInsert next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            //shutting down
+        }
+        //the last writes must not see the interrupt, or the driver would give up on them
+        Thread.interrupted();
+        queue.drainTo(batch);
+        for (int from = 0; from < batch.size(); from += maxBatchSize) {
+            flush(batch.subList(from, Math.min(from + maxBatchSize, batch.size())));
+        }
+    }
+
+    /**
+     * Helper method to write one batch and complete the caller of every appointment in it
+     * @param batch Appointments to write, in queue order
+     */
+    private void flush(List<PendingInsert> batch) {
+        try {
+            long flushedAt = System.nanoTime();
+            List<Appointment> appointments = new ArrayList<>(batch.size());
+            for (PendingInsert pending : batch) {
+                queueWait.record(flushedAt - pending.queuedAt, TimeUnit.NANOSECONDS);
+                appointments.add(pending.appointment);
+            }
+            batchSize.record(batch.size());
+
+            Map<Integer, String> failures = clinicPartitions.insertByPartition(appointments, appointmentRepository::insertUnordered);
+            for (int i = 0; i < batch.size(); i++) {
+                PendingInsert pending = batch.get(i);
+                String failure = failures.get(i);
+                if (failure == null) {
+                    pending.result.complete(pending.appointment);
+                } else {
+                    pending.result.completeExceptionally(new DataIntegrityViolationException(failure));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Group commit of {} appointments failed", batch.size(), e);
+            for (PendingInsert pending : batch) {
+                pending.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static class PendingInsert {
+        final Appointment appointment;
+        final long queuedAt = System.nanoTime();
+        final CompletableFuture<Appointment> result = new CompletableFuture<>();
+
+        PendingInsert(Appointment appointment) {
+            this.appointment = appointment;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.astral004.appointmentapi.admission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    public void rejectsBeyondTheLimitUntilASlotIsReleased() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        limit.release();
+        assertTrue(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+    }
+
+    @Test
+    public void growsWhileLatencyHoldsAndShrinksWhenItRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 100);
+        for (int i = 0; i < 200; i++) {
+            saturate(limit, 10 * MILLIS);
+        }
+        int grown = limit.getLimit();
+        assertEquals(100, grown);
+
+        saturate(limit, 100 * MILLIS);
+        assertTrue("limit " + limit.getLimit() + " should have shrunk from " + grown, limit.getLimit() < grown / 4);
+        assertTrue(limit.getLimit() >= 2);
+
+        //latency back to normal
+        for (int i = 0; i < 100; i++) {
+            saturate(limit, 10 * MILLIS);
+        }
+        assertEquals(100, limit.getLimit());
+    }
+
+    @Test
+    public void doesNotGrowALimitThatIsNotUsed() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 100);
+        for (int i = 0; i < 200; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(10 * MILLIS);
+        }
+        assertEquals(10, limit.getLimit());
+    }
+
+    /**
+     * Helper method to fill every slot of the limit and complete the requests with the latency
+     */
+    private static void saturate(AdaptiveConcurrencyLimit limit, long latencyNanos) {
+        int acquired = 0;
+        while (limit.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limit.release(latencyNanos);
+        }
+    }
+}
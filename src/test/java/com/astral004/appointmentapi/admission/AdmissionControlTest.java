@@ -0,0 +1,51 @@
+package com.astral004.appointmentapi.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class AdmissionControlTest {
+
+    @Test
+    public void writesAreAdmittedWhileReadsAreShed() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AdmissionControl admissionControl = new AdmissionControl(meterRegistry, 4, 2, 10, 1, 10);
+        List<AdmissionControl.Permit> reads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            reads.add(admissionControl.tryAdmit("getAllAppointments", false));
+        }
+        assertNull(admissionControl.tryAdmit("getAllAppointments", false));
+        assertNull(admissionControl.tryAdmit("getAppointmentByID", false));
+
+        AdmissionControl.Permit write = admissionControl.tryAdmit("createAppointment", true);
+        assertNotNull(write);
+        write.complete();
+
+        reads.get(0).complete();
+        assertNotNull(admissionControl.tryAdmit("getAppointmentByID", false));
+        assertEquals(1.0, meterRegistry.get(AdmissionControl.REJECTED)
+                .tag("endpoint", "getAllAppointments").tag("reason", "read-bulkhead").counter().count(), 0);
+    }
+
+    @Test
+    public void anEndpointIsHeldToItsOwnLimitWithinTheBulkhead() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AdmissionControl admissionControl = new AdmissionControl(meterRegistry, 10, 10, 2, 1, 10);
+        assertNotNull(admissionControl.tryAdmit("getAllAppointments", false));
+        AdmissionControl.Permit second = admissionControl.tryAdmit("getAllAppointments", false);
+        assertNotNull(second);
+        assertNull(admissionControl.tryAdmit("getAllAppointments", false));
+        assertNotNull(admissionControl.tryAdmit("getAppointmentByID", false));
+
+        second.abandon();
+        assertNotNull(admissionControl.tryAdmit("getAllAppointments", false));
+        assertEquals(2, admissionControl.getLimit("getAllAppointments"));
+        assertEquals(2.0, meterRegistry.get(AdmissionControl.LIMIT).tag("endpoint", "getAllAppointments").gauge().value(), 0);
+    }
+}
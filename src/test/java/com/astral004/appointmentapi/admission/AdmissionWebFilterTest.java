@@ -0,0 +1,134 @@
+package com.astral004.appointmentapi.admission;
+
+import com.astral004.appointmentapi.cache.ReactiveReferenceExistenceCache;
+import com.astral004.appointmentapi.cache.ReferenceExistenceCache;
+import com.astral004.appointmentapi.controller.AppointmentEventController;
+import com.astral004.appointmentapi.controller.ReactiveAppointmentController;
+import com.astral004.appointmentapi.event.AppointmentChangeCounter;
+import com.astral004.appointmentapi.exception.ServiceOverloadedException;
+import com.astral004.appointmentapi.partition.ClinicPartitions;
+import com.astral004.appointmentapi.repository.AppointmentRepository;
+import com.astral004.appointmentapi.repository.ClinicRepository;
+import com.astral004.appointmentapi.repository.DoctorRepository;
+import com.astral004.appointmentapi.repository.PatientRepository;
+import com.astral004.appointmentapi.repository.reactive.ReactiveAppointmentRepository;
+import com.astral004.appointmentapi.repository.reactive.ReactiveClinicRepository;
+import com.astral004.appointmentapi.repository.reactive.ReactiveDoctorRepository;
+import com.astral004.appointmentapi.repository.reactive.ReactivePatientRepository;
+import com.astral004.appointmentapi.schedule.DoctorScheduleIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+
+@RunWith(SpringRunner.class)
+@WebFluxTest(controllers = ReactiveAppointmentController.class,
+             properties = {"appointments.admission.read-bulkhead=0", "appointments.admission.retry-after-seconds=3"})
+@Import({DoctorScheduleIndex.class, ClinicPartitions.class, ReferenceExistenceCache.class, ReactiveReferenceExistenceCache.class})
+public class AdmissionWebFilterTest {
+    @Autowired
+    WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveAppointmentRepository appointmentRepository;
+    @MockBean
+    private ReactivePatientRepository patientRepository;
+    @MockBean
+    private ReactiveDoctorRepository doctorRepository;
+    @MockBean
+    private ReactiveClinicRepository clinicRepository;
+    @MockBean
+    private AppointmentRepository blockingAppointmentRepository;
+    @MockBean
+    private PatientRepository blockingPatientRepository;
+    @MockBean
+    private DoctorRepository blockingDoctorRepository;
+    @MockBean
+    private ClinicRepository blockingClinicRepository;
+    @MockBean
+    private MongoTemplate mongoTemplate;
+    @MockBean
+    private AppointmentChangeCounter appointmentChangeCounter;
+
+    @TestConfiguration
+    static class MappingConfiguration {
+        @Bean
+        MongoMappingContext mongoMappingContext() {
+            MongoMappingContext mappingContext = new MongoMappingContext();
+            mappingContext.setSimpleTypeHolder(new MongoCustomConversions(Collections.emptyList()).getSimpleTypeHolder());
+            return mappingContext;
+        }
+    }
+
+    @Test
+    public void shedsRequestsWithRetryAfter() {
+        webTestClient.get().uri("/appointments/{id}", "A000001")
+                .exchange()
+                .expectStatus().isEqualTo(503)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "3");
+        Mockito.verify(appointmentRepository, Mockito.never()).findById(any(String.class));
+
+        //a request no handler matches is not counted against any endpoint
+        webTestClient.get().uri("/noSuchEndpoint")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void streamsGiveTheirRoomBackOnceAdmitted() throws Exception {
+        RequestMappingHandlerMapping handlerMapping = Mockito.mock(RequestMappingHandlerMapping.class);
+        AdmissionWebFilter filter = new AdmissionWebFilter(handlerMapping,
+                new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class), true, 5, 0, 20, 2, 150, 3);
+        //responses that are never done writing, like those of connected subscribers
+        WebFilterChain connected = exchange -> Mono.never();
+        AtomicInteger rejected = new AtomicInteger();
+
+        Mockito.when(handlerMapping.getHandler(any())).thenReturn(Mono.just(new HandlerMethod(new AppointmentEventController(),
+                "getAppointmentEvents", String.class, String.class, String.class, String.class)));
+        //more than the initial limit of the endpoint, and more than the read bulkhead
+        for (int i = 0; i < 25; i++) {
+            filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/appointmentEvents")), connected)
+                    .subscribe(null, error -> rejected.incrementAndGet());
+        }
+        assertEquals(0, rejected.get());
+
+        //reads that are not streams still hold their room until they are written
+        Mockito.when(handlerMapping.getHandler(any())).thenReturn(Mono.just(new HandlerMethod(new ReactiveAppointmentController(),
+                "getAppointmentByID", String.class, boolean.class, ServerWebExchange.class)));
+        for (int i = 0; i < 5; i++) {
+            filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/appointments/A000001")), connected)
+                    .subscribe(null, error -> rejected.incrementAndGet());
+        }
+        assertEquals(0, rejected.get());
+        MockServerWebExchange shed = MockServerWebExchange.from(MockServerHttpRequest.get("/appointments/A000001"));
+        assertThrows(ServiceOverloadedException.class, () -> filter.filter(shed, connected).block());
+        assertEquals("3", shed.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+}
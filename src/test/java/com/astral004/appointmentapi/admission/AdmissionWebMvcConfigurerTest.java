@@ -0,0 +1,35 @@
+package com.astral004.appointmentapi.admission;
+
+import com.astral004.appointmentapi.controller.PatientSearchController;
+import com.astral004.appointmentapi.search.PatientSearchIndex;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(controllers = PatientSearchController.class,
+            properties = {"appointments.admission.read-bulkhead=0", "appointments.admission.retry-after-seconds=3"})
+public class AdmissionWebMvcConfigurerTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    private PatientSearchIndex patientSearchIndex;
+
+    @Test
+    public void shedsRequestsWithRetryAfter() throws Exception {
+        mockMvc.perform(get("/patientSearch")
+                .param("q", "smi"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "3"));
+    }
+}
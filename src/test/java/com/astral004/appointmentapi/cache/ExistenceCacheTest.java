@@ -0,0 +1,77 @@
+package com.astral004.appointmentapi.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExistenceCacheTest {
+
+    private AtomicInteger loads;
+    private Predicate<String> loader;
+
+    @Before
+    public void setUp() {
+        loads = new AtomicInteger();
+        loader = id -> {
+            loads.incrementAndGet();
+            return id.startsWith("P");
+        };
+    }
+
+    @Test
+    public void cachesAnswersUntilInvalidated() {
+        ExistenceCache cache = new ExistenceCache(100, 60000);
+        assertTrue(cache.exists("P000001", loader));
+        assertTrue(cache.exists("P000001", loader));
+        assertEquals(1, loads.get());
+        //a missing id may be created through another instance, so the miss is asked again
+        assertFalse(cache.exists("X000001", loader));
+        assertFalse(cache.exists("X000001", loader));
+        assertEquals(3, loads.get());
+
+        cache.invalidate("P000001");
+        assertTrue(cache.exists("P000001", loader));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedAndExpiredEntries() {
+        ExistenceCache cache = new ExistenceCache(2, 60000);
+        cache.exists("P1", loader);
+        cache.exists("P2", loader);
+        cache.exists("P1", loader);
+        cache.exists("P3", loader);
+        assertEquals(3, loads.get());
+        cache.exists("P1", loader);
+        assertEquals(3, loads.get());
+        cache.exists("P2", loader);
+        assertEquals(4, loads.get());
+
+        ExistenceCache expiring = new ExistenceCache(100, -1);
+        expiring.exists("P1", loader);
+        expiring.exists("P1", loader);
+        assertEquals(6, loads.get());
+    }
+
+    @Test
+    public void answersNullIdsAndForgetsSavedIds() {
+        ExistenceCache cache = new ExistenceCache(100, 60000);
+        assertFalse(cache.exists(null, loader));
+        assertEquals(0, loads.get());
+
+        assertTrue(cache.exists("P000001", loader));
+        assertEquals(Boolean.TRUE, cache.peek("P000001"));
+        cache.saved("P000001");
+        assertNull(cache.peek("P000001"));
+        //an id only ever seen missing is left for the database to answer
+        cache.record("X000001", false);
+        assertNull(cache.peek("X000001"));
+    }
+}
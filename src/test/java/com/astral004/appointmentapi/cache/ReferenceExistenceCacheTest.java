@@ -0,0 +1,115 @@
+package com.astral004.appointmentapi.cache;
+
+import com.astral004.appointmentapi.repository.ClinicRepository;
+import com.astral004.appointmentapi.repository.DoctorRepository;
+import com.astral004.appointmentapi.repository.PatientRepository;
+import com.astral004.appointmentapi.routing.ReadRoute;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ClientSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+public class ReferenceExistenceCacheTest {
+
+    private PatientRepository patientRepository;
+    private DoctorRepository doctorRepository;
+    private ClinicRepository clinicRepository;
+    private ReferenceExistenceCache cache;
+
+    @Before
+    public void setUp() {
+        patientRepository = Mockito.mock(PatientRepository.class);
+        doctorRepository = Mockito.mock(DoctorRepository.class);
+        clinicRepository = Mockito.mock(ClinicRepository.class);
+        cache = new ReferenceExistenceCache();
+        ReflectionTestUtils.setField(cache, "patientRepository", patientRepository);
+        ReflectionTestUtils.setField(cache, "doctorRepository", doctorRepository);
+        ReflectionTestUtils.setField(cache, "clinicRepository", clinicRepository);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+        ReflectionTestUtils.setField(cache, "ttlMillis", 60000L);
+        ReflectionTestUtils.setField(cache, "lookupThreads", 3);
+        ReflectionTestUtils.setField(cache, "lookupTimeoutMillis", 5000L);
+        cache.createCaches();
+    }
+
+    @After
+    public void tearDown() {
+        cache.shutdown();
+        ReadRoute.clear();
+    }
+
+    @Test
+    public void lookupsRunConcurrently() {
+        when(patientRepository.existsById("P000001")).thenAnswer(invocation -> sleepThen(300, true));
+        when(doctorRepository.existsById("D000001")).thenAnswer(invocation -> sleepThen(300, true));
+        when(clinicRepository.existsById("C000001")).thenAnswer(invocation -> sleepThen(300, true));
+        long start = System.currentTimeMillis();
+        assertTrue(cache.referencesExist("P000001", "D000001", "C000001"));
+        assertTrue("Lookups ran one after another", System.currentTimeMillis() - start < 800);
+
+        assertTrue(cache.referencesExist("P000001", "D000001", "C000001"));
+        Mockito.verify(patientRepository, Mockito.times(1)).existsById("P000001");
+    }
+
+    @Test
+    public void failsFastOnFirstMissingReference() {
+        when(patientRepository.existsById("P000001")).thenAnswer(invocation -> sleepThen(2000, true));
+        when(doctorRepository.existsById("D000404")).thenReturn(false);
+        when(clinicRepository.existsById("C000001")).thenAnswer(invocation -> sleepThen(2000, true));
+        long start = System.currentTimeMillis();
+        assertFalse(cache.referencesExist("P000001", "D000404", "C000001"));
+        assertTrue("Did not fail fast", System.currentTimeMillis() - start < 1000);
+
+        assertFalse(cache.referencesExist("P000001", "D000404", "C000001"));
+        assertFalse(cache.referencesExist(null, "D000001", "C000001"));
+    }
+
+    @Test
+    public void lookupsFollowTheRouteOfTheRequest() {
+        Map<String, ReadRoute> routes = new ConcurrentHashMap<>();
+        Map<String, Thread> threads = new ConcurrentHashMap<>();
+        when(patientRepository.existsById(Mockito.anyString())).thenAnswer(invocation -> record(invocation.getArgument(0), routes, threads));
+        when(doctorRepository.existsById(Mockito.anyString())).thenAnswer(invocation -> record(invocation.getArgument(0), routes, threads));
+        when(clinicRepository.existsById(Mockito.anyString())).thenAnswer(invocation -> record(invocation.getArgument(0), routes, threads));
+
+        ReadRoute routed = ReadRoute.of(ReadPreference.secondaryPreferred());
+        ReadRoute.set(routed);
+        assertTrue(cache.referencesExist("P000001", "D000001", "C000001"));
+        assertEquals(3, routes.size());
+        for (ReadRoute route : routes.values()) {
+            assertSame(routed, route);
+        }
+
+        //a session serves one operation at a time, so a pinned request looks its references up itself
+        ReadRoute pinned = ReadRoute.pinned(Mockito.mock(ClientSession.class));
+        ReadRoute.set(pinned);
+        assertTrue(cache.referencesExist("P000002", "D000002", "C000002"));
+        for (String id : new String[]{"P000002", "D000002", "C000002"}) {
+            assertSame(pinned, routes.get(id));
+            assertSame(Thread.currentThread(), threads.get(id));
+        }
+    }
+
+    private static boolean record(String id, Map<String, ReadRoute> routes, Map<String, Thread> threads) {
+        routes.put(id, ReadRoute.current());
+        threads.put(id, Thread.currentThread());
+        return true;
+    }
+
+    private static boolean sleepThen(long millis, boolean result) throws InterruptedException {
+        Thread.sleep(millis);
+        return result;
+    }
+}
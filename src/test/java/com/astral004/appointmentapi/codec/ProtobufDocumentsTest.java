@@ -0,0 +1,100 @@
+package com.astral004.appointmentapi.codec;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.domain.Clinic;
+import com.astral004.appointmentapi.domain.Doctor;
+import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.proto.AppointmentList;
+import com.google.protobuf.Message;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class ProtobufDocumentsTest {
+
+    @Test
+    public void roundTripsAppointments() throws Exception {
+        Appointment appointment = new Appointment();
+        appointment.setId("A00000001");
+        appointment.setPatientId("P0000001");
+        appointment.setTiming(LocalDateTime.of(1969, 7, 20, 20, 17, 40, 123_000_000));
+        appointment.setDescription("Ünïcode follow-up");
+        appointment.setCopay(-5);
+        appointment.setVersion(7L);
+
+        Appointment read = (Appointment) ProtobufDocuments.fromMessage(com.astral004.appointmentapi.proto.Appointment
+                .parseFrom(ProtobufDocuments.toMessage(appointment).toByteArray()));
+        assertEquals("A00000001", read.getId());
+        assertEquals("P0000001", read.getPatientId());
+        assertNull(read.getDoctorId());
+        assertEquals(appointment.getTiming(), read.getTiming());
+        assertEquals("Ünïcode follow-up", read.getDescription());
+        assertEquals(Integer.valueOf(-5), read.getCopay());
+        assertEquals(Long.valueOf(7), read.getVersion());
+        assertNull(read.getStatus());
+    }
+
+    @Test
+    public void roundTripsPeopleAndClinics() throws Exception {
+        Patient patient = new Patient();
+        patient.setId("P0000001");
+        patient.setFirstName("Ada");
+        patient.setBirthday(LocalDate.of(1815, 12, 10));
+        patient.setFirstTime(false);
+        Patient readPatient = (Patient) ProtobufDocuments.fromMessage(com.astral004.appointmentapi.proto.Patient
+                .parseFrom(ProtobufDocuments.toMessage(patient).toByteArray()));
+        assertEquals("Ada", readPatient.getFirstName());
+        assertEquals(patient.getBirthday(), readPatient.getBirthday());
+        assertFalse(readPatient.getFirstTime());
+        assertNull(readPatient.getLastName());
+
+        Doctor doctor = new Doctor();
+        doctor.setId("D00001");
+        doctor.setSpecialty("Cardiology");
+        doctor.setClinicIds(Arrays.asList("C0001", "C0002"));
+        Doctor readDoctor = (Doctor) ProtobufDocuments.fromMessage(ProtobufDocuments.toMessage(doctor));
+        assertEquals("Cardiology", readDoctor.getSpecialty());
+        assertEquals(doctor.getClinicIds(), readDoctor.getClinicIds());
+
+        Clinic clinic = new Clinic();
+        clinic.setId("C0001");
+        clinic.setName("Loop Medical Group");
+        assertEquals("Loop Medical Group", ((Clinic) ProtobufDocuments.fromMessage(ProtobufDocuments.toMessage(clinic))).getName());
+    }
+
+    @Test
+    public void writesTheWireFormatOfTheSchema() {
+        Appointment appointment = new Appointment();
+        appointment.setId("A");
+        appointment.setTiming(LocalDateTime.of(1970, 1, 1, 0, 0, 0, 1_000_000));
+        appointment.setCopay(-1);
+        //field 1 "A", field 5 zigzag 1 = 2, field 8 zigzag -1 = 1
+        assertArrayEquals(new byte[]{0x0A, 0x01, 'A', 0x28, 0x02, 0x40, 0x01}, ProtobufDocuments.toMessage(appointment).toByteArray());
+    }
+
+    @Test
+    public void readsListsAndSkipsUnknownFields() throws Exception {
+        Appointment first = new Appointment();
+        first.setId("A1");
+        Appointment second = new Appointment();
+        second.setId("A2");
+        Message list = ProtobufDocuments.toListMessage(Arrays.asList(first, second), Appointment.class);
+        byte[] encoded = list.toByteArray();
+        //a field from a newer schema: field 99, varint 150
+        byte[] withUnknown = Arrays.copyOf(encoded, encoded.length + 4);
+        System.arraycopy(new byte[]{(byte) 0x98, 0x06, (byte) 0x96, 0x01}, 0, withUnknown, encoded.length, 4);
+
+        List<Object> read = ProtobufDocuments.fromListMessage(AppointmentList.parseFrom(withUnknown));
+        assertEquals(2, read.size());
+        assertEquals("A2", ((Appointment) read.get(1)).getId());
+        assertEquals(AppointmentList.class, ProtobufDocuments.listMessageType(Appointment.class));
+    }
+}
@@ -1,17 +1,40 @@
 package com.astral004.appointmentapi.controller;
 
+import com.astral004.appointmentapi.cache.ReferenceExistenceCache;
+import com.astral004.appointmentapi.codec.ProtobufDocuments;
+import com.astral004.appointmentapi.directory.ClinicDirectory;
 import com.astral004.appointmentapi.domain.Appointment;
-import com.astral004.appointmentapi.domain.Clinic;
-import com.astral004.appointmentapi.domain.Doctor;
-import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.domain.ClinicPlacement;
+import com.astral004.appointmentapi.event.AppointmentChange;
+import com.astral004.appointmentapi.event.AppointmentChangeCounter;
+import com.astral004.appointmentapi.event.AppointmentChangeFeed;
+import com.astral004.appointmentapi.exception.AppointmentConflictException;
 import com.astral004.appointmentapi.exception.AppointmentDoesNotExistException;
+import com.astral004.appointmentapi.exception.InvalidAppointmentIdException;
+import com.astral004.appointmentapi.exception.UnindexedQueryException;
+import com.astral004.appointmentapi.partition.ClinicPartitions;
+import com.astral004.appointmentapi.partition.ClinicRebalancer;
+import com.astral004.appointmentapi.proto.AppointmentList;
 import com.astral004.appointmentapi.repository.AppointmentRepository;
+import com.astral004.appointmentapi.repository.AppointmentViewRepository;
 import com.astral004.appointmentapi.repository.ClinicRepository;
 import com.astral004.appointmentapi.repository.DoctorRepository;
 import com.astral004.appointmentapi.repository.PatientRepository;
+import com.astral004.appointmentapi.repository.ScheduleRollupRepository;
+import com.astral004.appointmentapi.rollup.ScheduleRollupMaintainer;
+import com.astral004.appointmentapi.schedule.DoctorScheduleIndex;
+import com.astral004.appointmentapi.search.PatientSearchIndex;
+import com.astral004.appointmentapi.view.AppointmentViewMaintainer;
+import com.astral004.appointmentapi.write.AppointmentInsertCoalescer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mongodb.client.MongoDatabase;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -21,27 +44,53 @@ import static org.mockito.Mockito.any;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest
+@Import({DoctorScheduleIndex.class, ClinicPartitions.class, SimpleMeterRegistry.class})
 public class AppointmentControllerTest {
     @Autowired
     MockMvc mockMvc;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    AppointmentController appointmentController;
 
     @MockBean
     private AppointmentRepository appointmentRepository;
@@ -51,19 +100,55 @@ public class AppointmentControllerTest {
     private DoctorRepository doctorRepository;
     @MockBean
     private ClinicRepository clinicRepository;
+    @MockBean
+    private ReferenceExistenceCache referenceExistenceCache;
+    @MockBean
+    private AppointmentViewRepository appointmentViewRepository;
+    @MockBean
+    private AppointmentViewMaintainer appointmentViewMaintainer;
+    @MockBean
+    private AppointmentChangeFeed appointmentChangeFeed;
+    @MockBean
+    private AppointmentChangeCounter appointmentChangeCounter;
+    @MockBean
+    private AppointmentInsertCoalescer appointmentInsertCoalescer;
+    @MockBean
+    private PatientSearchIndex patientSearchIndex;
+    @MockBean
+    private ClinicDirectory clinicDirectory;
+    @MockBean
+    private ScheduleRollupRepository scheduleRollupRepository;
+    @MockBean
+    private ScheduleRollupMaintainer scheduleRollupMaintainer;
+    @MockBean
+    private ClinicRebalancer clinicRebalancer;
+    @MockBean
+    private MongoTemplate mongoTemplate;
+
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
 
     private Appointment appointment;
     private List<Appointment> appointments;
     private ObjectMapper objectMapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
 
+    @TestConfiguration
+    static class MappingConfiguration {
+        @Bean
+        MongoMappingContext mongoMappingContext() {
+            MongoMappingContext mappingContext = new MongoMappingContext();
+            mappingContext.setSimpleTypeHolder(new MongoCustomConversions(Collections.emptyList()).getSimpleTypeHolder());
+            return mappingContext;
+        }
+    }
+
     @Before
     public void setUp() throws Exception {
         appointment = new Appointment();
-        appointment.setId("A000001");
+        appointment.setId("64b7f0c2a1e4d3b2c1a00001");
         appointment.setPatientId("P000001");
         appointment.setDoctorId("D000001");
         appointment.setClinicId("C000001");
-        LocalDate timing = LocalDate.now().plusDays(2);
+        LocalDateTime timing = LocalDateTime.now().plusDays(2);
         appointment.setTiming(timing);
         appointment.setDescription("Patient has pain in the right ankle.");
         appointment.setInsuranceId("I000001");
@@ -78,7 +163,8 @@ public class AppointmentControllerTest {
         Mockito.when(appointmentRepository.findAll()).thenReturn(appointments);
         mockMvc.perform(get("/appointments")
                 .contentType(MediaType.APPLICATION_JSON))
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
     }
 
     @Test
@@ -99,6 +185,75 @@ public class AppointmentControllerTest {
                 .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    public void getAppointmentPageTest() throws Exception {
+        Mockito.when(appointmentRepository.findAllByOrderByIdAsc(any())).thenReturn(appointments);
+        mockMvc.perform(get("/appointments")
+                .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(AppointmentController.CONTINUATION_TOKEN_HEADER,
+                        AppointmentController.encodeContinuationToken(appointment.getId())));
+
+        Mockito.when(appointmentRepository.findByIdGreaterThanOrderByIdAsc(Mockito.eq(appointment.getId()), any()))
+                .thenReturn(new ArrayList<>());
+        mockMvc.perform(get("/appointments")
+                .param("size", "1")
+                .param("after", AppointmentController.encodeContinuationToken(appointment.getId())))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(AppointmentController.CONTINUATION_TOKEN_HEADER));
+    }
+
+    @Test
+    public void getAppointmentPageTestException() throws Exception {
+        mockMvc.perform(get("/appointments")
+                .param("size", "10")
+                .param("after", "!not-a-token!"))
+                .andExpect(status().isBadRequest());
+
+        Mockito.when(appointmentRepository.findAllByOrderByIdAsc(any())).thenReturn(new ArrayList<>());
+        mockMvc.perform(get("/appointments")
+                .param("size", "10"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getAllAppointmentFieldsTest() throws Exception {
+        Mockito.when(appointmentRepository.findSelectedPage(Mockito.isNull(), Mockito.eq(0), any())).thenReturn(appointments);
+        mockMvc.perform(get("/appointments")
+                .param("fields", "id,timing,status,doctorId"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(appointment.getId()))
+                .andExpect(jsonPath("$[0].doctorId").value(appointment.getDoctorId()))
+                .andExpect(jsonPath("$[0].description").doesNotExist());
+
+        Mockito.when(appointmentRepository.findSelectedPage(Mockito.isNull(), Mockito.eq(1), any())).thenReturn(appointments);
+        mockMvc.perform(get("/appointments")
+                .param("fields", "id,status")
+                .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(AppointmentController.CONTINUATION_TOKEN_HEADER,
+                        AppointmentController.encodeContinuationToken(appointment.getId())));
+        Mockito.verify(appointmentRepository).findSelectedPage(Mockito.isNull(), Mockito.eq(1),
+                Mockito.argThat(fields -> "id,status".equals(fields.toString())));
+
+        mockMvc.perform(get("/appointments")
+                .param("fields", "id,socialSecurityNumber"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void streamAllAppointmentsTest() throws Exception {
+        Mockito.when(appointmentRepository.streamAllBy()).thenReturn(Stream.of(appointment, appointment));
+        MvcResult result = mockMvc.perform(get("/appointments")
+                .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(r -> assertEquals(2, r.getResponse().getContentAsString().split("\n").length));
+    }
+
     @Test
     public void getAppointmentsByValueTest() throws Exception {
         Mockito.when(appointmentRepository.findAll()).thenReturn(appointments);
@@ -106,10 +261,7 @@ public class AppointmentControllerTest {
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
 
-        Mockito.when(appointmentRepository.findAppointmentsByClinicIdAndDoctorIdAndPatientId(
-                appointment.getClinicId(),
-                appointment.getDoctorId(),
-                appointment.getPatientId())).thenReturn(appointments);
+        Mockito.when(appointmentRepository.findByFilter(any())).thenReturn(appointments);
         mockMvc.perform(get("/appointmentsByValue")
                 .contentType(MediaType.APPLICATION_JSON)
                 .param("cID", appointment.getClinicId())
@@ -117,49 +269,121 @@ public class AppointmentControllerTest {
                 .param("pID", appointment.getPatientId()))
                 .andExpect(status().isOk());
 
-        Mockito.when(appointmentRepository.findAppointmentsByClinicIdAndDoctorId(appointment.getClinicId(),
-                appointment.getDoctorId())).thenReturn(appointments);
         mockMvc.perform(get("/appointmentsByValue")
                 .param("cID", appointment.getClinicId())
                 .param("dID", appointment.getDoctorId()))
                 .andExpect(status().isOk());
 
-        Mockito.when(appointmentRepository.findAppointmentsByClinicIdAndPatientId(appointment.getClinicId(),
-                appointment.getPatientId())).thenReturn(appointments);
         mockMvc.perform(get("/appointmentsByValue")
                 .param("cID", appointment.getClinicId())
                 .param("pID", appointment.getPatientId()))
                 .andExpect(status().isOk());
 
-        Mockito.when(appointmentRepository.findAppointmentsByDoctorIdAndPatientId(appointment.getDoctorId(),
-                appointment.getPatientId())).thenReturn(appointments);
         mockMvc.perform(get("/appointmentsByValue")
                 .param("dID", appointment.getDoctorId())
                 .param("pID", appointment.getPatientId()))
                 .andExpect(status().isOk());
 
-        Mockito.when(appointmentRepository.findAppointmentsByClinicId(appointment.getClinicId())).thenReturn(appointments);
         mockMvc.perform(get("/appointmentsByValue")
                 .param("cID", appointment.getClinicId()))
                 .andExpect(status().isOk());
 
-        Mockito.when(appointmentRepository.findAppointmentsByDoctorId(appointment.getDoctorId())).thenReturn(appointments);
         mockMvc.perform(get("/appointmentsByValue")
                 .param("dID", appointment.getDoctorId()))
                 .andExpect(status().isOk());
 
-        Mockito.when(appointmentRepository.findAppointmentsByPatientId(appointment.getPatientId())).thenReturn(appointments);
         mockMvc.perform(get("/appointmentsByValue")
                 .param("pID", appointment.getPatientId()))
                 .andExpect(status().isOk());
+
+        mockMvc.perform(get("/appointmentsByValue")
+                .param("dID", appointment.getDoctorId())
+                .param("status", "Scheduled")
+                .param("from", LocalDate.now().toString())
+                .param("to", LocalDate.now().plusDays(7).toString()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/appointmentsByValue")
+                .param("from", LocalDate.now().toString()))
+                .andExpect(status().isOk());
+
+        Mockito.verify(appointmentRepository).findByFilter(Mockito.argThat(filter ->
+                appointment.getDoctorId().equals(filter.getDoctorId())
+                        && "Scheduled".equals(filter.getStatus())
+                        && LocalDate.now().plusDays(7).equals(filter.getTo())));
+    }
+
+    @Test
+    public void getArchivedAppointmentsByValueTest() throws Exception {
+        Appointment archived = new Appointment();
+        archived.setId("A000000");
+        archived.setDoctorId(appointment.getDoctorId());
+        archived.setTiming(LocalDateTime.now().minusYears(3));
+        //written while it was being archived, so it is in both tiers
+        Appointment stale = new Appointment();
+        stale.setId(appointment.getId());
+        stale.setTiming(appointment.getTiming());
+        Mockito.when(appointmentRepository.findByFilter(any())).thenReturn(appointments);
+        Mockito.when(appointmentRepository.findArchivedByFilter(any())).thenReturn(Arrays.asList(archived, stale));
+
+        mockMvc.perform(get("/appointmentsByValue")
+                .param("dID", appointment.getDoctorId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(appointments.size()));
+        Mockito.verify(appointmentRepository, Mockito.never()).findArchivedByFilter(any());
+
+        mockMvc.perform(get("/appointmentsByValue")
+                .param("dID", appointment.getDoctorId())
+                .param("includeArchived", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(appointments.size() + 1))
+                .andExpect(jsonPath("$[0].id").value(archived.getId()));
+
+        Mockito.when(appointmentRepository.findById(archived.getId())).thenReturn(Optional.empty());
+        Mockito.when(appointmentRepository.findArchivedById(archived.getId())).thenReturn(archived);
+        mockMvc.perform(get("/appointments/{id}", archived.getId()))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/appointments/{id}", archived.getId())
+                .param("includeArchived", "true"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void getAppointmentFieldsByValueTest() throws Exception {
+        Mockito.when(appointmentRepository.findByFilter(any())).thenReturn(appointments);
+        mockMvc.perform(get("/appointmentsByValue")
+                .param("dID", appointment.getDoctorId())
+                .param("fields", "id, timing ,status"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("Scheduled"))
+                .andExpect(jsonPath("$[0].patientId").doesNotExist());
+        Mockito.verify(appointmentRepository).findByFilter(Mockito.argThat(filter ->
+                appointment.getDoctorId().equals(filter.getDoctorId())
+                        && "id,timing,status".equals(String.valueOf(filter.getFields()))));
+
+        mockMvc.perform(get("/appointmentsByValue")
+                .param("dID", appointment.getDoctorId())
+                .param("fields", ""))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getAppointmentFieldsByIdTest() throws Exception {
+        Mockito.when(appointmentRepository.findSelectedById(Mockito.eq(appointment.getId()), any())).thenReturn(appointment);
+        mockMvc.perform(get("/appointments/{id}", appointment.getId())
+                .param("fields", "status"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("Scheduled"))
+                .andExpect(jsonPath("$.id").doesNotExist());
+
+        mockMvc.perform(get("/appointments/{id}", "A000002")
+                .param("fields", "status"))
+                .andExpect(status().isNotFound());
     }
 
     @Test
     public void getAppointmentsByValueTestException()throws Exception{
-        Mockito.when(appointmentRepository.findAppointmentsByClinicIdAndDoctorIdAndPatientId(
-                appointment.getClinicId(),
-                appointment.getDoctorId(),
-                appointment.getPatientId())).thenReturn(new ArrayList<>());
+        Mockito.when(appointmentRepository.findByFilter(any())).thenReturn(new ArrayList<>());
         mockMvc.perform(get("/appointmentsByValue")
                 .contentType(MediaType.APPLICATION_JSON)
                 .param("cID", appointment.getClinicId())
@@ -167,16 +391,18 @@ public class AppointmentControllerTest {
                 .param("pID", appointment.getPatientId()))
                 .andExpect(status().isNotFound());
 
-        Mockito.when(appointmentRepository.findAppointmentsByClinicIdAndDoctorIdAndPatientId(
-                appointment.getClinicId(),
-                appointment.getDoctorId(),
-                appointment.getPatientId())).thenReturn(null);
+        Mockito.when(appointmentRepository.findByFilter(any())).thenReturn(null);
         mockMvc.perform(get("/appointmentsByValue")
                 .contentType(MediaType.APPLICATION_JSON)
                 .param("cID", appointment.getClinicId())
                 .param("dID", appointment.getDoctorId())
                 .param("pID", appointment.getPatientId()))
                 .andExpect(status().isInternalServerError());
+
+        mockMvc.perform(get("/appointmentsByValue")
+                .param("status", "Scheduled"))
+                .andExpect(status().isBadRequest())
+                .andExpect(result -> assertTrue(result.getResolvedException() instanceof UnindexedQueryException));
     }
 
     @Test
@@ -187,6 +413,67 @@ public class AppointmentControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void getAppointmentByIDNotModifiedTest() throws Exception {
+        appointment.setVersion(3L);
+        Mockito.when(appointmentRepository.findById(appointment.getId())).thenReturn(Optional.of(appointment));
+        mockMvc.perform(get("/appointments/{id}", appointment.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+
+        Appointment version = new Appointment();
+        version.setId(appointment.getId());
+        version.setVersion(3L);
+        Mockito.when(appointmentRepository.findVersionById(appointment.getId())).thenReturn(Optional.of(version));
+        mockMvc.perform(get("/appointments/{id}", appointment.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/appointments/{id}", appointment.getId())
+                .param("fields", "status")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isNotModified());
+        Mockito.verify(appointmentRepository, Mockito.times(1)).findById(appointment.getId());
+        Mockito.verify(appointmentRepository, Mockito.never()).findSelectedById(any(), any());
+
+        version.setVersion(4L);
+        appointment.setVersion(4L);
+        mockMvc.perform(get("/appointments/{id}", appointment.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("$.id").value(appointment.getId()));
+    }
+
+    @Test
+    public void getAppointmentsByValueNotModifiedTest() throws Exception {
+        Mockito.when(appointmentChangeCounter.current()).thenReturn(41L);
+        Mockito.when(appointmentRepository.findByFilter(any())).thenReturn(appointments);
+        String eTag = mockMvc.perform(get("/appointmentsByValue")
+                .param("dID", appointment.getDoctorId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertEquals(AppointmentController.listETag(41), eTag);
+
+        mockMvc.perform(get("/appointmentsByValue")
+                .param("dID", appointment.getDoctorId())
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/appointmentsByValue")
+                .param("dID", appointment.getDoctorId())
+                .param("fields", "id,status")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        Mockito.verify(appointmentRepository, Mockito.times(1)).findByFilter(any());
+
+        Mockito.when(appointmentChangeCounter.current()).thenReturn(42L);
+        mockMvc.perform(get("/appointmentsByValue")
+                .param("dID", appointment.getDoctorId())
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, AppointmentController.listETag(42)));
+    }
+
     @Test
     public void getAppointmentsByIDTestException() throws Exception{
         Mockito.when(appointmentRepository.findById(Mockito.any())).thenReturn(Optional.empty());
@@ -194,27 +481,101 @@ public class AppointmentControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void getAppointmentByIDBinaryTest() throws Exception {
+        appointment.setVersion(3L);
+        Mockito.when(appointmentRepository.findById(Mockito.any())).thenReturn(Optional.of(appointment));
+        mockMvc.perform(get("/appointments/{id}", appointment.getId())
+                .accept(ProtobufHttpMessageConverter.PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(ProtobufHttpMessageConverter.PROTOBUF))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(r -> {
+                    Appointment read = (Appointment) ProtobufDocuments.fromMessage(
+                            com.astral004.appointmentapi.proto.Appointment.parseFrom(r.getResponse().getContentAsByteArray()));
+                    assertEquals(appointment.getTiming().withNano(appointment.getTiming().getNano() / 1_000_000 * 1_000_000), read.getTiming());
+                    assertEquals(appointment.getCopay(), read.getCopay());
+                    assertEquals(appointment.getVersion(), read.getVersion());
+                });
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory()).registerModule(new JavaTimeModule());
+        mockMvc.perform(get("/appointments/{id}", appointment.getId())
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR))
+                .andExpect(r -> {
+                    Appointment read = cbor.readValue(r.getResponse().getContentAsByteArray(), Appointment.class);
+                    assertEquals(appointment.getTiming(), read.getTiming());
+                    assertEquals(appointment.getDescription(), read.getDescription());
+                });
+        ObjectMapper smile = new ObjectMapper(new SmileFactory()).registerModule(new JavaTimeModule());
+        mockMvc.perform(get("/appointments/{id}", appointment.getId())
+                .accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(SMILE))
+                .andExpect(r -> assertEquals(appointment.getDescription(),
+                        smile.readValue(r.getResponse().getContentAsByteArray(), Appointment.class).getDescription()));
+
+        Mockito.when(appointmentRepository.findAllByOrderByIdAsc(any())).thenReturn(appointments);
+        mockMvc.perform(get("/appointments")
+                .param("size", "1")
+                .accept(ProtobufHttpMessageConverter.PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(r -> assertEquals(appointment.getId(),
+                        AppointmentList.parseFrom(r.getResponse().getContentAsByteArray()).getAppointments(0).getId()));
+    }
+
+    @Test
+    public void createAppointmentBinaryTest() throws Exception {
+        Mockito.when(referenceExistenceCache.referencesExist(appointment.getPatientId(),
+                appointment.getDoctorId(), appointment.getClinicId())).thenReturn(true);
+        Mockito.when(appointmentRepository.save(Mockito.any())).thenAnswer(invocation -> invocation.getArgument(0));
+        mockMvc.perform(post("/appointments")
+                .contentType(ProtobufHttpMessageConverter.PROTOBUF)
+                .accept(ProtobufHttpMessageConverter.PROTOBUF)
+                .content(ProtobufDocuments.toMessage(appointment).toByteArray()))
+                .andExpect(status().isCreated())
+                .andExpect(r -> assertEquals(appointment.getDescription(),
+                        com.astral004.appointmentapi.proto.Appointment.parseFrom(r.getResponse().getContentAsByteArray()).getDescription()));
+        mockMvc.perform(post("/appointments")
+                .contentType(MediaType.APPLICATION_CBOR)
+                .content(new ObjectMapper(new CBORFactory()).registerModule(new JavaTimeModule()).writeValueAsBytes(appointment)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/appointments")
+                .contentType(ProtobufHttpMessageConverter.PROTOBUF)
+                .content(new byte[]{0x0A, 0x7F}))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void createAppointmentTest() throws Exception {
         String jsonAppointment = objectMapper.writeValueAsString(appointment);
-        Mockito.when(patientRepository.findById(Mockito.any())).thenReturn(Optional.of(new Patient()));
-        Mockito.when(doctorRepository.findById(Mockito.any())).thenReturn(Optional.of(new Doctor()));
-        Mockito.when(clinicRepository.findById(Mockito.any())).thenReturn(Optional.of(new Clinic()));
+        Mockito.when(referenceExistenceCache.referencesExist(appointment.getPatientId(),
+                appointment.getDoctorId(), appointment.getClinicId())).thenReturn(true);
         Mockito.when(appointmentRepository.save(Mockito.any())).thenReturn(appointment);
         mockMvc.perform(post("/appointments")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(jsonAppointment))
                 .andExpect(status().isCreated());
+
+        String dateOnly = "{\"patientId\":\"P000001\",\"doctorId\":\"D000001\",\"clinicId\":\"C000001\",\"timing\":\""
+                + LocalDate.now().plusDays(5) + "\"}";
+        mockMvc.perform(post("/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(dateOnly))
+                .andExpect(status().isCreated());
+        Mockito.verify(appointmentViewMaintainer, Mockito.times(2)).onAppointmentsChanged(Mockito.argThat(event ->
+                event.getChanges().get(0).getType() == AppointmentChange.Type.CREATED));
+        Mockito.verify(appointmentRepository).save(Mockito.argThat(saved ->
+                LocalDate.now().plusDays(5).atStartOfDay().equals(saved.getTiming())));
     }
 
     @Test
     public void createAppointmentTestException() throws Exception{
         String cleanAppointment = objectMapper.writeValueAsString(appointment);
-        appointment.setTiming(LocalDate.now().minusDays(2));
+        appointment.setTiming(LocalDateTime.now().minusDays(2));
         String badAppointment = objectMapper.writeValueAsString(appointment);
-        Mockito.when(patientRepository.findById(Mockito.any())).thenReturn(Optional.empty());
-        Mockito.when(doctorRepository.findById(Mockito.any())).thenReturn(Optional.empty());
-        Mockito.when(clinicRepository.findById(Mockito.any())).thenReturn(Optional.empty());
+        Mockito.when(referenceExistenceCache.referencesExist(any(), any(), any())).thenReturn(false);
         Mockito.when(appointmentRepository.save(Mockito.any())).thenThrow(new NullPointerException("Something was null."));
         mockMvc.perform(post("/appointments")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -230,9 +591,8 @@ public class AppointmentControllerTest {
     @Test
     public void createAppointmentTestCatch() throws Exception{
         String json = objectMapper.writeValueAsString(appointment);
-        Mockito.when(patientRepository.findById(Mockito.any())).thenReturn(Optional.of(new Patient()));
-        Mockito.when(doctorRepository.findById(Mockito.any())).thenReturn(Optional.of(new Doctor()));
-        Mockito.when(clinicRepository.findById(Mockito.any())).thenReturn(Optional.of(new Clinic()));
+        Mockito.when(referenceExistenceCache.referencesExist(appointment.getPatientId(),
+                appointment.getDoctorId(), appointment.getClinicId())).thenReturn(true);
         Mockito.when(appointmentRepository.save(Mockito.any())).thenThrow(new NullPointerException("Something went wrong!"));
         mockMvc.perform(post("/appointments")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -240,12 +600,154 @@ public class AppointmentControllerTest {
                 .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    public void createAppointmentGroupCommitTest() throws Exception {
+        String json = objectMapper.writeValueAsString(appointment);
+        Mockito.when(referenceExistenceCache.referencesExist(any(), any(), any())).thenReturn(true);
+        Mockito.when(appointmentInsertCoalescer.isEnabled()).thenReturn(true);
+        Mockito.when(appointmentInsertCoalescer.insert(Mockito.any())).thenAnswer(invocation -> invocation.getArgument(0));
+        mockMvc.perform(post("/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect(status().isCreated());
+        Mockito.verify(appointmentRepository, Mockito.never()).save(Mockito.any());
+
+        Mockito.when(appointmentInsertCoalescer.insert(Mockito.any()))
+                .thenThrow(new DataIntegrityViolationException("E11000 duplicate key error"));
+        mockMvc.perform(post("/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect(status().isInternalServerError());
+    }
+
+    @Test
+    public void createAppointmentTestDoubleBooking() throws Exception {
+        appointment.setId(null);
+        appointment.setDoctorId("D000042");
+        Mockito.when(referenceExistenceCache.referencesExist(any(), any(), any())).thenReturn(true);
+        Mockito.when(appointmentRepository.save(Mockito.any())).thenAnswer(invocation -> invocation.getArgument(0));
+        String json = objectMapper.writeValueAsString(appointment);
+        mockMvc.perform(post("/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect(status().isConflict())
+                .andExpect(result -> assertTrue(result.getResolvedException() instanceof AppointmentConflictException));
+
+        appointment.setTiming(appointment.getTiming().plusHours(1));
+        mockMvc.perform(post("/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    public void createAppointmentTestMixedIds() throws Exception {
+        Mockito.when(referenceExistenceCache.referencesExist(any(), any(), any())).thenReturn(true);
+        Mockito.when(appointmentRepository.save(Mockito.any())).thenAnswer(invocation -> invocation.getArgument(0));
+        appointment.setId("A000002");
+        mockMvc.perform(post("/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isBadRequest())
+                .andExpect(result -> assertTrue(result.getResolvedException() instanceof InvalidAppointmentIdException));
+
+        //an ObjectId is kept, in the form the database reads it back in, so pages stay in one order
+        appointment.setId("64B7F0C2A1E4D3B2C1A00002");
+        mockMvc.perform(post("/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value("64b7f0c2a1e4d3b2c1a00002"));
+
+        Mockito.when(referenceExistenceCache.existingPatientIds(any())).thenReturn(Collections.singleton(appointment.getPatientId()));
+        Mockito.when(referenceExistenceCache.existingDoctorIds(any())).thenReturn(Collections.singleton(appointment.getDoctorId()));
+        Mockito.when(referenceExistenceCache.existingClinicIds(any())).thenReturn(Collections.singleton(appointment.getClinicId()));
+        Mockito.when(appointmentRepository.insertUnordered(any())).thenReturn(Collections.emptyMap());
+        Appointment named = new Appointment();
+        named.setId("A000003");
+        named.setPatientId(appointment.getPatientId());
+        named.setDoctorId(appointment.getDoctorId());
+        named.setClinicId(appointment.getClinicId());
+        named.setTiming(appointment.getTiming().plusHours(2));
+        Appointment unnamed = new Appointment();
+        unnamed.setPatientId(appointment.getPatientId());
+        unnamed.setDoctorId(appointment.getDoctorId());
+        unnamed.setClinicId(appointment.getClinicId());
+        unnamed.setTiming(appointment.getTiming().plusHours(3));
+        mockMvc.perform(post("/appointments/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(named, unnamed))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.results[0].error").value(AppointmentController.INVALID_ID_MESSAGE))
+                .andExpect(jsonPath("$.results[1].status").value("Created"));
+        Mockito.verify(appointmentRepository).insertUnordered(Mockito.argThat(inserted ->
+                inserted.size() == 1 && ObjectId.isValid(inserted.get(0).getId())));
+    }
+
+    @Test
+    public void importAppointmentsTest() throws Exception {
+        Appointment pastAppointment = new Appointment();
+        pastAppointment.setPatientId(appointment.getPatientId());
+        pastAppointment.setDoctorId(appointment.getDoctorId());
+        pastAppointment.setClinicId(appointment.getClinicId());
+        pastAppointment.setTiming(LocalDateTime.now().minusDays(2));
+        Appointment unknownDoctor = new Appointment();
+        unknownDoctor.setPatientId(appointment.getPatientId());
+        unknownDoctor.setDoctorId("D999999");
+        unknownDoctor.setClinicId(appointment.getClinicId());
+        unknownDoctor.setTiming(appointment.getTiming());
+        Mockito.when(referenceExistenceCache.existingPatientIds(any())).thenReturn(Collections.singleton(appointment.getPatientId()));
+        Mockito.when(referenceExistenceCache.existingDoctorIds(any())).thenReturn(Collections.singleton(appointment.getDoctorId()));
+        Mockito.when(referenceExistenceCache.existingClinicIds(any())).thenReturn(Collections.singleton(appointment.getClinicId()));
+        Mockito.when(appointmentRepository.insertUnordered(any())).thenReturn(Collections.emptyMap());
+
+        mockMvc.perform(post("/appointments/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(appointment, pastAppointment, unknownDoctor))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(3))
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.results[0].status").value("Created"))
+                .andExpect(jsonPath("$.results[1].error").value("This is not a future date!"))
+                .andExpect(jsonPath("$.results[2].status").value("Rejected"));
+        Mockito.verify(referenceExistenceCache, Mockito.times(1)).existingDoctorIds(any());
+
+        Mockito.when(appointmentRepository.insertUnordered(any())).thenReturn(Collections.singletonMap(1, "E11000 duplicate key"));
+        String ndjson = objectMapper.writeValueAsString(appointment) + "\n" + objectMapper.writeValueAsString(appointment) + "\n";
+        mockMvc.perform(post("/appointments/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.results[1].error").value("E11000 duplicate key"));
+    }
+
+    @Test
+    public void importAppointmentsTestMalformed() throws Exception {
+        Mockito.when(referenceExistenceCache.existingPatientIds(any())).thenReturn(Collections.singleton(appointment.getPatientId()));
+        Mockito.when(referenceExistenceCache.existingDoctorIds(any())).thenReturn(Collections.singleton(appointment.getDoctorId()));
+        Mockito.when(referenceExistenceCache.existingClinicIds(any())).thenReturn(Collections.singleton(appointment.getClinicId()));
+        Mockito.when(appointmentRepository.insertUnordered(any())).thenReturn(Collections.emptyMap());
+        mockMvc.perform(post("/appointments/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(objectMapper.writeValueAsString(appointment) + "\n{\"patientId\": "))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.rejected").value(1));
+    }
+
     @Test
     public void updateAppointmentTest()throws Exception{
         appointment.setTiming(appointment.getTiming().plusDays(3));
+        appointment.setVersion(3L);
         String json = objectMapper.writeValueAsString(appointment);
-        when(appointmentRepository.findById(any())).thenReturn(Optional.of(appointment));
-        when(appointmentRepository.save(any())).thenReturn(appointment);
+        when(appointmentRepository.reschedule(Mockito.eq(appointment.getId()), any(), Mockito.eq(3L), Mockito.isNull(), any())).thenReturn(appointment);
         mockMvc.perform(put("/appointments/{id}", appointment.getId())
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(json))
@@ -254,8 +756,7 @@ public class AppointmentControllerTest {
 
     @Test
     public void updateAppointmentTestException()throws Exception{
-        when(appointmentRepository.findById(any())).thenReturn(Optional.of(appointment));
-        when(appointmentRepository.save(any())).thenThrow(new NullPointerException("NULL"));
+        when(appointmentRepository.reschedule(any(), any(), any(), any(), any())).thenThrow(new NullPointerException("NULL"));
         appointment.setTiming(appointment.getTiming().plusDays(3));
         String cleanDate = objectMapper.writeValueAsString(appointment);
         mockMvc.perform(put("/appointments/{id}", appointment.getId())
@@ -263,7 +764,9 @@ public class AppointmentControllerTest {
                 .content(cleanDate))
                 .andExpect(status().isInternalServerError());
 
-        appointment.setTiming(LocalDate.now().plusDays(1));
+        Mockito.reset(appointmentRepository);
+        when(appointmentRepository.findById(any())).thenReturn(Optional.of(appointment));
+        appointment.setTiming(LocalDateTime.now().plusDays(1));
         String badDate = objectMapper.writeValueAsString(appointment);
         mockMvc.perform(put("/appointments/{id}", appointment.getId())
                 .contentType(MediaType.APPLICATION_JSON)
@@ -271,6 +774,20 @@ public class AppointmentControllerTest {
                 .andExpect(status().isNotAcceptable());
     }
 
+    @Test
+    public void updateAppointmentTestConflict()throws Exception{
+        appointment.setTiming(appointment.getTiming().plusDays(3));
+        appointment.setVersion(1L);
+        String staleVersion = objectMapper.writeValueAsString(appointment);
+        appointment.setVersion(2L);
+        when(appointmentRepository.findById(any())).thenReturn(Optional.of(appointment));
+        mockMvc.perform(put("/appointments/{id}", appointment.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(staleVersion))
+                .andExpect(status().isConflict())
+                .andExpect(result -> assertTrue(result.getResolvedException() instanceof AppointmentConflictException));
+    }
+
     @Test
     public void updateAppointmentTestNotFound()throws Exception{
         when(appointmentRepository.findById(any())).thenReturn(Optional.empty());
@@ -284,18 +801,76 @@ public class AppointmentControllerTest {
     public void deleteAppointmentByIDTest()throws Exception{
         appointment.setTiming(appointment.getTiming().plusDays(3));
         String json = objectMapper.writeValueAsString(appointment);
-        when(appointmentRepository.findById(any())).thenReturn(Optional.of(appointment));
-        when(appointmentRepository.save(any())).thenReturn(appointment);
+        when(appointmentRepository.cancel(Mockito.eq(appointment.getId()), Mockito.isNull(), Mockito.isNull(), any())).thenReturn(appointment);
         mockMvc.perform(delete("/appointments/{id}", appointment.getId())
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("Cancelled"));
+        Mockito.verify(appointmentViewMaintainer).onAppointmentsChanged(Mockito.argThat(event ->
+                "Scheduled".equals(event.getChanges().get(0).getPrevious().getStatus())));
+
+        when(appointmentRepository.cancel(Mockito.eq(appointment.getId()), Mockito.eq(4L), Mockito.isNull(), any())).thenReturn(appointment);
+        mockMvc.perform(delete("/appointments/{id}", appointment.getId())
+                .param("version", "4"))
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void partitionedWritesGoStraightToTheClinicTheClientNamed() throws Exception {
+        MongoTemplate partitionTemplate = Mockito.mock(MongoTemplate.class);
+        when(partitionTemplate.getCollectionName(Appointment.class)).thenReturn("appointments");
+        ClinicPartitions partitioned = new ClinicPartitions();
+        ReflectionTestUtils.setField(partitioned, "mongoTemplate", partitionTemplate);
+        ReflectionTestUtils.invokeMethod(partitioned, "addPartition", Mockito.mock(MongoDatabase.class));
+        for (String clinicId : Arrays.asList("C000001", "C000002")) {
+            ClinicPlacement placement = new ClinicPlacement();
+            placement.setId(clinicId);
+            placement.setPartition(1);
+            ReflectionTestUtils.invokeMethod(partitioned, "cache", placement);
+        }
+        Object clinicPartitions = ReflectionTestUtils.getField(appointmentController, "clinicPartitions");
+        ReflectionTestUtils.setField(appointmentController, "clinicPartitions", partitioned);
+        try {
+            appointment.setTiming(appointment.getTiming().plusDays(3));
+            when(appointmentRepository.reschedule(Mockito.eq(appointment.getId()), any(), any(), Mockito.eq("C000001"), any()))
+                    .thenReturn(appointment);
+            when(appointmentRepository.cancel(Mockito.eq(appointment.getId()), any(), Mockito.eq("C000001"), any()))
+                    .thenReturn(appointment);
+            mockMvc.perform(put("/appointments/{id}", appointment.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(appointment)))
+                    .andExpect(status().isOk());
+            mockMvc.perform(delete("/appointments/{id}", appointment.getId())
+                    .param("cID", "C000001"))
+                    .andExpect(status().isOk());
+            Mockito.verify(appointmentRepository, Mockito.never()).findById(any());
+
+            //a clinic the appointment is not at, or none, costs a lookup first
+            when(appointmentRepository.findById(appointment.getId())).thenReturn(Optional.of(appointment));
+            Appointment moved = new Appointment();
+            AppointmentController.copyAppointment(appointment, moved);
+            moved.setClinicId("C000002");
+            when(appointmentRepository.reschedule(Mockito.eq(appointment.getId()), any(), any(), Mockito.eq("C000002"), any()))
+                    .thenReturn(null);
+            mockMvc.perform(put("/appointments/{id}", appointment.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(moved)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.clinicId").value("C000002"));
+            mockMvc.perform(delete("/appointments/{id}", appointment.getId()))
+                    .andExpect(status().isOk());
+            Mockito.verify(appointmentRepository, Mockito.times(2)).reschedule(Mockito.eq(appointment.getId()), any(), any(),
+                    Mockito.eq("C000001"), any());
+        } finally {
+            ReflectionTestUtils.setField(appointmentController, "clinicPartitions", clinicPartitions);
+            ReflectionTestUtils.invokeMethod(partitioned, "stop");
+        }
+    }
+
     @Test
     public void deleteAppointmentByIDTestException()throws Exception{
-        when(appointmentRepository.findById(any())).thenReturn(Optional.of(appointment));
-        when(appointmentRepository.save(any())).thenThrow(new NullPointerException("NULL"));
+        when(appointmentRepository.cancel(any(), any(), any(), any())).thenThrow(new NullPointerException("NULL"));
         appointment.setTiming(appointment.getTiming().plusDays(3));
         String cleanDate = objectMapper.writeValueAsString(appointment);
         mockMvc.perform(delete("/appointments/{id}", appointment.getId())
@@ -303,7 +878,9 @@ public class AppointmentControllerTest {
                 .content(cleanDate))
                 .andExpect(status().isInternalServerError());
 
-        appointment.setTiming(LocalDate.now().plusDays(1));
+        Mockito.reset(appointmentRepository);
+        when(appointmentRepository.findById(any())).thenReturn(Optional.of(appointment));
+        appointment.setTiming(LocalDateTime.now().plusDays(1));
         String badDate = objectMapper.writeValueAsString(appointment);
         mockMvc.perform(delete("/appointments/{id}", appointment.getId())
                 .contentType(MediaType.APPLICATION_JSON)
@@ -311,6 +888,15 @@ public class AppointmentControllerTest {
                 .andExpect(status().isNotAcceptable());
     }
 
+    @Test
+    public void deleteAppointmentByIDTestConflict()throws Exception{
+        appointment.setTiming(appointment.getTiming().plusDays(3));
+        appointment.setStatus("Cancelled");
+        when(appointmentRepository.findById(any())).thenReturn(Optional.of(appointment));
+        mockMvc.perform(delete("/appointments/{id}", appointment.getId()))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     public void deleteAppointmentByIDTestNotFound()throws Exception{
         when(appointmentRepository.findById(any())).thenReturn(Optional.empty());
@@ -320,4 +906,19 @@ public class AppointmentControllerTest {
                 .andExpect(status().isNotFound());
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void requestMetricsTest() throws Exception {
+        double notFound = meterRegistry.counter("appointments.exceptions", "exception", "AppointmentDoesNotExistException").count();
+        double swallowed = meterRegistry.counter("appointments.swallowed.errors", "handler", "getAllAppointments").count();
+        Mockito.when(appointmentRepository.findById(any())).thenReturn(Optional.empty());
+        mockMvc.perform(get("/appointments/{id}", "missing"))
+                .andExpect(status().isNotFound());
+        Mockito.when(appointmentRepository.findAll()).thenReturn(null);
+        mockMvc.perform(get("/appointments"))
+                .andExpect(status().isInternalServerError());
+
+        assertEquals(notFound + 1, meterRegistry.counter("appointments.exceptions", "exception", "AppointmentDoesNotExistException").count(), 0);
+        assertEquals(swallowed + 1, meterRegistry.counter("appointments.swallowed.errors", "handler", "getAllAppointments").count(), 0);
+    }
+}
@@ -0,0 +1,66 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.event.AppointmentChangeFeed;
+import com.astral004.appointmentapi.exception.InvalidContinuationTokenException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(AppointmentEventController.class)
+public class AppointmentEventControllerTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    private AppointmentChangeFeed appointmentChangeFeed;
+
+    @Test
+    public void getAppointmentEventsTest() throws Exception {
+        Appointment appointment = new Appointment();
+        appointment.setId("A000001");
+        appointment.setDoctorId("D000001");
+        appointment.setStatus("Cancelled");
+        Mockito.when(appointmentChangeFeed.subscribe(null, "D000001", "8263A1"))
+                .thenReturn(Flux.just(ServerSentEvent.builder(appointment).id("8263A2").event("cancelled").build()));
+
+        MvcResult result = mockMvc.perform(get("/appointmentEvents")
+                .param("dID", "D000001")
+                .param("after", "8263A0")
+                .header(AppointmentEventController.LAST_EVENT_ID_HEADER, "8263A1")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(content().string(containsString("id:8263A2\nevent:cancelled\ndata:{\"id\":\"A000001\"")));
+    }
+
+    @Test
+    public void getAppointmentEventsTestException() throws Exception {
+        Mockito.when(appointmentChangeFeed.subscribe(null, null, "not a token"))
+                .thenThrow(new InvalidContinuationTokenException("Invalid resume token"));
+        mockMvc.perform(get("/appointmentEvents")
+                .param("after", "not a token")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isBadRequest());
+    }
+}
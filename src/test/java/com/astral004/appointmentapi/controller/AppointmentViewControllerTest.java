@@ -0,0 +1,100 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.domain.AppointmentView;
+import com.astral004.appointmentapi.repository.AppointmentViewRepository;
+import com.astral004.appointmentapi.view.AppointmentViewMaintainer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(AppointmentViewController.class)
+public class AppointmentViewControllerTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    private AppointmentViewRepository appointmentViewRepository;
+    @MockBean
+    private AppointmentViewMaintainer appointmentViewMaintainer;
+
+    private List<AppointmentView> views;
+
+    @Before
+    public void setUp() {
+        AppointmentView view = new AppointmentView();
+        view.setId("A000001");
+        view.setPatientId("P000001");
+        view.setPatientName("Jane Doe");
+        view.setDoctorId("D000001");
+        view.setDoctorName("John Smith");
+        view.setClinicId("C000001");
+        view.setClinicName("Downtown Clinic");
+        view.setTiming(LocalDateTime.now().plusDays(2));
+        view.setStatus("Scheduled");
+        views = new ArrayList<>();
+        views.add(view);
+    }
+
+    @Test
+    public void getAppointmentViewsTest() throws Exception {
+        Mockito.when(appointmentViewRepository.findAllByOrderByIdAsc(any())).thenReturn(views);
+        mockMvc.perform(get("/appointmentViews")
+                .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].patientName").value("Jane Doe"))
+                .andExpect(header().string(AppointmentController.CONTINUATION_TOKEN_HEADER,
+                        AppointmentController.encodeContinuationToken("A000001")));
+
+        Mockito.when(appointmentViewRepository.findByFilter(any())).thenReturn(views);
+        mockMvc.perform(get("/appointmentViews")
+                .param("cID", "C000001"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].clinicName").value("Downtown Clinic"));
+    }
+
+    @Test
+    public void getAppointmentViewsTestException() throws Exception {
+        Mockito.when(appointmentViewRepository.findByFilter(any())).thenReturn(Collections.emptyList());
+        mockMvc.perform(get("/appointmentViews")
+                .param("dID", "D000001"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/appointmentViews")
+                .param("status", "Scheduled"))
+                .andExpect(status().isBadRequest());
+
+        Mockito.when(appointmentViewRepository.findAllByOrderByIdAsc(any())).thenThrow(new IllegalStateException("Mongo is down"));
+        mockMvc.perform(get("/appointmentViews"))
+                .andExpect(status().isInternalServerError());
+    }
+
+    @Test
+    public void rebuildAppointmentViewsTest() throws Exception {
+        mockMvc.perform(post("/appointmentViews/rebuild"))
+                .andExpect(status().isNoContent());
+        Mockito.verify(appointmentViewMaintainer).rebuild();
+
+        Mockito.when(appointmentViewMaintainer.rebuild()).thenThrow(new IllegalStateException("Mongo is down"));
+        mockMvc.perform(post("/appointmentViews/rebuild"))
+                .andExpect(status().isInternalServerError());
+    }
+}
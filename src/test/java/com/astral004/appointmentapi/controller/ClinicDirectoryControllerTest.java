@@ -0,0 +1,86 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.directory.ClinicDirectory;
+import com.astral004.appointmentapi.dto.ClinicListing;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.geo.Point;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(ClinicDirectoryController.class)
+public class ClinicDirectoryControllerTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    private ClinicDirectory clinicDirectory;
+
+    private final ClinicListing clinic = new ClinicListing("C0001", "Loop Medical Group", "312-555-0100", "CA1",
+            "1 State St", "Chicago", "IL", "60601", 41.88, -87.62, null);
+
+    @Test
+    public void getClinicsTest() throws Exception {
+        Mockito.when(clinicDirectory.getClinics()).thenReturn(Collections.singletonList(clinic));
+        Mockito.when(clinicDirectory.getClinic("C0001")).thenReturn(clinic);
+        mockMvc.perform(get("/clinicDirectory"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("C0001"))
+                .andExpect(jsonPath("$[0].city").value("Chicago"));
+        mockMvc.perform(get("/clinicDirectory/C0001"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.zipCode").value("60601"));
+        mockMvc.perform(get("/clinicDirectory/C0002"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getNearestClinicsTest() throws Exception {
+        Mockito.when(clinicDirectory.findNearest(41.9, -87.6, 5, null))
+                .thenReturn(Collections.singletonList(clinic.withDistanceKm(2.4)));
+        Mockito.when(clinicDirectory.locateZipCode("60602")).thenReturn(new Point(-87.6, 41.9));
+        mockMvc.perform(get("/clinicDirectory/nearest")
+                .param("lat", "41.9")
+                .param("lon", "-87.6"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("C0001"))
+                .andExpect(jsonPath("$[0].distanceKm").value(2.4));
+        mockMvc.perform(get("/clinicDirectory/nearest")
+                .param("zipCode", "60602"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("C0001"));
+
+        mockMvc.perform(get("/clinicDirectory/nearest")
+                .param("lat", "41.9")
+                .param("lon", "-87.6")
+                .param("limit", "500")
+                .param("maxKm", "10"))
+                .andExpect(status().isOk());
+        Mockito.verify(clinicDirectory).findNearest(41.9, -87.6, ClinicDirectoryController.MAX_RESULTS, 10.0);
+    }
+
+    @Test
+    public void getNearestClinicsTestException() throws Exception {
+        mockMvc.perform(get("/clinicDirectory/nearest")
+                .param("lat", "41.9"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/clinicDirectory/nearest")
+                .param("lat", "91")
+                .param("lon", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/clinicDirectory/nearest")
+                .param("zipCode", "99999"))
+                .andExpect(status().isNotFound());
+    }
+}
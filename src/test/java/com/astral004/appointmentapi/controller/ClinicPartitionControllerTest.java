@@ -0,0 +1,53 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.dto.RebalanceReport;
+import com.astral004.appointmentapi.exception.InvalidPartitionException;
+import com.astral004.appointmentapi.partition.ClinicPartitions;
+import com.astral004.appointmentapi.partition.ClinicRebalancer;
+import com.astral004.appointmentapi.repository.ClinicRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(ClinicPartitionController.class)
+public class ClinicPartitionControllerTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    private ClinicPartitions clinicPartitions;
+    @MockBean
+    private ClinicRebalancer clinicRebalancer;
+    @MockBean
+    private ClinicRepository clinicRepository;
+
+    @Test
+    public void rebalanceClinicTest() throws Exception {
+        Mockito.when(clinicRepository.existsById("C000001")).thenReturn(true);
+        Mockito.when(clinicRebalancer.rebalance("C000001", 1)).thenReturn(new RebalanceReport("C000001", 0, 1, 120, 3, 120));
+        Mockito.when(clinicRebalancer.rebalance("C000001", 5)).thenThrow(new InvalidPartitionException("Partition 5 does not exist, there are 2 partitions!"));
+
+        mockMvc.perform(post("/clinicPartitions/C000001/rebalance")
+                .param("to", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.to").value(1))
+                .andExpect(jsonPath("$.copied").value(120))
+                .andExpect(jsonPath("$.synced").value(3));
+        mockMvc.perform(post("/clinicPartitions/C000001/rebalance")
+                .param("to", "5"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/clinicPartitions/C000002/rebalance")
+                .param("to", "1"))
+                .andExpect(status().isNotFound());
+    }
+}
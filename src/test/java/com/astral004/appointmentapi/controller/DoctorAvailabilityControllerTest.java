@@ -0,0 +1,107 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.domain.Doctor;
+import com.astral004.appointmentapi.partition.ClinicPartitions;
+import com.astral004.appointmentapi.repository.AppointmentRepository;
+import com.astral004.appointmentapi.repository.DoctorRepository;
+import com.astral004.appointmentapi.schedule.DoctorScheduleIndex;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(DoctorAvailabilityController.class)
+@Import({DoctorScheduleIndex.class, ClinicPartitions.class})
+public class DoctorAvailabilityControllerTest {
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    DoctorScheduleIndex doctorScheduleIndex;
+
+    @MockBean
+    private DoctorRepository doctorRepository;
+    @MockBean
+    private AppointmentRepository appointmentRepository;
+    @MockBean
+    private MongoTemplate mongoTemplate;
+
+    private final LocalDate monday = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+
+    private Doctor doctor(String id, String... clinicIds) {
+        Doctor doctor = new Doctor();
+        doctor.setId(id);
+        doctor.setFirstName("Gregory");
+        doctor.setLastName("House");
+        doctor.setSpecialty("Cardiology");
+        doctor.setClinicIds(Arrays.asList(clinicIds));
+        return doctor;
+    }
+
+    @Test
+    public void getNextAvailableSlotsTest() throws Exception {
+        Mockito.when(doctorRepository.getDoctorsBySpecialty("Cardiology"))
+                .thenReturn(Arrays.asList(doctor("D000001", "C0001", "C0002"), doctor("D000002", "C0002")));
+        Mockito.when(doctorRepository.getDoctorsBySpecialtyAndClinicIds("Cardiology", "C0002"))
+                .thenReturn(Collections.singletonList(doctor("D000002", "C0002")));
+        doctorScheduleIndex.reserve("D000001", monday.atTime(8, 0), "A1");
+        doctorScheduleIndex.reserve("D000002", monday.atTime(8, 0), "A2");
+        doctorScheduleIndex.reserve("D000002", monday.atTime(8, 15), "A3");
+
+        mockMvc.perform(get("/nextAvailableSlots")
+                .param("specialty", "Cardiology")
+                .param("from", monday.toString())
+                .param("to", monday.toString())
+                .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].doctorId").value("D000001"))
+                .andExpect(jsonPath("$[0].timing").value(monday + "T08:15:00"))
+                .andExpect(jsonPath("$[0].clinicIds.length()").value(2))
+                .andExpect(jsonPath("$[1].doctorId").value("D000001"))
+                .andExpect(jsonPath("$[1].timing").value(monday + "T08:30:00"));
+
+        mockMvc.perform(get("/nextAvailableSlots")
+                .param("specialty", "Cardiology")
+                .param("cID", "C0002")
+                .param("from", monday.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(10))
+                .andExpect(jsonPath("$[0].doctorId").value("D000002"))
+                .andExpect(jsonPath("$[0].timing").value(monday + "T08:30:00"))
+                .andExpect(jsonPath("$[0].clinicIds[0]").value("C0002"));
+    }
+
+    @Test
+    public void getNextAvailableSlotsTestException() throws Exception {
+        mockMvc.perform(get("/nextAvailableSlots"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/nextAvailableSlots")
+                .param("specialty", "Cardiology")
+                .param("from", monday.toString())
+                .param("to", monday.minusDays(1).toString()))
+                .andExpect(status().isNotAcceptable());
+
+        Mockito.when(doctorRepository.getDoctorsBySpecialty("Podiatry")).thenReturn(Collections.emptyList());
+        mockMvc.perform(get("/nextAvailableSlots")
+                .param("specialty", "Podiatry"))
+                .andExpect(status().isNotFound());
+    }
+}
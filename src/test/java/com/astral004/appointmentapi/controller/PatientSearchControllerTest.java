@@ -0,0 +1,53 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.dto.PatientSearchResult;
+import com.astral004.appointmentapi.search.PatientSearchIndex;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(PatientSearchController.class)
+public class PatientSearchControllerTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    private PatientSearchIndex patientSearchIndex;
+
+    @Test
+    public void searchPatientsTest() throws Exception {
+        Mockito.when(patientSearchIndex.search("smi jo", 10)).thenReturn(Collections.singletonList(
+                new PatientSearchResult("P000001", "John", "Smith", "555-010-0100", 4.8)));
+        mockMvc.perform(get("/patientSearch")
+                .param("q", "smi jo"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("P000001"))
+                .andExpect(jsonPath("$[0].lastName").value("Smith"));
+
+        mockMvc.perform(get("/patientSearch")
+                .param("q", "zzz")
+                .param("limit", "500"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+        Mockito.verify(patientSearchIndex).search("zzz", PatientSearchController.MAX_RESULTS);
+    }
+
+    @Test
+    public void searchPatientsTestException() throws Exception {
+        mockMvc.perform(get("/patientSearch")
+                .param("q", "  "))
+                .andExpect(status().isBadRequest());
+    }
+}
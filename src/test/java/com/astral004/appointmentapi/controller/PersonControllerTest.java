@@ -0,0 +1,97 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.domain.Doctor;
+import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.exception.InvalidFieldsException;
+import com.astral004.appointmentapi.exception.PersonDoesNotExistException;
+import com.astral004.appointmentapi.repository.DoctorRepository;
+import com.astral004.appointmentapi.repository.PatientRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Spring Data REST only routes to a repository controller for the repositories it exports, which mocks are not, so
+ * the handler methods are called directly here.
+ */
+public class PersonControllerTest {
+
+    private PersonController personController;
+    private PatientRepository patientRepository;
+    private DoctorRepository doctorRepository;
+
+    @Before
+    public void setUp() {
+        patientRepository = Mockito.mock(PatientRepository.class);
+        doctorRepository = Mockito.mock(DoctorRepository.class);
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(Collections.emptyList()).getSimpleTypeHolder());
+        personController = new PersonController();
+        ReflectionTestUtils.setField(personController, "patientRepository", patientRepository);
+        ReflectionTestUtils.setField(personController, "doctorRepository", doctorRepository);
+        ReflectionTestUtils.setField(personController, "mappingContext", mappingContext);
+    }
+
+    @Test
+    public void getPatientFieldsTest() {
+        Patient patient = new Patient();
+        patient.setId("P000001");
+        patient.setFirstName("Jane");
+        patient.setPhoneNumber("555-0100");
+        patient.setSocialSecurityNumber("000-00-0000");
+        Mockito.when(patientRepository.findSelectedPage(Mockito.isNull(), Mockito.eq(1), Mockito.any()))
+                .thenReturn(Collections.singletonList(patient));
+
+        ResponseEntity<List<Map<String, Object>>> page = personController.getPatientFields(1, null, "id,firstName,phoneNumber");
+        assertEquals(HttpStatus.OK, page.getStatusCode());
+        assertEquals("Jane", page.getBody().get(0).get("firstName"));
+        assertFalse(page.getBody().get(0).containsKey("socialSecurityNumber"));
+        assertEquals(AppointmentController.encodeContinuationToken("P000001"),
+                page.getHeaders().getFirst(AppointmentController.CONTINUATION_TOKEN_HEADER));
+
+        Mockito.when(patientRepository.findSelectedById(Mockito.eq("P000001"), Mockito.any())).thenReturn(patient);
+        ResponseEntity<Map<String, Object>> found = personController.getPatientFieldsByID("P000001", "phoneNumber");
+        assertEquals(Collections.singletonMap("phoneNumber", "555-0100"), found.getBody());
+    }
+
+    @Test
+    public void getDoctorFieldsTest() {
+        Doctor doctor = new Doctor();
+        doctor.setId("D000001");
+        doctor.setSpecialty("Orthopedics");
+        Mockito.when(doctorRepository.findSelectedPage(Mockito.isNull(), Mockito.eq(0), Mockito.any()))
+                .thenReturn(Collections.singletonList(doctor));
+
+        ResponseEntity<List<Map<String, Object>>> all = personController.getDoctorFields(null, null, "id,specialty");
+        assertEquals("Orthopedics", all.getBody().get(0).get("specialty"));
+        assertNull(all.getHeaders().getFirst(AppointmentController.CONTINUATION_TOKEN_HEADER));
+
+        Mockito.when(doctorRepository.findSelectedPage(Mockito.isNull(), Mockito.eq(5), Mockito.any()))
+                .thenThrow(new IllegalStateException("Mongo is down"));
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR,
+                personController.getDoctorFields(5, null, "specialty").getStatusCode());
+    }
+
+    @Test(expected = InvalidFieldsException.class)
+    public void getPatientFieldsTestException() {
+        personController.getPatientFields(null, null, "id,clinicId");
+    }
+
+    @Test(expected = PersonDoesNotExistException.class)
+    public void getDoctorFieldsByIdTestException() {
+        personController.getDoctorFieldsByID("D000002", "specialty");
+    }
+}
@@ -0,0 +1,449 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.cache.ExistenceCache;
+import com.astral004.appointmentapi.cache.ReactiveReferenceExistenceCache;
+import com.astral004.appointmentapi.cache.ReferenceExistenceCache;
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.domain.Clinic;
+import com.astral004.appointmentapi.domain.Doctor;
+import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.event.AppointmentChangeCounter;
+import com.astral004.appointmentapi.partition.ClinicPartitions;
+import com.astral004.appointmentapi.repository.AppointmentRepository;
+import com.astral004.appointmentapi.repository.ClinicRepository;
+import com.astral004.appointmentapi.repository.DoctorRepository;
+import com.astral004.appointmentapi.repository.PatientRepository;
+import com.astral004.appointmentapi.repository.reactive.ReactiveAppointmentRepository;
+import com.astral004.appointmentapi.repository.reactive.ReactiveClinicRepository;
+import com.astral004.appointmentapi.repository.reactive.ReactiveDoctorRepository;
+import com.astral004.appointmentapi.repository.reactive.ReactivePatientRepository;
+import com.astral004.appointmentapi.schedule.DoctorScheduleIndex;
+import com.mongodb.client.MongoDatabase;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(SpringRunner.class)
+@WebFluxTest(controllers = ReactiveAppointmentController.class)
+@Import({DoctorScheduleIndex.class, ClinicPartitions.class, ReferenceExistenceCache.class, ReactiveReferenceExistenceCache.class})
+public class ReactiveAppointmentControllerTest {
+    @Autowired
+    WebTestClient webTestClient;
+    @Autowired
+    ReferenceExistenceCache referenceExistenceCache;
+
+    @MockBean
+    private ReactiveAppointmentRepository appointmentRepository;
+    @MockBean
+    private ReactivePatientRepository patientRepository;
+    @MockBean
+    private ReactiveDoctorRepository doctorRepository;
+    @MockBean
+    private ReactiveClinicRepository clinicRepository;
+    @MockBean
+    private AppointmentRepository blockingAppointmentRepository;
+    @MockBean
+    private PatientRepository blockingPatientRepository;
+    @MockBean
+    private DoctorRepository blockingDoctorRepository;
+    @MockBean
+    private ClinicRepository blockingClinicRepository;
+    @MockBean
+    private MongoTemplate mongoTemplate;
+    @MockBean
+    private AppointmentChangeCounter appointmentChangeCounter;
+
+    private Appointment appointment;
+
+    @TestConfiguration
+    static class MappingConfiguration {
+        @Bean
+        MongoMappingContext mongoMappingContext() {
+            MongoMappingContext mappingContext = new MongoMappingContext();
+            mappingContext.setSimpleTypeHolder(new MongoCustomConversions(Collections.emptyList()).getSimpleTypeHolder());
+            return mappingContext;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        //answers cached by an earlier test would hide the lookups a test sets up
+        for (String cache : Arrays.asList("patients", "doctors", "clinics")) {
+            ((ExistenceCache) ReflectionTestUtils.getField(referenceExistenceCache, cache)).invalidateAll();
+        }
+        when(appointmentChangeCounter.readCurrent()).thenReturn(Mono.just(0L));
+        appointment = new Appointment();
+        appointment.setId("64b7f0c2a1e4d3b2c1a00001");
+        appointment.setPatientId("P000001");
+        appointment.setDoctorId("D000001");
+        appointment.setClinicId("C000001");
+        appointment.setTiming(LocalDateTime.now().plusDays(2));
+        appointment.setDescription("Patient has pain in the right ankle.");
+        appointment.setInsuranceId("I000001");
+        appointment.setCopay(20);
+        appointment.setStatus("Scheduled");
+    }
+
+    @Test
+    public void getAllAppointmentsTest() {
+        when(appointmentRepository.findAll()).thenReturn(Flux.just(appointment));
+        webTestClient.get().uri("/appointments")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[0].id").isEqualTo(appointment.getId());
+
+        when(appointmentRepository.findAll()).thenReturn(Flux.empty());
+        webTestClient.get().uri("/appointments")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isNotFound();
+
+        when(appointmentRepository.findAll()).thenReturn(Flux.error(new IllegalStateException("Mongo is down")));
+        webTestClient.get().uri("/appointments")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().is5xxServerError();
+    }
+
+    @Test
+    public void getAppointmentPageTest() {
+        when(appointmentRepository.findAllByOrderByIdAsc(any())).thenReturn(Flux.just(appointment));
+        webTestClient.get().uri("/appointments?size=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(AppointmentController.CONTINUATION_TOKEN_HEADER,
+                        AppointmentController.encodeContinuationToken(appointment.getId()));
+
+        webTestClient.get().uri("/appointments?size=1&after=!not-a-token!")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void getAllAppointmentFieldsTest() {
+        when(appointmentRepository.findSelectedPage(Mockito.isNull(), Mockito.eq(0), any())).thenReturn(Flux.just(appointment));
+        webTestClient.get().uri("/appointments?fields=id,timing,status,doctorId")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].doctorId").isEqualTo(appointment.getDoctorId())
+                .jsonPath("$[0].description").doesNotExist();
+
+        when(appointmentRepository.findSelectedPage(Mockito.isNull(), Mockito.eq(1), any())).thenReturn(Flux.just(appointment));
+        webTestClient.get().uri("/appointments?fields=id,status&size=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(AppointmentController.CONTINUATION_TOKEN_HEADER,
+                        AppointmentController.encodeContinuationToken(appointment.getId()));
+        Mockito.verify(appointmentRepository).findSelectedPage(Mockito.isNull(), Mockito.eq(1),
+                Mockito.argThat(fields -> "id,status".equals(fields.toString())));
+
+        webTestClient.get().uri("/appointments?fields=id,socialSecurityNumber")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void getAppointmentFieldsByValueAndIdTest() {
+        when(appointmentRepository.findByFilter(any())).thenReturn(Flux.just(appointment));
+        webTestClient.get().uri("/appointmentsByValue?dID={dID}&fields=id, timing ,status", appointment.getDoctorId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].status").isEqualTo("Scheduled")
+                .jsonPath("$[0].patientId").doesNotExist();
+        Mockito.verify(appointmentRepository).findByFilter(Mockito.argThat(filter ->
+                appointment.getDoctorId().equals(filter.getDoctorId())
+                        && "id,timing,status".equals(String.valueOf(filter.getFields()))));
+
+        when(appointmentRepository.findSelectedById(Mockito.eq(appointment.getId()), any())).thenReturn(Mono.just(appointment));
+        when(appointmentRepository.findSelectedById(Mockito.eq("A000002"), any())).thenReturn(Mono.empty());
+        webTestClient.get().uri("/appointments/{id}?fields=status", appointment.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("Scheduled")
+                .jsonPath("$.id").doesNotExist();
+        webTestClient.get().uri("/appointments/{id}?fields=status", "A000002")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void streamAllAppointmentsTest() {
+        when(appointmentRepository.findAll()).thenReturn(Flux.just(appointment, appointment));
+        webTestClient.get().uri("/appointments")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Appointment.class).hasSize(2);
+    }
+
+    @Test
+    public void getAppointmentsByValueTest() {
+        when(appointmentRepository.findByFilter(any())).thenReturn(Flux.just(appointment));
+        webTestClient.get().uri("/appointmentsByValue?dID={d}&from={from}", appointment.getDoctorId(), LocalDate.now())
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get().uri("/appointmentsByValue?status=Scheduled")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void getArchivedAppointmentsTest() {
+        Appointment archived = new Appointment();
+        archived.setId("A000000");
+        archived.setTiming(LocalDateTime.now().minusYears(3));
+        when(appointmentRepository.findByFilter(any())).thenReturn(Flux.just(appointment));
+        when(appointmentRepository.findArchivedByFilter(any())).thenReturn(Flux.just(archived));
+        webTestClient.get().uri("/appointmentsByValue?dID={d}&includeArchived=true", appointment.getDoctorId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].id").isEqualTo(archived.getId());
+
+        when(appointmentRepository.findById(archived.getId())).thenReturn(Mono.empty());
+        when(appointmentRepository.findArchivedById(archived.getId())).thenReturn(Mono.just(archived));
+        webTestClient.get().uri("/appointments/{id}?includeArchived=true", archived.getId())
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    public void getAppointmentsByIDTest() {
+        when(appointmentRepository.findById(appointment.getId())).thenReturn(Mono.just(appointment));
+        when(appointmentRepository.findById("test")).thenReturn(Mono.empty());
+        webTestClient.get().uri("/appointments/{id}", appointment.getId())
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.get().uri("/appointments/{id}", "test")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void getAppointmentByIDNotModifiedTest() {
+        appointment.setVersion(3L);
+        when(appointmentRepository.findById(appointment.getId())).thenReturn(Mono.just(appointment));
+        webTestClient.get().uri("/appointments/{id}", appointment.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3\"");
+
+        Appointment version = new Appointment();
+        version.setId(appointment.getId());
+        version.setVersion(3L);
+        when(appointmentRepository.findVersionById(appointment.getId())).thenReturn(Mono.just(version));
+        webTestClient.get().uri("/appointments/{id}", appointment.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+        webTestClient.get().uri("/appointments/{id}?fields=status", appointment.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .exchange()
+                .expectStatus().isNotModified();
+        Mockito.verify(appointmentRepository, Mockito.times(1)).findById(appointment.getId());
+        Mockito.verify(appointmentRepository, Mockito.never()).findSelectedById(any(), any());
+
+        version.setVersion(4L);
+        appointment.setVersion(4L);
+        webTestClient.get().uri("/appointments/{id}", appointment.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"4\"")
+                .expectBody().jsonPath("$.id").isEqualTo(appointment.getId());
+    }
+
+    @Test
+    public void getAppointmentsByValueNotModifiedTest() {
+        when(appointmentChangeCounter.readCurrent()).thenReturn(Mono.just(41L));
+        when(appointmentRepository.findByFilter(any())).thenReturn(Flux.just(appointment));
+        webTestClient.get().uri("/appointmentsByValue?dID={d}", appointment.getDoctorId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, AppointmentController.listETag(41));
+
+        webTestClient.get().uri("/appointmentsByValue?dID={d}", appointment.getDoctorId())
+                .header(HttpHeaders.IF_NONE_MATCH, AppointmentController.listETag(41))
+                .exchange()
+                .expectStatus().isNotModified();
+        webTestClient.get().uri("/appointmentsByValue?dID={d}&fields=id,status", appointment.getDoctorId())
+                .header(HttpHeaders.IF_NONE_MATCH, AppointmentController.listETag(41))
+                .exchange()
+                .expectStatus().isNotModified();
+        Mockito.verify(appointmentRepository, Mockito.times(1)).findByFilter(any());
+
+        when(appointmentChangeCounter.readCurrent()).thenReturn(Mono.just(42L));
+        webTestClient.get().uri("/appointmentsByValue?dID={d}", appointment.getDoctorId())
+                .header(HttpHeaders.IF_NONE_MATCH, AppointmentController.listETag(41))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, AppointmentController.listETag(42));
+    }
+
+    @Test
+    public void createAppointmentTest() {
+        appointment.setId(null);
+        appointment.setDoctorId("D000042");
+        when(patientRepository.existsById(appointment.getPatientId())).thenReturn(Mono.just(true));
+        when(doctorRepository.existsById(appointment.getDoctorId())).thenReturn(Mono.just(true));
+        when(clinicRepository.existsById(appointment.getClinicId())).thenReturn(Mono.just(true));
+        when(appointmentRepository.save(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        webTestClient.post().uri("/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(appointment)
+                .exchange()
+                .expectStatus().isCreated();
+
+        webTestClient.post().uri("/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(appointment)
+                .exchange()
+                .expectStatus().isEqualTo(409);
+        //the second create is answered from the cache
+        Mockito.verify(patientRepository, Mockito.times(1)).existsById(appointment.getPatientId());
+    }
+
+    @Test
+    public void createAppointmentTestException() {
+        //the missing patient answers first, the slow doctor lookup is never waited for
+        when(patientRepository.existsById(Mockito.anyString())).thenReturn(Mono.just(false));
+        when(doctorRepository.existsById(Mockito.anyString())).thenReturn(Mono.never());
+        when(clinicRepository.existsById(Mockito.anyString())).thenReturn(Mono.just(true));
+        webTestClient.post().uri("/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(appointment)
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        appointment.setTiming(LocalDateTime.now().minusDays(2));
+        webTestClient.post().uri("/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(appointment)
+                .exchange()
+                .expectStatus().isEqualTo(406);
+    }
+
+    @Test
+    public void importAppointmentsTest() {
+        Appointment pastAppointment = new Appointment();
+        pastAppointment.setPatientId(appointment.getPatientId());
+        pastAppointment.setDoctorId(appointment.getDoctorId());
+        pastAppointment.setClinicId(appointment.getClinicId());
+        pastAppointment.setTiming(LocalDateTime.now().minusDays(2));
+        Patient patient = new Patient();
+        patient.setId(appointment.getPatientId());
+        Doctor doctor = new Doctor();
+        doctor.setId("D000077");
+        Clinic clinic = new Clinic();
+        clinic.setId(appointment.getClinicId());
+        appointment.setDoctorId(doctor.getId());
+        when(patientRepository.findIdsByIdIn(any())).thenReturn(Flux.just(patient));
+        when(doctorRepository.findIdsByIdIn(any())).thenReturn(Flux.just(doctor));
+        when(clinicRepository.findIdsByIdIn(any())).thenReturn(Flux.just(clinic));
+        when(appointmentRepository.insertUnordered(any())).thenReturn(Mono.just(Collections.emptyMap()));
+
+        webTestClient.post().uri("/appointments/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Arrays.asList(appointment, pastAppointment))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.received").isEqualTo(2)
+                .jsonPath("$.created").isEqualTo(1)
+                .jsonPath("$.results[1].error").isEqualTo(AppointmentController.NOT_FUTURE_DATE_MESSAGE);
+        Mockito.verify(doctorRepository, Mockito.times(1)).findIdsByIdIn(any());
+    }
+
+    @Test
+    public void updateAppointmentTest() {
+        appointment.setDoctorId("D000043");
+        appointment.setVersion(3L);
+        when(appointmentRepository.reschedule(Mockito.eq(appointment.getId()), any(), Mockito.eq(3L), any()))
+                .thenReturn(Mono.just(appointment));
+        webTestClient.put().uri("/appointments/{id}", appointment.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(appointment)
+                .exchange()
+                .expectStatus().isOk();
+
+        Appointment current = new Appointment();
+        current.setTiming(LocalDateTime.now().plusHours(2));
+        when(appointmentRepository.reschedule(any(), any(), any(), any())).thenReturn(Mono.empty());
+        when(appointmentRepository.findById(appointment.getId())).thenReturn(Mono.just(current));
+        appointment.setTiming(appointment.getTiming().plusDays(1));
+        webTestClient.put().uri("/appointments/{id}", appointment.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(appointment)
+                .exchange()
+                .expectStatus().isEqualTo(406);
+    }
+
+    @Test
+    public void deleteAppointmentTest() {
+        when(appointmentRepository.cancel(Mockito.eq(appointment.getId()), any(), any())).thenReturn(Mono.just(appointment));
+        webTestClient.delete().uri("/appointments/{id}", appointment.getId())
+                .exchange()
+                .expectStatus().isOk();
+
+        when(appointmentRepository.cancel(Mockito.eq("missing"), any(), any())).thenReturn(Mono.empty());
+        when(appointmentRepository.findById("missing")).thenReturn(Mono.empty());
+        webTestClient.delete().uri("/appointments/{id}", "missing")
+                .exchange()
+                .expectStatus().isNotFound();
+
+        when(appointmentRepository.cancel(Mockito.eq("broken"), any(), any())).thenReturn(Mono.error(new IllegalStateException()));
+        assertEquals(500, webTestClient.delete().uri("/appointments/{id}", "broken")
+                .exchange()
+                .returnResult(Appointment.class).getStatus().value());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void refusesToStartWithPartitions() {
+        MongoTemplate partitionTemplate = Mockito.mock(MongoTemplate.class);
+        when(partitionTemplate.getCollectionName(Appointment.class)).thenReturn("appointments");
+        ClinicPartitions partitioned = new ClinicPartitions();
+        ReflectionTestUtils.setField(partitioned, "mongoTemplate", partitionTemplate);
+        ReflectionTestUtils.invokeMethod(partitioned, "addPartition", Mockito.mock(MongoDatabase.class));
+        ReactiveAppointmentController controller = new ReactiveAppointmentController();
+        ReflectionTestUtils.setField(controller, "clinicPartitions", partitioned);
+        try {
+            controller.requireSinglePartition();
+        } finally {
+            ReflectionTestUtils.invokeMethod(partitioned, "stop");
+        }
+    }
+}
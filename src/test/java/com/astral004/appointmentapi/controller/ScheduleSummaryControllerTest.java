@@ -0,0 +1,78 @@
+package com.astral004.appointmentapi.controller;
+
+import com.astral004.appointmentapi.domain.ScheduleRollup;
+import com.astral004.appointmentapi.repository.ScheduleRollupRepository;
+import com.astral004.appointmentapi.rollup.ScheduleRollupMaintainer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.Collections;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(ScheduleSummaryController.class)
+public class ScheduleSummaryControllerTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    private ScheduleRollupRepository scheduleRollupRepository;
+    @MockBean
+    private ScheduleRollupMaintainer scheduleRollupMaintainer;
+
+    @Test
+    public void getScheduleSummaryTest() throws Exception {
+        LocalDate from = LocalDate.now();
+        ScheduleRollup rollup = new ScheduleRollup();
+        rollup.setDoctorId("D000001");
+        rollup.setClinicId("C000001");
+        rollup.setDay(from);
+        rollup.setCounts(Collections.singletonMap("Scheduled", 12L));
+        rollup.setCopays(Collections.singletonMap("Scheduled", 240L));
+        Mockito.when(scheduleRollupRepository.findSummary("D000001", null, from, from.plusDays(90)))
+                .thenReturn(Collections.singletonList(rollup));
+
+        mockMvc.perform(get("/scheduleSummary")
+                .param("dID", "D000001")
+                .param("from", from.toString())
+                .param("to", from.plusDays(90).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].counts.Scheduled").value(12))
+                .andExpect(jsonPath("$[0].copays.Scheduled").value(240));
+
+        mockMvc.perform(get("/scheduleSummary")
+                .param("cID", "C000002"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getScheduleSummaryTestException() throws Exception {
+        mockMvc.perform(get("/scheduleSummary")
+                .param("from", LocalDate.now().toString()))
+                .andExpect(status().isBadRequest());
+
+        Mockito.when(scheduleRollupRepository.findSummary(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenThrow(new IllegalStateException("Mongo is down"));
+        mockMvc.perform(get("/scheduleSummary")
+                .param("dID", "D000001"))
+                .andExpect(status().isInternalServerError());
+    }
+
+    @Test
+    public void rebuildScheduleSummaryTest() throws Exception {
+        mockMvc.perform(post("/scheduleSummary/rebuild"))
+                .andExpect(status().isNoContent());
+        Mockito.verify(scheduleRollupMaintainer).rebuild();
+    }
+}
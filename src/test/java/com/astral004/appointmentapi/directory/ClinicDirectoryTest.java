@@ -0,0 +1,217 @@
+package com.astral004.appointmentapi.directory;
+
+import com.astral004.appointmentapi.domain.Address;
+import com.astral004.appointmentapi.domain.Clinic;
+import com.astral004.appointmentapi.dto.ClinicListing;
+import com.astral004.appointmentapi.repository.AddressRepository;
+import com.astral004.appointmentapi.repository.ClinicRepository;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ClinicDirectoryTest {
+
+    private ClinicRepository clinicRepository;
+    private AddressRepository addressRepository;
+    private ClinicDirectory directory;
+    private final List<Clinic> clinics = new ArrayList<>();
+    private final List<Address> addresses = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        clinicRepository = Mockito.mock(ClinicRepository.class);
+        addressRepository = Mockito.mock(AddressRepository.class);
+        directory = new ClinicDirectory();
+        ReflectionTestUtils.setField(directory, "clinicRepository", clinicRepository);
+        ReflectionTestUtils.setField(directory, "addressRepository", addressRepository);
+        Mockito.when(clinicRepository.findAll()).thenReturn(clinics);
+        Mockito.when(addressRepository.findAllById(Mockito.any())).thenReturn(addresses);
+        Mockito.when(addressRepository.findZipCodeCentroids()).thenReturn(Collections.singletonMap("10001", new Point(-73.99, 40.75)));
+        directory.createExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        directory.shutdown();
+    }
+
+    private void addClinic(String id, String zipCode, Double latitude, Double longitude) {
+        Address address = new Address();
+        address.setId("A" + id);
+        address.setZipCode(zipCode);
+        address.setLatitude(latitude);
+        address.setLongitude(longitude);
+        Clinic clinic = new Clinic();
+        clinic.setId(id);
+        clinic.setName("Clinic " + id);
+        clinic.setAddressId(address.getId());
+        clinics.add(clinic);
+        addresses.add(address);
+    }
+
+    @Test
+    public void listsClinicsJoinedWithAddresses() {
+        addClinic("C2", "60601", 41.88, -87.62);
+        addClinic("C1", "94103", null, null);
+        Clinic homeless = new Clinic();
+        homeless.setId("C3");
+        clinics.add(homeless);
+        directory.refresh();
+
+        assertEquals(Arrays.asList("C1", "C2", "C3"), ids(directory.getClinics()));
+        assertEquals("60601", directory.getClinic("C2").getZipCode());
+        assertNull(directory.getClinic("C3").getZipCode());
+        assertNull(directory.getClinic("C4"));
+        //the clinic without coordinates is listed but never nearest
+        assertEquals(Collections.singletonList("C2"), ids(directory.findNearest(37.77, -122.42, 5, null)));
+        assertEquals(-73.99, directory.locateZipCode("10001").getX(), 0);
+        assertEquals(41.88, directory.locateZipCode("60601").getY(), 0);
+        assertNull(directory.locateZipCode("94103"));
+    }
+
+    @Test
+    public void findsTheSameClinicsAsAFullScan() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            addClinic(String.format("C%04d", i), null, 25 + random.nextDouble() * 24, -125 + random.nextDouble() * 58);
+        }
+        //a few far away, across the antimeridian and near a pole
+        addClinic("C9001", null, 51.88, -176.65);
+        addClinic("C9002", null, 52.0, 179.9);
+        addClinic("C9003", null, 89.9, 0.0);
+        directory.refresh();
+
+        for (int i = 0; i < 200; i++) {
+            double latitude = -90 + random.nextDouble() * 180;
+            double longitude = -180 + random.nextDouble() * 360;
+            int limit = 1 + random.nextInt(10);
+            Double maxKm = random.nextBoolean() ? null : random.nextDouble() * 3000;
+            List<ClinicListing> nearest = directory.findNearest(latitude, longitude, limit, maxKm);
+            List<ClinicListing> scanned = scan(latitude, longitude, limit, maxKm);
+            assertEquals(ids(scanned), ids(nearest));
+            for (int j = 0; j < nearest.size(); j++) {
+                assertEquals(scanned.get(j).getDistanceKm(), nearest.get(j).getDistanceKm(), 1e-6);
+            }
+        }
+        List<ClinicListing> aleutians = directory.findNearest(52.0, -179.95, 2, 100.0);
+        assertEquals(Collections.singletonList("C9002"), ids(aleutians));
+        assertEquals(10.3, aleutians.get(0).getDistanceKm(), 0.1);
+    }
+
+    @Test
+    public void refreshesWhenAClinicOrItsAddressChanges() {
+        addClinic("C1", "60601", 41.88, -87.62);
+        directory.refresh();
+        addClinic("C2", "60602", 41.89, -87.63);
+
+        Document patientAddress = new Document("_id", "PA1");
+        directory.onAfterSave(new AfterSaveEvent<>(new Address(), patientAddress, ClinicDirectory.ADDRESSES));
+        awaitRefreshes();
+        assertEquals(1, directory.getClinics().size());
+
+        directory.onAfterSave(new AfterSaveEvent<>(new Clinic(), new Document("_id", "C2"), ClinicDirectory.CLINICS));
+        awaitRefreshes();
+        assertEquals(2, directory.getClinics().size());
+        //the zip code centres are kept until the next full refresh
+        assertEquals(-73.99, directory.locateZipCode("10001").getX(), 0);
+
+        addresses.get(0).setLatitude(40.0);
+        directory.onAfterSave(new AfterSaveEvent<>(new Address(), new Document("_id", "AC1"), ClinicDirectory.ADDRESSES));
+        awaitRefreshes();
+        assertEquals(40.0, directory.getClinic("C1").getLatitude(), 0);
+
+        clinics.remove(1);
+        directory.onAfterDelete(new AfterDeleteEvent<>(new Document("_id", "C2"), Clinic.class, ClinicDirectory.CLINICS));
+        awaitRefreshes();
+        assertEquals(Collections.singletonList("C1"), ids(directory.getClinics()));
+        assertTrue(directory.findNearest(41.89, -87.63, 5, 1.0).isEmpty());
+    }
+
+    @Test
+    public void writesDoNotWaitForTheRefresh() throws Exception {
+        addClinic("C1", "60601", 41.88, -87.62);
+        directory.refresh();
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> refreshedOn = Collections.synchronizedList(new ArrayList<>());
+        Mockito.when(clinicRepository.findAll()).thenAnswer(invocation -> {
+            refreshedOn.add(Thread.currentThread().getName());
+            release.await(5, TimeUnit.SECONDS);
+            return clinics;
+        });
+
+        addClinic("C2", "60602", 41.89, -87.63);
+        for (int i = 0; i < 10; i++) {
+            directory.onAfterSave(new AfterSaveEvent<>(new Clinic(), new Document("_id", "C2"), ClinicDirectory.CLINICS));
+        }
+        //the saves returned while the first refresh is still reading
+        assertEquals(1, directory.getClinics().size());
+        release.countDown();
+        awaitRefreshes();
+
+        assertEquals(2, directory.getClinics().size());
+        //the saves made while the first refresh ran are picked up by a single one after it
+        assertTrue(refreshedOn.toString(), refreshedOn.size() <= 2);
+        assertTrue(refreshedOn.stream().allMatch(name -> name.startsWith("clinic-directory-")));
+    }
+
+    /**
+     * Helper method to wait until every refresh queued so far has finished
+     */
+    private void awaitRefreshes() {
+        ExecutorService refreshExecutor = (ExecutorService) ReflectionTestUtils.getField(directory, "refreshExecutor");
+        try {
+            refreshExecutor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private List<ClinicListing> scan(double latitude, double longitude, int limit, Double maxKm) {
+        List<ClinicListing> all = new ArrayList<>();
+        for (Address address : addresses) {
+            double distance = haversineKm(latitude, longitude, address.getLatitude(), address.getLongitude());
+            if (maxKm == null || distance <= maxKm) {
+                all.add(new ClinicListing(address.getId().substring(1), null, null, null, null, null, null, null,
+                        address.getLatitude(), address.getLongitude(), distance));
+            }
+        }
+        all.sort(Comparator.comparingDouble(ClinicListing::getDistanceKm));
+        return all.subList(0, Math.min(limit, all.size()));
+    }
+
+    private static double haversineKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLatitude = Math.toRadians(latitude2 - latitude1);
+        double dLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.pow(Math.sin(dLatitude / 2), 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * Math.pow(Math.sin(dLongitude / 2), 2);
+        return 2 * ClinicKdTree.EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static List<String> ids(List<ClinicListing> clinics) {
+        List<String> ids = new ArrayList<>();
+        for (ClinicListing clinic : clinics) {
+            ids.add(clinic.getId());
+        }
+        return ids;
+    }
+}
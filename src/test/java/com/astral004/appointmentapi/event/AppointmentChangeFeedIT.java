@@ -0,0 +1,195 @@
+package com.astral004.appointmentapi.event;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.repository.AppointmentRepository;
+import com.astral004.appointmentapi.repository.AppointmentTransitions;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.junit4.SpringRunner;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the feed against an embedded single node replica set, since change streams are not available on a
+ * standalone server. The mongod binary is downloaded on the first run.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.mongodb.embedded.version=4.4.1",
+        "spring.mongodb.embedded.storage.repl-set-name=" + AppointmentChangeFeedIT.REPLICA_SET,
+        "spring.data.mongodb.port=0",
+        "spring.data.mongodb.database=AppointmentChangeFeedIT",
+        "appointments.events.buffer-size=2",
+        "appointments.events.heartbeat-ms=100"})
+public class AppointmentChangeFeedIT {
+
+    static final String REPLICA_SET = "rs0";
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    @Autowired
+    private AppointmentChangeFeed appointmentChangeFeed;
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @TestConfiguration
+    static class ReplicaSetConfiguration {
+
+        /**
+         * Initiates the replica set as soon as the embedded server is up, before any client uses it
+         */
+        @Bean
+        static BeanPostProcessor replicaSetInitiator(Environment environment) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof MongodExecutable) {
+                        initiateReplicaSet(environment.getRequiredProperty("local.mongo.port", Integer.class));
+                    }
+                    return bean;
+                }
+            };
+        }
+
+        private static void initiateReplicaSet(int port) {
+            try (MongoClient client = MongoClients.create("mongodb://localhost:" + port + "/?directConnection=true")) {
+                MongoDatabase admin = client.getDatabase("admin");
+                admin.runCommand(new Document("replSetInitiate", new Document("_id", REPLICA_SET)
+                        .append("members", Collections.singletonList(new Document("_id", 0).append("host", "localhost:" + port)))));
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+                while (!admin.runCommand(new Document("isMaster", 1)).getBoolean("ismaster", false)) {
+                    if (System.nanoTime() > deadline) {
+                        throw new IllegalStateException("Replica set " + REPLICA_SET + " elected no primary");
+                    }
+                    Thread.sleep(100);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        appointmentRepository.deleteAll();
+    }
+
+    @Test
+    public void createRescheduleCancelTest() throws Exception {
+        CompletableFuture<List<ServerSentEvent<Appointment>>> received = events(null, "D000001", null)
+                .take(3).collectList().toFuture();
+        awaitSubscription();
+
+        Appointment other = appointment("D000002");
+        appointmentRepository.save(other);
+        Appointment appointment = appointmentRepository.save(appointment("D000001"));
+        Appointment changes = appointment("D000001");
+        changes.setTiming(appointment.getTiming().plusDays(1));
+        assertNotNull(appointmentRepository.reschedule(appointment.getId(), changes, null, null, LocalDateTime.now()));
+        assertNotNull(appointmentRepository.cancel(appointment.getId(), null, null, LocalDateTime.now()));
+
+        List<ServerSentEvent<Appointment>> events = received.get(TIMEOUT.getSeconds(), TimeUnit.SECONDS);
+        assertEquals("created", events.get(0).event());
+        assertEquals("rescheduled", events.get(1).event());
+        assertEquals("cancelled", events.get(2).event());
+        for (ServerSentEvent<Appointment> event : events) {
+            assertEquals(appointment.getId(), event.data().getId());
+        }
+
+        //resuming after the creation replays the two changes that followed it
+        List<ServerSentEvent<Appointment>> resumed = events(null, "D000001", events.get(0).id())
+                .take(2).collectList().block(TIMEOUT);
+        assertEquals(events.get(1).id(), resumed.get(0).id());
+        assertEquals(events.get(2).id(), resumed.get(1).id());
+    }
+
+    @Test
+    public void slowSubscriberTest() throws Exception {
+        //a subscriber that reads nothing while ten appointments are made falls behind its buffer of two
+        AtomicInteger read = new AtomicInteger();
+        CompletableFuture<Void> ended = new CompletableFuture<>();
+        BaseSubscriber<ServerSentEvent<Appointment>> subscriber = new BaseSubscriber<ServerSentEvent<Appointment>>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+            }
+
+            @Override
+            protected void hookOnNext(ServerSentEvent<Appointment> event) {
+                if (event.event() != null) {
+                    read.incrementAndGet();
+                }
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                ended.complete(null);
+            }
+
+            @Override
+            protected void hookOnError(Throwable throwable) {
+                ended.completeExceptionally(throwable);
+            }
+        };
+        appointmentChangeFeed.subscribe("C000001", null, null).subscribe(subscriber);
+        awaitSubscription();
+        for (int i = 0; i < 10; i++) {
+            appointmentRepository.save(appointment("D00001" + i));
+        }
+        Thread.sleep(1000);
+
+        subscriber.requestUnbounded();
+        ended.get(TIMEOUT.getSeconds(), TimeUnit.SECONDS);
+        assertTrue(read.get() < 10);
+    }
+
+    /**
+     * Helper method to subscribe to the feed without its heartbeats
+     */
+    private Flux<ServerSentEvent<Appointment>> events(String clinicId, String doctorId, String resumeToken) {
+        return appointmentChangeFeed.subscribe(clinicId, doctorId, resumeToken)
+                .filter(event -> event.event() != null);
+    }
+
+    /**
+     * Helper method to give a new change stream time to open before the writes it should see
+     */
+    private static void awaitSubscription() throws InterruptedException {
+        Thread.sleep(1000);
+    }
+
+    private static Appointment appointment(String doctorId) {
+        Appointment appointment = new Appointment();
+        appointment.setPatientId("P000001");
+        appointment.setDoctorId(doctorId);
+        appointment.setClinicId("C000001");
+        appointment.setTiming(LocalDateTime.now().plusDays(7).withNano(0));
+        appointment.setStatus(AppointmentTransitions.SCHEDULED);
+        return appointment;
+    }
+}
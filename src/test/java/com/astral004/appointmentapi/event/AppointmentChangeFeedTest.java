@@ -0,0 +1,40 @@
+package com.astral004.appointmentapi.event;
+
+import com.astral004.appointmentapi.exception.InvalidContinuationTokenException;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AppointmentChangeFeedTest {
+
+    @Test
+    public void resumeTokenTest() {
+        String token = "8260F1C2A7000000012B022C0100296E5A1004";
+        BsonDocument resumeToken = AppointmentChangeFeed.decodeResumeToken(token);
+        assertEquals(token, AppointmentChangeFeed.encodeResumeToken(resumeToken));
+    }
+
+    @Test(expected = InvalidContinuationTokenException.class)
+    public void resumeTokenTestException() {
+        AppointmentChangeFeed.decodeResumeToken("{\"$where\": \"sleep(1000)\"}");
+    }
+
+    @Test
+    public void changeCriteriaTest() {
+        Document all = AppointmentChangeFeed.changeCriteria(null, null).getCriteriaObject();
+        assertTrue(all.containsKey("$or"));
+        assertFalse(all.containsKey("fullDocument.doctorId"));
+
+        Document doctor = AppointmentChangeFeed.changeCriteria("C000001", "D000001").getCriteriaObject();
+        assertEquals("C000001", doctor.get("fullDocument.clinicId"));
+        assertEquals("D000001", doctor.get("fullDocument.doctorId"));
+        List<?> operations = doctor.getList("$or", Object.class);
+        assertEquals(2, operations.size());
+    }
+}
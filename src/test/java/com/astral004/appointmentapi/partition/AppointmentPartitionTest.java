@@ -0,0 +1,44 @@
+package com.astral004.appointmentapi.partition;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class AppointmentPartitionTest {
+
+    private final MongoDatabase home = Mockito.mock(MongoDatabase.class);
+    private final MongoDatabase database = Mockito.mock(MongoDatabase.class);
+    private final AppointmentPartition partition = new AppointmentPartition(1, database,
+            new HashSet<>(Arrays.asList("appointments", "appointments_archive")));
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void takesTheAppointmentCollectionsFromThePartition() {
+        ReadPreference secondary = ReadPreference.secondaryPreferred(90, TimeUnit.SECONDS);
+        MongoDatabase routedHome = Mockito.mock(MongoDatabase.class);
+        MongoDatabase routedPartition = Mockito.mock(MongoDatabase.class);
+        MongoCollection<Document> appointments = Mockito.mock(MongoCollection.class);
+        MongoCollection<Document> patients = Mockito.mock(MongoCollection.class);
+        Mockito.when(home.withReadPreference(secondary)).thenReturn(routedHome);
+        Mockito.when(routedHome.getReadPreference()).thenReturn(secondary);
+        Mockito.when(routedHome.getCollection("patients", Document.class)).thenReturn(patients);
+        Mockito.when(database.withReadPreference(secondary)).thenReturn(routedPartition);
+        Mockito.when(routedPartition.getCollection("appointments", Document.class)).thenReturn(appointments);
+        Mockito.when(routedHome.getName()).thenReturn("AppointmentApi");
+
+        MongoDatabase routed = partition.route(home).withReadPreference(secondary);
+        assertSame(appointments, routed.getCollection("appointments", Document.class));
+        assertSame(patients, routed.getCollection("patients", Document.class));
+        assertEquals("AppointmentApi", routed.getName());
+    }
+}
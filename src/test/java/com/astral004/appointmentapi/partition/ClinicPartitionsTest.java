@@ -0,0 +1,138 @@
+package com.astral004.appointmentapi.partition;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.domain.ClinicPlacement;
+import com.astral004.appointmentapi.exception.ServiceOverloadedException;
+import com.astral004.appointmentapi.routing.ReadRoute;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.MongoDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ClinicPartitionsTest {
+
+    private final ClinicPartitions partitions = new ClinicPartitions();
+
+    @Before
+    public void setUp() {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        Mockito.when(mongoTemplate.getCollectionName(Appointment.class)).thenReturn("appointments");
+        ReflectionTestUtils.setField(partitions, "mongoTemplate", mongoTemplate);
+        partitions.addPartition(Mockito.mock(MongoDatabase.class));
+        partitions.cache(placement("C000001", ClinicPartitions.HOME, false));
+        partitions.cache(placement("C000002", 1, false));
+    }
+
+    @After
+    public void tearDown() {
+        partitions.stop();
+        ReadRoute.clear();
+    }
+
+    @Test
+    public void withoutPartitionsEverythingStaysHome() {
+        ClinicPartitions home = new ClinicPartitions();
+        assertFalse(home.isPartitioned());
+        assertEquals(1, home.size());
+        assertEquals(ClinicPartitions.HOME, home.beginWrite("C000002"));
+        assertEquals(Collections.singletonList("read"), home.scatter(() -> "read"));
+    }
+
+    @Test
+    public void scatterReadsEveryPartitionWithTheRouteOfTheRequest() {
+        ReadRoute.set(ReadRoute.of(ReadPreference.secondaryPreferred(90, TimeUnit.SECONDS)));
+        List<String> reads = partitions.scatter(() -> {
+            AppointmentPartition partition = AppointmentPartition.current();
+            return (partition == null ? ClinicPartitions.HOME : partition.getIndex()) + " "
+                    + ReadRoute.current().getReadPreference().getName();
+        });
+        assertEquals(Arrays.asList("0 secondaryPreferred", "1 secondaryPreferred"), reads);
+        assertNull(AppointmentPartition.current());
+    }
+
+    @Test
+    public void gatherOnlyKeepsThePartitionHoldingEachClinic() {
+        Appointment home = appointment("A000001", "C000001", 10);
+        Appointment moved = appointment("A000002", "C000002", 9);
+        List<List<Appointment>> gathered = partitions.gather(() -> AppointmentPartition.current() == null
+                //the home partition still holds a copy of the clinic that moved to partition 1
+                ? Arrays.asList(home, appointment("A000002", "C000002", 9))
+                : Collections.singletonList(moved));
+
+        assertEquals(Collections.singletonList(home), gathered.get(0));
+        assertEquals(Collections.singletonList(moved), gathered.get(1));
+        List<Appointment> merged = ClinicPartitions.merge(gathered, Comparator.comparing(Appointment::getTiming), 0);
+        assertEquals(Arrays.asList(moved, home), merged);
+        assertEquals(Collections.singletonList(moved), ClinicPartitions.merge(gathered, Comparator.comparing(Appointment::getTiming), 1));
+
+        Optional<Appointment> located = partitions.locate(() -> Optional.of(AppointmentPartition.current() == null
+                ? appointment("A000002", "C000002", 8) : moved));
+        assertTrue(located.get() == moved);
+    }
+
+    @Test
+    public void writesToAFrozenClinicAreRefused() throws Exception {
+        assertEquals(1, partitions.beginWrite("C000002"));
+        assertFalse(partitions.awaitWrites("C000002", 20));
+        partitions.endWrite("C000002");
+        assertTrue(partitions.awaitWrites("C000002", 20));
+
+        partitions.cache(placement("C000002", 1, true));
+        try {
+            partitions.writeInClinic("C000002", () -> "written");
+            fail("Frozen clinic was written");
+        } catch (ServiceOverloadedException e) {
+            assertTrue(partitions.awaitWrites("C000002", 0));
+        }
+    }
+
+    @Test
+    public void insertsAreSplitByPartition() {
+        List<Appointment> appointments = Arrays.asList(appointment("A000001", "C000002", 9),
+                appointment("A000002", "C000001", 10), appointment("A000003", "C000002", 11));
+        List<String> inserts = new ArrayList<>();
+        Map<Integer, String> failures = partitions.insertByPartition(appointments, batch -> {
+            AppointmentPartition partition = AppointmentPartition.current();
+            inserts.add((partition == null ? ClinicPartitions.HOME : partition.getIndex()) + ":" + batch.size());
+            return partition == null ? Collections.emptyMap() : Collections.singletonMap(1, "duplicate key");
+        });
+        assertEquals(Arrays.asList("0:1", "1:2"), inserts);
+        assertEquals(Collections.singletonMap(2, "duplicate key"), failures);
+    }
+
+    private static ClinicPlacement placement(String clinicId, int partition, boolean frozen) {
+        ClinicPlacement placement = new ClinicPlacement();
+        placement.setId(clinicId);
+        placement.setPartition(partition);
+        placement.setFrozen(frozen);
+        return placement;
+    }
+
+    private static Appointment appointment(String id, String clinicId, int hour) {
+        Appointment appointment = new Appointment();
+        appointment.setId(id);
+        appointment.setClinicId(clinicId);
+        appointment.setTiming(LocalDateTime.of(2026, 11, 2, hour, 0));
+        return appointment;
+    }
+}
@@ -0,0 +1,85 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.exception.UnindexedQueryException;
+import org.bson.Document;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AppointmentFilterTest {
+
+    private static final String[] FILTERS = {"clinicId", "doctorId", "patientId", "status", "from", "to"};
+
+    /**
+     * Walks every combination of filters and checks that each one is either rejected up front or served by an
+     * index that is actually declared on Appointment and whose leading field the filter constrains. A new filter,
+     * or a dropped index, fails here instead of quietly turning into a collection scan.
+     */
+    @Test
+    public void everyFilterCombinationUsesADeclaredIndex() {
+        Map<String, Document> declared = declaredIndexes();
+        for (int mask = 1; mask < (1 << FILTERS.length); mask++) {
+            AppointmentFilter filter = filterFor(mask);
+            String index;
+            try {
+                index = filter.requireIndex();
+            } catch (UnindexedQueryException e) {
+                assertFalse("Only status-only filters may be rejected: " + filter,
+                        filter.constrains("clinicId") || filter.constrains("doctorId")
+                                || filter.constrains("patientId") || filter.constrains("timing"));
+                continue;
+            }
+            Document keys = declared.get(index);
+            if (keys == null) {
+                fail("Filter " + filter + " hints index " + index + " which is not declared on Appointment");
+            }
+            String leadingField = keys.keySet().iterator().next();
+            assertTrue("Index " + index + " cannot serve " + filter, filter.constrains(leadingField));
+        }
+    }
+
+    @Test
+    public void mostSelectiveIndexWins() {
+        AppointmentFilter filter = new AppointmentFilter();
+        filter.setClinicId("C000001");
+        filter.setDoctorId("D000001");
+        assertEquals("doctor_timing", filter.requireIndex());
+        filter.setPatientId("P000001");
+        assertEquals("patient_timing", filter.requireIndex());
+    }
+
+    private static AppointmentFilter filterFor(int mask) {
+        AppointmentFilter filter = new AppointmentFilter();
+        if ((mask & 1) != 0) filter.setClinicId("C000001");
+        if ((mask & 2) != 0) filter.setDoctorId("D000001");
+        if ((mask & 4) != 0) filter.setPatientId("P000001");
+        if ((mask & 8) != 0) filter.setStatus("Scheduled");
+        if ((mask & 16) != 0) filter.setFrom(LocalDate.now());
+        if ((mask & 32) != 0) filter.setTo(LocalDate.now().plusDays(30));
+        return filter;
+    }
+
+    private static Map<String, Document> declaredIndexes() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(Collections.emptyList()).getSimpleTypeHolder());
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        Map<String, Document> indexes = new HashMap<>();
+        for (IndexDefinition index : resolver.resolveIndexFor(Appointment.class)) {
+            indexes.put(index.getIndexOptions().getString("name"), index.getIndexKeys());
+        }
+        return indexes;
+    }
+}
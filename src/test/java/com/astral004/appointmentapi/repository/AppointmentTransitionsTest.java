@@ -0,0 +1,41 @@
+package com.astral004.appointmentapi.repository;
+
+import org.bson.Document;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AppointmentTransitionsTest {
+
+    private final LocalDateTime now = LocalDateTime.of(2021, 8, 10, 9, 30);
+
+    @Test
+    public void changeWindowCoversTheFortyEightHoursBeforeTheAppointment() {
+        assertFalse(AppointmentTransitions.withinChangeWindow(now, now));
+        assertTrue(AppointmentTransitions.withinChangeWindow(now.plusMinutes(1), now));
+        assertTrue(AppointmentTransitions.withinChangeWindow(now.plusHours(47), now));
+        assertFalse(AppointmentTransitions.withinChangeWindow(now.plusHours(48), now));
+        assertFalse(AppointmentTransitions.withinChangeWindow(now.minusDays(1), now));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void transitionQueryCarriesWindowStatusAndVersion() {
+        Document query = AppointmentTransitions.transitionQuery("A000001", 7L, now).getQueryObject();
+        assertEquals("A000001", query.get("_id"));
+        assertEquals(7L, query.get("version"));
+        assertEquals(AppointmentTransitions.ACTIVE_STATUSES, ((Document) query.get("status")).get("$in"));
+        List<Document> window = (List<Document>) query.get("$or");
+        assertEquals(new Document("$lte", now), window.get(0).get("timing"));
+        assertEquals(new Document("$gte", now.plusHours(48)), window.get(1).get("timing"));
+
+        assertFalse(AppointmentTransitions.transitionQuery("A000001", null, now).getQueryObject().containsKey("version"));
+        assertFalse(AppointmentTransitions.transitionQuery("A000001", null, now).getQueryObject().containsKey("clinicId"));
+        assertEquals("C000001", AppointmentTransitions.transitionQuery("A000001", null, "C000001", now).getQueryObject().get("clinicId"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.astral004.appointmentapi.repository;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.exception.InvalidFieldsException;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class FieldSelectionTest {
+
+    private final MongoMappingContext mappingContext = new MongoMappingContext();
+
+    @Before
+    public void setUp() {
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(Collections.emptyList()).getSimpleTypeHolder());
+    }
+
+    @Test
+    public void appliesProjectionTest() {
+        FieldSelection fields = FieldSelection.parse("id,timing, status,doctorId,status",
+                mappingContext.getRequiredPersistentEntity(Appointment.class));
+        assertEquals("id,timing,status,doctorId", fields.toString());
+
+        Query query = fields.page("A000001", 50);
+        assertEquals(new Document("id", 1).append("timing", 1).append("status", 1).append("doctorId", 1).append("version", 1),
+                query.getFieldsObject());
+        assertEquals(new Document("id", 1), query.getSortObject());
+        assertEquals(50, query.getLimit());
+    }
+
+    @Test
+    public void selectsPropertiesTest() {
+        Patient patient = new Patient();
+        patient.setId("P000001");
+        patient.setLastName("Smith");
+        patient.setSocialSecurityNumber("000-00-0000");
+        FieldSelection fields = FieldSelection.parse("lastName,id", mappingContext.getRequiredPersistentEntity(Patient.class));
+
+        Map<String, Object> selected = fields.select(patient);
+        assertEquals(Arrays.asList("lastName", "id"), Arrays.asList(selected.keySet().toArray()));
+        assertEquals("Smith", selected.get("lastName"));
+        assertFalse(selected.containsKey("socialSecurityNumber"));
+
+        Appointment appointment = new Appointment();
+        appointment.setTiming(LocalDateTime.of(2026, 11, 2, 9, 30));
+        assertEquals(appointment.getTiming(), FieldSelection.parse("timing",
+                mappingContext.getRequiredPersistentEntity(Appointment.class)).select(appointment).get("timing"));
+    }
+
+    @Test(expected = InvalidFieldsException.class)
+    public void unknownFieldTest() {
+        FieldSelection.parse("id,socialSecurityNumber", mappingContext.getRequiredPersistentEntity(Appointment.class));
+    }
+
+    @Test(expected = InvalidFieldsException.class)
+    public void noFieldTest() {
+        FieldSelection.parse(" , ", mappingContext.getRequiredPersistentEntity(Patient.class));
+    }
+}
@@ -0,0 +1,79 @@
+package com.astral004.appointmentapi.rollup;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.event.AppointmentChange;
+import com.astral004.appointmentapi.repository.AppointmentTransitions;
+import com.astral004.appointmentapi.repository.ScheduleRollupDelta;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScheduleRollupMaintainerTest {
+
+    private Appointment appointment;
+
+    @Before
+    public void setUp() {
+        appointment = new Appointment();
+        appointment.setId("A000001");
+        appointment.setDoctorId("D000001");
+        appointment.setClinicId("C000001");
+        appointment.setTiming(LocalDateTime.of(2026, 11, 2, 9, 30));
+        appointment.setCopay(20);
+        appointment.setStatus(AppointmentTransitions.SCHEDULED);
+    }
+
+    @Test
+    public void createdTest() {
+        List<ScheduleRollupDelta> deltas = ScheduleRollupMaintainer.deltas(
+                Collections.singletonList(AppointmentChange.created(appointment)));
+        assertEquals(1, deltas.size());
+        assertEquals("D000001/C000001/2026-11-02", deltas.get(0).getRollupId());
+        assertEquals(1, deltas.get(0).getCount());
+        assertEquals(20, deltas.get(0).getCopay());
+    }
+
+    @Test
+    public void rescheduledTest() {
+        Appointment changes = new Appointment();
+        changes.setDoctorId("D000001");
+        changes.setClinicId("C000001");
+        changes.setTiming(appointment.getTiming().plusDays(1));
+        changes.setCopay(30);
+        Appointment rescheduled = AppointmentTransitions.applyReschedule(appointment, changes);
+
+        List<ScheduleRollupDelta> deltas = ScheduleRollupMaintainer.deltas(
+                Collections.singletonList(AppointmentChange.rescheduled(appointment, rescheduled)));
+        assertEquals(2, deltas.size());
+        assertEquals("D000001/C000001/2026-11-02", deltas.get(0).getRollupId());
+        assertEquals(AppointmentTransitions.SCHEDULED, deltas.get(0).getStatus());
+        assertEquals(-1, deltas.get(0).getCount());
+        assertEquals(-20, deltas.get(0).getCopay());
+        assertEquals("D000001/C000001/2026-11-03", deltas.get(1).getRollupId());
+        assertEquals(AppointmentTransitions.RESCHEDULED, deltas.get(1).getStatus());
+        assertEquals(30, deltas.get(1).getCopay());
+    }
+
+    @Test
+    public void cancelledTest() {
+        appointment.setStatus(null);
+        Appointment cancelled = AppointmentTransitions.applyCancel(appointment);
+        Appointment unscheduled = new Appointment();
+
+        List<ScheduleRollupDelta> deltas = ScheduleRollupMaintainer.deltas(Arrays.asList(
+                AppointmentChange.cancelled(appointment, cancelled),
+                AppointmentChange.created(unscheduled)));
+        assertEquals(2, deltas.size());
+        assertEquals("None", deltas.get(0).getStatus());
+        assertEquals(-1, deltas.get(0).getCount());
+        assertEquals(AppointmentTransitions.CANCELLED, deltas.get(1).getStatus());
+        assertEquals(1, deltas.get(1).getCount());
+        assertEquals(deltas.get(0).getRollupId(), deltas.get(1).getRollupId());
+    }
+}
@@ -0,0 +1,267 @@
+package com.astral004.appointmentapi.routing;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.domain.Clinic;
+import com.astral004.appointmentapi.domain.Doctor;
+import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.repository.AppointmentRepository;
+import com.astral004.appointmentapi.repository.ClinicRepository;
+import com.astral004.appointmentapi.repository.DoctorRepository;
+import com.astral004.appointmentapi.repository.PatientRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs read routing against an embedded replica set of three members: the mongod Spring Boot starts, which is made
+ * the primary, and two secondaries started here. Every command the application sends is recorded with the member
+ * it went to. The mongod binary is downloaded on the first run.
+ */
+@RunWith(SpringRunner.class)
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.mongodb.embedded.version=4.4.1",
+        "spring.mongodb.embedded.storage.repl-set-name=" + ReadRoutingIT.REPLICA_SET,
+        "spring.data.mongodb.replica-set-name=" + ReadRoutingIT.REPLICA_SET,
+        "spring.data.mongodb.port=0",
+        "spring.data.mongodb.database=ReadRoutingIT",
+        "appointments.read-routing.enabled=true"})
+public class ReadRoutingIT {
+
+    static final String REPLICA_SET = "rs0";
+    private static final int SECONDARIES = 2;
+    private static final List<MongodExecutable> secondaries = new ArrayList<>();
+    private static final List<CommandStartedEvent> commands = new CopyOnWriteArrayList<>();
+    private static volatile int primaryPort;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private PatientRepository patientRepository;
+    @Autowired
+    private DoctorRepository doctorRepository;
+    @Autowired
+    private ClinicRepository clinicRepository;
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @TestConfiguration
+    static class ReplicaSetConfiguration {
+
+        /**
+         * Starts the secondaries and initiates the replica set as soon as the embedded server is up, before any
+         * client uses it
+         */
+        @Bean
+        static BeanPostProcessor replicaSetInitiator(Environment environment) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof MongodExecutable) {
+                        primaryPort = environment.getRequiredProperty("local.mongo.port", Integer.class);
+                        initiateReplicaSet(primaryPort, startSecondaries());
+                    }
+                    return bean;
+                }
+            };
+        }
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer commandRecorder() {
+            return settings -> settings.addCommandListener(new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    commands.add(event);
+                }
+            });
+        }
+
+        private static List<Integer> startSecondaries() {
+            List<Integer> ports = new ArrayList<>();
+            try {
+                for (int i = 0; i < SECONDARIES; i++) {
+                    int port = Network.getFreeServerPort();
+                    MongodExecutable secondary = MongodStarter.getDefaultInstance().prepare(MongodConfig.builder()
+                            .version(Version.V4_4_1)
+                            .net(new Net(port, Network.localhostIsIPv6()))
+                            .replication(new Storage(null, REPLICA_SET, 0))
+                            .build());
+                    secondaries.add(secondary);
+                    secondary.start();
+                    ports.add(port);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return ports;
+        }
+
+        private static void initiateReplicaSet(int primaryPort, List<Integer> secondaryPorts) {
+            List<Document> members = new ArrayList<>();
+            members.add(new Document("_id", 0).append("host", "localhost:" + primaryPort).append("priority", 2));
+            for (int i = 0; i < secondaryPorts.size(); i++) {
+                //secondaries can never be elected, so the member Spring Boot started stays the primary
+                members.add(new Document("_id", i + 1).append("host", "localhost:" + secondaryPorts.get(i)).append("priority", 0));
+            }
+            try (MongoClient client = MongoClients.create("mongodb://localhost:" + primaryPort + "/?directConnection=true")) {
+                MongoDatabase admin = client.getDatabase("admin");
+                admin.runCommand(new Document("replSetInitiate", new Document("_id", REPLICA_SET).append("members", members)));
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+                while (!replicaSetReady(admin)) {
+                    if (System.nanoTime() > deadline) {
+                        throw new IllegalStateException("Replica set " + REPLICA_SET + " did not come up");
+                    }
+                    Thread.sleep(200);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Helper method to tell whether there is a primary and every secondary has caught up with it
+         */
+        private static boolean replicaSetReady(MongoDatabase admin) {
+            Document status;
+            try {
+                status = admin.runCommand(new Document("replSetGetStatus", 1));
+            } catch (RuntimeException e) {
+                return false;
+            }
+            int primaries = 0;
+            int secondaries = 0;
+            for (Document member : status.getList("members", Document.class)) {
+                if ("PRIMARY".equals(member.getString("stateStr"))) {
+                    primaries++;
+                } else if ("SECONDARY".equals(member.getString("stateStr"))) {
+                    secondaries++;
+                }
+            }
+            return primaries == 1 && secondaries == SECONDARIES;
+        }
+    }
+
+    @AfterClass
+    public static void stopSecondaries() {
+        for (MongodExecutable secondary : secondaries) {
+            secondary.stop();
+        }
+    }
+
+    @Test
+    public void readsGoToSecondariesAndTokensPinToThePrimary() throws Exception {
+        Appointment appointment = seed();
+
+        commands.clear();
+        MvcResult created = mockMvc.perform(post("/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String token = created.getResponse().getHeader(ReadRoutingWebMvcConfigurer.CONSISTENCY_TOKEN_HEADER);
+        assertNotNull(token);
+        String id = objectMapper.readValue(created.getResponse().getContentAsByteArray(), Appointment.class).getId();
+        CommandStartedEvent insert = command("insert");
+        assertEquals(primaryPort, insert.getConnectionDescription().getServerAddress().getPort());
+
+        //the client's own write is read back from the primary, after the operation time of the write
+        commands.clear();
+        mockMvc.perform(get("/appointments/{id}", id)
+                .header(ReadRoutingWebMvcConfigurer.CONSISTENCY_TOKEN_HEADER, token))
+                .andExpect(status().isOk());
+        CommandStartedEvent pinned = command("find");
+        assertEquals(primaryPort, pinned.getConnectionDescription().getServerAddress().getPort());
+        BsonDocument readConcern = pinned.getCommand().getDocument("readConcern");
+        assertEquals(ReadRoutingWebMvcConfigurer.decodeConsistencyToken(token), readConcern.getTimestamp("afterClusterTime"));
+
+        //everything else is read from a secondary
+        commands.clear();
+        mockMvc.perform(get("/appointments")
+                .param("size", "10"));
+        CommandStartedEvent routed = command("find");
+        assertTrue(routed.getConnectionDescription().getServerAddress().getPort() != primaryPort);
+        assertFalse(routed.getCommand().containsKey("readConcern"));
+    }
+
+    /**
+     * Helper method to store the patient, doctor, and clinic of a new appointment
+     */
+    private Appointment seed() {
+        appointmentRepository.deleteAll();
+        Patient patient = new Patient();
+        patient.setId("P000001");
+        patientRepository.save(patient);
+        Doctor doctor = new Doctor();
+        doctor.setId("D000001");
+        doctor.setClinicIds(Arrays.asList("C000001"));
+        doctorRepository.save(doctor);
+        Clinic clinic = new Clinic();
+        clinic.setId("C000001");
+        clinicRepository.save(clinic);
+
+        Appointment appointment = new Appointment();
+        appointment.setPatientId(patient.getId());
+        appointment.setDoctorId(doctor.getId());
+        appointment.setClinicId(clinic.getId());
+        appointment.setTiming(LocalDateTime.now().plusDays(7).withHour(10).withMinute(0).withSecond(0).withNano(0));
+        return appointment;
+    }
+
+    /**
+     * @return The first recorded command of that name
+     */
+    private static CommandStartedEvent command(String name) {
+        for (CommandStartedEvent event : commands) {
+            if (name.equals(event.getCommandName())) {
+                return event;
+            }
+        }
+        throw new AssertionError("No " + name + " command was sent, only " + commands.size() + " others");
+    }
+}
@@ -0,0 +1,78 @@
+package com.astral004.appointmentapi.routing;
+
+import com.astral004.appointmentapi.exception.InvalidConsistencyTokenException;
+import com.mongodb.ReadPreference;
+import com.mongodb.reactivestreams.client.ClientSession;
+import org.bson.BsonTimestamp;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ReadRoutingWebFilterTest {
+
+    private final RoutingReactiveMongoDatabaseFactory databaseFactory = Mockito.mock(RoutingReactiveMongoDatabaseFactory.class);
+    private final ReadRoutingWebFilter filter = new ReadRoutingWebFilter(provider(databaseFactory), true, 90);
+    private final AtomicReference<ReactiveReadRoute> route = new AtomicReference<>();
+    //stands in for a handler that reads the route its repository calls would follow, then writes its response
+    private final WebFilterChain chain = exchange -> ReactiveReadRoute.current()
+            .doOnNext(route::set)
+            .then(exchange.getResponse().setComplete());
+
+    @Test
+    public void writesArePinnedAndReturnAToken() {
+        BsonTimestamp operationTime = new BsonTimestamp(1700000000, 7);
+        ClientSession session = Mockito.mock(ClientSession.class);
+        Mockito.when(session.getOperationTime()).thenReturn(operationTime);
+        Mockito.when(databaseFactory.startCausalSession()).thenReturn(Mono.just(session));
+
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/appointments"));
+        filter.filter(exchange, chain).block();
+        assertEquals(ReadRoutingWebMvcConfigurer.encodeConsistencyToken(operationTime),
+                exchange.getResponse().getHeaders().getFirst(ReadRoutingWebMvcConfigurer.CONSISTENCY_TOKEN_HEADER));
+        assertSame(session, route.get().getSession());
+        assertEquals(ReadPreference.primary(), route.get().getReadPreference());
+        Mockito.verify(session).close();
+    }
+
+    @Test
+    public void readsGoToSecondariesUnlessTheyCarryAToken() {
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/appointments")), chain).block();
+        assertNull(route.get().getSession());
+        assertEquals(ReadPreference.secondaryPreferred(90, TimeUnit.SECONDS), route.get().getReadPreference());
+        Mockito.verify(databaseFactory, Mockito.never()).startCausalSession();
+
+        BsonTimestamp operationTime = new BsonTimestamp(1700000000, 7);
+        ClientSession session = Mockito.mock(ClientSession.class);
+        Mockito.when(databaseFactory.startCausalSession()).thenReturn(Mono.just(session));
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/appointments")
+                .header(ReadRoutingWebMvcConfigurer.CONSISTENCY_TOKEN_HEADER,
+                        ReadRoutingWebMvcConfigurer.encodeConsistencyToken(operationTime))), chain).block();
+        assertSame(session, route.get().getSession());
+        Mockito.verify(session).advanceOperationTime(operationTime);
+        Mockito.verify(session).close();
+    }
+
+    @Test(expected = InvalidConsistencyTokenException.class)
+    public void rejectsInvalidTokens() {
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/appointments")
+                .header(ReadRoutingWebMvcConfigurer.CONSISTENCY_TOKEN_HEADER, "abc")), chain).block();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<RoutingReactiveMongoDatabaseFactory> provider(RoutingReactiveMongoDatabaseFactory factory) {
+        ObjectProvider<RoutingReactiveMongoDatabaseFactory> provider = Mockito.mock(ObjectProvider.class);
+        Mockito.when(provider.getIfAvailable()).thenReturn(factory);
+        return provider;
+    }
+}
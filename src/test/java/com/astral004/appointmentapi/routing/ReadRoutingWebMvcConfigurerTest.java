@@ -0,0 +1,96 @@
+package com.astral004.appointmentapi.routing;
+
+import com.astral004.appointmentapi.controller.ScheduleSummaryController;
+import com.astral004.appointmentapi.repository.ScheduleRollupRepository;
+import com.astral004.appointmentapi.rollup.ScheduleRollupMaintainer;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ClientSession;
+import org.bson.BsonTimestamp;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(controllers = ScheduleSummaryController.class, properties = "appointments.read-routing.enabled=true")
+public class ReadRoutingWebMvcConfigurerTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    private ScheduleRollupRepository scheduleRollupRepository;
+    @MockBean
+    private ScheduleRollupMaintainer scheduleRollupMaintainer;
+    @MockBean
+    private RoutingMongoDatabaseFactory databaseFactory;
+
+    @Test
+    public void writesArePinnedAndReturnAToken() throws Exception {
+        BsonTimestamp operationTime = new BsonTimestamp(1700000000, 7);
+        ClientSession session = Mockito.mock(ClientSession.class);
+        Mockito.when(session.getOperationTime()).thenReturn(operationTime);
+        Mockito.when(databaseFactory.startCausalSession()).thenReturn(session);
+        AtomicReference<ReadRoute> route = new AtomicReference<>();
+        Mockito.doAnswer(invocation -> {
+            route.set(ReadRoute.current());
+            return null;
+        }).when(scheduleRollupMaintainer).rebuild();
+
+        mockMvc.perform(post("/scheduleSummary/rebuild"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(ReadRoutingWebMvcConfigurer.CONSISTENCY_TOKEN_HEADER,
+                        ReadRoutingWebMvcConfigurer.encodeConsistencyToken(operationTime)));
+        assertSame(session, route.get().getSession());
+        assertEquals(ReadPreference.primary(), route.get().getReadPreference());
+        Mockito.verify(session).close();
+        assertNull(ReadRoute.current());
+    }
+
+    @Test
+    public void readsGoToSecondariesUnlessTheyCarryAToken() throws Exception {
+        AtomicReference<ReadRoute> route = new AtomicReference<>();
+        Mockito.when(scheduleRollupRepository.findSummary(any(), any(), any(), any())).thenAnswer(invocation -> {
+            route.set(ReadRoute.current());
+            return Collections.emptyList();
+        });
+
+        mockMvc.perform(get("/scheduleSummary")
+                .param("dID", "D000001"));
+        assertNull(route.get().getSession());
+        assertEquals(ReadPreference.secondaryPreferred(90, TimeUnit.SECONDS), route.get().getReadPreference());
+        Mockito.verify(databaseFactory, Mockito.never()).startCausalSession();
+
+        BsonTimestamp operationTime = new BsonTimestamp(1700000000, 7);
+        ClientSession session = Mockito.mock(ClientSession.class);
+        Mockito.when(databaseFactory.startCausalSession()).thenReturn(session);
+        mockMvc.perform(get("/scheduleSummary")
+                .param("dID", "D000001")
+                .header(ReadRoutingWebMvcConfigurer.CONSISTENCY_TOKEN_HEADER,
+                        ReadRoutingWebMvcConfigurer.encodeConsistencyToken(operationTime)));
+        assertSame(session, route.get().getSession());
+        Mockito.verify(session).advanceOperationTime(operationTime);
+        Mockito.verify(session).close();
+
+        mockMvc.perform(get("/scheduleSummary")
+                .param("dID", "D000001")
+                .header(ReadRoutingWebMvcConfigurer.CONSISTENCY_TOKEN_HEADER, "abc"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,57 @@
+package com.astral004.appointmentapi.routing;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoDatabase;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertSame;
+
+public class RoutingMongoDatabaseFactoryTest {
+
+    private final MongoDatabaseFactory delegate = Mockito.mock(MongoDatabaseFactory.class);
+    private final MongoDatabase database = Mockito.mock(MongoDatabase.class);
+    private final RoutingMongoDatabaseFactory factory = new RoutingMongoDatabaseFactory(delegate);
+
+    @After
+    public void tearDown() {
+        ReadRoute.clear();
+    }
+
+    @Test
+    public void leavesTheDatabaseAloneOutsideARequest() {
+        Mockito.when(delegate.getMongoDatabase()).thenReturn(database);
+        assertSame(database, factory.getMongoDatabase());
+        Mockito.verify(database, Mockito.never()).withReadPreference(Mockito.any());
+    }
+
+    @Test
+    public void appliesTheReadPreferenceOfTheRoute() {
+        ReadPreference secondary = ReadPreference.secondaryPreferred(120, TimeUnit.SECONDS);
+        MongoDatabase routed = Mockito.mock(MongoDatabase.class);
+        Mockito.when(delegate.getMongoDatabase()).thenReturn(database);
+        Mockito.when(database.withReadPreference(secondary)).thenReturn(routed);
+
+        ReadRoute.set(ReadRoute.of(secondary));
+        assertSame(routed, factory.getMongoDatabase());
+    }
+
+    @Test
+    public void bindsPinnedRoutesToTheirSession() {
+        ClientSession session = Mockito.mock(ClientSession.class);
+        MongoDatabaseFactory sessionFactory = Mockito.mock(MongoDatabaseFactory.class);
+        MongoDatabase sessionDatabase = Mockito.mock(MongoDatabase.class);
+        MongoDatabase routed = Mockito.mock(MongoDatabase.class);
+        Mockito.when(delegate.withSession(session)).thenReturn(sessionFactory);
+        Mockito.when(sessionFactory.getMongoDatabase("archive")).thenReturn(sessionDatabase);
+        Mockito.when(sessionDatabase.withReadPreference(ReadPreference.primary())).thenReturn(routed);
+
+        ReadRoute.set(ReadRoute.pinned(session));
+        assertSame(routed, factory.getMongoDatabase("archive"));
+    }
+}
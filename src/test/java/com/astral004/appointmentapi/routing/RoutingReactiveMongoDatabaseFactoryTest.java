@@ -0,0 +1,54 @@
+package com.astral004.appointmentapi.routing;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.reactivestreams.client.ClientSession;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertSame;
+
+public class RoutingReactiveMongoDatabaseFactoryTest {
+
+    private final ReactiveMongoDatabaseFactory delegate = Mockito.mock(ReactiveMongoDatabaseFactory.class);
+    private final MongoDatabase database = Mockito.mock(MongoDatabase.class);
+    private final RoutingReactiveMongoDatabaseFactory factory = new RoutingReactiveMongoDatabaseFactory(delegate);
+
+    @Test
+    public void leavesTheDatabaseAloneOutsideARequest() {
+        Mockito.when(delegate.getMongoDatabase()).thenReturn(Mono.just(database));
+        assertSame(database, factory.getMongoDatabase().block());
+        Mockito.verify(database, Mockito.never()).withReadPreference(Mockito.any());
+    }
+
+    @Test
+    public void appliesTheReadPreferenceOfTheRoute() {
+        ReadPreference secondary = ReadPreference.secondaryPreferred(120, TimeUnit.SECONDS);
+        MongoDatabase routed = Mockito.mock(MongoDatabase.class);
+        Mockito.when(delegate.getMongoDatabase()).thenReturn(Mono.just(database));
+        Mockito.when(database.withReadPreference(secondary)).thenReturn(routed);
+
+        assertSame(routed, factory.getMongoDatabase()
+                .contextWrite(ReactiveReadRoute.of(secondary)::putIn)
+                .block());
+    }
+
+    @Test
+    public void bindsPinnedRoutesToTheirSession() {
+        ClientSession session = Mockito.mock(ClientSession.class);
+        ReactiveMongoDatabaseFactory sessionFactory = Mockito.mock(ReactiveMongoDatabaseFactory.class);
+        MongoDatabase sessionDatabase = Mockito.mock(MongoDatabase.class);
+        MongoDatabase routed = Mockito.mock(MongoDatabase.class);
+        Mockito.when(delegate.withSession(session)).thenReturn(sessionFactory);
+        Mockito.when(sessionFactory.getMongoDatabase("archive")).thenReturn(Mono.just(sessionDatabase));
+        Mockito.when(sessionDatabase.withReadPreference(ReadPreference.primary())).thenReturn(routed);
+
+        assertSame(routed, factory.getMongoDatabase("archive")
+                .contextWrite(ReactiveReadRoute.pinned(session)::putIn)
+                .block());
+    }
+}
@@ -0,0 +1,146 @@
+package com.astral004.appointmentapi.schedule;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.partition.ClinicPartitions;
+import com.astral004.appointmentapi.repository.AppointmentRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.astral004.appointmentapi.schedule.DoctorScheduleIndex.Reservation.CONFLICT;
+import static com.astral004.appointmentapi.schedule.DoctorScheduleIndex.Reservation.RESERVED;
+import static com.astral004.appointmentapi.schedule.DoctorScheduleIndex.Reservation.UNCHANGED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DoctorScheduleIndexTest {
+
+    private final LocalDateTime nineAm = LocalDate.now().plusDays(3).atTime(9, 0);
+    private AppointmentRepository appointmentRepository;
+    private DoctorScheduleIndex index;
+
+    @Before
+    public void setUp() {
+        appointmentRepository = Mockito.mock(AppointmentRepository.class);
+        index = new DoctorScheduleIndex();
+        ReflectionTestUtils.setField(index, "appointmentRepository", appointmentRepository);
+        ReflectionTestUtils.setField(index, "clinicPartitions", new ClinicPartitions());
+        ReflectionTestUtils.setField(index, "slotMinutes", 15);
+        ReflectionTestUtils.setField(index, "openingHour", 8);
+        ReflectionTestUtils.setField(index, "closingHour", 17);
+        ReflectionTestUtils.setField(index, "workingDays", new DayOfWeek[]{DayOfWeek.MONDAY, DayOfWeek.TUESDAY,
+                DayOfWeek.WEDNESDAY, DayOfWeek.THURSDAY, DayOfWeek.FRIDAY});
+    }
+
+    @Test
+    public void detectsDoubleBookingWithinASlot() {
+        assertEquals(RESERVED, index.reserve("D1", nineAm, "A1"));
+        assertEquals(CONFLICT, index.reserve("D1", nineAm.plusMinutes(14), "A2"));
+        assertEquals(UNCHANGED, index.reserve("D1", nineAm.plusMinutes(5), "A1"));
+        assertEquals(RESERVED, index.reserve("D1", nineAm.plusMinutes(15), "A2"));
+        assertEquals(RESERVED, index.reserve("D2", nineAm, "A3"));
+        assertEquals(RESERVED, index.reserve("D1", nineAm.plusDays(1), "A4"));
+        assertEquals(UNCHANGED, index.reserve(null, nineAm, "A5"));
+    }
+
+    @Test
+    public void onlyTheHolderReleasesASlot() {
+        index.reserve("D1", nineAm, "A1");
+        index.release("D1", nineAm, "A2");
+        assertTrue(index.isOccupied("D1", nineAm));
+        index.release("D1", nineAm, "A1");
+        assertFalse(index.isOccupied("D1", nineAm));
+        assertEquals(RESERVED, index.reserve("D1", nineAm, "A2"));
+    }
+
+    @Test
+    public void keepsTheHolderOfEverySlot() {
+        index.reserve("D1", nineAm.plusMinutes(30), "A3");
+        index.reserve("D1", nineAm, "A1");
+        index.reserve("D1", nineAm.plusMinutes(45), "A4");
+        index.reserve("D1", nineAm.plusMinutes(15), "A2");
+        index.release("D1", nineAm.plusMinutes(30), "A3");
+        assertEquals(UNCHANGED, index.reserve("D1", nineAm, "A1"));
+        assertEquals(UNCHANGED, index.reserve("D1", nineAm.plusMinutes(15), "A2"));
+        assertEquals(UNCHANGED, index.reserve("D1", nineAm.plusMinutes(45), "A4"));
+        assertEquals(CONFLICT, index.reserve("D1", nineAm.plusMinutes(45), "A3"));
+        assertEquals(RESERVED, index.reserve("D1", nineAm.plusMinutes(30), "A5"));
+    }
+
+    @Test
+    public void dropsDoctorsWithoutUpcomingSlots() {
+        index.reserve("D1", nineAm, "A1");
+        index.reserve("D2", LocalDate.now().minusDays(1).atTime(9, 0), "A2");
+        index.release("D1", nineAm, "A1");
+        index.prunePastDays();
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(index, "doctors")).isEmpty());
+        assertEquals(RESERVED, index.reserve("D1", nineAm, "A3"));
+        assertTrue(index.isOccupied("D1", nineAm));
+    }
+
+    @Test
+    public void loadsBookedSlotsAndPrunesPastDays() {
+        Appointment booked = new Appointment();
+        booked.setId("A1");
+        booked.setDoctorId("D1");
+        booked.setTiming(nineAm);
+        Appointment past = new Appointment();
+        past.setId("A0");
+        past.setDoctorId("D1");
+        past.setTiming(LocalDate.now().minusDays(1).atTime(9, 0));
+        Mockito.when(appointmentRepository.streamActiveSlotsFrom(Mockito.any())).thenReturn(Stream.of(booked, past));
+        index.load();
+        assertEquals(CONFLICT, index.reserve("D1", nineAm, "A2"));
+        assertTrue(index.isOccupied("D1", past.getTiming()));
+
+        index.prunePastDays();
+        assertFalse(index.isOccupied("D1", past.getTiming()));
+        assertTrue(index.isOccupied("D1", nineAm));
+        assertTrue(index.sameSlot(nineAm, nineAm.plusMinutes(10)));
+        assertFalse(index.sameSlot(nineAm, nineAm.plusMinutes(15)));
+    }
+
+    @Test
+    public void findsEarliestOpeningsAcrossDoctors() {
+        LocalDate friday = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.FRIDAY));
+        index.reserve("D1", friday.atTime(16, 0), "A1");
+        index.reserve("D1", friday.atTime(16, 30), "A2");
+        index.reserve("D2", friday.atTime(16, 15), "A3");
+        index.reserve("D2", friday.atTime(16, 30), "A4");
+        index.reserve("D2", friday.atTime(16, 45), "A5");
+
+        List<DoctorScheduleIndex.Opening> openings = index.findEarliestOpenings(Arrays.asList("D1", "D2"),
+                friday.atTime(15, 50), friday.plusDays(3), 6);
+        assertEquals(6, openings.size());
+        assertOpening("D2", friday.atTime(16, 0), openings.get(0));
+        assertOpening("D1", friday.atTime(16, 15), openings.get(1));
+        assertOpening("D1", friday.atTime(16, 45), openings.get(2));
+        //the weekend is skipped, and Monday starts at opening time
+        assertOpening("D1", friday.plusDays(3).atTime(8, 0), openings.get(3));
+        assertOpening("D2", friday.plusDays(3).atTime(8, 0), openings.get(4));
+        assertOpening("D1", friday.plusDays(3).atTime(8, 15), openings.get(5));
+
+        assertTrue(index.findEarliestOpenings(Arrays.asList("D1", "D2"), friday.atTime(16, 50), friday.plusDays(2), 6).isEmpty());
+        index.release("D2", friday.atTime(16, 45), "A5");
+        openings = index.findEarliestOpenings(Arrays.asList("D1", "D2"), friday.atTime(16, 31), friday, 6);
+        assertEquals(2, openings.size());
+        assertOpening("D1", friday.atTime(16, 45), openings.get(0));
+        assertOpening("D2", friday.atTime(16, 45), openings.get(1));
+    }
+
+    private static void assertOpening(String doctorId, LocalDateTime timing, DoctorScheduleIndex.Opening opening) {
+        assertEquals(doctorId, opening.getDoctorId());
+        assertEquals(timing, opening.getTiming());
+    }
+}
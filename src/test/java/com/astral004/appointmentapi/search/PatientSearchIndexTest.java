@@ -0,0 +1,118 @@
+package com.astral004.appointmentapi.search;
+
+import com.astral004.appointmentapi.domain.Patient;
+import com.astral004.appointmentapi.dto.PatientSearchResult;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PatientSearchIndexTest {
+
+    private PatientSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new PatientSearchIndex();
+        index.put(patient("P000001", "John", "Smith", "(555) 201-0100"));
+        index.put(patient("P000002", "Joan", "Smithers", "555-302-0200"));
+        index.put(patient("P000003", "Jonathan", "Smyth", "555-403-0300"));
+        index.put(patient("P000004", "Mary", "O'Brien", "555-504-0400"));
+        index.put(patient("P000005", "José", "García-López", "555-605-0500"));
+    }
+
+    @Test
+    public void prefixSearchTest() {
+        //Smyth is one typo away, so it follows the names that really start with smith
+        assertEquals(Arrays.asList("P000001", "P000002", "P000003"), ids(index.search("smith", 10)));
+        //too short to guess at typos in
+        assertEquals(Arrays.asList("P000002"), ids(index.search("smi joa", 10)));
+        //every word has to match, Joan being a typo away from John
+        assertEquals(Arrays.asList("P000001", "P000002"), ids(index.search("Smith John", 10)));
+        assertTrue(index.search("smith mary", 10).isEmpty());
+        assertEquals(Arrays.asList("P000001"), ids(index.search("smith", 1)));
+    }
+
+    @Test
+    public void rankingTest() {
+        List<PatientSearchResult> results = index.search("smith", 10);
+        //an exact last name ranks above a longer one it is the start of
+        assertTrue(results.get(0).getScore() > results.get(1).getScore());
+        assertEquals("John", results.get(0).getFirstName());
+        assertEquals("P000003", results.get(2).getId());
+        //typos are not looked for once the words as typed fill the results
+        assertEquals(Arrays.asList("P000001", "P000002"), ids(index.search("smith", 2)));
+    }
+
+    @Test
+    public void fuzzySearchTest() {
+        //a swap, a missing letter, and a wrong letter
+        assertEquals("P000001", index.search("jonh smith", 10).get(0).getId());
+        assertTrue(ids(index.search("smth", 10)).contains("P000001"));
+        assertTrue(ids(index.search("smyth", 10)).containsAll(Arrays.asList("P000003", "P000001")));
+        assertEquals("P000003", index.search("smyth", 10).get(0).getId());
+        //too short to guess at
+        assertTrue(index.search("xo", 10).isEmpty());
+    }
+
+    @Test
+    public void normalizationTest() {
+        assertEquals(Arrays.asList("P000005"), ids(index.search("garcia lopez", 10)));
+        assertEquals(Arrays.asList("P000005"), ids(index.search("GARCIALOPEZ", 10)));
+        assertEquals(Arrays.asList("P000004"), ids(index.search("obri", 10)));
+        assertEquals(Arrays.asList("P000005"), ids(index.search("jose", 10)));
+    }
+
+    @Test
+    public void phoneSearchTest() {
+        assertEquals(Arrays.asList("P000001"), ids(index.search("0100", 10)));
+        assertEquals(Arrays.asList("P000002"), ids(index.search("555-302-02", 10)));
+        assertEquals(Arrays.asList("P000002"), ids(index.search("3020 joan", 10)));
+        assertEquals(5, index.search("555", 10).size());
+    }
+
+    @Test
+    public void writesTest() {
+        Patient renamed = patient("P000001", "John", "Doe", "555-201-0100");
+        index.onAfterSave(new AfterSaveEvent<>(renamed, new Document("_id", "P000001"), "patients"));
+        assertEquals(Arrays.asList("P000002", "P000003"), ids(index.search("smith", 10)));
+        assertEquals(Arrays.asList("P000001"), ids(index.search("doe", 10)));
+
+        //writes to other collections are not patients
+        index.onAfterSave(new AfterSaveEvent<>(patient("P000009", "Ann", "Doe", null), new Document(), "doctors"));
+        assertEquals(5, index.size());
+
+        index.onAfterDelete(new AfterDeleteEvent<>(new Document("_id", "P000001"), Patient.class, "patients"));
+        assertTrue(index.search("doe", 10).isEmpty());
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void typosTest() {
+        assertEquals(0, PatientSearchIndex.typos("smith", "smith", 2));
+        assertEquals(1, PatientSearchIndex.typos("jonh", "john", 2));
+        assertEquals(1, PatientSearchIndex.typos("smth", "smith", 2));
+        assertEquals(3, PatientSearchIndex.typos("abc", "xyzw", 2));
+    }
+
+    private static List<String> ids(List<PatientSearchResult> results) {
+        return results.stream().map(PatientSearchResult::getId).collect(Collectors.toList());
+    }
+
+    private static Patient patient(String id, String firstName, String lastName, String phoneNumber) {
+        Patient patient = new Patient();
+        patient.setId(id);
+        patient.setFirstName(firstName);
+        patient.setLastName(lastName);
+        patient.setPhoneNumber(phoneNumber);
+        return patient;
+    }
+}
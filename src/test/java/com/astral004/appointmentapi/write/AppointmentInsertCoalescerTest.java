@@ -0,0 +1,176 @@
+package com.astral004.appointmentapi.write;
+
+import com.astral004.appointmentapi.domain.Appointment;
+import com.astral004.appointmentapi.partition.ClinicPartitions;
+import com.astral004.appointmentapi.repository.AppointmentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AppointmentInsertCoalescerTest {
+
+    private static final int CALLERS = 40;
+
+    private AppointmentInsertCoalescer coalescer;
+    private AppointmentRepository appointmentRepository;
+    private MeterRegistry meterRegistry;
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() {
+        appointmentRepository = Mockito.mock(AppointmentRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        coalescer = new AppointmentInsertCoalescer();
+        ReflectionTestUtils.setField(coalescer, "appointmentRepository", appointmentRepository);
+        ReflectionTestUtils.setField(coalescer, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(coalescer, "clinicPartitions", new ClinicPartitions());
+        ReflectionTestUtils.setField(coalescer, "enabled", true);
+        ReflectionTestUtils.setField(coalescer, "maxBatchSize", 16);
+        //long enough for every caller to queue before the first batch is due
+        ReflectionTestUtils.setField(coalescer, "maxWaitMicros", TimeUnit.MILLISECONDS.toMicros(200));
+        ReflectionTestUtils.setField(coalescer, "queueCapacity", 64);
+        coalescer.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        coalescer.shutdown();
+    }
+
+    @Test
+    public void coalescesConcurrentInsertsTest() throws Exception {
+        Mockito.when(appointmentRepository.insertUnordered(Mockito.anyList())).thenAnswer(invocation -> {
+            List<Appointment> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                if ("A000007".equals(batch.get(i).getId())) {
+                    return Collections.singletonMap(i, "E11000 duplicate key error");
+                }
+            }
+            return Collections.emptyMap();
+        });
+
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Appointment>> results = new ArrayList<>();
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setId(String.format("A%06d", i));
+            appointments.add(appointment);
+            results.add(callers.submit(() -> {
+                start.await();
+                return coalescer.insert(appointment);
+            }));
+        }
+        start.countDown();
+
+        for (int i = 0; i < CALLERS; i++) {
+            try {
+                assertSame(appointments.get(i), results.get(i).get(10, TimeUnit.SECONDS));
+                assertTrue(i != 7);
+            } catch (java.util.concurrent.ExecutionException e) {
+                assertEquals(7, i);
+                assertTrue(e.getCause() instanceof DataIntegrityViolationException);
+            }
+        }
+        callers.shutdown();
+
+        //40 callers in batches of at most 16
+        assertEquals(CALLERS, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.toString(), batchSizes.size() >= 3 && batchSizes.size() < CALLERS);
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 16));
+        assertEquals(CALLERS, meterRegistry.get(AppointmentInsertCoalescer.BATCH_SIZE).summary().totalAmount(), 0.0);
+        assertEquals(CALLERS, meterRegistry.get(AppointmentInsertCoalescer.QUEUE_WAIT).timer().count());
+    }
+
+    @Test
+    public void failedGroupCommitTest() {
+        Mockito.when(appointmentRepository.insertUnordered(Mockito.anyList()))
+                .thenThrow(new IllegalStateException("Mongo is down"));
+        Appointment appointment = new Appointment();
+        appointment.setId("A000001");
+        try {
+            coalescer.insert(appointment);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Mongo is down", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shutdownWritesWhatIsQueuedAndRefusesTheRest() throws Exception {
+        CountDownLatch firstFlush = new CountDownLatch(1);
+        AtomicBoolean release = new AtomicBoolean();
+        List<Boolean> interrupted = Collections.synchronizedList(new ArrayList<>());
+        Mockito.when(appointmentRepository.insertUnordered(Mockito.anyList())).thenAnswer(invocation -> {
+            interrupted.add(Thread.currentThread().isInterrupted());
+            firstFlush.countDown();
+            //stands in for a write that is still in flight when the application shuts down
+            while (!release.get()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            return Collections.emptyMap();
+        });
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        Appointment inFlight = new Appointment();
+        inFlight.setId("A000001");
+        Future<Appointment> inFlightResult = callers.submit(() -> coalescer.insert(inFlight));
+        assertTrue(firstFlush.await(5, TimeUnit.SECONDS));
+        Appointment queued = new Appointment();
+        queued.setId("A000002");
+        Future<Appointment> queuedResult = callers.submit(() -> coalescer.insert(queued));
+        BlockingQueue<?> queue = (BlockingQueue<?>) ReflectionTestUtils.getField(coalescer, "queue");
+        while (queue.isEmpty()) {
+            Thread.sleep(1);
+        }
+
+        Future<?> shutdown = callers.submit(() -> {
+            coalescer.shutdown();
+            return null;
+        });
+        Thread flusher = (Thread) ReflectionTestUtils.getField(coalescer, "flusher");
+        while (!flusher.isInterrupted()) {
+            Thread.sleep(1);
+        }
+        release.set(true);
+        shutdown.get(10, TimeUnit.SECONDS);
+
+        assertSame(inFlight, inFlightResult.get(1, TimeUnit.SECONDS));
+        assertSame(queued, queuedResult.get(1, TimeUnit.SECONDS));
+        assertEquals(2, interrupted.size());
+        assertFalse("The last flush ran with the interrupt set", interrupted.get(1));
+        Appointment late = new Appointment();
+        late.setId("A000003");
+        try {
+            coalescer.insert(late);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(queue.isEmpty());
+        }
+        callers.shutdown();
+    }
+}